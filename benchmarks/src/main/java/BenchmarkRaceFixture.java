@@ -0,0 +1,322 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import unicyclerace.bench.RaceFixture;
+
+/**
+ * Class that builds the races used by the benchmarks and exposes them through the RaceFixture Interface
+ * (see RaceFixtures for why this class is in the default package).
+ * Riders are placed like the ones of the Tester, but with a fixed seed so that every run measures the same race
+ * 
+ * @author Luiz do Valle
+ *
+ */
+public class BenchmarkRaceFixture implements RaceFixture {
+
+	/**
+	 * The unit used to size the riders (same as the Tester's)
+	 */
+	private static final int UNIT = 50;
+	
+	/**
+	 * The length of the track (same as the width of the Tester's GUI)
+	 */
+	private static final int TRACK_LENGTH = 1500;
+	
+	/**
+	 * The speed the drivers are driven with
+	 */
+	private static final int SPEED = 5;
+	
+	/**
+	 * The speed multipliers of the nested pelotons, repeated as deep as needed (same as Tester.testCreativity())
+	 */
+	private static final double[] SPEED_MULTIPLIERS = {1.2, 2, 1.5};
+	
+	/**
+	 * The number of pelotons of a "pelotons" race
+	 */
+	private static final int PELOTONS = 10;
+	
+	/**
+	 * The average distance between two riders of a "pelotons" race, which makes every rider touch about three
+	 * others
+	 */
+	private static final int RIDER_SPACING = 20;
+	
+	/**
+	 * The root of the MovingObject tree
+	 */
+	private final MovingObjectGroup root = new MovingObjectGroup();
+	
+	/**
+	 * Driver that reverses the race at the walls
+	 */
+	private final Driver leftAndRightDriver;
+	
+	/**
+	 * Driver that stops the race at the walls
+	 */
+	private final Driver stopDriver;
+	
+	/**
+	 * The speed the StopDriver is driven with (its sign flips at the walls)
+	 */
+	private int stopDriverSpeed = SPEED;
+	
+	/**
+	 * The direction of the next translate (alternates so the race stays in place)
+	 */
+	private int translateDirection = 1;
+	
+	/**
+	 * The number of riders in the race
+	 */
+	private final int riders;
+	
+	/**
+	 * The two sets of X coordinates moveRiders alternates between (null until it is first called)
+	 */
+	private int[][] riderXPositions;
+	
+	/**
+	 * The number of calls to moveRiders
+	 */
+	private int moves;
+	
+	/**
+	 * The detector of the riders touching each other (null until detectCollisions is first called)
+	 */
+	private CollisionDetector collisionDetector;
+	
+	/**
+	 * The number of contacts that began or ended, counted by the listener of the detector
+	 */
+	private long contactChanges;
+	
+	/**
+	 * Constructor that builds the race
+	 * @param shape "wide", "deep", "fleet" or "pelotons" (see RaceFixtures.create)
+	 * @param riders the number of riders in the race
+	 * @param depth the number of nested pelotons of a deep tree
+	 */
+	public BenchmarkRaceFixture(String shape, int riders, int depth) {
+		
+		this.riders = riders;
+		Random random = new Random(42);
+		
+		switch(shape) {
+		
+		case "wide":
+			
+			addUnicycles(root, riders, random);
+			break;
+			
+		case "deep":
+			
+			//A chain of depth pelotons, each one holding its share of the riders and the next peloton
+			MovingObjectGroup peloton = root;
+			
+			for(int level = 0; level < depth; level++) {
+				
+				MovingObjectGroup subPeloton = new MovingObjectGroup(SPEED_MULTIPLIERS[level % SPEED_MULTIPLIERS.length]);
+				peloton.addMovingObject(subPeloton);
+				
+				int levelRiders = riders / depth + (level < riders % depth ? 1 : 0);
+				addUnicycles(subPeloton, levelRiders, random);
+				
+				peloton = subPeloton;
+			}
+			break;
+			
+		case "fleet":
+			
+			UnicycleFleet unicycleFleet = new UnicycleFleet(riders);
+			
+			for(int i = 0; i < riders; i++) {
+				
+				unicycleFleet.addUnicycle(randomX(random), randomY(random), randomSeatLength(random), random.nextInt(0x1000000));
+			}
+			
+			root.addMovingObject(unicycleFleet);
+			break;
+			
+		case "pelotons":
+			
+			//Fleets with different speeds, all spread along the whole track so that they ride through each other
+			for(int pelotonIndex = 0; pelotonIndex < PELOTONS; pelotonIndex++) {
+				
+				int pelotonRiders = riders / PELOTONS + (pelotonIndex < riders % PELOTONS ? 1 : 0);
+				UnicycleFleet pelotonFleet = new UnicycleFleet(pelotonRiders);
+				
+				for(int i = 0; i < pelotonRiders; i++) {
+					
+					pelotonFleet.addUnicycle(random.nextInt(riders * RIDER_SPACING), randomY(random), randomSeatLength(random), random.nextInt(0x1000000));
+				}
+				
+				MovingObjectGroup pelotonGroup = new MovingObjectGroup(SPEED_MULTIPLIERS[pelotonIndex % SPEED_MULTIPLIERS.length]);
+				pelotonGroup.addMovingObject(pelotonFleet);
+				root.addMovingObject(pelotonGroup);
+			}
+			break;
+			
+		default:
+			
+			throw new IllegalArgumentException("Unknown shape: " + shape);
+		}
+		
+		leftAndRightDriver = new LeftAndRightDriver(root, SPEED, TRACK_LENGTH);
+		stopDriver = new StopDriver(root, TRACK_LENGTH);
+	}
+
+	@Override
+	public void leftAndRightDrive() {
+		
+		leftAndRightDriver.drive();
+	}
+
+	@Override
+	public void stopDrive() {
+		
+		//Turn around at the walls, otherwise the StopDriver would stop the race for good
+		if(root.getRightEndXPosition() >= TRACK_LENGTH) {
+			
+			stopDriverSpeed = -SPEED;
+			
+		} else if(root.getLeftEndXPosition() <= 0) {
+			
+			stopDriverSpeed = SPEED;
+		}
+		
+		stopDriver.drive(stopDriverSpeed);
+	}
+
+	@Override
+	public void translate() {
+		
+		root.translate(translateDirection);
+		translateDirection = -translateDirection;
+	}
+
+	@Override
+	public int bounds() {
+		
+		return root.getLeftEndXPosition() + root.getRightEndXPosition();
+	}
+
+	@Override
+	public void draw(Graphics2D graphics2d) {
+		
+		root.draw(graphics2d);
+	}
+
+	@Override
+	public void setParallelTranslate(int parallelism, int threshold) {
+		
+		MovingObjectGroup.setParallelTranslate(parallelism > 0 ? new ForkJoinPool(parallelism) : null, threshold);
+	}
+
+	@Override
+	public int getRiders() {
+		
+		return riders;
+	}
+
+	@Override
+	public void setRiderKernel(String kernel) {
+		
+		UnicycleFleet.setRiderKernel(kernel.equals("vector") ? RiderKernel.vector() : RiderKernel.scalar());
+	}
+
+	@Override
+	public void moveRiders() {
+		
+		if(riderXPositions == null) {
+			
+			//The current coordinates, and the same ones with every rider moved by its own small amount
+			riderXPositions = new int[2][riders];
+			root.getRiderXPositions(riderXPositions[0], 0);
+			
+			for(int i = 0; i < riders; i++) {
+				
+				riderXPositions[1][i] = riderXPositions[0][i] + i % 7 - 3;
+			}
+		}
+		
+		root.setRiderXPositions(riderXPositions[++moves & 1], 0);
+	}
+
+	@Override
+	public int detectCollisions() {
+		
+		if(collisionDetector == null) {
+			
+			collisionDetector = new CollisionDetector(root);
+			collisionDetector.addCollisionListener(new CollisionListener() {
+				
+				@Override
+				public void contactBegan(int riderA, int riderB) {
+					
+					contactChanges++;
+				}
+				
+				@Override
+				public void contactEnded(int riderA, int riderB) {
+					
+					contactChanges++;
+				}
+			});
+		}
+		
+		translate();
+		collisionDetector.update();
+		
+		return collisionDetector.getContactCount();
+	}
+	
+	/**
+	 * Helper method that adds random Unicycles to a group
+	 * @param group the group the Unicycles are added to
+	 * @param count the number of Unicycles to add
+	 * @param random the source of randomness
+	 */
+	private static void addUnicycles(MovingObjectGroup group, int count, Random random) {
+		
+		for(int i = 0; i < count; i++) {
+			
+			group.addMovingObject(new Unicycle(randomX(random), randomY(random), randomSeatLength(random), new Color(random.nextInt(0x1000000))));
+		}
+	}
+	
+	/**
+	 * Helper method that returns a random X coordinate, like the Tester's
+	 * @param random the source of randomness
+	 * @return the X coordinate of the center of a wheel
+	 */
+	private static int randomX(Random random) {
+		
+		return (int) (random.nextDouble() * UNIT * 5 + 20);
+	}
+	
+	/**
+	 * Helper method that returns a random Y coordinate, like the Tester's
+	 * @param random the source of randomness
+	 * @return the Y coordinate of the bottom of a wheel
+	 */
+	private static int randomY(Random random) {
+		
+		return 250 - (int) (random.nextDouble() * UNIT);
+	}
+	
+	/**
+	 * Helper method that returns a random seat length, like the Tester's
+	 * @param random the source of randomness
+	 * @return the seat length
+	 */
+	private static int randomSeatLength(Random random) {
+		
+		return (int) ((random.nextDouble() * 1.5 + 0.5) * UNIT);
+	}
+}
@@ -0,0 +1,66 @@
+package unicyclerace.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Class that runs the benchmarks with allocation profiling (JMH's gc profiler) and writes the results as JSON
+ * so that runs from different commits can be compared. Any JMH command line option can be passed to
+ * override the defaults (e.g. a benchmark regex, -p riders=1000, or -rff other.json)
+ * 
+ * @author Luiz do Valle
+ *
+ */
+public class BenchmarkMain {
+
+	/**
+	 * File the results are written to unless -rff is given
+	 */
+	private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+	
+	/**
+	 * Main method that runs the benchmarks
+	 * Usage: java -jar target/benchmarks.jar [JMH options]
+	 * @param args JMH command line options
+	 * @throws RunnerException if a benchmark fails
+	 * @throws CommandLineOptionException if the options are invalid
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		
+		OptionsBuilder optionsBuilder = new OptionsBuilder();
+		optionsBuilder.parent(commandLineOptions);
+		
+		//Defaults that the command line can override
+		if(commandLineOptions.getIncludes().isEmpty()) {
+			
+			optionsBuilder.include("unicyclerace\\.bench\\..*Benchmark");
+		}
+		
+		if(!commandLineOptions.getResultFormat().hasValue()) {
+			
+			optionsBuilder.resultFormat(ResultFormatType.JSON);
+		}
+		
+		if(!commandLineOptions.getResult().hasValue()) {
+			
+			optionsBuilder.result(DEFAULT_RESULT_FILE);
+		}
+		
+		if(commandLineOptions.getProfilers().isEmpty()) {
+			
+			optionsBuilder.addProfiler(GCProfiler.class);
+		}
+		
+		Options options = optionsBuilder.build();
+		
+		new Runner(options).run();
+	}
+}
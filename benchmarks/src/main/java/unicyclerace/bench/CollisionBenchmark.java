@@ -0,0 +1,63 @@
+package unicyclerace.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of a tick of CollisionDetector on pelotons riding through each other, which must stay well within
+ * the 16 ms of a frame at 100000 riders
+ *
+ * @author Luiz do Valle
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CollisionBenchmark {
+
+	/**
+	 * The number of riders in the race
+	 */
+	@Param({"10000", "100000"})
+	public int riders;
+
+	/**
+	 * The race whose collisions are detected
+	 */
+	private RaceFixture race;
+
+	/**
+	 * Method that builds the race and detects its collisions once (sorting the riders) before each trial
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		race = RaceFixtures.create("pelotons", riders, 1);
+		race.detectCollisions();
+	}
+
+	/**
+	 * Benchmark of CollisionDetector.update after the race moved
+	 * @return the number of contacts
+	 */
+	@Benchmark
+	public int update() {
+
+		return race.detectCollisions();
+	}
+}
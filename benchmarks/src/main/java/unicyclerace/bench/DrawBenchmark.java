@@ -0,0 +1,94 @@
+package unicyclerace.bench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of drawing a whole race into an offscreen image the size of the Tester's GUI
+ * 
+ * @author Luiz do Valle
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DrawBenchmark {
+
+	/**
+	 * The width of the image (same as the Tester's Icon)
+	 */
+	private static final int ICON_W = 1500;
+	
+	/**
+	 * The height of the image (same as the Tester's Icon)
+	 */
+	private static final int ICON_H = 250;
+	
+	/**
+	 * The shape of the MovingObject tree (see RaceFixtures.create)
+	 */
+	@Param({"wide", "fleet"})
+	public String shape;
+	
+	/**
+	 * The number of riders in the race
+	 */
+	@Param({"100", "10000"})
+	public int riders;
+	
+	/**
+	 * The race being drawn
+	 */
+	private RaceFixture race;
+	
+	/**
+	 * The Graphics2D of the offscreen image
+	 */
+	private Graphics2D graphics2d;
+	
+	/**
+	 * Method that builds the race and the image before each trial
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		
+		race = RaceFixtures.create(shape, riders, 1);
+		graphics2d = new BufferedImage(ICON_W, ICON_H, BufferedImage.TYPE_INT_ARGB).createGraphics();
+	}
+	
+	/**
+	 * Method that releases the Graphics2D after each trial
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		
+		graphics2d.dispose();
+	}
+	
+	/**
+	 * Benchmark of drawing the race (Unicycle.draw for every rider)
+	 */
+	@Benchmark
+	public void draw() {
+		
+		race.draw(graphics2d);
+	}
+}
@@ -0,0 +1,81 @@
+package unicyclerace.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of a whole tick of the Drivers (wall checks plus translate) on trees of different shapes and sizes
+ * 
+ * @author Luiz do Valle
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DriverBenchmark {
+
+	/**
+	 * The shape of the MovingObject tree (see RaceFixtures.create)
+	 */
+	@Param({"wide", "deep", "fleet"})
+	public String shape;
+	
+	/**
+	 * The number of riders in the race
+	 */
+	@Param({"1000", "100000"})
+	public int riders;
+	
+	/**
+	 * The number of nested pelotons (only used by deep trees)
+	 */
+	@Param({"3", "12"})
+	public int depth;
+	
+	/**
+	 * The race being driven
+	 */
+	private RaceFixture race;
+	
+	/**
+	 * Method that builds the race before each trial
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		
+		race = RaceFixtures.create(shape, riders, depth);
+	}
+	
+	/**
+	 * Benchmark of LeftAndRightDriver.drive()
+	 */
+	@Benchmark
+	public void leftAndRightDrive() {
+		
+		race.leftAndRightDrive();
+	}
+	
+	/**
+	 * Benchmark of StopDriver.drive(int)
+	 */
+	@Benchmark
+	public void stopDrive() {
+		
+		race.stopDrive();
+	}
+}
@@ -0,0 +1,93 @@
+package unicyclerace.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of MovingObjectGroup.translate and of bounds queries on wide and deep trees
+ * 
+ * @author Luiz do Valle
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GroupBenchmark {
+
+	/**
+	 * The shape of the MovingObject tree (see RaceFixtures.create)
+	 */
+	@Param({"wide", "deep"})
+	public String shape;
+	
+	/**
+	 * The number of riders in the race
+	 */
+	@Param({"1000", "100000"})
+	public int riders;
+	
+	/**
+	 * The number of nested pelotons (only used by deep trees)
+	 */
+	@Param({"3", "12"})
+	public int depth;
+	
+	/**
+	 * The race whose root group is translated and queried
+	 */
+	private RaceFixture race;
+	
+	/**
+	 * Method that builds the race before each trial
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		
+		race = RaceFixtures.create(shape, riders, depth);
+	}
+	
+	/**
+	 * Benchmark of MovingObjectGroup.translate on the root group
+	 */
+	@Benchmark
+	public void translate() {
+		
+		race.translate();
+	}
+	
+	/**
+	 * Benchmark of the bounds queries of an unchanged tree
+	 * @return the bounds, so that the queries can't be optimized away
+	 */
+	@Benchmark
+	public int bounds() {
+		
+		return race.bounds();
+	}
+	
+	/**
+	 * Benchmark of the bounds queries right after a translate (what the Drivers do every tick)
+	 * @return the bounds, so that the queries can't be optimized away
+	 */
+	@Benchmark
+	public int translateThenBounds() {
+		
+		race.translate();
+		return race.bounds();
+	}
+}
@@ -0,0 +1,96 @@
+package unicyclerace.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of translating a large race with MovingObjectGroup's fork/join parallel translate, to see how the
+ * tick time scales with the number of threads (parallelism 0 is the sequential translate)
+ * 
+ * @author Luiz do Valle
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ParallelTranslateBenchmark {
+
+	/**
+	 * The shape of the MovingObject tree (see RaceFixtures.create)
+	 */
+	@Param({"wide", "deep"})
+	public String shape;
+	
+	/**
+	 * The number of riders in the race
+	 */
+	@Param({"500000"})
+	public int riders;
+	
+	/**
+	 * The number of nested pelotons (only used by deep trees)
+	 */
+	@Param({"12"})
+	public int depth;
+	
+	/**
+	 * The number of threads of the pool (0 to translate sequentially)
+	 */
+	@Param({"0", "1", "2", "4", "8"})
+	public int parallelism;
+	
+	/**
+	 * The minimum number of elements of a group for it to be split
+	 */
+	@Param({"4096"})
+	public int threshold;
+	
+	/**
+	 * The race being translated
+	 */
+	private RaceFixture race;
+	
+	/**
+	 * Method that builds the race and the pool before each trial
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		
+		race = RaceFixtures.create(shape, riders, depth);
+		race.setParallelTranslate(parallelism, threshold);
+	}
+	
+	/**
+	 * Method that goes back to sequential translates after each trial
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		
+		race.setParallelTranslate(0, threshold);
+	}
+	
+	/**
+	 * Benchmark of MovingObjectGroup.translate on the root group
+	 */
+	@Benchmark
+	public void translate() {
+		
+		race.translate();
+	}
+}
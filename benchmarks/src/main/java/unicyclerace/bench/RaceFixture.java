@@ -0,0 +1,75 @@
+package unicyclerace.bench;
+
+import java.awt.Graphics2D;
+
+/**
+ * Interface through which the benchmarks use a race. JMH does not allow benchmarks in the default package,
+ * and classes in a named package cannot refer to the race classes (which are in the default package), so the
+ * race is built by BenchmarkRaceFixture (default package), which implements this interface
+ * 
+ * @author Luiz do Valle
+ *
+ */
+public interface RaceFixture {
+
+	/**
+	 * Method that calls drive() on the race's LeftAndRightDriver
+	 */
+	public abstract void leftAndRightDrive();
+	
+	/**
+	 * Method that calls drive(int) on the race's StopDriver, turning around at the walls so that the
+	 * race keeps moving
+	 */
+	public abstract void stopDrive();
+	
+	/**
+	 * Method that translates the root group back and forth so that the race stays in place
+	 */
+	public abstract void translate();
+	
+	/**
+	 * Method that queries both ends of the root group
+	 * @return the sum of the left and right ends (so that the query can't be optimized away)
+	 */
+	public abstract int bounds();
+	
+	/**
+	 * Method that draws the whole race
+	 * @param graphics2d the Graphics2D reference used to draw the race
+	 */
+	public abstract void draw(Graphics2D graphics2d);
+	
+	/**
+	 * Method that makes large groups translate their elements in parallel (see MovingObjectGroup.setParallelTranslate)
+	 * @param parallelism the number of threads of the pool, or 0 to translate sequentially
+	 * @param threshold the minimum number of elements of a group for it to be split
+	 */
+	public abstract void setParallelTranslate(int parallelism, int threshold);
+	
+	/**
+	 * Method that returns the number of riders in the race
+	 * @return the number of riders
+	 */
+	public abstract int getRiders();
+	
+	/**
+	 * Method that makes the fleets move their riders with a RiderKernel (see UnicycleFleet.setRiderKernel)
+	 * @param kernel "scalar" or "vector" (which needs the JVM to be started with --add-modules jdk.incubator.vector)
+	 */
+	public abstract void setRiderKernel(String kernel);
+	
+	/**
+	 * Method that moves every rider of the race to new X coordinates, alternating between two sets of
+	 * coordinates (riders don't all move by the same amount, so the ends are recomputed)
+	 */
+	public abstract void moveRiders();
+	
+	/**
+	 * Method that translates the root group back and forth (see translate()) and finds the riders touching
+	 * each other with a CollisionDetector, telling a listener about the contacts that began and ended
+	 * @return the number of contacts
+	 */
+	public abstract int detectCollisions();
+	
+}
@@ -0,0 +1,45 @@
+package unicyclerace.bench;
+
+/**
+ * Class that creates RaceFixtures. The fixture class is in the default package, so it is looked up by name
+ * 
+ * @author Luiz do Valle
+ *
+ */
+public final class RaceFixtures {
+
+	/**
+	 * Name of the class (in the default package) that implements RaceFixture
+	 */
+	private static final String FIXTURE_CLASS = "BenchmarkRaceFixture";
+	
+	/**
+	 * Private constructor, as the class only has static methods
+	 */
+	private RaceFixtures() {
+		
+	}
+	
+	/**
+	 * Method that builds a race for a benchmark
+	 * @param shape the shape of the MovingObject tree: "wide" (every rider directly in the root group),
+	 * "deep" (pelotons nested like Tester.testCreativity()), "fleet" (a single UnicycleFleet) or "pelotons"
+	 * (fleets with different speeds spread along a long track, about three contacts per rider)
+	 * @param riders the number of riders in the race
+	 * @param depth the number of nested pelotons of a deep tree
+	 * @return the race
+	 */
+	public static RaceFixture create(String shape, int riders, int depth) {
+		
+		try {
+			
+			return (RaceFixture) Class.forName(FIXTURE_CLASS)
+					.getConstructor(String.class, int.class, int.class)
+					.newInstance(shape, riders, depth);
+			
+		} catch (ReflectiveOperationException e) {
+			
+			throw new IllegalStateException("Could not create the race fixture", e);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package unicyclerace.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the per-rider work of a tick on a single UnicycleFleet, done by the scalar RiderKernel or by the
+ * one that uses the Vector API (the fork is started with the module of the Vector API)
+ *
+ * @author Luiz do Valle
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "--add-modules=jdk.incubator.vector"})
+public class RiderKernelBenchmark {
+
+	/**
+	 * The kernel the fleet moves its riders with
+	 */
+	@Param({"scalar", "vector"})
+	public String kernel;
+
+	/**
+	 * The number of riders in the fleet
+	 */
+	@Param({"10000", "1000000"})
+	public int riders;
+
+	/**
+	 * The race being moved
+	 */
+	private RaceFixture race;
+
+	/**
+	 * Method that builds the race and chooses the kernel before each trial
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		race = RaceFixtures.create("fleet", riders, 1);
+		race.setRiderKernel(kernel);
+	}
+
+	/**
+	 * Benchmark of UnicycleFleet.translate (every rider moves by the same amount)
+	 */
+	@Benchmark
+	public void translate() {
+
+		race.translate();
+	}
+
+	/**
+	 * Benchmark of UnicycleFleet.setRiderXPositions (every rider moves by its own amount and the ends of the
+	 * fleet are recomputed)
+	 */
+	@Benchmark
+	public void moveRiders() {
+
+		race.moveRiders();
+	}
+}
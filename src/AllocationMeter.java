@@ -0,0 +1,74 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Class that measures how many bytes the current thread allocates on the heap.
+ * Used to check that drawing a frame allocates (next to) nothing
+ *
+ * @author Luiz do Valle
+ *
+ */
+public final class AllocationMeter {
+
+	/**
+	 * The HotSpot extension of the ThreadMXBean that can report allocated bytes per thread
+	 * (null if the JVM does not support it)
+	 */
+	private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = lookUpThreadMXBean();
+
+	/**
+	 * Private constructor, as the class only has static methods
+	 */
+	private AllocationMeter() {
+
+	}
+
+	/**
+	 * Method that tells whether the JVM can measure allocations per thread
+	 * @return true if allocatedBytes() returns meaningful values
+	 */
+	public static boolean isSupported() {
+
+		return THREAD_MX_BEAN != null;
+	}
+
+	/**
+	 * Method that returns the total number of bytes allocated so far by the current thread.
+	 * Calling it before and after a piece of code gives how much that code allocated
+	 * @return the bytes allocated by the current thread, or -1 if the JVM cannot measure it
+	 */
+	public static long allocatedBytes() {
+
+		if(THREAD_MX_BEAN == null) {
+
+			return -1;
+		}
+
+		return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Helper method that finds the ThreadMXBean and enables allocation measuring on it
+	 * @return the ThreadMXBean, or null if allocations can't be measured
+	 */
+	private static com.sun.management.ThreadMXBean lookUpThreadMXBean() {
+
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+		if(!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+
+			return null;
+		}
+
+		com.sun.management.ThreadMXBean hotSpotThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+
+		if(!hotSpotThreadMXBean.isThreadAllocatedMemorySupported()) {
+
+			return null;
+		}
+
+		hotSpotThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+		return hotSpotThreadMXBean;
+	}
+}
@@ -0,0 +1,146 @@
+import java.awt.Graphics2D;
+
+/**
+ * Class that represents the part of a (possibly very long) track that is shown on the screen.
+ * The camera scrolls to follow the leader of the race and can zoom out to show more of the track. Since
+ * MovingObjectGroups and UnicycleFleets skip what is outside the clip, drawing through a camera only costs
+ * as much as what is on the screen, no matter how long the track is
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class Camera {
+
+	/**
+	 * The width of the screen area the track is shown in
+	 */
+	private final int viewWidth;
+
+	/**
+	 * The height of the screen area the track is shown in
+	 */
+	private final int viewHeight;
+
+	/**
+	 * The length of the track (the camera never scrolls past its ends)
+	 */
+	private final int trackLength;
+
+	/**
+	 * How much the track is magnified (below 1 shows more of the track)
+	 */
+	private double zoom = 1;
+
+	/**
+	 * Where the leader is kept on the screen, as a fraction of the width of the view
+	 */
+	private double leaderPosition = 0.75;
+
+	/**
+	 * The X coordinate of the track shown at the left side of the screen
+	 */
+	private int viewX;
+
+	/**
+	 * Constructor that creates a camera showing the beginning of the track
+	 * @param viewWidth the width of the screen area the track is shown in
+	 * @param viewHeight the height of the screen area the track is shown in
+	 * @param trackLength the length of the track
+	 */
+	public Camera(int viewWidth, int viewHeight, int trackLength) {
+
+		this.viewWidth = viewWidth;
+		this.viewHeight = viewHeight;
+		this.trackLength = trackLength;
+	}
+
+	/**
+	 * Method that scrolls the camera so that the leader of the race (its rightmost end) is shown at the
+	 * leader position of the screen, without going past the ends of the track
+	 * @param movingObject the race to be followed
+	 */
+	public void follow(RaceView movingObject) {
+
+		int visibleLength = getVisibleLength();
+		int leaderX = movingObject.getRightEndXPosition();
+
+		int newViewX = leaderX - (int) (visibleLength * leaderPosition);
+		newViewX = Math.min(newViewX, trackLength - visibleLength);
+		newViewX = Math.max(newViewX, 0);
+
+		viewX = newViewX;
+	}
+
+	/**
+	 * Method that makes graphics2d draw the track as seen by the camera: scrolled, zoomed (around the bottom
+	 * of the view, where the riders are) and clipped to the part of the track that is on the screen
+	 * @param graphics2d the Graphics2D reference to be set up. Should be a copy, since its transform and clip are changed
+	 */
+	public void apply(Graphics2D graphics2d) {
+
+		graphics2d.clipRect(0, 0, viewWidth, viewHeight);
+
+		graphics2d.translate(0, viewHeight);
+		graphics2d.scale(zoom, zoom);
+		graphics2d.translate(-viewX, -viewHeight);
+	}
+
+	/**
+	 * Method that sets how much the track is magnified
+	 * @param zoom the magnification (1 shows the track at its real size, 0.5 shows twice as much of it)
+	 */
+	public void setZoom(double zoom) {
+
+		if(zoom <= 0) {
+
+			throw new IllegalArgumentException("The zoom must be positive: " + zoom);
+		}
+
+		this.zoom = zoom;
+	}
+
+	/**
+	 * Method that sets where the leader is kept on the screen
+	 * @param leaderPosition the position as a fraction of the width of the view (0 is the left side, 1 the right side)
+	 */
+	public void setLeaderPosition(double leaderPosition) {
+
+		this.leaderPosition = leaderPosition;
+	}
+
+	/**
+	 * Method that returns how much the track is magnified
+	 * @return the zoom
+	 */
+	public double getZoom() {
+
+		return zoom;
+	}
+
+	/**
+	 * Method that returns the X coordinate of the track shown at the left side of the screen
+	 * @return the X coordinate of the left side of the view
+	 */
+	public int getViewX() {
+
+		return viewX;
+	}
+
+	/**
+	 * Method that returns how much of the track fits on the screen with the current zoom
+	 * @return the length of track shown
+	 */
+	public int getVisibleLength() {
+
+		return (int) Math.ceil(viewWidth / zoom);
+	}
+
+	/**
+	 * Method that returns the length of the track
+	 * @return the length of the track
+	 */
+	public int getTrackLength() {
+
+		return trackLength;
+	}
+}
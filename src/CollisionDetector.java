@@ -0,0 +1,720 @@
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Class that implements the TickListener Interface and detects, after every tick, which riders of a
+ * MovingObject have their wheels touching (crashes, blocking) with a sweep and prune.
+ * The riders are kept sorted by the left end of their wheel: only riders whose wheels overlap horizontally
+ * (the ones that come right after a rider in that order, until one starts past its right end) are tested,
+ * so a tick costs about as much as the number of riders plus the number of pairs that are actually close.
+ * Since riders barely reorder from one tick to the next, the order is repaired with an insertion sort instead
+ * of being sorted again.
+ *
+ * Contacts are stored as the positions of the two riders in that order, which the sweep finds already sorted.
+ * To tell the CollisionListeners about the contacts that began and ended, the contacts of the previous tick are
+ * moved to the positions their riders have now (almost the same ones), repaired with an insertion sort as
+ * well, and walked side by side with the new ones. Riders touching each other, directly or through other
+ * riders, form a pile-up; pile-ups are only found when asked for, once per tick
+ *
+ * Riders are identified by their position in the order MovingObject.visitRiders visits them
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class CollisionDetector implements TickListener {
+
+	/**
+	 * Number of moves per contact past which repairing the order of the contacts of the previous update is
+	 * given up and they are sorted again instead (about what sorting them costs)
+	 */
+	private static final int MAX_MOVES_PER_CONTACT = 16;
+
+	/**
+	 * The MovingObject whose riders are tested
+	 */
+	private final RaceView movingObject;
+
+	/**
+	 * The listeners told about contacts that began and ended
+	 */
+	private final CopyOnWriteArrayList<CollisionListener> collisionListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The visitor that copies the riders into the arrays below
+	 */
+	private final RiderCollector riderCollector = new RiderCollector();
+
+	/**
+	 * Number of riders tested in the last update
+	 */
+	private int riderCount;
+
+	/**
+	 * Number of riders tested in the update before the last one
+	 */
+	private int previousRiderCount;
+
+	/**
+	 * X coordinates of the left ends of the riders' wheels
+	 */
+	private int[] left = new int[16];
+
+	/**
+	 * Y coordinates of the centers of the wheels, doubled so that they are integers
+	 */
+	private int[] centerY2 = new int[16];
+
+	/**
+	 * Diameters of the wheels (their radius doubled)
+	 */
+	private int[] diameter = new int[16];
+
+	/**
+	 * Indexes of the riders sorted by the left end of their wheel
+	 */
+	private int[] order = new int[0];
+
+	/**
+	 * Position of every rider in order (only up to date when placesFound)
+	 */
+	private int[] places = new int[0];
+
+	/**
+	 * Whether places was updated since the last update
+	 */
+	private boolean placesFound;
+
+	/**
+	 * Left ends of the wheels in sorted order, copied from left so that the sweep reads memory sequentially
+	 */
+	private int[] sortedLeft = new int[0];
+
+	/**
+	 * Doubled Y coordinates of the centers of the wheels in sorted order
+	 */
+	private int[] sortedCenterY2 = new int[0];
+
+	/**
+	 * Diameters of the wheels in sorted order
+	 */
+	private int[] sortedDiameter = new int[0];
+
+	/**
+	 * Position every rider had in the previous update, in sorted order (moved along by repairOrder)
+	 */
+	private int[] previousPositions = new int[0];
+
+	/**
+	 * Position in the last update of the rider at every position of the update before
+	 */
+	private int[] newPositions = new int[0];
+
+	/**
+	 * Contacts found in the last update, sorted. Each contact is stored as the position of its first rider (in
+	 * sorted order) shifted left by 32 plus the position of its last rider
+	 */
+	private long[] contacts = new long[16];
+
+	/**
+	 * Number of contacts found in the last update
+	 */
+	private int contactCount;
+
+	/**
+	 * Contacts found in the update before the last one, at the positions of that update until they are moved
+	 * (reused for the next update)
+	 */
+	private long[] previousContacts = new long[16];
+
+	/**
+	 * Number of contacts found in the update before the last one
+	 */
+	private int previousContactCount;
+
+	/**
+	 * Parent of each rider (by position) in the union-find used to group riders into pile-ups
+	 */
+	private int[] pileUpParent = new int[16];
+
+	/**
+	 * Number of riders of each pile-up, indexed by the root of the pile-up
+	 */
+	private int[] pileUpSize = new int[16];
+
+	/**
+	 * Whether the pile-ups of the last update were found already
+	 */
+	private boolean pileUpsFound;
+
+	/**
+	 * Number of riders of the largest pile-up found in the last update (0 if no riders touch)
+	 */
+	private int largestPileUp;
+
+	/**
+	 * Number of pile-ups (groups of at least two riders touching) found in the last update
+	 */
+	private int pileUpCount;
+
+	/**
+	 * Constructor that creates a detector for the riders of a MovingObject
+	 * @param movingObject the MovingObject whose riders are tested
+	 */
+	public CollisionDetector(RaceView movingObject) {
+
+		if(movingObject == null) {
+
+			throw new IllegalArgumentException("The MovingObject must not be null");
+		}
+
+		this.movingObject = movingObject;
+	}
+
+	/**
+	 * Method that adds a listener that is told about contacts that began and ended
+	 * @param collisionListener the listener to be added
+	 */
+	public void addCollisionListener(CollisionListener collisionListener) {
+
+		collisionListeners.add(collisionListener);
+	}
+
+	/**
+	 * Method that removes a listener added with addCollisionListener
+	 * @param collisionListener the listener to be removed
+	 */
+	public void removeCollisionListener(CollisionListener collisionListener) {
+
+		collisionListeners.remove(collisionListener);
+	}
+
+	@Override
+	public void tickCompleted(long tick, long simulatedTimeNanos) {
+
+		update();
+	}
+
+	/**
+	 * Method that finds the riders whose wheels touch at their current positions and tells the listeners
+	 * about the contacts that began and ended since the last update.
+	 * Must be called on the thread that moves the riders
+	 */
+	public void update() {
+
+		previousRiderCount = riderCount;
+
+		riderCollector.riderCount = 0;
+		movingObject.visitRiders(riderCollector);
+		riderCount = riderCollector.riderCount;
+
+		long[] lastContacts = contacts;
+		contacts = previousContacts;
+		previousContacts = lastContacts;
+		previousContactCount = contactCount;
+
+		//Kept to find the riders of the previous contacts if the order is sorted again
+		int[] previousOrder = order;
+
+		placesFound = false;
+		pileUpsFound = false;
+
+		if(riderCount != previousRiderCount) {
+
+			sortRiders();
+			gatherSortedWheels();
+
+		} else {
+
+			gatherSortedWheels();
+			repairOrder();
+		}
+
+		sweep();
+
+		if(!collisionListeners.isEmpty()) {
+
+			if(riderCount != previousRiderCount) {
+
+				moveRemovedContacts(previousOrder);
+
+			} else {
+
+				movePreviousContacts();
+			}
+
+			fireContactChanges();
+		}
+	}
+
+	/**
+	 * Method that returns the number of pairs of riders touching in the last update
+	 * @return the number of contacts
+	 */
+	public int getContactCount() {
+
+		return contactCount;
+	}
+
+	/**
+	 * Method that tells whether two riders were touching in the last update
+	 * @param riderA one of the riders
+	 * @param riderB the other rider
+	 * @return true if their wheels were touching
+	 */
+	public boolean isInContact(int riderA, int riderB) {
+
+		if(riderA < 0 || riderB < 0 || riderA >= riderCount || riderB >= riderCount) {
+
+			return false;
+		}
+
+		findPlaces();
+
+		return Arrays.binarySearch(contacts, 0, contactCount, pack(places[riderA], places[riderB])) >= 0;
+	}
+
+	/**
+	 * Method that returns the number of riders of the largest pile-up of the last update
+	 * @return the number of riders touching each other (directly or through other riders), or 0 if no riders touch
+	 */
+	public int getLargestPileUp() {
+
+		findPileUps();
+
+		return largestPileUp;
+	}
+
+	/**
+	 * Method that returns the number of pile-ups of the last update
+	 * @return the number of groups of at least two riders touching each other
+	 */
+	public int getPileUpCount() {
+
+		findPileUps();
+
+		return pileUpCount;
+	}
+
+	/**
+	 * Method that returns the number of riders tested in the last update
+	 * @return the number of riders
+	 */
+	public int getRiderCount() {
+
+		return riderCount;
+	}
+
+	/**
+	 * Helper method that sorts all the riders by the left end of their wheel (when riders were added or removed)
+	 */
+	private void sortRiders() {
+
+		//Left end in the high bits and index in the low bits, so that sorting the longs sorts the riders
+		long[] keys = new long[riderCount];
+
+		for(int i = 0; i < riderCount; i++) {
+
+			keys[i] = ((long) left[i] << 32) | i;
+		}
+
+		Arrays.sort(keys);
+
+		order = new int[riderCount];
+
+		for(int i = 0; i < riderCount; i++) {
+
+			order[i] = (int) keys[i];
+		}
+	}
+
+	/**
+	 * Helper method that copies the wheels of the riders into arrays in the order of the last update (or the
+	 * order just sorted)
+	 */
+	private void gatherSortedWheels() {
+
+		if(sortedLeft.length < riderCount) {
+
+			sortedLeft = new int[riderCount];
+			sortedCenterY2 = new int[riderCount];
+			sortedDiameter = new int[riderCount];
+			previousPositions = new int[riderCount];
+		}
+
+		for(int i = 0; i < riderCount; i++) {
+
+			int rider = order[i];
+
+			sortedLeft[i] = left[rider];
+			sortedCenterY2[i] = centerY2[rider];
+			sortedDiameter[i] = diameter[rider];
+			previousPositions[i] = i;
+		}
+	}
+
+	/**
+	 * Helper method that repairs the order of the riders with an insertion sort on the wheels already copied in
+	 * the order of the last update, which is linear (and reads memory sequentially) when the riders only moved
+	 * a little since then
+	 */
+	private void repairOrder() {
+
+		for(int i = 1; i < riderCount; i++) {
+
+			int riderLeft = sortedLeft[i];
+
+			if(sortedLeft[i - 1] <= riderLeft) {
+
+				continue;
+			}
+
+			int rider = order[i];
+			int riderCenterY2 = sortedCenterY2[i];
+			int riderDiameter = sortedDiameter[i];
+			int riderPreviousPosition = previousPositions[i];
+			int j = i - 1;
+
+			while(j >= 0 && sortedLeft[j] > riderLeft) {
+
+				order[j + 1] = order[j];
+				sortedLeft[j + 1] = sortedLeft[j];
+				sortedCenterY2[j + 1] = sortedCenterY2[j];
+				sortedDiameter[j + 1] = sortedDiameter[j];
+				previousPositions[j + 1] = previousPositions[j];
+				j--;
+			}
+
+			order[j + 1] = rider;
+			sortedLeft[j + 1] = riderLeft;
+			sortedCenterY2[j + 1] = riderCenterY2;
+			sortedDiameter[j + 1] = riderDiameter;
+			previousPositions[j + 1] = riderPreviousPosition;
+		}
+	}
+
+	/**
+	 * Helper method that tests every rider against the riders that start before its right end (in order),
+	 * collecting the pairs whose wheels touch (already sorted, as both loops go forward)
+	 */
+	private void sweep() {
+
+		contactCount = 0;
+
+		for(int i = 0; i < riderCount; i++) {
+
+			//The right end of a wheel is its left end plus its diameter
+			int rightA = sortedLeft[i] + sortedDiameter[i];
+
+			for(int j = i + 1; j < riderCount; j++) {
+
+				//Every rider after this one starts even further right
+				if(sortedLeft[j] > rightA) {
+
+					break;
+				}
+
+				if(wheelsTouch(i, j)) {
+
+					if(contactCount == contacts.length) {
+
+						contacts = Arrays.copyOf(contacts, contactCount * 2);
+					}
+
+					contacts[contactCount++] = ((long) i << 32) | j;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method that tells whether the wheels (circles) of two riders touch
+	 * @param sortedA the position of one of the riders in sorted order
+	 * @param sortedB the position of the other rider in sorted order
+	 * @return true if the circles overlap or touch
+	 */
+	private boolean wheelsTouch(int sortedA, int sortedB) {
+
+		//Everything is doubled: the center of a wheel is its left end plus its radius
+		long deltaX = 2L * (sortedLeft[sortedA] - sortedLeft[sortedB]) + sortedDiameter[sortedA] - sortedDiameter[sortedB];
+		long deltaY = sortedCenterY2[sortedA] - sortedCenterY2[sortedB];
+
+		//So the sum of the radii becomes the sum of the diameters
+		long radii = (long) sortedDiameter[sortedA] + sortedDiameter[sortedB];
+
+		return deltaX * deltaX + deltaY * deltaY <= radii * radii;
+	}
+
+	/**
+	 * Helper method that moves the contacts of the previous update to the positions their riders have now, and
+	 * repairs their order with an insertion sort (only riders that overtook each other moved)
+	 */
+	private void movePreviousContacts() {
+
+		if(newPositions.length < riderCount) {
+
+			newPositions = new int[riderCount];
+		}
+
+		for(int i = 0; i < riderCount; i++) {
+
+			newPositions[previousPositions[i]] = i;
+		}
+
+		long moves = 0;
+		long maxMoves = (long) previousContactCount * MAX_MOVES_PER_CONTACT;
+
+		for(int i = 0; i < previousContactCount; i++) {
+
+			long contact = pack(newPositions[(int) (previousContacts[i] >>> 32)], newPositions[(int) previousContacts[i]]);
+			int j = i - 1;
+
+			while(j >= 0 && previousContacts[j] > contact && moves <= maxMoves) {
+
+				previousContacts[j + 1] = previousContacts[j];
+				j--;
+				moves++;
+			}
+
+			previousContacts[j + 1] = contact;
+
+			if(moves > maxMoves) {
+
+				//Too many riders overtook each other: the rest is moved and everything sorted again
+				for(int k = i + 1; k < previousContactCount; k++) {
+
+					previousContacts[k] = pack(newPositions[(int) (previousContacts[k] >>> 32)], newPositions[(int) previousContacts[k]]);
+				}
+
+				Arrays.sort(previousContacts, 0, previousContactCount);
+
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Helper method that moves the contacts of the previous update to the positions their riders have in the
+	 * order just sorted (when riders were added or removed), telling the listeners right away about the ones of
+	 * riders that are gone
+	 * @param previousOrder the order of the riders in the previous update
+	 */
+	private void moveRemovedContacts(int[] previousOrder) {
+
+		findPlaces();
+
+		int kept = 0;
+
+		for(int i = 0; i < previousContactCount; i++) {
+
+			int riderA = previousOrder[(int) (previousContacts[i] >>> 32)];
+			int riderB = previousOrder[(int) previousContacts[i]];
+
+			if(riderA < riderCount && riderB < riderCount) {
+
+				previousContacts[kept++] = pack(places[riderA], places[riderB]);
+
+			} else {
+
+				for(CollisionListener collisionListener : collisionListeners) {
+
+					collisionListener.contactEnded(Math.min(riderA, riderB), Math.max(riderA, riderB));
+				}
+			}
+		}
+
+		previousContactCount = kept;
+		Arrays.sort(previousContacts, 0, previousContactCount);
+	}
+
+	/**
+	 * Helper method that compares the contacts of this update with the ones of the previous update (moved to
+	 * the current positions) and tells the listeners about the differences (both lists are sorted, so they are
+	 * walked side by side)
+	 */
+	private void fireContactChanges() {
+
+		//Taken once per update rather than once per contact
+		CollisionListener[] listeners = null;
+		int i = 0;
+		int j = 0;
+
+		while(i < contactCount || j < previousContactCount) {
+
+			if(i < contactCount && j < previousContactCount && contacts[i] == previousContacts[j]) {
+
+				//Still touching
+				i++;
+				j++;
+
+				continue;
+			}
+
+			if(listeners == null) {
+
+				listeners = collisionListeners.toArray(new CollisionListener[0]);
+			}
+
+			boolean began = j == previousContactCount || (i < contactCount && contacts[i] < previousContacts[j]);
+			long contact = began ? contacts[i++] : previousContacts[j++];
+			int riderA = order[(int) (contact >>> 32)];
+			int riderB = order[(int) contact];
+
+			for(CollisionListener collisionListener : listeners) {
+
+				if(began) {
+
+					collisionListener.contactBegan(Math.min(riderA, riderB), Math.max(riderA, riderB));
+
+				} else {
+
+					collisionListener.contactEnded(Math.min(riderA, riderB), Math.max(riderA, riderB));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method that finds the position of every rider in order, unless it was already found since the last
+	 * update
+	 */
+	private void findPlaces() {
+
+		if(placesFound) {
+
+			return;
+		}
+
+		placesFound = true;
+
+		if(places.length < riderCount) {
+
+			places = new int[riderCount];
+		}
+
+		for(int i = 0; i < riderCount; i++) {
+
+			places[order[i]] = i;
+		}
+	}
+
+	/**
+	 * Helper method that groups the riders that touch each other (directly or through other riders) into
+	 * pile-ups with a union-find, unless they were already found since the last update
+	 */
+	private void findPileUps() {
+
+		if(pileUpsFound) {
+
+			return;
+		}
+
+		pileUpsFound = true;
+		largestPileUp = 0;
+		pileUpCount = 0;
+
+		if(contactCount == 0) {
+
+			return;
+		}
+
+		if(pileUpParent.length < riderCount) {
+
+			pileUpParent = new int[riderCount];
+			pileUpSize = new int[riderCount];
+		}
+
+		for(int i = 0; i < riderCount; i++) {
+
+			pileUpParent[i] = i;
+			pileUpSize[i] = 1;
+		}
+
+		for(int i = 0; i < contactCount; i++) {
+
+			int rootA = findPileUp((int) (contacts[i] >>> 32));
+			int rootB = findPileUp((int) contacts[i]);
+
+			if(rootA == rootB) {
+
+				continue;
+			}
+
+			//The smaller pile-up joins the larger one
+			if(pileUpSize[rootA] < pileUpSize[rootB]) {
+
+				int root = rootA;
+				rootA = rootB;
+				rootB = root;
+			}
+
+			//Two separate riders make a new pile-up, two pile-ups merging make one less
+			pileUpCount += pileUpSize[rootA] == 1 ? 1 : (pileUpSize[rootB] == 1 ? 0 : -1);
+
+			pileUpParent[rootB] = rootA;
+			pileUpSize[rootA] += pileUpSize[rootB];
+			largestPileUp = Math.max(largestPileUp, pileUpSize[rootA]);
+		}
+	}
+
+	/**
+	 * Helper method that finds the pile-up a rider belongs to, shortening the path along the way
+	 * @param position the position of the rider in sorted order
+	 * @return the position of the root rider of its pile-up
+	 */
+	private int findPileUp(int position) {
+
+		while(pileUpParent[position] != position) {
+
+			pileUpParent[position] = pileUpParent[pileUpParent[position]];
+			position = pileUpParent[position];
+		}
+
+		return position;
+	}
+
+	/**
+	 * Helper method that stores a pair of riders (by position in sorted order) in a long, the smallest first
+	 * @param positionA the position of one of the riders
+	 * @param positionB the position of the other rider
+	 * @return the pair as a long
+	 */
+	private static long pack(int positionA, int positionB) {
+
+		return ((long) Math.min(positionA, positionB) << 32) | Math.max(positionA, positionB);
+	}
+
+	/**
+	 * Class that copies the wheels of the riders of the MovingObject into the arrays of the detector
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	private final class RiderCollector implements RiderVisitor {
+
+		/**
+		 * The number of riders visited so far
+		 */
+		private int riderCount;
+
+		@Override
+		public void visitRider(int x, int y, int seatLength, int rgb) {
+
+			int i = riderCount++;
+
+			if(i == left.length) {
+
+				int newLength = i * 2;
+				left = Arrays.copyOf(left, newLength);
+				centerY2 = Arrays.copyOf(centerY2, newLength);
+				diameter = Arrays.copyOf(diameter, newLength);
+			}
+
+			//Same wheel as the one drawn: a circle of the wheel's diameter standing on (x, y)
+			int wheelDiameter = UnicycleDimensions.wheelDiameter(seatLength);
+
+			left[i] = x + UnicycleDimensions.leftEndXOffset(seatLength);
+			centerY2[i] = 2 * y - wheelDiameter;
+			diameter[i] = wheelDiameter;
+		}
+	}
+}
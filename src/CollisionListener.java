@@ -0,0 +1,24 @@
+/**
+ * Interface that serves as the blueprint for the classes that want to be told when two riders start or stop
+ * touching each other (see CollisionDetector)
+ * Riders are identified by their position in the order MovingObject.visitRiders visits them
+ * @author Luiz do Valle
+ *
+ */
+public interface CollisionListener {
+
+	/**
+	 * Method called when the wheels of two riders start touching
+	 * @param riderA the rider that was visited first
+	 * @param riderB the rider that was visited last
+	 */
+	public abstract void contactBegan(int riderA, int riderB);
+
+	/**
+	 * Method called when the wheels of two riders stop touching
+	 * @param riderA the rider that was visited first
+	 * @param riderB the rider that was visited last
+	 */
+	public abstract void contactEnded(int riderA, int riderB);
+
+}
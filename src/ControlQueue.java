@@ -0,0 +1,200 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Class that carries commands to a race (set its speed, change the speed multiplier of a group, replace its
+ * Driver, pause or resume it) from any thread (a slider, a script, a remote operator...) to the thread that
+ * moves the race, where a ControlledDriver applies them all at once at the next tick boundary.
+ *
+ * The queue is lock-free: submitting a command is a single compare-and-set, and the ControlledDriver takes
+ * every pending command with a single atomic swap, so producers never wait for the tick and the tick never
+ * waits for producers. Commands submitted while nothing drives the race stay in the queue until it is driven
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class ControlQueue {
+
+	/**
+	 * Kind of the commands that set the speed of the race
+	 */
+	static final int SPEED = 0;
+
+	/**
+	 * Kind of the commands that set the speed multiplier of a group
+	 */
+	static final int SPEED_MULTIPLIER = 1;
+
+	/**
+	 * Kind of the commands that replace the Driver of the race
+	 */
+	static final int DRIVER = 2;
+
+	/**
+	 * Kind of the commands that pause or resume the race
+	 */
+	static final int PAUSE = 3;
+
+	/**
+	 * The command submitted last (the pending commands are linked from the newest to the oldest)
+	 */
+	private final AtomicReference<Command> head = new AtomicReference<>();
+
+	/**
+	 * Method that makes the race move at the specified speed from the next tick on. Can be called from any thread
+	 * @param speed the new speed
+	 */
+	public void setSpeed(int speed) {
+
+		Command command = new Command(SPEED);
+		command.speed = speed;
+
+		submit(command);
+	}
+
+	/**
+	 * Method that changes the speed multiplier of a group of the race from the next tick on.
+	 * Can be called from any thread
+	 * @param group the group whose speed multiplier changes
+	 * @param speedMultiplier the new speed multiplier
+	 */
+	public void setSpeedMultiplier(MovingObjectGroup group, double speedMultiplier) {
+
+		if(group == null) {
+
+			throw new IllegalArgumentException("The group must not be null");
+		}
+
+		if(!Double.isFinite(speedMultiplier)) {
+
+			throw new IllegalArgumentException("The speed multiplier must be finite: " + speedMultiplier);
+		}
+
+		Command command = new Command(SPEED_MULTIPLIER);
+		command.group = group;
+		command.speedMultiplier = speedMultiplier;
+
+		submit(command);
+	}
+
+	/**
+	 * Method that makes another Driver move the race from the next tick on. Can be called from any thread
+	 * @param driver the new Driver (driving the same MovingObject)
+	 */
+	public void replaceDriver(Driver driver) {
+
+		if(driver == null) {
+
+			throw new IllegalArgumentException("The driver must not be null");
+		}
+
+		Command command = new Command(DRIVER);
+		command.driver = driver;
+
+		submit(command);
+	}
+
+	/**
+	 * Method that pauses the race (its ticks don't move it) or resumes it from the next tick on.
+	 * Can be called from any thread
+	 * @param paused true to pause the race, false to resume it
+	 */
+	public void setPaused(boolean paused) {
+
+		Command command = new Command(PAUSE);
+		command.paused = paused;
+
+		submit(command);
+	}
+
+	/**
+	 * Method that takes every pending command out of the queue
+	 * @return the oldest pending command, linked to the newer ones in the order they were submitted (null if
+	 * there is none)
+	 */
+	Command drain() {
+
+		Command newest = head.getAndSet(null);
+
+		//Reverse the list so that the commands are applied in the order they were submitted
+		Command oldest = null;
+
+		while(newest != null) {
+
+			Command next = newest.next;
+			newest.next = oldest;
+			oldest = newest;
+			newest = next;
+		}
+
+		return oldest;
+	}
+
+	/**
+	 * Helper method that adds a command to the queue
+	 * @param command the command to be added
+	 */
+	private void submit(Command command) {
+
+		Command newest;
+
+		do {
+
+			newest = head.get();
+			command.next = newest;
+
+		} while(!head.compareAndSet(newest, command));
+	}
+
+	/**
+	 * Class that holds a command submitted to the queue. Only the fields of its kind are used
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	static final class Command {
+
+		/**
+		 * The kind of the command (SPEED, SPEED_MULTIPLIER, DRIVER or PAUSE)
+		 */
+		final int kind;
+
+		/**
+		 * The new speed of the race
+		 */
+		int speed;
+
+		/**
+		 * The group whose speed multiplier changes
+		 */
+		MovingObjectGroup group;
+
+		/**
+		 * The new speed multiplier of the group
+		 */
+		double speedMultiplier;
+
+		/**
+		 * The new Driver of the race
+		 */
+		Driver driver;
+
+		/**
+		 * Whether the race is paused
+		 */
+		boolean paused;
+
+		/**
+		 * The next command (older while in the queue, newer once drained)
+		 */
+		Command next;
+
+		/**
+		 * Constructor that initializes the kind of the command
+		 * @param kind the kind of the command
+		 */
+		private Command(int kind) {
+
+			this.kind = kind;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/**
+ * Class that implements the Driver Interface.
+ * This implementation drives another Driver and, right before every tick, applies the commands submitted to
+ * its ControlQueue since the previous one, all at once, so that the race never changes in the middle of a tick.
+ * Redundant commands are coalesced: only the last speed, Driver and pause of a batch are applied, and the speed
+ * multipliers of the groups end up as the last command of each group set them
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class ControlledDriver implements Driver {
+
+	/**
+	 * The queue the commands are taken from
+	 */
+	private final ControlQueue controlQueue;
+
+	/**
+	 * The Driver that actually moves the race (replaced by DRIVER commands)
+	 */
+	private Driver driver;
+
+	/**
+	 * The speed the Driver is driven with. Only used once a speed was set, before that the Driver is driven
+	 * with drive()
+	 */
+	private int speed;
+
+	/**
+	 * Whether a speed was set (by a command or by drive(int))
+	 */
+	private boolean speedControlled;
+
+	/**
+	 * Whether the race is paused
+	 */
+	private boolean paused;
+
+	/**
+	 * Constructor that creates the driver with a new, empty ControlQueue
+	 * @param driver the Driver that actually moves the race
+	 */
+	public ControlledDriver(Driver driver) {
+
+		this(driver, new ControlQueue());
+	}
+
+	/**
+	 * Constructor that initializes the class's fields
+	 * @param driver the Driver that actually moves the race
+	 * @param controlQueue the queue the commands are taken from
+	 */
+	public ControlledDriver(Driver driver, ControlQueue controlQueue) {
+
+		if(driver == null) {
+
+			throw new IllegalArgumentException("The driver must not be null");
+		}
+
+		this.driver = driver;
+		this.controlQueue = controlQueue;
+	}
+
+	/**
+	 * Constructor that restores a driver saved by a RaceCheckpoint, with a new, empty ControlQueue
+	 * @param driver the Driver that actually moves the race
+	 * @param speed the speed the Driver is driven with
+	 * @param speedControlled whether a speed was set
+	 * @param paused whether the race is paused
+	 */
+	ControlledDriver(Driver driver, int speed, boolean speedControlled, boolean paused) {
+
+		this(driver);
+
+		this.speed = speed;
+		this.speedControlled = speedControlled;
+		this.paused = paused;
+	}
+
+	@Override
+	public void drive() {
+
+		applyCommands();
+
+		if(paused) {
+
+			return;
+		}
+
+		if(speedControlled) {
+
+			driver.drive(speed);
+
+		} else {
+
+			driver.drive();
+		}
+	}
+
+	@Override
+	public void drive(int speed) {
+
+		//Commands submitted before this call are older than its speed
+		applyCommands();
+
+		this.speed = speed;
+		speedControlled = true;
+
+		if(!paused) {
+
+			driver.drive(speed);
+		}
+	}
+
+	/**
+	 * Method that returns the queue the commands are taken from
+	 * @return the ControlQueue of the driver
+	 */
+	public ControlQueue getControlQueue() {
+
+		return controlQueue;
+	}
+
+	/**
+	 * Method that returns the Driver that currently moves the race.
+	 * Must be called on the thread that drives the race
+	 * @return the Driver set last
+	 */
+	public Driver getDriver() {
+
+		return driver;
+	}
+
+	/**
+	 * Method that returns the speed the Driver is driven with.
+	 * Must be called on the thread that drives the race
+	 * @return the speed set last (meaningless if isSpeedControlled() is false)
+	 */
+	int getSpeed() {
+
+		return speed;
+	}
+
+	/**
+	 * Method that tells whether a speed was set, so that the Driver is driven with drive(int).
+	 * Must be called on the thread that drives the race
+	 * @return true if a speed was set by a command or by drive(int)
+	 */
+	boolean isSpeedControlled() {
+
+		return speedControlled;
+	}
+
+	/**
+	 * Method that tells whether the race is paused.
+	 * Must be called on the thread that drives the race
+	 * @return true if ticks don't move the race
+	 */
+	public boolean isPaused() {
+
+		return paused;
+	}
+
+	/**
+	 * Helper method that applies every pending command of the queue
+	 */
+	private void applyCommands() {
+
+		ControlQueue.Command speedCommand = null;
+		ControlQueue.Command driverCommand = null;
+		ControlQueue.Command pauseCommand = null;
+
+		for(ControlQueue.Command command = controlQueue.drain(); command != null; command = command.next) {
+
+			if(command.kind == ControlQueue.SPEED) {
+
+				speedCommand = command;
+
+			} else if(command.kind == ControlQueue.SPEED_MULTIPLIER) {
+
+				//Applied in order, so the last one of each group wins
+				command.group.setSpeedMultiplier(command.speedMultiplier);
+
+			} else if(command.kind == ControlQueue.DRIVER) {
+
+				driverCommand = command;
+
+			} else {
+
+				pauseCommand = command;
+			}
+		}
+
+		if(driverCommand != null) {
+
+			driver = driverCommand.driver;
+		}
+
+		if(speedCommand != null) {
+
+			speed = speedCommand.speed;
+			speedControlled = true;
+		}
+
+		if(pauseCommand != null) {
+
+			paused = pauseCommand.paused;
+		}
+	}
+}
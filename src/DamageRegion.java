@@ -0,0 +1,270 @@
+import java.awt.Rectangle;
+
+import javax.swing.JComponent;
+
+/**
+ * Class that collects the areas of the GUI that changed since they were last painted (dirty rectangles), so
+ * that only those areas are repainted instead of the whole Icon.
+ * Rectangles that overlap a lot (painting their union costs no more than painting both) are merged, and the
+ * number of rectangles is bounded so that a race where everything moves ends up as a few large rectangles
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class DamageRegion {
+
+	/**
+	 * Margin added around every area, for the outline's stroke that spills over the bounds of a rider
+	 */
+	private static final int STROKE_MARGIN = 2;
+
+	/**
+	 * Maximum number of rectangles used by default
+	 */
+	private static final int DEFAULT_MAX_RECTANGLES = 16;
+
+	/**
+	 * Distance from 0 of the sides of the rectangle that covers the whole GUI (far larger than any GUI, and small
+	 * enough for its area to fit in a long)
+	 */
+	private static final int EVERYTHING = 1 << 28;
+
+	/**
+	 * X coordinates of the left sides of the rectangles
+	 */
+	private final int[] left;
+
+	/**
+	 * Y coordinates of the top sides of the rectangles
+	 */
+	private final int[] top;
+
+	/**
+	 * X coordinates of the right sides of the rectangles (exclusive)
+	 */
+	private final int[] right;
+
+	/**
+	 * Y coordinates of the bottom sides of the rectangles (exclusive)
+	 */
+	private final int[] bottom;
+
+	/**
+	 * Number of rectangles in the region
+	 */
+	private int count;
+
+	/**
+	 * Default constructor that creates an empty region of at most 16 rectangles
+	 */
+	public DamageRegion() {
+
+		this(DEFAULT_MAX_RECTANGLES);
+	}
+
+	/**
+	 * Constructor that creates an empty region of at most the specified number of rectangles
+	 * @param maxRectangles the maximum number of rectangles (more rectangles are merged into the existing ones)
+	 */
+	public DamageRegion(int maxRectangles) {
+
+		if(maxRectangles < 1) {
+
+			throw new IllegalArgumentException("The region needs at least one rectangle: " + maxRectangles);
+		}
+
+		left = new int[maxRectangles];
+		top = new int[maxRectangles];
+		right = new int[maxRectangles];
+		bottom = new int[maxRectangles];
+	}
+
+	/**
+	 * Method that adds an area that changed to the region
+	 * @param areaLeft the X coordinate of the leftmost point that changed
+	 * @param areaTop the Y coordinate of the topmost point that changed
+	 * @param areaRight the X coordinate of the rightmost point that changed
+	 * @param areaBottom the Y coordinate of the bottommost point that changed
+	 */
+	public void add(int areaLeft, int areaTop, int areaRight, int areaBottom) {
+
+		if(areaLeft > areaRight || areaTop > areaBottom) {
+
+			return;
+		}
+
+		int newLeft = areaLeft - STROKE_MARGIN;
+		int newTop = areaTop - STROKE_MARGIN;
+		int newRight = areaRight + STROKE_MARGIN + 1;
+		int newBottom = areaBottom + STROKE_MARGIN + 1;
+
+		//Merge the new rectangle with every rectangle it overlaps a lot (the merged one may then overlap others)
+		boolean merged = true;
+
+		while(merged) {
+
+			merged = false;
+
+			for(int i = 0; i < count; i++) {
+
+				long unionArea = area(Math.min(left[i], newLeft), Math.min(top[i], newTop), Math.max(right[i], newRight), Math.max(bottom[i], newBottom));
+
+				if(unionArea <= area(left[i], top[i], right[i], bottom[i]) + area(newLeft, newTop, newRight, newBottom)) {
+
+					newLeft = Math.min(left[i], newLeft);
+					newTop = Math.min(top[i], newTop);
+					newRight = Math.max(right[i], newRight);
+					newBottom = Math.max(bottom[i], newBottom);
+
+					remove(i);
+					merged = true;
+					break;
+				}
+			}
+		}
+
+		if(count == left.length) {
+
+			//No room left: merge it with the rectangle that grows the least
+			int best = 0;
+			long bestGrowth = Long.MAX_VALUE;
+
+			for(int i = 0; i < count; i++) {
+
+				long growth = area(Math.min(left[i], newLeft), Math.min(top[i], newTop), Math.max(right[i], newRight), Math.max(bottom[i], newBottom))
+						- area(left[i], top[i], right[i], bottom[i]);
+
+				if(growth < bestGrowth) {
+
+					best = i;
+					bestGrowth = growth;
+				}
+			}
+
+			newLeft = Math.min(left[best], newLeft);
+			newTop = Math.min(top[best], newTop);
+			newRight = Math.max(right[best], newRight);
+			newBottom = Math.max(bottom[best], newBottom);
+
+			remove(best);
+		}
+
+		left[count] = newLeft;
+		top[count] = newTop;
+		right[count] = newRight;
+		bottom[count] = newBottom;
+		count++;
+	}
+
+	/**
+	 * Method that marks the whole GUI as changed, for MovingObjects that can't tell which areas changed. The
+	 * region is then a single rectangle covering everything (painting it is clipped to the component)
+	 */
+	public void addEverything() {
+
+		count = 0;
+		add(-EVERYTHING, -EVERYTHING, EVERYTHING, EVERYTHING);
+	}
+
+	/**
+	 * Method that tells whether nothing changed
+	 * @return true if the region has no rectangles
+	 */
+	public boolean isEmpty() {
+
+		return count == 0;
+	}
+
+	/**
+	 * Method that returns the number of rectangles of the region
+	 * @return the number of rectangles
+	 */
+	public int getRectangleCount() {
+
+		return count;
+	}
+
+	/**
+	 * Method that copies a rectangle of the region into the specified Rectangle
+	 * @param index the index of the rectangle
+	 * @param rectangle the Rectangle the rectangle is copied to
+	 * @return rectangle
+	 */
+	public Rectangle getRectangle(int index, Rectangle rectangle) {
+
+		if(index < 0 || index >= count) {
+
+			throw new IndexOutOfBoundsException("Index: " + index + ", Rectangles: " + count);
+		}
+
+		rectangle.setBounds(left[index], top[index], right[index] - left[index], bottom[index] - top[index]);
+
+		return rectangle;
+	}
+
+	/**
+	 * Method that returns the total area of the rectangles of the region (the number of pixels repainted)
+	 * @return the area of the region
+	 */
+	public long getArea() {
+
+		long total = 0;
+
+		for(int i = 0; i < count; i++) {
+
+			total += area(left[i], top[i], right[i], bottom[i]);
+		}
+
+		return total;
+	}
+
+	/**
+	 * Method that removes every rectangle from the region
+	 */
+	public void clear() {
+
+		count = 0;
+	}
+
+	/**
+	 * Method that paints every rectangle of the region on a component right away and then clears the region.
+	 * Each rectangle is painted on its own (repaint() would merge them all into a single rectangle).
+	 * Must be called on the event dispatch thread
+	 * @param component the component to be painted (like the JLabel holding a MyIcon)
+	 */
+	public void paintImmediately(JComponent component) {
+
+		for(int i = 0; i < count; i++) {
+
+			component.paintImmediately(left[i], top[i], right[i] - left[i], bottom[i] - top[i]);
+		}
+
+		clear();
+	}
+
+	/**
+	 * Helper method that removes a rectangle by moving the last rectangle into its place
+	 * @param index the index of the rectangle to be removed
+	 */
+	private void remove(int index) {
+
+		count--;
+		left[index] = left[count];
+		top[index] = top[count];
+		right[index] = right[count];
+		bottom[index] = bottom[count];
+	}
+
+	/**
+	 * Helper method that computes the area of a rectangle
+	 * @param rectangleLeft the X coordinate of the left side
+	 * @param rectangleTop the Y coordinate of the top side
+	 * @param rectangleRight the X coordinate of the right side (exclusive)
+	 * @param rectangleBottom the Y coordinate of the bottom side (exclusive)
+	 * @return the area of the rectangle
+	 */
+	private static long area(int rectangleLeft, int rectangleTop, int rectangleRight, int rectangleBottom) {
+
+		return (long) (rectangleRight - rectangleLeft) * (rectangleBottom - rectangleTop);
+	}
+}
@@ -0,0 +1,318 @@
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Class that indexes the X extents (left and right ends) of the elements of a MovingObjectGroup or the riders
+ * of a UnicycleFleet, so that the ones inside a viewport can be found without looking at all of them.
+ * The elements are kept sorted by their left end: a viewport is then a binary search followed by a scan of
+ * the elements that actually start inside it (or at most one element width before it).
+ *
+ * Moving every element by the same amount keeps them sorted, so the index doesn't need to be told about it.
+ * When the elements move by different amounts, elementsMoved() marks the order as outdated and it is repaired
+ * with an insertion sort the next time the index is queried, which is linear since elements only move a
+ * little between two frames
+ *
+ * @author Luiz do Valle
+ *
+ */
+public final class ExtentIndex {
+
+	/**
+	 * Margin added on each side of a viewport, for the outline's stroke that spills over the ends of a rider
+	 */
+	private static final int STROKE_MARGIN = 2;
+
+	/**
+	 * The elements being indexed
+	 */
+	private final Source source;
+
+	/**
+	 * Indexes of the elements, sorted by left end
+	 */
+	private int[] order = new int[16];
+
+	/**
+	 * Number of elements in the index
+	 */
+	private int size;
+
+	/**
+	 * The largest distance between the left and right ends of an element
+	 */
+	private int maxWidth;
+
+	/**
+	 * Whether elements moved by different amounts since the order was last repaired
+	 */
+	private boolean moved;
+
+	/**
+	 * Whether elements were added out of order since the order was last sorted
+	 */
+	private boolean unsorted;
+
+	/**
+	 * Indexes of the elements found by the last query, in increasing order
+	 */
+	private int[] visible = new int[16];
+
+	/**
+	 * Number of elements found by the last query
+	 */
+	private int visibleCount;
+
+	/**
+	 * Constructor that creates an index over the elements of the specified source, adding the ones it
+	 * already has
+	 * @param source the elements to be indexed
+	 */
+	public ExtentIndex(Source source) {
+
+		this.source = source;
+
+		while(size < source.size()) {
+
+			elementAdded();
+		}
+	}
+
+	/**
+	 * Method that adds the last element of the source to the index. Must be called every time an element is
+	 * added to the source
+	 */
+	public void elementAdded() {
+
+		int element = size;
+
+		if(size == order.length) {
+
+			order = Arrays.copyOf(order, size * 2);
+		}
+
+		//Elements added from left to right keep the index sorted, the others are sorted all at once when queried
+		if(size > 0 && source.getLeftEnd(element) < source.getLeftEnd(order[size - 1])) {
+
+			unsorted = true;
+		}
+
+		order[size++] = element;
+		maxWidth = Math.max(maxWidth, source.getRightEnd(element) - source.getLeftEnd(element));
+	}
+
+	/**
+	 * Method that tells the index that the elements may not have moved by the same amount, so their order
+	 * (and widths) must be repaired before the next query
+	 */
+	public void elementsMoved() {
+
+		moved = true;
+	}
+
+	/**
+	 * Method that finds the elements that may draw pixels between two X coordinates. The result is read with
+	 * getVisibleCount() and getVisibleElement(int), in the order the elements are drawn
+	 * @param left the X coordinate of the left side of the viewport
+	 * @param right the X coordinate of the right side of the viewport
+	 */
+	public void query(int left, int right) {
+
+		if(unsorted) {
+
+			sort();
+
+		} else if(moved) {
+
+			repair();
+		}
+
+		long viewLeft = (long) left - STROKE_MARGIN;
+		long viewRight = (long) right + STROKE_MARGIN;
+
+		//First element that starts late enough to possibly reach the viewport
+		long firstLeft = viewLeft - maxWidth;
+		int low = 0;
+		int high = size;
+
+		while(low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if(source.getLeftEnd(order[middle]) < firstLeft) {
+
+				low = middle + 1;
+
+			} else {
+
+				high = middle;
+			}
+		}
+
+		visibleCount = 0;
+
+		for(int i = low; i < size; i++) {
+
+			int element = order[i];
+
+			if(source.getLeftEnd(element) > viewRight) {
+
+				break;
+			}
+
+			if(source.getRightEnd(element) >= viewLeft) {
+
+				if(visibleCount == visible.length) {
+
+					visible = Arrays.copyOf(visible, visibleCount * 2);
+				}
+
+				visible[visibleCount++] = element;
+			}
+		}
+
+		//Back to the order of the source, so that overlapping riders are drawn exactly as without the index
+		Arrays.sort(visible, 0, visibleCount);
+	}
+
+	/**
+	 * Method that returns the number of elements found by the last query
+	 * @return the number of visible elements
+	 */
+	public int getVisibleCount() {
+
+		return visibleCount;
+	}
+
+	/**
+	 * Method that returns an element found by the last query
+	 * @param index the position of the element among the visible ones
+	 * @return the index of the element in the source
+	 */
+	public int getVisibleElement(int index) {
+
+		return visible[index];
+	}
+
+	/**
+	 * Method that returns the indexes of the elements found by the last query (only the first
+	 * getVisibleCount() are meaningful). The array is reused by the next query
+	 * @return the indexes of the visible elements, in increasing order
+	 */
+	public int[] getVisibleElements() {
+
+		return visible;
+	}
+
+	/**
+	 * Method that tells whether something with the specified ends may draw pixels inside a clip
+	 * @param leftEnd the X coordinate of the left end
+	 * @param rightEnd the X coordinate of the right end
+	 * @param clip the bounds of the clip
+	 * @return true if the ends overlap the clip (including the margin for the outline's stroke)
+	 */
+	public static boolean isVisible(int leftEnd, int rightEnd, Rectangle clip) {
+		
+		return (long) rightEnd >= (long) clip.x - STROKE_MARGIN && (long) leftEnd <= (long) clip.x + clip.width + STROKE_MARGIN;
+	}
+	
+	/**
+	 * Method that returns the bounds of the clip of a Graphics2D without creating any object
+	 * @param graphics2d the Graphics2D whose clip is wanted
+	 * @param bounds the rectangle the bounds are copied to
+	 * @return bounds, or null if graphics2d has no clip (everything is visible)
+	 */
+	public static Rectangle getClipBounds(Graphics2D graphics2d, Rectangle bounds) {
+
+		//getClipBounds(Rectangle) leaves the rectangle unchanged when there is no clip, and clips never have a negative width
+		bounds.width = -1;
+		graphics2d.getClipBounds(bounds);
+
+		return bounds.width < 0 ? null : bounds;
+	}
+
+	/**
+	 * Helper method that sorts the whole index by left end (after elements were added out of order)
+	 */
+	private void sort() {
+
+		//Left end in the high bits and index in the low bits, so that sorting the longs sorts the elements
+		long[] keys = new long[size];
+
+		for(int i = 0; i < size; i++) {
+
+			keys[i] = ((long) source.getLeftEnd(order[i]) << 32) | order[i];
+		}
+
+		Arrays.sort(keys);
+
+		for(int i = 0; i < size; i++) {
+
+			order[i] = (int) keys[i];
+		}
+
+		unsorted = false;
+
+		if(moved) {
+
+			repair();
+		}
+	}
+
+	/**
+	 * Helper method that repairs the order of the index with an insertion sort (after elements moved by
+	 * different amounts) and recomputes the widest element
+	 */
+	private void repair() {
+
+		int width = 0;
+
+		for(int i = 0; i < size; i++) {
+
+			int element = order[i];
+			int elementLeft = source.getLeftEnd(element);
+			int j = i - 1;
+
+			while(j >= 0 && source.getLeftEnd(order[j]) > elementLeft) {
+
+				order[j + 1] = order[j];
+				j--;
+			}
+
+			order[j + 1] = element;
+			width = Math.max(width, source.getRightEnd(element) - elementLeft);
+		}
+
+		maxWidth = width;
+		moved = false;
+	}
+
+	/**
+	 * Interface for the elements indexed by an ExtentIndex
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	public interface Source {
+
+		/**
+		 * Method that returns the number of elements
+		 * @return the number of elements
+		 */
+		public abstract int size();
+
+		/**
+		 * Method that returns the X coordinate of the left end of an element
+		 * @param element the index of the element
+		 * @return the X coordinate of the left end
+		 */
+		public abstract int getLeftEnd(int element);
+
+		/**
+		 * Method that returns the X coordinate of the right end of an element
+		 * @param element the index of the element
+		 * @return the X coordinate of the right end
+		 */
+		public abstract int getRightEnd(int element);
+	}
+}
@@ -0,0 +1,57 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that implements the SimulationClock Interface.
+ * This implementation never waits: every tick advances the simulated time by a fixed step, so the race runs
+ * as fast as the Driver and the MovingObjects allow. Useful to measure ticks per second
+ * @author Luiz do Valle
+ *
+ */
+public class FixedStepClock implements SimulationClock {
+
+	/**
+	 * The length of a tick in nanoseconds
+	 */
+	private final long tickLengthNanos;
+	
+	/**
+	 * The simulated time of the next tick
+	 */
+	private long simulatedTimeNanos;
+	
+	/**
+	 * Constructor that initializes the clock with the specified tick length
+	 * @param tickLength the amount of simulated time between two ticks
+	 * @param unit the unit of tickLength
+	 */
+	public FixedStepClock(long tickLength, TimeUnit unit) {
+		
+		this.tickLengthNanos = unit.toNanos(tickLength);
+		
+		if(tickLengthNanos <= 0) {
+			
+			throw new IllegalArgumentException("The tick length must be positive");
+		}
+	}
+	
+	@Override
+	public long awaitNextTick() throws InterruptedException {
+		
+		if(Thread.interrupted()) {
+			
+			throw new InterruptedException();
+		}
+		
+		long tickTime = simulatedTimeNanos;
+		simulatedTimeNanos += tickLengthNanos;
+		
+		return tickTime;
+	}
+
+	@Override
+	public long getTickLengthNanos() {
+		
+		return tickLengthNanos;
+	}
+
+}
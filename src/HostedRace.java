@@ -0,0 +1,337 @@
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class that represents one of the races run by a RaceHost: its Driver is driven at a fixed rate, either by a
+ * loop on a thread of its own (a virtual thread when the JVM has them) or by a task of the host's scheduler.
+ * Its speed can be changed and it can be stopped from any thread, and it keeps the statistics of its own ticks:
+ * how long they took and how late they started compared to when they were due
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class HostedRace {
+
+	/**
+	 * Maximum number of late ticks that are run back to back to catch up (like RealTimeClock)
+	 */
+	private static final int MAX_CATCH_UP_TICKS = 5;
+
+	/**
+	 * The number that identifies the race in its host
+	 */
+	private final long id;
+
+	/**
+	 * The Driver that moves the race every tick
+	 */
+	private final Driver driver;
+
+	/**
+	 * The amount of time between two ticks
+	 */
+	private final long tickLengthNanos;
+
+	/**
+	 * The host that runs the race, told when an exception of the Driver stops it
+	 */
+	private final RaceHost host;
+
+	/**
+	 * Latency of the ticks of every race of the host
+	 */
+	private final LatencyHistogram hostTickLatency;
+
+	/**
+	 * Lateness of the ticks of every race of the host
+	 */
+	private final LatencyHistogram hostTickJitter;
+
+	/**
+	 * The time the first tick is due
+	 */
+	private final long firstTickNanos;
+
+	/**
+	 * The speed passed to Driver.drive(int) every tick. Only used once setSpeed(int) was called,
+	 * before that the race calls Driver.drive()
+	 */
+	private volatile int speed;
+
+	/**
+	 * Whether the speed was set with setSpeed(int)
+	 */
+	private volatile boolean speedControlled;
+
+	/**
+	 * Whether the race should keep ticking
+	 */
+	private volatile boolean running;
+
+	/**
+	 * The thread of the race's own loop (null when it is ticked by a scheduler)
+	 */
+	private volatile Thread thread;
+
+	/**
+	 * The task of the scheduler ticking the race (null when it has its own thread)
+	 */
+	private volatile ScheduledFuture<?> future;
+
+	/**
+	 * Number of ticks completed so far
+	 */
+	private volatile long tickCount;
+
+	/**
+	 * Total time the ticks took
+	 */
+	private volatile long totalTickNanos;
+
+	/**
+	 * Time the slowest tick took
+	 */
+	private volatile long maxTickNanos;
+
+	/**
+	 * The longest a tick started after it was due
+	 */
+	private volatile long maxLatenessNanos;
+
+	/**
+	 * The exception that stopped the race (null if none did)
+	 */
+	private volatile Throwable failure;
+
+	/**
+	 * Constructor that initializes the class's fields. The race is started by its RaceHost
+	 * @param id the number that identifies the race in its host
+	 * @param driver the Driver that moves the race every tick
+	 * @param tickLengthNanos the amount of time between two ticks
+	 * @param firstTickNanos the time the first tick is due (spread over a tick by the host, so that races
+	 * started together don't all tick at the same instant)
+	 * @param host the host that runs the race (its tick histograms record the race's ticks too)
+	 */
+	HostedRace(long id, Driver driver, long tickLengthNanos, long firstTickNanos, RaceHost host) {
+
+		this.id = id;
+		this.driver = RaceInstrumentation.instrument(driver);
+		this.tickLengthNanos = tickLengthNanos;
+		this.firstTickNanos = firstTickNanos;
+		this.host = host;
+		this.hostTickLatency = host.getTickLatency();
+		this.hostTickJitter = host.getTickJitter();
+	}
+
+	/**
+	 * Method that starts the race's own loop on a new thread
+	 * @param threadFactory the factory of the thread (of virtual threads when the JVM has them)
+	 */
+	void start(ThreadFactory threadFactory) {
+
+		running = true;
+		thread = threadFactory.newThread(this::runLoop);
+		thread.start();
+	}
+
+	/**
+	 * Method that makes a scheduler tick the race
+	 * @param scheduler the scheduler shared by the races of the host
+	 */
+	void start(ScheduledExecutorService scheduler) {
+
+		running = true;
+		future = scheduler.scheduleAtFixedRate(this::scheduledTick, Math.max(firstTickNanos - System.nanoTime(), 0), tickLengthNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Method that sets the speed the Driver is driven with from the next tick on. Can be called from any thread
+	 * @param speed the new speed
+	 */
+	public void setSpeed(int speed) {
+
+		this.speed = speed;
+		speedControlled = true;
+	}
+
+	/**
+	 * Method that stops the race: no tick starts after it returns (a tick already running on another thread
+	 * still completes). Can be called from any thread
+	 */
+	public void stop() {
+
+		running = false;
+
+		Thread loopThread = thread;
+
+		if(loopThread != null) {
+
+			LockSupport.unpark(loopThread);
+		}
+
+		ScheduledFuture<?> scheduledFuture = future;
+
+		if(scheduledFuture != null) {
+
+			scheduledFuture.cancel(false);
+		}
+	}
+
+	/**
+	 * Method that tells whether the race is still ticking
+	 * @return false once it was stopped (by stop() or by an exception of its Driver)
+	 */
+	public boolean isRunning() {
+
+		return running;
+	}
+
+	/**
+	 * Method that returns the number that identifies the race in its host
+	 * @return the id of the race
+	 */
+	public long getId() {
+
+		return id;
+	}
+
+	/**
+	 * Method that returns the number of ticks completed so far
+	 * @return the number of ticks
+	 */
+	public long getTickCount() {
+
+		return tickCount;
+	}
+
+	/**
+	 * Method that returns how long the ticks took on average
+	 * @return the mean latency of a tick in nanoseconds (0 before the first tick)
+	 */
+	public long getMeanTickNanos() {
+
+		long ticks = tickCount;
+
+		return ticks == 0 ? 0 : totalTickNanos / ticks;
+	}
+
+	/**
+	 * Method that returns how long the slowest tick took
+	 * @return the maximum latency of a tick in nanoseconds
+	 */
+	public long getMaxTickNanos() {
+
+		return maxTickNanos;
+	}
+
+	/**
+	 * Method that returns the longest a tick started after it was due
+	 * @return the maximum lateness of a tick in nanoseconds
+	 */
+	public long getMaxLatenessNanos() {
+
+		return maxLatenessNanos;
+	}
+
+	/**
+	 * Method that returns the exception thrown by the Driver that stopped the race
+	 * @return the exception, or null if the race was not stopped by one
+	 */
+	public Throwable getFailure() {
+
+		return failure;
+	}
+
+	/**
+	 * Helper method that runs the race's own loop: every tick when it is due, until the race is stopped
+	 */
+	private void runLoop() {
+
+		long nextTickNanos = firstTickNanos;
+
+		while(running) {
+
+			long now = System.nanoTime();
+
+			while(now < nextTickNanos) {
+
+				//A virtual thread waiting here gives its carrier thread to other races
+				LockSupport.parkNanos(this, nextTickNanos - now);
+
+				if(!running) {
+
+					return;
+				}
+
+				now = System.nanoTime();
+			}
+
+			tick(now - nextTickNanos);
+
+			nextTickNanos += tickLengthNanos;
+
+			//Too far behind (e.g. the host is overloaded): don't run a burst of ticks, start counting from now
+			if(now - nextTickNanos > MAX_CATCH_UP_TICKS * tickLengthNanos) {
+
+				nextTickNanos = now;
+			}
+		}
+	}
+
+	/**
+	 * Helper method that runs a tick for the host's scheduler
+	 */
+	private void scheduledTick() {
+
+		if(!running) {
+
+			return;
+		}
+
+		//Ticks of a fixed rate task are due exactly one tick length apart
+		tick(System.nanoTime() - (firstTickNanos + tickCount * tickLengthNanos));
+	}
+
+	/**
+	 * Helper method that runs one tick and records its statistics
+	 * @param latenessNanos how late the tick starts compared to when it was due
+	 */
+	private void tick(long latenessNanos) {
+
+		long start = System.nanoTime();
+
+		try {
+
+			if(speedControlled) {
+
+				driver.drive(speed);
+
+			} else {
+
+				driver.drive();
+			}
+
+		} catch (RuntimeException | Error e) {
+
+			failure = e;
+
+			//Like RaceHost.stop(HostedRace), so that failed races don't pile up in the host
+			host.stop(this);
+			return;
+		}
+
+		long tickNanos = System.nanoTime() - start;
+
+		//Only the thread ticking the race writes these, so they don't need to be updated atomically
+		tickCount++;
+		totalTickNanos += tickNanos;
+		maxTickNanos = Math.max(maxTickNanos, tickNanos);
+		maxLatenessNanos = Math.max(maxLatenessNanos, latenessNanos);
+
+		hostTickLatency.record(tickNanos);
+		hostTickJitter.record(Math.max(latenessNanos, 0));
+	}
+}
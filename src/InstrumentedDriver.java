@@ -0,0 +1,96 @@
+/**
+ * Class that implements the Driver Interface.
+ * This implementation drives another Driver and measures every call to drive as a tick: its latency and
+ * allocations go to a RaceMetrics and to a JFR event. Created by RaceInstrumentation.instrument
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class InstrumentedDriver implements Driver {
+
+	/**
+	 * Speed recorded in the JFR events of calls to drive(), which keep the current speed
+	 */
+	private static final int CURRENT_SPEED = Integer.MIN_VALUE;
+
+	/**
+	 * The Driver that actually moves the race
+	 */
+	private final Driver driver;
+
+	/**
+	 * The metrics the ticks are recorded in
+	 */
+	private final RaceMetrics raceMetrics;
+
+	/**
+	 * Constructor that initializes the class's fields
+	 * @param driver the Driver that actually moves the race
+	 * @param raceMetrics the metrics the ticks are recorded in
+	 */
+	public InstrumentedDriver(Driver driver, RaceMetrics raceMetrics) {
+
+		this.driver = driver;
+		this.raceMetrics = raceMetrics;
+	}
+
+	@Override
+	public void drive() {
+
+		RaceInstrumentation.DriveEvent driveEvent = new RaceInstrumentation.DriveEvent();
+		long allocatedBytesBefore = AllocationMeter.allocatedBytes();
+		long start = System.nanoTime();
+
+		driveEvent.begin();
+		driver.drive();
+
+		record(driveEvent, CURRENT_SPEED, start, allocatedBytesBefore);
+	}
+
+	@Override
+	public void drive(int speed) {
+
+		RaceInstrumentation.DriveEvent driveEvent = new RaceInstrumentation.DriveEvent();
+		long allocatedBytesBefore = AllocationMeter.allocatedBytes();
+		long start = System.nanoTime();
+
+		driveEvent.begin();
+		driver.drive(speed);
+
+		record(driveEvent, speed, start, allocatedBytesBefore);
+	}
+
+	/**
+	 * Method that returns the Driver that actually moves the race
+	 * @return the instrumented Driver
+	 */
+	public Driver getDriver() {
+
+		return driver;
+	}
+
+	/**
+	 * Helper method that records a tick that just ended
+	 * @param driveEvent the JFR event of the tick
+	 * @param speed the speed the race was driven with
+	 * @param start the System.nanoTime() at which the tick started
+	 * @param allocatedBytesBefore the bytes allocated by the thread before the tick
+	 */
+	private void record(RaceInstrumentation.DriveEvent driveEvent, int speed, long start, long allocatedBytesBefore) {
+
+		long latency = System.nanoTime() - start;
+		long allocatedBytes = AllocationMeter.isSupported() ? AllocationMeter.allocatedBytes() - allocatedBytesBefore : -1;
+
+		driveEvent.end();
+
+		if(driveEvent.shouldCommit()) {
+
+			driveEvent.driver = driver.getClass();
+			driveEvent.speed = speed;
+			driveEvent.allocated = allocatedBytes;
+			driveEvent.commit();
+		}
+
+		raceMetrics.recordTick(start, latency, allocatedBytes);
+	}
+}
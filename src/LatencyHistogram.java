@@ -0,0 +1,213 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class that counts latencies in log-linear buckets: every power of two is split in SUB_BUCKETS buckets of the
+ * same width, so any latency is known within 1/SUB_BUCKETS of its value (12.5%) with a few hundred counters and
+ * no allocation per latency recorded. Latencies can be recorded from any thread, and read while they are
+ * recorded (the counts read may then be a few latencies behind)
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of bits of a latency (below its highest bit) used to choose its bucket within its power of two
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	/**
+	 * Number of buckets every power of two is split in
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Latencies of 2^MAX_EXPONENT nanoseconds (about 18 minutes) or more are counted in the last bucket
+	 */
+	private static final int MAX_EXPONENT = 40;
+
+	/**
+	 * Number of buckets of every histogram (the last one only counts the latencies of 2^MAX_EXPONENT or more)
+	 */
+	public static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + 1;
+
+	/**
+	 * Number of latencies counted in every bucket
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * Method that counts a latency
+	 * @param nanos the latency in nanoseconds (negative latencies are counted as 0)
+	 */
+	public void record(long nanos) {
+
+		counts.incrementAndGet(bucketOf(nanos));
+	}
+
+	/**
+	 * Method that returns the number of latencies counted
+	 * @return the number of latencies
+	 */
+	public long getCount() {
+
+		long count = 0;
+
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+
+			count += counts.get(i);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Method that returns the latency below which the specified fraction of the latencies counted are
+	 * @param fraction the fraction, from 0 to 1 (0.99 for the 99th percentile)
+	 * @return the highest latency of the bucket the percentile is in, or 0 if no latency was counted
+	 */
+	public long getPercentile(double fraction) {
+
+		if(fraction < 0 || fraction > 1) {
+
+			throw new IllegalArgumentException("The fraction must be between 0 and 1: " + fraction);
+		}
+
+		long[] snapshot = getCounts();
+		long count = 0;
+
+		for(long bucketCount : snapshot) {
+
+			count += bucketCount;
+		}
+
+		if(count == 0) {
+
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(fraction * count));
+		long seen = 0;
+
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+
+			seen += snapshot[i];
+
+			if(seen >= rank) {
+
+				return getUpperBound(i);
+			}
+		}
+
+		return getUpperBound(BUCKET_COUNT - 1);
+	}
+
+	/**
+	 * Method that returns the highest latency counted
+	 * @return the highest latency of the highest bucket with a latency, or 0 if no latency was counted
+	 */
+	public long getMax() {
+
+		for(int i = BUCKET_COUNT - 1; i >= 0; i--) {
+
+			if(counts.get(i) != 0) {
+
+				return getUpperBound(i);
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Method that returns a copy of the number of latencies counted in every bucket
+	 * @return the counts, in the order of getUpperBounds()
+	 */
+	public long[] getCounts() {
+
+		long[] snapshot = new long[BUCKET_COUNT];
+
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+
+			snapshot[i] = counts.get(i);
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Method that forgets every latency counted
+	 */
+	public void reset() {
+
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+
+			counts.set(i, 0);
+		}
+	}
+
+	/**
+	 * Method that returns the highest latency of every bucket
+	 * @return the upper bounds in nanoseconds, in the order of getCounts()
+	 */
+	public static long[] getUpperBounds() {
+
+		long[] upperBounds = new long[BUCKET_COUNT];
+
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+
+			upperBounds[i] = getUpperBound(i);
+		}
+
+		return upperBounds;
+	}
+
+	/**
+	 * Helper method that returns the bucket a latency is counted in
+	 * @param nanos the latency
+	 * @return the index of its bucket
+	 */
+	private static int bucketOf(long nanos) {
+
+		if(nanos < SUB_BUCKETS) {
+
+			return (int) Math.max(nanos, 0);
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+
+		if(exponent >= MAX_EXPONENT) {
+
+			return BUCKET_COUNT - 1;
+		}
+
+		//The bits right below the highest one choose the bucket within the power of two
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Helper method that returns the highest latency counted in a bucket
+	 * @param bucket the index of the bucket
+	 * @return the upper bound of the bucket in nanoseconds
+	 */
+	private static long getUpperBound(int bucket) {
+
+		if(bucket < SUB_BUCKETS) {
+
+			return bucket;
+		}
+
+		if(bucket == BUCKET_COUNT - 1) {
+
+			return Long.MAX_VALUE;
+		}
+
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+
+		return lowerBound + width - 1;
+	}
+}
@@ -0,0 +1,17 @@
+/**
+ * Interface that serves as the blueprint for the classes that want to be told when another entry (rider or
+ * MovingObject) takes the lead of a Leaderboard
+ * Entries are identified by their index in the Leaderboard
+ * @author Luiz do Valle
+ *
+ */
+public interface LeadChangeListener {
+
+	/**
+	 * Method called when an entry takes the lead
+	 * @param leader the entry that leads now
+	 * @param previousLeader the entry that led before, or -1 if none did (the first update)
+	 */
+	public abstract void leadChanged(int leader, int previousLeader);
+
+}
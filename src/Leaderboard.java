@@ -0,0 +1,429 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Class that implements the TickListener Interface and keeps the live standings of a race: the entries are
+ * ranked by how far right they are (the race is won at the right end of the track), the furthest right first.
+ * The entries are either the riders of a MovingObject, ranked by the X coordinate of their wheel, or several
+ * MovingObjects (e.g. the pelotons of a race) ranked as units by their getRightEndXPosition().
+ *
+ * The ranking is kept between updates: since entries barely overtake each other from one tick to the next, it
+ * is repaired with an insertion sort (as many steps as the number of overtakes) instead of being sorted again,
+ * and every entry's rank is kept up to date along the way. The top k entries and the rank of any entry are
+ * then read right away, and the LeadChangeListeners are told whenever another entry takes the lead.
+ * Ties are ranked by index, the lowest first
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class Leaderboard implements TickListener {
+
+	/**
+	 * Number of overtakes per entry past which repairing the ranking is given up and the entries are sorted
+	 * again instead (about what sorting them costs), e.g. when whole pelotons ride through each other
+	 */
+	private static final int MAX_OVERTAKES_PER_ENTRY = 16;
+
+	/**
+	 * The MovingObject whose riders are ranked (null if MovingObjects are ranked as units)
+	 */
+	private final RaceView movingObject;
+
+	/**
+	 * The MovingObjects ranked as units (null if the riders of a MovingObject are ranked)
+	 */
+	private final RaceView[] units;
+
+	/**
+	 * The listeners told about lead changes
+	 */
+	private final CopyOnWriteArrayList<LeadChangeListener> leadChangeListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Number of entries ranked in the last update
+	 */
+	private int entryCount;
+
+	/**
+	 * X coordinate of every entry, by index
+	 */
+	private int[] positions = new int[16];
+
+	/**
+	 * Indexes of the entries in ranking order (the leader first)
+	 */
+	private int[] order = new int[0];
+
+	/**
+	 * Place of every entry in order, by index (0 for the leader)
+	 */
+	private int[] places = new int[0];
+
+	/**
+	 * Positions and indexes of the entries packed into longs, sorted when the whole ranking is sorted again
+	 */
+	private long[] keys = new long[0];
+
+	/**
+	 * The entry that led after the last update (-1 before the first one)
+	 */
+	private int leader = -1;
+
+	/**
+	 * Number of times the lead changed hands so far (not counting the first leader)
+	 */
+	private long leadChanges;
+
+	/**
+	 * Number of overtakes (two entries swapping places) found by the last update (-1 if the entries were sorted
+	 * again)
+	 */
+	private long overtakes;
+
+	/**
+	 * Constructor that creates a leaderboard of the riders of a MovingObject, identified by their position in
+	 * the order MovingObject.visitRiders visits them. A leaderboard of the riders of a single peloton gives the
+	 * standings within that peloton
+	 * @param movingObject the MovingObject whose riders are ranked
+	 */
+	public Leaderboard(RaceView movingObject) {
+
+		if(movingObject == null) {
+
+			throw new IllegalArgumentException("The MovingObject must not be null");
+		}
+
+		this.movingObject = movingObject;
+		this.units = null;
+	}
+
+	/**
+	 * Constructor that creates a leaderboard of MovingObjects ranked as units by their getRightEndXPosition(),
+	 * identified by their index in the list
+	 * @param units the MovingObjects ranked (e.g. the pelotons of a race)
+	 */
+	public Leaderboard(List<? extends RaceView> units) {
+
+		this.movingObject = null;
+		this.units = units.toArray(new RaceView[0]);
+
+		for(RaceView unit : this.units) {
+
+			if(unit == null) {
+
+				throw new IllegalArgumentException("The MovingObjects must not be null");
+			}
+		}
+	}
+
+	/**
+	 * Method that creates a leaderboard of the elements of a group (e.g. the pelotons of a race) ranked as units
+	 * by their getRightEndXPosition(), identified by their index in the group. Elements added to the group later
+	 * are not ranked
+	 * @param group the group whose elements are ranked
+	 * @return the leaderboard of the elements of the group
+	 */
+	public static Leaderboard ofGroupElements(MovingObjectGroup group) {
+
+		MovingObject[] elements = new MovingObject[group.size()];
+
+		for(int i = 0; i < elements.length; i++) {
+
+			elements[i] = group.getGroupElement(i);
+		}
+
+		return new Leaderboard(Arrays.asList(elements));
+	}
+
+	/**
+	 * Method that adds a listener that is told when another entry takes the lead
+	 * @param leadChangeListener the listener to be added
+	 */
+	public void addLeadChangeListener(LeadChangeListener leadChangeListener) {
+
+		leadChangeListeners.add(leadChangeListener);
+	}
+
+	/**
+	 * Method that removes a listener added with addLeadChangeListener
+	 * @param leadChangeListener the listener to be removed
+	 */
+	public void removeLeadChangeListener(LeadChangeListener leadChangeListener) {
+
+		leadChangeListeners.remove(leadChangeListener);
+	}
+
+	@Override
+	public void tickCompleted(long tick, long simulatedTimeNanos) {
+
+		update();
+	}
+
+	/**
+	 * Method that ranks the entries at their current positions and tells the listeners if another entry took the
+	 * lead since the last update.
+	 * Must be called on the thread that moves the riders
+	 */
+	public void update() {
+
+		int previousEntryCount = entryCount;
+
+		entryCount = units != null ? readUnitPositions() : readRiderPositions();
+
+		if(entryCount != previousEntryCount || !repairOrder()) {
+
+			sortEntries();
+		}
+
+		int previousLeader = leader;
+		leader = entryCount > 0 ? order[0] : -1;
+
+		if(leader != previousLeader && leader != -1) {
+
+			if(previousLeader != -1) {
+
+				leadChanges++;
+			}
+
+			for(LeadChangeListener leadChangeListener : leadChangeListeners) {
+
+				leadChangeListener.leadChanged(leader, previousLeader);
+			}
+		}
+	}
+
+	/**
+	 * Method that returns the entry that led in the last update
+	 * @return the index of the leader, or -1 if there are no entries
+	 */
+	public int getLeader() {
+
+		return leader;
+	}
+
+	/**
+	 * Method that copies the first entries of the ranking, the leader first
+	 * @param k the number of entries wanted
+	 * @param destination the array the indexes of the entries are copied to (at least k long)
+	 * @return the number of entries copied (fewer than k if there are fewer entries)
+	 */
+	public int getTop(int k, int[] destination) {
+
+		int count = Math.min(Math.max(k, 0), entryCount);
+
+		System.arraycopy(order, 0, destination, 0, count);
+
+		return count;
+	}
+
+	/**
+	 * Method that returns the entry at a rank of the last update
+	 * @param rank the rank, from 1 (the leader) to getEntryCount()
+	 * @return the index of the entry at that rank
+	 */
+	public int getEntryAt(int rank) {
+
+		if(rank < 1 || rank > entryCount) {
+
+			throw new IndexOutOfBoundsException("Rank " + rank + " out of " + entryCount + " entries");
+		}
+
+		return order[rank - 1];
+	}
+
+	/**
+	 * Method that returns the rank of an entry in the last update
+	 * @param entry the index of the entry
+	 * @return its rank, from 1 (the leader) to getEntryCount()
+	 */
+	public int getRank(int entry) {
+
+		if(entry < 0 || entry >= entryCount) {
+
+			throw new IndexOutOfBoundsException("Entry " + entry + " out of " + entryCount + " entries");
+		}
+
+		return places[entry] + 1;
+	}
+
+	/**
+	 * Method that returns the X coordinate an entry was ranked by in the last update
+	 * @param entry the index of the entry
+	 * @return the X coordinate of the rider's wheel, or the right end of the MovingObject
+	 */
+	public int getPosition(int entry) {
+
+		if(entry < 0 || entry >= entryCount) {
+
+			throw new IndexOutOfBoundsException("Entry " + entry + " out of " + entryCount + " entries");
+		}
+
+		return positions[entry];
+	}
+
+	/**
+	 * Method that returns the number of entries ranked in the last update
+	 * @return the number of entries
+	 */
+	public int getEntryCount() {
+
+		return entryCount;
+	}
+
+	/**
+	 * Method that returns the number of times another entry took the lead, since the first update
+	 * @return the number of lead changes
+	 */
+	public long getLeadChanges() {
+
+		return leadChanges;
+	}
+
+	/**
+	 * Method that returns the number of overtakes (two entries swapping places) found by the last update, which
+	 * is also about how much work repairing the ranking took
+	 * @return the number of overtakes, or -1 if the entries were sorted again instead (their number changed or
+	 * there were too many overtakes)
+	 */
+	public long getOvertakes() {
+
+		return overtakes;
+	}
+
+	/**
+	 * Helper method that copies the X coordinates of the riders of the MovingObject into positions
+	 * @return the number of riders
+	 */
+	private int readRiderPositions() {
+
+		try {
+
+			return movingObject.getRiderXPositions(positions, 0);
+
+		} catch (IndexOutOfBoundsException e) {
+
+			//Riders were added: count them and make room for all of them
+			int[] riderCount = new int[1];
+			movingObject.visitRiders((x, y, seatLength, rgb) -> riderCount[0]++);
+
+			positions = new int[Math.max(riderCount[0], positions.length * 2)];
+
+			return movingObject.getRiderXPositions(positions, 0);
+		}
+	}
+
+	/**
+	 * Helper method that copies the right ends of the MovingObjects ranked as units into positions
+	 * @return the number of MovingObjects
+	 */
+	private int readUnitPositions() {
+
+		if(positions.length < units.length) {
+
+			positions = new int[units.length];
+		}
+
+		for(int i = 0; i < units.length; i++) {
+
+			positions[i] = units[i].getRightEndXPosition();
+		}
+
+		return units.length;
+	}
+
+	/**
+	 * Helper method that sorts all the entries (when entries were added or removed, or overtook each other too
+	 * many times to repair the ranking)
+	 */
+	private void sortEntries() {
+
+		//Complemented position in the high bits and index in the low bits, so that sorting the longs ranks the
+		//entries furthest right first and ties by index
+		if(order.length == entryCount) {
+
+			//Same entries: taken in their last order, which is almost sorted and much faster to sort
+			for(int i = 0; i < entryCount; i++) {
+
+				keys[i] = ((long) ~positions[order[i]] << 32) | order[i];
+			}
+
+		} else {
+
+			keys = new long[entryCount];
+			order = new int[entryCount];
+			places = new int[entryCount];
+
+			for(int i = 0; i < entryCount; i++) {
+
+				keys[i] = ((long) ~positions[i] << 32) | i;
+			}
+		}
+
+		Arrays.sort(keys);
+
+		for(int i = 0; i < entryCount; i++) {
+
+			order[i] = (int) keys[i];
+			places[order[i]] = i;
+		}
+
+		overtakes = -1;
+	}
+
+	/**
+	 * Helper method that repairs the ranking with an insertion sort, which is linear when the entries only
+	 * overtook each other a few times since the last update. The places of the entries moved are updated on
+	 * the way
+	 * @return false if it was given up because of too many overtakes (the ranking must then be sorted again)
+	 */
+	private boolean repairOrder() {
+
+		long swaps = 0;
+		long maxSwaps = (long) entryCount * MAX_OVERTAKES_PER_ENTRY;
+
+		for(int i = 1; i < entryCount; i++) {
+
+			int entry = order[i];
+			int position = positions[entry];
+			int j = i - 1;
+
+			while(j >= 0 && isBehind(order[j], position, entry)) {
+
+				order[j + 1] = order[j];
+				places[order[j + 1]] = j + 1;
+				j--;
+			}
+
+			if(j + 1 != i) {
+
+				order[j + 1] = entry;
+				places[entry] = j + 1;
+				swaps += i - (j + 1);
+
+				if(swaps > maxSwaps) {
+
+					return false;
+				}
+			}
+		}
+
+		overtakes = swaps;
+
+		return true;
+	}
+
+	/**
+	 * Helper method that tells whether an entry is ranked behind another one
+	 * @param entry the entry compared
+	 * @param otherPosition the position of the other entry
+	 * @param other the index of the other entry
+	 * @return true if the entry is further left than the other one, or at the same position with a higher index
+	 */
+	private boolean isBehind(int entry, int otherPosition, int other) {
+
+		int position = positions[entry];
+
+		return position < otherPosition || (position == otherPosition && entry > other);
+	}
+}
@@ -0,0 +1,208 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that decides how much detail riders are drawn with. A rider whose seat is shorter than a number of
+ * pixels on the screen is drawn as a single filled rectangle instead of its four shapes, and a group of riders
+ * (a MovingObjectGroup without subgroups, like a peloton) that is narrow on the screen, with more riders per
+ * pixel of its width than a density, is drawn as a single rectangle covering all of them, in their average
+ * color. A group as wide as a good part of the screen (like a whole fleet spread over the track) is never
+ * aggregated: its riders are culled and drawn one by one instead, so that the race never turns into a bar.
+ *
+ * The thresholds adapt to the frame time: every frame that takes longer than the budget simplifies more riders
+ * and groups, and after enough frames well within the budget they are brought back towards full detail.
+ *
+ * Level of detail is opt-in and belongs to a view: a MyIcon or a RaceCanvas only uses one after
+ * setLevelOfDetail, passes it to every RaceView it draws, and tells it the zoom of its camera and how long every
+ * frame took. The thresholds adapt to the frames of that view only, so views must not share one
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class LevelOfDetail {
+
+	/**
+	 * Frame budget used when none is specified (60 frames per second)
+	 */
+	private static final long DEFAULT_FRAME_BUDGET_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+	/**
+	 * Seat length on the screen, in pixels, below which riders are simplified when frames are within budget
+	 */
+	private static final double DEFAULT_RIDER_PIXELS = 6;
+
+	/**
+	 * Largest seat length on the screen, in pixels, below which riders are simplified when frames are too slow.
+	 * Below the smallest seat of riders generated around the usual unit of 50 (half of it), so that riders shown
+	 * at their normal size always keep their shapes
+	 */
+	private static final double MAX_RIDER_PIXELS = 24;
+
+	/**
+	 * Riders per pixel above which groups are aggregated when frames are within budget
+	 */
+	private static final double DEFAULT_GROUP_DENSITY = 8;
+
+	/**
+	 * Smallest number of riders per pixel above which groups are aggregated when frames are too slow (riders
+	 * are several pixels wide, so the riders of such a group already overlap each other on the screen)
+	 */
+	private static final double MIN_GROUP_DENSITY = 1;
+
+	/**
+	 * Width on the screen, in pixels, of the widest group that can be aggregated
+	 */
+	private static final int MAX_AGGREGATE_PIXELS = 256;
+
+	/**
+	 * How much the thresholds change in every step
+	 */
+	private static final double STEP = 1.25;
+
+	/**
+	 * Number of consecutive frames within half the budget after which the thresholds go back one step
+	 */
+	private static final int RELAX_FRAMES = 30;
+
+	/**
+	 * How long drawing a frame may take
+	 */
+	private final long frameBudgetNanos;
+
+	/**
+	 * Seat length on the screen, in pixels, below which riders are currently simplified
+	 */
+	private volatile double riderPixels = DEFAULT_RIDER_PIXELS;
+
+	/**
+	 * Riders per pixel above which groups are currently aggregated
+	 */
+	private volatile double groupDensity = DEFAULT_GROUP_DENSITY;
+
+	/**
+	 * Number of screen pixels per unit of the track in the current frame (the zoom of the camera)
+	 */
+	private volatile double scale = 1;
+
+	/**
+	 * Number of consecutive frames within half the budget. Only used by the painting thread
+	 */
+	private int fastFrames;
+
+	/**
+	 * Number of frames that took longer than the budget
+	 */
+	private volatile long slowFrames;
+
+	/**
+	 * Default constructor that uses a frame budget of 1/60 of a second
+	 */
+	public LevelOfDetail() {
+
+		this(DEFAULT_FRAME_BUDGET_NANOS);
+	}
+
+	/**
+	 * Constructor that specifies how long drawing a frame may take before riders are simplified further
+	 * @param frameBudgetNanos the frame budget in nanoseconds
+	 */
+	public LevelOfDetail(long frameBudgetNanos) {
+
+		if(frameBudgetNanos <= 0) {
+
+			throw new IllegalArgumentException("The frame budget must be positive: " + frameBudgetNanos);
+		}
+
+		this.frameBudgetNanos = frameBudgetNanos;
+	}
+
+	/**
+	 * Method that sets how many screen pixels a unit of the track takes in the frame about to be drawn
+	 * @param scale the zoom of the camera the frame is drawn through (1 without a camera)
+	 */
+	public void setScale(double scale) {
+
+		if(scale <= 0) {
+
+			throw new IllegalArgumentException("The scale must be positive: " + scale);
+		}
+
+		this.scale = scale;
+	}
+
+	/**
+	 * Method that adapts the thresholds to how long the last frame took to draw
+	 * @param frameNanos how long the last frame took
+	 */
+	public void frameCompleted(long frameNanos) {
+
+		if(frameNanos > frameBudgetNanos) {
+
+			//Too slow: simplify more right away
+			riderPixels = Math.min(riderPixels * STEP, MAX_RIDER_PIXELS);
+			groupDensity = Math.max(groupDensity / STEP, MIN_GROUP_DENSITY);
+			fastFrames = 0;
+			slowFrames++;
+
+		} else if(frameNanos < frameBudgetNanos / 2 && ++fastFrames >= RELAX_FRAMES) {
+
+			//Comfortably fast for a while: bring some detail back (slowly, so that the thresholds don't oscillate)
+			riderPixels = Math.max(riderPixels / STEP, DEFAULT_RIDER_PIXELS);
+			groupDensity = Math.min(groupDensity * STEP, DEFAULT_GROUP_DENSITY);
+			fastFrames = 0;
+
+		} else if(frameNanos >= frameBudgetNanos / 2) {
+
+			fastFrames = 0;
+		}
+	}
+
+	/**
+	 * Method that returns the shortest seat length, in units of the track, drawn in full detail in the
+	 * current frame
+	 * @return riders with a shorter seat are drawn simplified
+	 */
+	public int getMinimumSeatLength() {
+
+		return (int) Math.ceil(riderPixels / scale);
+	}
+
+	/**
+	 * Method that tells whether a group of riders should be drawn as a single shape in the current frame
+	 * @param riderCount the number of riders of the group
+	 * @param width the width of the group in units of the track
+	 * @return true if the group is narrow on the screen and has more riders per pixel than the current density
+	 */
+	public boolean shouldAggregate(int riderCount, int width) {
+
+		double screenWidth = Math.max(width * scale, 1);
+
+		return screenWidth <= MAX_AGGREGATE_PIXELS && riderCount >= groupDensity * screenWidth;
+	}
+
+	/**
+	 * Method that returns the seat length on the screen below which riders are currently simplified
+	 * @return the threshold in pixels
+	 */
+	public double getRiderPixels() {
+
+		return riderPixels;
+	}
+
+	/**
+	 * Method that returns the number of riders per pixel above which groups are currently aggregated
+	 * @return the threshold in riders per pixel
+	 */
+	public double getGroupDensity() {
+
+		return groupDensity;
+	}
+
+	/**
+	 * Method that returns the number of frames that took longer than the budget
+	 * @return the number of slow frames
+	 */
+	public long getSlowFrames() {
+
+		return slowFrames;
+	}
+}
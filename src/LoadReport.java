@@ -0,0 +1,170 @@
+/**
+ * Class that holds how long a race file took to load and how much memory it used (see RaceLoader).
+ * The peak heap usage is measured by the JVM's memory pools since the load started, so it includes whatever
+ * other threads allocated at the same time
+ *
+ * @author Luiz do Valle
+ *
+ */
+public final class LoadReport {
+
+	/**
+	 * Number of riders loaded
+	 */
+	private final long riders;
+
+	/**
+	 * Number of MovingObjectGroups loaded (including the root group)
+	 */
+	private final int groups;
+
+	/**
+	 * Number of UnicycleFleets loaded
+	 */
+	private final int fleets;
+
+	/**
+	 * Number of bytes of the race file
+	 */
+	private final long bytesRead;
+
+	/**
+	 * Number of lines of the race file
+	 */
+	private final long lines;
+
+	/**
+	 * The time the load took in nanoseconds
+	 */
+	private final long loadTimeNanos;
+
+	/**
+	 * Number of bytes allocated by the loading thread (-1 if the JVM can't measure it)
+	 */
+	private final long allocatedBytes;
+
+	/**
+	 * Heap used when the load started
+	 */
+	private final long heapBefore;
+
+	/**
+	 * Highest heap usage during the load
+	 */
+	private final long peakHeap;
+
+	/**
+	 * Constructor that simply initializes the class's fields
+	 * @param riders the number of riders loaded
+	 * @param groups the number of MovingObjectGroups loaded
+	 * @param fleets the number of UnicycleFleets loaded
+	 * @param bytesRead the number of bytes of the race file
+	 * @param lines the number of lines of the race file
+	 * @param loadTimeNanos the time the load took in nanoseconds
+	 * @param allocatedBytes the number of bytes allocated by the loading thread
+	 * @param heapBefore the heap used when the load started
+	 * @param peakHeap the highest heap usage during the load
+	 */
+	LoadReport(long riders, int groups, int fleets, long bytesRead, long lines, long loadTimeNanos, long allocatedBytes, long heapBefore, long peakHeap) {
+
+		this.riders = riders;
+		this.groups = groups;
+		this.fleets = fleets;
+		this.bytesRead = bytesRead;
+		this.lines = lines;
+		this.loadTimeNanos = loadTimeNanos;
+		this.allocatedBytes = allocatedBytes;
+		this.heapBefore = heapBefore;
+		this.peakHeap = peakHeap;
+	}
+
+	/**
+	 * Method that returns the number of riders loaded
+	 * @return the number of riders
+	 */
+	public long getRiders() {
+
+		return riders;
+	}
+
+	/**
+	 * Method that returns the number of MovingObjectGroups loaded
+	 * @return the number of groups, including the root group
+	 */
+	public int getGroups() {
+
+		return groups;
+	}
+
+	/**
+	 * Method that returns the number of UnicycleFleets loaded
+	 * @return the number of fleets
+	 */
+	public int getFleets() {
+
+		return fleets;
+	}
+
+	/**
+	 * Method that returns the size of the race file
+	 * @return the number of bytes read
+	 */
+	public long getBytesRead() {
+
+		return bytesRead;
+	}
+
+	/**
+	 * Method that returns the number of lines of the race file
+	 * @return the number of lines
+	 */
+	public long getLines() {
+
+		return lines;
+	}
+
+	/**
+	 * Method that returns how long the load took
+	 * @return the load time in nanoseconds
+	 */
+	public long getLoadTimeNanos() {
+
+		return loadTimeNanos;
+	}
+
+	/**
+	 * Method that returns how many bytes the loading thread allocated (the tree itself included)
+	 * @return the allocated bytes, or -1 if the JVM can't measure it
+	 */
+	public long getAllocatedBytes() {
+
+		return allocatedBytes;
+	}
+
+	/**
+	 * Method that returns how much the heap grew, at its highest, during the load
+	 * @return the peak heap usage minus the heap used when the load started
+	 */
+	public long getPeakHeapGrowth() {
+
+		return peakHeap - heapBefore;
+	}
+
+	/**
+	 * Method that returns the highest heap usage during the load
+	 * @return the peak heap usage in bytes
+	 */
+	public long getPeakHeap() {
+
+		return peakHeap;
+	}
+
+	@Override
+	public String toString() {
+
+		double seconds = loadTimeNanos / 1e9;
+
+		return String.format("%d riders (%d groups, %d fleets) from %d lines, %.1f MB in %.3f s (%.0f riders/s), allocated %.1f MB, peak heap %.1f MB (+%.1f MB)",
+				riders, groups, fleets, lines, bytesRead / 1e6, seconds, riders / seconds, allocatedBytes / 1e6, peakHeap / 1e6, getPeakHeapGrowth() / 1e6);
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Class that holds a race loaded from a race file by a RaceLoader (or restored by a RaceCheckpoint): the tree of
+ * MovingObjects, its Driver and the track, together with the report of the load
+ *
+ * @author Luiz do Valle
+ *
+ */
+public final class LoadedRace {
+
+	/**
+	 * The root group of the race
+	 */
+	private final MovingObjectGroup race;
+
+	/**
+	 * The Driver of the race
+	 */
+	private final Driver driver;
+
+	/**
+	 * The length of the track
+	 */
+	private final int trackLength;
+
+	/**
+	 * The speed the race starts with
+	 */
+	private final int initialSpeed;
+
+	/**
+	 * How long the race took to load and how much memory it used
+	 */
+	private LoadReport report;
+
+	/**
+	 * Constructor that simply initializes the class's fields
+	 * @param race the root group of the race
+	 * @param driver the Driver of the race
+	 * @param trackLength the length of the track
+	 * @param initialSpeed the speed the race starts with
+	 */
+	LoadedRace(MovingObjectGroup race, Driver driver, int trackLength, int initialSpeed) {
+
+		this.race = race;
+		this.driver = driver;
+		this.trackLength = trackLength;
+		this.initialSpeed = initialSpeed;
+	}
+
+	/**
+	 * Method that returns the root group of the race
+	 * @return the MovingObjectGroup with every element of the race file
+	 */
+	public MovingObjectGroup getRace() {
+
+		return race;
+	}
+
+	/**
+	 * Method that returns the Driver of the race, already driving the root group
+	 * @return the Driver
+	 */
+	public Driver getDriver() {
+
+		return driver;
+	}
+
+	/**
+	 * Method that returns the length of the track
+	 * @return the length of the track
+	 */
+	public int getTrackLength() {
+
+		return trackLength;
+	}
+
+	/**
+	 * Method that returns the speed the race starts with
+	 * @return the initial speed
+	 */
+	public int getInitialSpeed() {
+
+		return initialSpeed;
+	}
+
+	/**
+	 * Method that returns how long the race took to load and how much memory it used
+	 * @return the report of the load (null for a race restored by a RaceCheckpoint)
+	 */
+	public LoadReport getReport() {
+
+		return report;
+	}
+
+	/**
+	 * Method that sets the report of the load, once it is complete
+	 * @param report the report of the load
+	 */
+	void setReport(LoadReport report) {
+
+		this.report = report;
+	}
+}
@@ -0,0 +1,69 @@
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that implements the SimulationClock Interface.
+ * This implementation only ticks when told to: each call to advance(int) lets the simulation run the
+ * specified number of ticks, so a race can be stepped through one tick at a time
+ * @author Luiz do Valle
+ *
+ */
+public class ManualClock implements SimulationClock {
+
+	/**
+	 * The length of a tick in nanoseconds
+	 */
+	private final long tickLengthNanos;
+	
+	/**
+	 * Ticks that were allowed by advance(int) but not run yet
+	 */
+	private final Semaphore pendingTicks = new Semaphore(0);
+	
+	/**
+	 * The simulated time of the next tick
+	 */
+	private long simulatedTimeNanos;
+	
+	/**
+	 * Constructor that initializes the clock with the specified tick length
+	 * @param tickLength the amount of simulated time between two ticks
+	 * @param unit the unit of tickLength
+	 */
+	public ManualClock(long tickLength, TimeUnit unit) {
+		
+		this.tickLengthNanos = unit.toNanos(tickLength);
+		
+		if(tickLengthNanos <= 0) {
+			
+			throw new IllegalArgumentException("The tick length must be positive");
+		}
+	}
+	
+	/**
+	 * Method that lets the simulation run the specified number of ticks. Can be called from any thread
+	 * @param ticks the number of ticks to run
+	 */
+	public void advance(int ticks) {
+		
+		pendingTicks.release(ticks);
+	}
+	
+	@Override
+	public long awaitNextTick() throws InterruptedException {
+		
+		pendingTicks.acquire();
+		
+		long tickTime = simulatedTimeNanos;
+		simulatedTimeNanos += tickLengthNanos;
+		
+		return tickTime;
+	}
+
+	@Override
+	public long getTickLengthNanos() {
+		
+		return tickLengthNanos;
+	}
+
+}
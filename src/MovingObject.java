@@ -1,20 +1,13 @@
-import java.awt.Graphics2D;
-
 /**
  * Modified Interface that serves as the base for the Composite Pattern and blueprint for any
  * moving object, be it a single unicycle, a group of unicycles, or even a group of groups of unicycles, etc.
+ * It extends RaceView with the methods that move the riders, so it can be driven and not only displayed
  * 
  * @author Luiz do Valle
  *
  */
-public interface MovingObject {
+public interface MovingObject extends RaceView {
 
-	/**
-	 * Method that draws the MovingObject on the GUI. Based on the example on Courseworks
-	 * @param graphics2d the Graphics2D reference used to draw the objects on the GUI
-	 */
-	public abstract void draw(Graphics2D graphics2d);
-	
 	/**
 	 * Method that changes the X coordinates of the MovingObject by the specified amount so it can
 	 * move left and right. No Y coordinate change needed, as the objects move only horizontally
@@ -23,17 +16,33 @@ public interface MovingObject {
 	public abstract void translate(int deltaX);
 	
 	/**
-	 * Method that returns the X coordinate of the right end of the MovingObject so that the system knows
-	 * when the MovingObject has hit the "wall" of the GUI
-	 * @return the X coordinate of the rightmost end of the MovingObject
-	 */
-	public abstract int getRightEndXPosition();
-	
-	/**
-	 * Method that returns the X coordinate of the left end of the MovingObject so that the system knows
-	 * when the MovingObject has hit the "wall" of the GUI
-	 * @return the X coordinate of the leftmost end of the MovingObject
+	 * Method that moves every rider of the MovingObject to the specified X coordinate (of the center of its
+	 * wheel), reading them in the order visitRiders visits the riders. Used to play back a recorded race.
+	 * By default, the MovingObject is translated as a whole by how far its first rider has to move, which is
+	 * only right for MovingObjects whose riders always move together
+	 * @param xPositions the X coordinates of the riders
+	 * @param offset the position in xPositions of the X coordinate of the first rider of this MovingObject
+	 * @return the number of riders moved (the number of X coordinates read)
 	 */
-	public abstract int getLeftEndXPosition();
+	public default int setRiderXPositions(int[] xPositions, int offset) {
+		
+		//X coordinate of the first rider and number of riders
+		int[] riders = new int[2];
+		
+		visitRiders((x, y, seatLength, rgb) -> {
+			
+			if(riders[1]++ == 0) {
+				
+				riders[0] = x;
+			}
+		});
+		
+		if(riders[1] > 0) {
+			
+			translate(xPositions[offset] - riders[0]);
+		}
+		
+		return riders[1];
+	}
 	
 }
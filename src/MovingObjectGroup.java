@@ -1,22 +1,62 @@
+import java.awt.Color;
 import java.awt.Graphics2D;
-import java.util.LinkedList;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Class that represents an aggregate of MovingObjects and is a MovingObject itself (like a train is a moving
  * object but is composed of smaller moving objects, namely carts. Or how a peloton of racers can be considered 
  * a moving object itself)
  * 
+ * The group caches its left and right ends. They are shifted in O(1) when all of its elements move by the
+ * same amount, recomputed lazily when they don't, and kept up to date when elements are added. Changes to a
+ * nested group are propagated up the tree, but elements should only be moved through the group (moving a
+ * Unicycle of the group directly leaves the cached ends of the group outdated)
+ * 
+ * When drawn with a clip (like the viewport of a Camera), the group skips the elements outside of it, so
+ * whole pelotons off screen cost nothing to draw. Large groups find the visible elements with an ExtentIndex.
+ * What is drawn looks exactly like it does when every element is drawn
+ * 
+ * When drawn with a LevelOfDetail, a group without subgroups (like a peloton) that is narrow and dense enough
+ * on the screen is drawn as a single rectangle covering its riders, in their average color
+ * 
  * @author Luiz do Valle
  *
  */
 public class MovingObjectGroup implements MovingObject {
 	
 	/**
-	 * LinkedList of MovingObjects compatible with the Composite Pattern
-	 * LinkedList chosen because size of the group is unknown, not much adding needs to be done, and 
-	 * so that elements can be accessed efficiently
+	 * The pool used to translate large groups in parallel (null if groups are always translated sequentially)
 	 */
-	private LinkedList<MovingObject> group = new LinkedList<>();
+	private static volatile ForkJoinPool parallelTranslatePool;
+	
+	/**
+	 * Groups with at least this many elements are translated in parallel, split into chunks of fewer
+	 * elements than this (only used while parallelTranslatePool is set)
+	 */
+	private static volatile int parallelTranslateThreshold = Integer.MAX_VALUE;
+	
+	/**
+	 * Groups with at least this many elements use an ExtentIndex to find the visible ones,
+	 * smaller groups simply check each element
+	 */
+	private static final int INDEX_THRESHOLD = 64;
+	
+	/**
+	 * Value returned by getLastRiderColor for MovingObjects without riders (RGB ints always fit in 32 bits)
+	 */
+	private static final long NO_RIDER = Long.MIN_VALUE;
+	
+	/**
+	 * ArrayList of MovingObjects compatible with the Composite Pattern
+	 * ArrayList chosen because size of the group is unknown, not much adding needs to be done, and 
+	 * so that elements can be accessed efficiently by index (which lets large groups be split into chunks
+	 * to be translated in parallel)
+	 */
+	private ArrayList<MovingObject> group = new ArrayList<>();
 	
 	/**
 	 * Variable that controls how much the speed of this group is faster than the 
@@ -24,6 +64,97 @@ public class MovingObjectGroup implements MovingObject {
 	 */
 	private double speedMultiplier;
 	
+	/**
+	 * The group this group was added to (null if it is the root of the tree).
+	 * Used to propagate changes in the bounds of this group up the tree
+	 */
+	private MovingObjectGroup parent;
+	
+	/**
+	 * Cached X coordinate of the leftmost end of the group
+	 * Only meaningful while boundsValid is true
+	 */
+	private int leftEndXPosition = Integer.MAX_VALUE;
+	
+	/**
+	 * Cached X coordinate of the rightmost end of the group
+	 * Only meaningful while boundsValid is true
+	 */
+	private int rightEndXPosition = Integer.MIN_VALUE;
+	
+	/**
+	 * Whether the cached ends of the group are up to date. When false, they are recomputed from
+	 * the group's elements the next time they are queried
+	 */
+	private boolean boundsValid = true;
+	
+	/**
+	 * Whether the group is in the middle of translating its elements. While true, the elements
+	 * don't need to tell the group that their bounds changed, since translate itself takes care of it
+	 */
+	private boolean translating;
+	
+	/**
+	 * Whether every element of the group moved by the same amount in the last call to translate
+	 * (in which case the ends of the group simply moved by lastShift)
+	 */
+	private boolean lastShiftUniform = true;
+	
+	/**
+	 * The amount by which every element of the group moved in the last call to translate.
+	 * Only meaningful while lastShiftUniform is true
+	 */
+	private int lastShift;
+	
+	/**
+	 * Index of the elements' ends used to find the visible elements (null until a large group is first
+	 * drawn with a clip)
+	 */
+	private ExtentIndex extentIndex;
+	
+	/**
+	 * Rectangle the bounds of the clip are copied to when drawing, so that drawing creates no object (null until
+	 * the first draw, so that races run without a display never load AWT)
+	 */
+	private Rectangle clipBounds;
+	
+	/**
+	 * Whether any element of the group is a group itself (only groups without subgroups are aggregated)
+	 */
+	private boolean hasSubgroups;
+	
+	/**
+	 * Whether the number of riders, vertical extent and colors used to draw the group as a single shape are
+	 * up to date (riders only move horizontally, so they only change when elements are added)
+	 */
+	private boolean aggregateValid;
+	
+	/**
+	 * Number of riders of the group. Only meaningful while aggregateValid is true
+	 */
+	private int riderCount;
+	
+	/**
+	 * Y coordinate of the top of the highest rider of the group. Only meaningful while aggregateValid is true
+	 */
+	private int aggregateTopYPosition;
+	
+	/**
+	 * Y coordinate of the bottom of the lowest rider of the group. Only meaningful while aggregateValid is true
+	 */
+	private int aggregateBottomYPosition;
+	
+	/**
+	 * Average color of the riders of the group. Only meaningful while aggregateValid is true
+	 */
+	private Color aggregateColor;
+	
+	/**
+	 * Color of the last rider of the group, left set after drawing the group as a single shape.
+	 * Only meaningful while aggregateValid is true
+	 */
+	private Color lastRiderColor;
+	
 	/**
 	 * Default constructor that initializes the speedMultiplier to 1
 	 */
@@ -44,34 +175,155 @@ public class MovingObjectGroup implements MovingObject {
 	@Override
 	public void draw(Graphics2D graphics2d) {
 		
-		for(MovingObject groupElement : group) {
+		draw(graphics2d, null);
+	}
+	
+	@Override
+	public void draw(Graphics2D graphics2d, LevelOfDetail levelOfDetail) {
+		
+		if(levelOfDetail != null && !hasSubgroups && drawAggregate(graphics2d, levelOfDetail)) {
 			
-			groupElement.draw(graphics2d);
+			return;
+		}
+		
+		if(clipBounds == null) {
+		
+			clipBounds = new Rectangle();
 		}
 		
+		Rectangle clip = ExtentIndex.getClipBounds(graphics2d, clipBounds);
+		
+		if(clip == null) {
+			
+			for(MovingObject groupElement : group) {
+				
+				groupElement.draw(graphics2d, levelOfDetail);
+			}
+			
+		} else if(group.size() >= INDEX_THRESHOLD) {
+			
+			if(extentIndex == null) {
+				
+				extentIndex = new ExtentIndex(new ElementExtents());
+			}
+			
+			extentIndex.query(clip.x, clip.x + clip.width);
+			
+			int lastDrawn = -1;
+			
+			for(int i = 0; i < extentIndex.getVisibleCount(); i++) {
+				
+				int index = extentIndex.getVisibleElement(i);
+				
+				skipElements(graphics2d, index, lastDrawn);
+				group.get(index).draw(graphics2d, levelOfDetail);
+				lastDrawn = index;
+			}
+			
+			skipElements(graphics2d, group.size(), lastDrawn);
+			
+		} else {
+			
+			int lastDrawn = -1;
+			
+			for(int i = 0; i < group.size(); i++) {
+				
+				MovingObject groupElement = group.get(i);
+				
+				if(ExtentIndex.isVisible(groupElement.getLeftEndXPosition(), groupElement.getRightEndXPosition(), clip)) {
+					
+					skipElements(graphics2d, i, lastDrawn);
+					groupElement.draw(graphics2d, levelOfDetail);
+					lastDrawn = i;
+				}
+			}
+			
+			skipElements(graphics2d, group.size(), lastDrawn);
+		}
 	}
 
 	@Override
 	public void translate(int deltaX) {
 		
-		for(MovingObject groupElement : group) {
+		RaceInstrumentation.TranslateEvent translateEvent = null;
+		
+		if(RaceInstrumentation.ENABLED) {
 			
-			int scaledDelatX = (int) (deltaX * speedMultiplier);
-			groupElement.translate(scaledDelatX);
+			translateEvent = new RaceInstrumentation.TranslateEvent();
+			translateEvent.begin();
+		}
+		
+		//Every element of the group receives the same scaled delta
+		int scaledDeltaX = (int) (deltaX * speedMultiplier);
+		boolean uniform;
+		
+		translating = true;
+		
+		ForkJoinPool pool = parallelTranslatePool;
+		
+		if(pool != null && group.size() >= parallelTranslateThreshold) {
+			
+			TranslateTask translateTask = new TranslateTask(this, scaledDeltaX, 0, group.size(), parallelTranslateThreshold);
+			
+			//A group nested in a group that is already being translated in parallel joins the same computation
+			if(ForkJoinTask.inForkJoinPool()) {
+				
+				uniform = translateTask.invoke();
+				
+			} else {
+				
+				uniform = pool.invoke(translateTask);
+			}
+			
+		} else {
+			
+			uniform = translateElements(scaledDeltaX, 0, group.size());
+		}
+		
+		translating = false;
+		
+		lastShiftUniform = uniform;
+		lastShift = scaledDeltaX;
+		
+		//If everything moved by the same amount, so did the ends of the group. Otherwise recompute them lazily
+		if(uniform) {
+			
+			//A group without any rider in it (not even in its subgroups) keeps its sentinel ends
+			if(boundsValid && leftEndXPosition <= rightEndXPosition) {
+				
+				leftEndXPosition += scaledDeltaX;
+				rightEndXPosition += scaledDeltaX;
+			}
+			
+		} else {
+			
+			boundsValid = false;
+			
+			//The elements didn't all move by the same amount, so their order may have changed
+			if(extentIndex != null) {
+				
+				extentIndex.elementsMoved();
+			}
+		}
+		
+		//If this group was translated on its own (and not by its parent), the parent's bounds are now outdated
+		if(parent != null && !parent.translating) {
+			
+			parent.invalidateBounds();
+		}
+		
+		if(RaceInstrumentation.ENABLED) {
+			
+			commitTranslateEvent(translateEvent, scaledDeltaX, uniform);
 		}
 	}
 
 	@Override
 	public int getRightEndXPosition() {
 		
-		int rightEndXPosition = Integer.MIN_VALUE;
-		
-		for(MovingObject groupElement : group) {
+		if(!boundsValid) {
 			
-			if(groupElement.getRightEndXPosition() > rightEndXPosition) {
-				
-				rightEndXPosition = groupElement.getRightEndXPosition();
-			}
+			computeBounds();
 		}
 		
 		return rightEndXPosition;
@@ -81,26 +333,93 @@ public class MovingObjectGroup implements MovingObject {
 	@Override
 	public int getLeftEndXPosition() {
 		
-		int leftEndXPosition = Integer.MAX_VALUE;
+		if(!boundsValid) {
+			
+			computeBounds();
+		}
+		
+		return leftEndXPosition;
+	}
+	
+	@Override
+	public void visitRiders(RiderVisitor riderVisitor) {
 		
 		for(MovingObject groupElement : group) {
 			
-			if(groupElement.getLeftEndXPosition() < leftEndXPosition) {
-				
-				leftEndXPosition = groupElement.getLeftEndXPosition();
-				
-			}
+			groupElement.visitRiders(riderVisitor);
+		}
+	}
+	
+	@Override
+	public int getRiderXPositions(int[] xPositions, int offset) {
+		
+		int count = 0;
+		
+		for(MovingObject groupElement : group) {
+			
+			count += groupElement.getRiderXPositions(xPositions, offset + count);
+		}
+		
+		return count;
+	}
+	
+	@Override
+	public int setRiderXPositions(int[] xPositions, int offset) {
+		
+		int count = 0;
+		
+		translating = true;
+		
+		for(MovingObject groupElement : group) {
+			
+			count += groupElement.setRiderXPositions(xPositions, offset + count);
+		}
+		
+		translating = false;
+		
+		//The elements may have moved by any amount, so recompute the ends (and the order of the index) lazily
+		lastShiftUniform = false;
+		invalidateBounds();
+		
+		return count;
+	}
+	
+	@Override
+	public void collectDamage(DamageRegion damageRegion) {
+		
+		for(MovingObject groupElement : group) {
+			
+			groupElement.collectDamage(damageRegion);
 		}
-		return leftEndXPosition;
 	}
 	
 	/**
-	 * Method that adds a MovingObject to the LinkedList of MovingObjects
+	 * Method that adds a MovingObject to the ArrayList of MovingObjects
 	 * @param groupElement element to be added to the group
 	 */
 	public void addMovingObject(MovingObject groupElement) {
 		
 		group.add(groupElement);
+		aggregateValid = false;
+		
+		if(groupElement instanceof MovingObjectGroup) {
+			
+			((MovingObjectGroup) groupElement).parent = this;
+			hasSubgroups = true;
+			
+		} else if(groupElement instanceof UnicycleFleet) {
+			
+			//Riders can still be added to the fleet, which then tells this group
+			((UnicycleFleet) groupElement).setParent(this);
+		}
+		
+		if(extentIndex != null) {
+			
+			extentIndex.elementAdded();
+		}
+		
+		//The new element can only push the ends of this group (and of its ancestors) outwards
+		extendBounds(groupElement.getLeftEndXPosition(), groupElement.getRightEndXPosition());
 	}
 	
 	/**
@@ -112,4 +431,465 @@ public class MovingObjectGroup implements MovingObject {
 		
 		return group.get(index);
 	}
+	
+	/**
+	 * Method that returns the number of MovingObjects in the group
+	 * @return the number of elements of the group (not counting the elements of its subgroups)
+	 */
+	public int size() {
+		
+		return group.size();
+	}
+	
+	/**
+	 * Method that returns the multiplier applied to every translation of the group
+	 * @return the speedMultiplier of the group
+	 */
+	public double getSpeedMultiplier() {
+		
+		return speedMultiplier;
+	}
+	
+	/**
+	 * Method that changes the multiplier applied to every translation of the group from the next one on.
+	 * Must be called on the thread that moves the group (from any other thread, see ControlQueue)
+	 * @param speedMultiplier the new speedMultiplier of the group
+	 */
+	public void setSpeedMultiplier(double speedMultiplier) {
+		
+		this.speedMultiplier = speedMultiplier;
+	}
+	
+	/**
+	 * Method that makes groups with at least the specified number of elements translate them in parallel
+	 * (recursively, so nested groups that are large enough are also split). The elements of every group still
+	 * move by exactly (int) (deltaX * speedMultiplier) of that group, so the race is the same as when translated
+	 * sequentially. Groups must not be modified (or drawn) while they are being translated
+	 * @param pool the pool the elements are translated on, or null to translate sequentially again
+	 * @param threshold the minimum number of elements of a group for it to be split
+	 */
+	public static void setParallelTranslate(ForkJoinPool pool, int threshold) {
+		
+		if(threshold < 2) {
+			
+			throw new IllegalArgumentException("The threshold must be at least 2: " + threshold);
+		}
+		
+		parallelTranslateThreshold = threshold;
+		parallelTranslatePool = pool;
+	}
+	
+	/**
+	 * Helper method that leaves graphics2d as if the elements that were not visible had been drawn.
+	 * A rider's seat is filled with the color of the rider drawn before it, so the color of the last rider
+	 * of the skipped elements must be set before drawing the next visible element (or leaving the group)
+	 * @param graphics2d the Graphics2D reference used to draw the group
+	 * @param index the index of the next element to be drawn (the size of the group at the end)
+	 * @param lastDrawn the index of the last element drawn (-1 if none was)
+	 */
+	private void skipElements(Graphics2D graphics2d, int index, int lastDrawn) {
+		
+		//Skipped elements without riders don't change the color, so look further back
+		for(int i = index - 1; i > lastDrawn; i--) {
+			
+			long rgb = getLastRiderColor(group.get(i));
+			
+			if(rgb != NO_RIDER) {
+				
+				graphics2d.setColor(UnicycleGeometry.sharedColor((int) rgb));
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Helper method that draws the group as a single rectangle covering its riders if it is dense enough on
+	 * the screen, leaving the color of its last rider set as if every rider had been drawn
+	 * @param graphics2d the Graphics2D reference used to draw the group
+	 * @param levelOfDetail the level of detail the group is drawn with
+	 * @return true if the group was drawn, false if its elements still have to be drawn
+	 */
+	private boolean drawAggregate(Graphics2D graphics2d, LevelOfDetail levelOfDetail) {
+		
+		if(!aggregateValid) {
+			
+			computeAggregate();
+		}
+		
+		int left = getLeftEndXPosition();
+		int right = getRightEndXPosition();
+		
+		if(riderCount == 0 || !levelOfDetail.shouldAggregate(riderCount, right - left)) {
+			
+			return false;
+		}
+		
+		graphics2d.setColor(aggregateColor);
+		graphics2d.fillRect(left, aggregateTopYPosition, right - left, aggregateBottomYPosition - aggregateTopYPosition);
+		graphics2d.setColor(lastRiderColor);
+		
+		return true;
+	}
+	
+	/**
+	 * Helper method that counts the riders of the group and computes their vertical extent and average color
+	 */
+	private void computeAggregate() {
+		
+		//Riders, top, bottom, red, green, blue and last color
+		long[] totals = {0, Integer.MAX_VALUE, Integer.MIN_VALUE, 0, 0, 0, 0};
+		
+		visitRiders((x, y, seatLength, rgb) -> {
+			
+			totals[0]++;
+			totals[1] = Math.min(totals[1], y + UnicycleDimensions.topYOffset(seatLength));
+			totals[2] = Math.max(totals[2], y);
+			totals[3] += (rgb >> 16) & 0xFF;
+			totals[4] += (rgb >> 8) & 0xFF;
+			totals[5] += rgb & 0xFF;
+			totals[6] = rgb;
+		});
+		
+		riderCount = (int) totals[0];
+		
+		if(riderCount > 0) {
+			
+			aggregateTopYPosition = (int) totals[1];
+			aggregateBottomYPosition = (int) totals[2];
+			aggregateColor = new Color((int) (totals[3] / riderCount), (int) (totals[4] / riderCount), (int) (totals[5] / riderCount));
+			lastRiderColor = new Color((int) totals[6]);
+		}
+		
+		aggregateValid = true;
+	}
+	
+	/**
+	 * Helper method that returns the color of the last rider drawn by a MovingObject
+	 * @param movingObject the MovingObject whose riders are looked at
+	 * @return the color as an RGB int, or NO_RIDER if the MovingObject has no riders
+	 */
+	private static long getLastRiderColor(MovingObject movingObject) {
+		
+		if(movingObject instanceof UnicycleFleet) {
+			
+			UnicycleFleet unicycleFleet = (UnicycleFleet) movingObject;
+			
+			return unicycleFleet.size() == 0 ? NO_RIDER : unicycleFleet.getColor(unicycleFleet.size() - 1);
+		}
+		
+		if(movingObject instanceof MovingObjectGroup) {
+			
+			ArrayList<MovingObject> elements = ((MovingObjectGroup) movingObject).group;
+			
+			for(int i = elements.size() - 1; i >= 0; i--) {
+				
+				long rgb = getLastRiderColor(elements.get(i));
+				
+				if(rgb != NO_RIDER) {
+					
+					return rgb;
+				}
+			}
+			
+			return NO_RIDER;
+		}
+		
+		//Any other MovingObject (like a Unicycle) is asked for its riders
+		long[] lastColor = {NO_RIDER};
+		movingObject.visitRiders((x, y, seatLength, rgb) -> lastColor[0] = rgb);
+		
+		return lastColor[0];
+	}
+	
+	/**
+	 * Helper method that translates a range of the elements of the group
+	 * @param scaledDeltaX the amount every element is translated by
+	 * @param from the index of the first element to be translated
+	 * @param to the index after the last element to be translated
+	 * @return true if every element of the range moved by exactly scaledDeltaX
+	 */
+	private boolean translateElements(int scaledDeltaX, int from, int to) {
+		
+		boolean uniform = true;
+		
+		for(int i = from; i < to; i++) {
+			
+			MovingObject groupElement = group.get(i);
+			groupElement.translate(scaledDeltaX);
+			
+			//A subgroup with its own speedMultiplier may move by a different amount than the one it received
+			if(groupElement instanceof MovingObjectGroup && !((MovingObjectGroup) groupElement).movedBy(scaledDeltaX)) {
+				
+				uniform = false;
+			}
+		}
+		
+		return uniform;
+	}
+	
+	/**
+	 * Helper method that tells whether every element of the group moved by the specified amount
+	 * in the last call to translate
+	 * @param shift the amount the caller expects the group to have moved by
+	 * @return true if the ends of the group moved by exactly shift
+	 */
+	private boolean movedBy(int shift) {
+		
+		return lastShiftUniform && lastShift == shift;
+	}
+	
+	/**
+	 * Method called by a fleet of the group when riders were added to it: the ends of the group (and of its
+	 * ancestors) can only grow, and the riders drawn as a single shape changed
+	 * @param left the X coordinate of the left end of the new rider
+	 * @param right the X coordinate of the right end of the new rider
+	 */
+	void elementGrew(int left, int right) {
+		
+		aggregateValid = false;
+		
+		if(extentIndex != null) {
+			
+			extentIndex.elementsMoved();
+		}
+		
+		extendBounds(left, right);
+	}
+	
+	/**
+	 * Method called by a fleet of the group when it was moved on its own, and not by translating the group
+	 */
+	void elementMoved() {
+		
+		if(!translating) {
+			
+			invalidateBounds();
+		}
+	}
+	
+	/**
+	 * Helper method that marks the cached ends of this group and of all of its ancestors as outdated
+	 */
+	private void invalidateBounds() {
+		
+		boundsValid = false;
+		
+		if(extentIndex != null) {
+			
+			extentIndex.elementsMoved();
+		}
+		
+		if(parent != null && !parent.translating) {
+			
+			parent.invalidateBounds();
+		}
+	}
+	
+	/**
+	 * Helper method that widens the cached ends of this group and of all of its ancestors so that they
+	 * include the specified ends
+	 * @param left the X coordinate of the left end to be included
+	 * @param right the X coordinate of the right end to be included
+	 */
+	private void extendBounds(int left, int right) {
+		
+		if(boundsValid) {
+			
+			leftEndXPosition = Math.min(leftEndXPosition, left);
+			rightEndXPosition = Math.max(rightEndXPosition, right);
+		}
+		
+		if(parent != null) {
+			
+			//This group (one of the parent's elements) grew, so the parent's index is outdated
+			if(parent.extentIndex != null) {
+				
+				parent.extentIndex.elementsMoved();
+			}
+			
+			parent.extendBounds(left, right);
+		}
+	}
+	
+	/**
+	 * Helper method that recomputes the ends of the group from the ends of its elements,
+	 * querying each element only once
+	 */
+	private void computeBounds() {
+		
+		RaceInstrumentation.BoundsEvent boundsEvent = null;
+		
+		if(RaceInstrumentation.ENABLED) {
+			
+			boundsEvent = new RaceInstrumentation.BoundsEvent();
+			boundsEvent.begin();
+		}
+		
+		int left = Integer.MAX_VALUE;
+		int right = Integer.MIN_VALUE;
+		
+		for(MovingObject groupElement : group) {
+			
+			left = Math.min(left, groupElement.getLeftEndXPosition());
+			right = Math.max(right, groupElement.getRightEndXPosition());
+		}
+		
+		leftEndXPosition = left;
+		rightEndXPosition = right;
+		boundsValid = true;
+		
+		if(RaceInstrumentation.ENABLED) {
+			
+			boundsEvent.end();
+			
+			if(boundsEvent.shouldCommit()) {
+				
+				boundsEvent.group = System.identityHashCode(this);
+				boundsEvent.depth = getDepth();
+				boundsEvent.elements = group.size();
+				boundsEvent.commit();
+			}
+		}
+	}
+	
+	/**
+	 * Helper method that commits the JFR event of a call to translate (only used when instrumented)
+	 * @param translateEvent the event, begun when translate was called
+	 * @param scaledDeltaX the amount every element was translated by
+	 * @param uniform whether every element moved by scaledDeltaX
+	 */
+	private void commitTranslateEvent(RaceInstrumentation.TranslateEvent translateEvent, int scaledDeltaX, boolean uniform) {
+		
+		translateEvent.end();
+		
+		if(translateEvent.shouldCommit()) {
+			
+			translateEvent.group = System.identityHashCode(this);
+			translateEvent.depth = getDepth();
+			translateEvent.elements = group.size();
+			translateEvent.speedMultiplier = speedMultiplier;
+			translateEvent.scaledDeltaX = scaledDeltaX;
+			translateEvent.uniform = uniform;
+			translateEvent.commit();
+		}
+	}
+	
+	/**
+	 * Helper method that returns how deep the group is in its tree
+	 * @return the number of ancestors of the group (0 for the root)
+	 */
+	private int getDepth() {
+		
+		int depth = 0;
+		
+		for(MovingObjectGroup ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+			
+			depth++;
+		}
+		
+		return depth;
+	}
+	
+	/**
+	 * Class that translates a range of the elements of a group, splitting it in halves (to be translated in
+	 * parallel) until the ranges are smaller than the parallel threshold
+	 * 
+	 * @author Luiz do Valle
+	 *
+	 */
+	private static final class TranslateTask extends RecursiveTask<Boolean> {
+		
+		/**
+		 * Serial version of the task (ForkJoinTask is Serializable)
+		 */
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * The group whose elements are translated
+		 */
+		private final MovingObjectGroup movingObjectGroup;
+		
+		/**
+		 * The amount every element is translated by
+		 */
+		private final int scaledDeltaX;
+		
+		/**
+		 * The index of the first element to be translated
+		 */
+		private final int from;
+		
+		/**
+		 * The index after the last element to be translated
+		 */
+		private final int to;
+		
+		/**
+		 * Ranges with fewer elements than this are translated sequentially
+		 */
+		private final int threshold;
+		
+		/**
+		 * Constructor that simply initializes the class's fields
+		 * @param movingObjectGroup the group whose elements are translated
+		 * @param scaledDeltaX the amount every element is translated by
+		 * @param from the index of the first element to be translated
+		 * @param to the index after the last element to be translated
+		 * @param threshold ranges with fewer elements than this are translated sequentially
+		 */
+		private TranslateTask(MovingObjectGroup movingObjectGroup, int scaledDeltaX, int from, int to, int threshold) {
+			
+			this.movingObjectGroup = movingObjectGroup;
+			this.scaledDeltaX = scaledDeltaX;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected Boolean compute() {
+			
+			if(to - from < threshold) {
+				
+				return movingObjectGroup.translateElements(scaledDeltaX, from, to);
+			}
+			
+			int middle = (from + to) >>> 1;
+			
+			TranslateTask left = new TranslateTask(movingObjectGroup, scaledDeltaX, from, middle, threshold);
+			TranslateTask right = new TranslateTask(movingObjectGroup, scaledDeltaX, middle, to, threshold);
+			
+			left.fork();
+			boolean rightUniform = right.compute();
+			
+			return left.join() && rightUniform;
+		}
+	}
+	
+	/**
+	 * Class that lets an ExtentIndex read the ends of the elements of the group
+	 * 
+	 * @author Luiz do Valle
+	 *
+	 */
+	private final class ElementExtents implements ExtentIndex.Source {
+
+		@Override
+		public int size() {
+			
+			return group.size();
+		}
+
+		@Override
+		public int getLeftEnd(int element) {
+			
+			return group.get(element).getLeftEndXPosition();
+		}
+
+		@Override
+		public int getRightEnd(int element) {
+			
+			return group.get(element).getRightEndXPosition();
+		}
+	}
 }
@@ -1,6 +1,8 @@
+import java.awt.Color;
 import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 
 import javax.swing.Icon;
 
@@ -14,6 +16,41 @@ import javax.swing.Icon;
  */
 public class MyIcon implements Icon{
 
+	/**
+	 * X coordinate of the top left corner of the HUD
+	 */
+	private static final int HUD_X = 8;
+	
+	/**
+	 * Y coordinate of the top left corner of the HUD
+	 */
+	private static final int HUD_Y = 8;
+	
+	/**
+	 * Width of the HUD
+	 */
+	private static final int HUD_WIDTH = 360;
+	
+	/**
+	 * Height of a line of text of the HUD
+	 */
+	private static final int HUD_LINE_HEIGHT = 15;
+	
+	/**
+	 * Number of lines of text of the HUD
+	 */
+	private static final int HUD_LINES = 5;
+	
+	/**
+	 * Translucent background of the HUD, so that the riders behind it can still be seen
+	 */
+	private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 160);
+	
+	/**
+	 * Milliseconds in a nanosecond, to show latencies in milliseconds
+	 */
+	private static final double NANOS_TO_MILLIS = 1e-6;
+	
 	/**
 	 * The width of the Icon
 	 */
@@ -27,7 +64,49 @@ public class MyIcon implements Icon{
 	/**
 	 * The MovingObject to be displayed
 	 */
-	private MovingObject movingObject;
+	private RaceView movingObject;
+	
+	/**
+	 * The source of the snapshots to be displayed instead of the MovingObject (null if the MovingObject
+	 * is displayed directly)
+	 */
+	private SnapshotSource snapshotSource;
+	
+	/**
+	 * The renderer that draws the riders on several threads (null if they are drawn on the painting thread)
+	 */
+	private TiledRenderer tiledRenderer;
+	
+	/**
+	 * The camera showing part of the track (null if the track is shown as is, from X coordinate 0)
+	 */
+	private Camera camera;
+	
+	/**
+	 * The level of detail the riders are drawn with, adapted to how long the frames of this Icon take (null if
+	 * they are always drawn in full detail)
+	 */
+	private LevelOfDetail levelOfDetail;
+	
+	/**
+	 * Array the snapshot source writes the interpolated positions of the riders to, reused by every paint
+	 */
+	private int[] interpolationBuffer = new int[0];
+	
+	/**
+	 * Number of bytes allocated by the last call to paintIcon (-1 if it can't be measured or instrumentation is off)
+	 */
+	private long lastPaintAllocatedBytes = -1;
+	
+	/**
+	 * Whether the live metrics of the race are drawn on top of it (only possible when it is instrumented)
+	 */
+	private boolean hudVisible = RaceInstrumentation.ENABLED;
+	
+	/**
+	 * Rectangle the bounds of the clip are copied to when drawing a snapshot or when instrumented
+	 */
+	private final Rectangle clipBounds = new Rectangle();
 	
 	/**
 	 * The constructor for the class that simply initializes the class's fields
@@ -35,13 +114,27 @@ public class MyIcon implements Icon{
 	 * @param height the height of the Icon
 	 * @param movingObject the MovingObjects to be displayed
 	 */
-	public MyIcon(int width, int height, MovingObject movingObject) {
+	public MyIcon(int width, int height, RaceView movingObject) {
 		
 		this.width = width;
 		this.height = height;
 		this.movingObject = movingObject;
 	}
 	
+	/**
+	 * Constructor for an Icon that displays snapshots of the riders instead of the MovingObjects themselves,
+	 * so that the MovingObjects can be moved on another thread while the Icon is painted
+	 * @param width the width of the Icon
+	 * @param height the height of the Icon
+	 * @param snapshotSource the source of the snapshots to be displayed
+	 */
+	public MyIcon(int width, int height, SnapshotSource snapshotSource) {
+		
+		this.width = width;
+		this.height = height;
+		this.snapshotSource = snapshotSource;
+	}
+	
 	@Override
 	public int getIconHeight() {
 		
@@ -58,8 +151,245 @@ public class MyIcon implements Icon{
 	public void paintIcon(Component component, Graphics graphics, int x, int y) {
 		
 		Graphics2D graphics2d = (Graphics2D) graphics;
+		
+		RaceInstrumentation.PaintEvent paintEvent = null;
+		long start = 0;
+		
+		if(RaceInstrumentation.ENABLED) {
+			
+			paintEvent = new RaceInstrumentation.PaintEvent();
+			paintEvent.begin();
+			start = System.nanoTime();
+		}
+		
+		//Asking the JVM for the allocated bytes isn't free, so it's only done when instrumenting
+		long allocatedBytesBefore = RaceInstrumentation.ENABLED ? AllocationMeter.allocatedBytes() : 0;
+		
+		//The level of detail depends on how large the riders are on the screen and adapts to how long frames take
+		long levelOfDetailStart = 0;
+		
+		if(levelOfDetail != null) {
+			
+			levelOfDetail.setScale(camera != null ? camera.getZoom() : 1);
+			levelOfDetailStart = System.nanoTime();
+		}
+		
+		if(camera != null) {
+			
+			//Scroll, zoom and clip a copy, so that MovingObjects skip everything the camera doesn't see
+			graphics2d = (Graphics2D) graphics2d.create();
+			camera.apply(graphics2d);
+		}
+	
+		if(snapshotSource != null) {
+			
+			RaceSnapshot snapshot = snapshotSource.getSnapshot(interpolationBuffer);
+			
+			if(snapshot != null) {
+				
+				drawSnapshot(graphics2d, snapshot);
+				
+				//Riders were added: make room for all of them for the next paint
+				if(snapshot.getRiderCount() > interpolationBuffer.length) {
+					
+					interpolationBuffer = new int[snapshot.getRiderCount()];
+				}
+			}
+			
+		} else {
+			
+			movingObject.draw(graphics2d, levelOfDetail);
+		}
+		
+		if(camera != null) {
+			
+			graphics2d.dispose();
+		}
+		
+		if(levelOfDetail != null) {
+			
+			levelOfDetail.frameCompleted(System.nanoTime() - levelOfDetailStart);
+		}
+		
+		lastPaintAllocatedBytes = RaceInstrumentation.ENABLED && AllocationMeter.isSupported() ? AllocationMeter.allocatedBytes() - allocatedBytesBefore : -1;
+		
+		if(RaceInstrumentation.ENABLED) {
+			
+			recordPaint(graphics, paintEvent, start);
+			
+			if(hudVisible) {
+				
+				drawHud(graphics, x, y);
+			}
+		}
+	}
+	
+	/**
+	 * Method that makes the Icon draw the riders with a TiledRenderer (or on the painting thread, with null).
+	 * The tiles are drawn on other threads, so only snapshots can be drawn with one: the riders of a MovingObject
+	 * must be published by a SnapshotPublisher on the thread that moves them (at no extra cost when it is the
+	 * painting thread, with a tick length of 0)
+	 * @param tiledRenderer the renderer used to draw the riders, or null
+	 */
+	public void setTiledRenderer(TiledRenderer tiledRenderer) {
+		
+		if(tiledRenderer != null && snapshotSource == null) {
+			
+			throw new IllegalStateException("Only an Icon that displays snapshots can draw them with a TiledRenderer");
+		}
+		
+		this.tiledRenderer = tiledRenderer;
+	}
+	
+	/**
+	 * Method that makes the Icon draw the riders with less detail where they can't be told apart on the screen
+	 * (or always in full detail, with null). The level of detail adapts to the frames of this Icon only, so
+	 * every Icon needs its own
+	 * @param levelOfDetail the level of detail the riders are drawn with, or null
+	 */
+	public void setLevelOfDetail(LevelOfDetail levelOfDetail) {
+		
+		this.levelOfDetail = levelOfDetail;
+	}
+	
+	/**
+	 * Method that makes the Icon show the track through a camera (or as is, with null).
+	 * The TiledRenderer is not used while there is a camera
+	 * @param camera the camera showing part of the track, or null
+	 */
+	public void setCamera(Camera camera) {
+		
+		this.camera = camera;
+	}
+	
+	/**
+	 * Method that returns how many bytes were allocated on the heap while drawing the last frame.
+	 * In steady state this should be (close to) zero
+	 * @return the bytes allocated by the last call to paintIcon, or -1 if it can't be measured or the JVM wasn't
+	 * started with -Dunicyclerace.instrument=true
+	 */
+	public long getLastPaintAllocatedBytes() {
+		
+		return lastPaintAllocatedBytes;
+	}
+	
+	/**
+	 * Method that shows or hides the live metrics of the race on top of it. They are shown by default when
+	 * the race is instrumented, and never when it isn't
+	 * @param hudVisible whether the metrics are drawn
+	 */
+	public void setHudVisible(boolean hudVisible) {
+		
+		this.hudVisible = hudVisible;
+	}
 	
-		movingObject.draw(graphics2d);
+	/**
+	 * Method that tells whether the live metrics of the race are drawn on top of it
+	 * @return true if the HUD is drawn
+	 */
+	public boolean isHudVisible() {
+		
+		return hudVisible && RaceInstrumentation.ENABLED;
+	}
+	
+	/**
+	 * Method that adds the area of the HUD to a DamageRegion, so that its numbers are repainted even when the
+	 * riders behind it didn't move (does nothing if the HUD is not drawn)
+	 * @param damageRegion the region the area of the HUD is added to
+	 */
+	public void collectHudDamage(DamageRegion damageRegion) {
+		
+		if(isHudVisible()) {
+			
+			damageRegion.add(HUD_X, HUD_Y, HUD_X + HUD_WIDTH, HUD_Y + HUD_LINES * HUD_LINE_HEIGHT + HUD_LINE_HEIGHT / 2);
+		}
+	}
+	
+	/**
+	 * Helper method that draws a snapshot, with the TiledRenderer if there is one
+	 * @param graphics2d the Graphics2D reference used to draw the riders
+	 * @param snapshot the riders to be drawn
+	 */
+	private void drawSnapshot(Graphics2D graphics2d, RaceSnapshot snapshot) {
+		
+		if(tiledRenderer != null && camera == null) {
+			
+			tiledRenderer.render(graphics2d, snapshot, levelOfDetail);
+			
+		} else {
+			
+			snapshot.draw(graphics2d, ExtentIndex.getClipBounds(graphics2d, clipBounds), levelOfDetail);
+		}
+	}
+	
+	/**
+	 * Helper method that records a frame that was just painted (only used when instrumented)
+	 * @param graphics the Graphics the frame was painted with
+	 * @param paintEvent the JFR event of the frame, begun when painting started
+	 * @param start the System.nanoTime() at which painting started
+	 */
+	private void recordPaint(Graphics graphics, RaceInstrumentation.PaintEvent paintEvent, long start) {
+		
+		long latency = System.nanoTime() - start;
+		
+		paintEvent.end();
+		
+		if(paintEvent.shouldCommit()) {
+			
+			Rectangle clip = graphics.getClipBounds(clipBounds);
+			
+			if(snapshotSource != null) {
+				
+				paintEvent.mode = "snapshot";
+				
+			} else if(camera != null) {
+				
+				paintEvent.mode = "camera";
+				
+			} else {
+				
+				paintEvent.mode = tiledRenderer != null ? "tiled" : "moving objects";
+			}
+			
+			paintEvent.clipArea = clip == null ? (long) width * height : (long) clip.width * clip.height;
+			paintEvent.allocated = lastPaintAllocatedBytes;
+			paintEvent.commit();
+		}
+		
+		RaceInstrumentation.getMetrics().recordPaint(start, latency, lastPaintAllocatedBytes);
+	}
+	
+	/**
+	 * Helper method that draws the live metrics of the race in the top left corner of the Icon
+	 * @param graphics the Graphics the Icon is painted with
+	 * @param x the X coordinate of the Icon
+	 * @param y the Y coordinate of the Icon
+	 */
+	private void drawHud(Graphics graphics, int x, int y) {
+		
+		RaceMetrics raceMetrics = RaceInstrumentation.getMetrics();
+		Graphics hudGraphics = graphics.create();
+		
+		hudGraphics.setColor(HUD_BACKGROUND);
+		hudGraphics.fillRect(x + HUD_X, y + HUD_Y, HUD_WIDTH, HUD_LINES * HUD_LINE_HEIGHT + HUD_LINE_HEIGHT / 2);
+		hudGraphics.setColor(Color.WHITE);
+		
+		String[] lines = {
+			String.format("tick   p50 %.2f ms  p99 %.2f ms  max %.2f ms", raceMetrics.getTickLatencyP50() * NANOS_TO_MILLIS,
+					raceMetrics.getTickLatencyP99() * NANOS_TO_MILLIS, raceMetrics.getTickLatencyMax() * NANOS_TO_MILLIS),
+			String.format("paint  p50 %.2f ms  p99 %.2f ms  max %.2f ms", raceMetrics.getPaintLatencyP50() * NANOS_TO_MILLIS,
+					raceMetrics.getPaintLatencyP99() * NANOS_TO_MILLIS, raceMetrics.getPaintLatencyMax() * NANOS_TO_MILLIS),
+			String.format("%.1f ticks/s  %.1f frames/s", raceMetrics.getTicksPerSecond(), raceMetrics.getFramesPerSecond()),
+			String.format("dropped frames %d", raceMetrics.getDroppedFrames()),
+			String.format("allocation %.2f MB/s", raceMetrics.getAllocationRate() / (1 << 20))
+		};
+		
+		for(int i = 0; i < lines.length; i++) {
+			
+			hudGraphics.drawString(lines[i], x + HUD_X + 6, y + HUD_Y + (i + 1) * HUD_LINE_HEIGHT);
+		}
+		
+		hudGraphics.dispose();
 	}
 
 	
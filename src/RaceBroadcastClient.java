@@ -0,0 +1,301 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Class that implements the SnapshotSource Interface and shows a race broadcast by a RaceBroadcastServer, so
+ * that a MyIcon can display it without running the simulation.
+ * The client reads the messages of the server on its own thread, applies every frame to a fleet with the
+ * riders of the race and publishes it with a SnapshotPublisher, so the race is displayed interpolated between
+ * the last two ticks exactly like a local decoupled simulation
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class RaceBroadcastClient implements SnapshotSource, AutoCloseable {
+
+	/**
+	 * Size of the buffer the messages are read into (grown for larger messages)
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The socket connected to the server
+	 */
+	private final SocketChannel channel;
+
+	/**
+	 * The client's own thread
+	 */
+	private final Thread thread;
+
+	/**
+	 * Buffer the messages are read into. Only used by the client's thread
+	 */
+	private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+	/**
+	 * Fleet with the riders of the race, moved by every frame. Only used by the client's thread
+	 */
+	private UnicycleFleet unicycleFleet;
+
+	/**
+	 * Decoder of the frames. Only used by the client's thread
+	 */
+	private RaceFrameCodec raceFrameCodec;
+
+	/**
+	 * Publisher created for the last riders received, published with the first frame that places them.
+	 * Only used by the client's thread
+	 */
+	private SnapshotPublisher pendingPublisher;
+
+	/**
+	 * Publisher of the positions of the fleet (null until the riders of the race are received)
+	 */
+	private volatile SnapshotPublisher snapshotPublisher;
+
+	/**
+	 * The tick of the last frame received
+	 */
+	private volatile long tick;
+
+	/**
+	 * The speed of the race in the last frame received
+	 */
+	private volatile int speed;
+
+	/**
+	 * Number of frames received
+	 */
+	private volatile long frameCount;
+
+	/**
+	 * Whether the connection is still open
+	 */
+	private volatile boolean connected = true;
+
+	/**
+	 * Constructor that connects to the server and starts receiving the race on the client's own thread
+	 * @param address the address of the server
+	 * @throws IOException if the client can't connect
+	 */
+	public RaceBroadcastClient(InetSocketAddress address) throws IOException {
+
+		channel = SocketChannel.open(address);
+
+		//The buffer is kept ready to be read (empty for now)
+		buffer.flip();
+
+		thread = new Thread(this::receive, "broadcast-client");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public RaceSnapshot getSnapshot() {
+
+		return getSnapshot(null);
+	}
+
+	@Override
+	public RaceSnapshot getSnapshot(int[] buffer) {
+
+		SnapshotPublisher currentPublisher = snapshotPublisher;
+
+		return currentPublisher == null ? null : currentPublisher.getSnapshot(buffer);
+	}
+
+	/**
+	 * Method that returns the tick of the last frame received
+	 * @return the tick
+	 */
+	public long getTick() {
+
+		return tick;
+	}
+
+	/**
+	 * Method that returns the speed of the race in the last frame received (like the Tester's slider)
+	 * @return the speed
+	 */
+	public int getSpeed() {
+
+		return speed;
+	}
+
+	/**
+	 * Method that returns the number of frames received
+	 * @return the number of frames
+	 */
+	public long getFrameCount() {
+
+		return frameCount;
+	}
+
+	/**
+	 * Method that tells whether the client is still connected to the server
+	 * @return false once the server closed the connection (or close() was called)
+	 */
+	public boolean isConnected() {
+
+		return connected;
+	}
+
+	/**
+	 * Method that disconnects from the server and waits for the client's thread to finish
+	 * @throws IOException if the socket can't be closed
+	 */
+	@Override
+	public void close() throws IOException {
+
+		connected = false;
+		channel.close();
+
+		try {
+
+			thread.join();
+
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Helper method run by the client's thread: reads and applies messages until the connection is closed
+	 */
+	private void receive() {
+
+		try {
+
+			while(connected) {
+
+				ByteBuffer message = readMessage();
+				byte type = message.get();
+
+				if(type == RaceBroadcastServer.RIDERS) {
+
+					readRiders(message);
+
+				} else if(type == RaceBroadcastServer.FRAME) {
+
+					readFrame(message);
+				}
+			}
+
+		} catch (IOException e) {
+
+			//The server closed the connection, or close() closed the socket
+		}
+
+		connected = false;
+	}
+
+	/**
+	 * Helper method that reads the next message from the socket
+	 * @return a buffer positioned at the type of the message, limited to its end
+	 * @throws IOException if the connection is closed
+	 */
+	private ByteBuffer readMessage() throws IOException {
+
+		//The previous message was consumed: move whatever was read after it to the beginning of the buffer
+		buffer.compact();
+		fill(4);
+
+		int length = buffer.getInt(0);
+
+		if(buffer.capacity() < 4 + length) {
+
+			ByteBuffer largerBuffer = ByteBuffer.allocate(4 + length);
+			buffer.flip();
+			largerBuffer.put(buffer);
+			buffer = largerBuffer;
+		}
+
+		fill(4 + length);
+
+		//The message, from its type to its end, as a view of the buffer
+		ByteBuffer message = buffer.duplicate();
+		message.position(4);
+		message.limit(4 + length);
+
+		//Leave the buffer ready to be compacted past the message
+		buffer.flip();
+		buffer.position(4 + length);
+
+		return message;
+	}
+
+	/**
+	 * Helper method that reads from the socket until the buffer has at least the specified number of bytes
+	 * (the buffer is left in write mode)
+	 * @param size the number of bytes needed
+	 * @throws IOException if the connection is closed
+	 */
+	private void fill(int size) throws IOException {
+
+		while(buffer.position() < size) {
+
+			if(channel.read(buffer) < 0) {
+
+				throw new EOFException("The server closed the connection");
+			}
+		}
+	}
+
+	/**
+	 * Helper method that creates the fleet and the publisher for the riders of a RIDERS message
+	 * @param message the message, positioned after its type
+	 */
+	private void readRiders(ByteBuffer message) {
+
+		long tickLengthNanos = message.getLong();
+		int riderCount = message.getInt();
+
+		UnicycleFleet newFleet = new UnicycleFleet(riderCount);
+
+		for(int i = 0; i < riderCount; i++) {
+
+			newFleet.addUnicycle(0, message.getInt(), message.getInt(), message.getInt());
+		}
+
+		unicycleFleet = newFleet;
+		raceFrameCodec = new RaceFrameCodec(riderCount);
+
+		//Nothing is published until the first keyframe places the riders
+		snapshotPublisher = null;
+		pendingPublisher = new SnapshotPublisher(newFleet, tickLengthNanos);
+	}
+
+	/**
+	 * Helper method that applies a FRAME message to the fleet and publishes it
+	 * @param message the message, positioned after its type
+	 */
+	private void readFrame(ByteBuffer message) {
+
+		if(raceFrameCodec == null) {
+
+			return;
+		}
+
+		long frameTick = message.getLong();
+		raceFrameCodec.decode(message);
+
+		unicycleFleet.setRiderXPositions(raceFrameCodec.getXPositions(), 0);
+
+		if(pendingPublisher != null) {
+
+			snapshotPublisher = pendingPublisher;
+			pendingPublisher = null;
+		}
+
+		snapshotPublisher.tickCompleted(frameTick, raceFrameCodec.getSimulatedTimeNanos());
+
+		tick = frameTick;
+		speed = raceFrameCodec.getSpeed();
+		frameCount++;
+	}
+}
@@ -0,0 +1,741 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Class that implements the TickListener Interface and broadcasts a race to any number of spectators
+ * (RaceBroadcastClients) over TCP, so that many viewers can watch the same race without each running its own
+ * simulation.
+ * After every tick the positions of the riders are encoded once (a delta frame, or a keyframe every
+ * keyframeInterval ticks, see RaceFrameCodec) and handed to the server's own thread, which writes them to every
+ * client with non-blocking sockets and a Selector. The simulation thread never waits for a client.
+ *
+ * Frames are only encoded while the server is started.
+ * Every client has a bounded queue. A client that is too slow to keep up (its queue grows past maxQueuedBytes)
+ * has its queue dropped and gets nothing more until the next keyframe, from which it starts again, so it skips
+ * part of the race instead of making the server buffer without limit. New clients start from the latest
+ * keyframe, followed by the frames since then
+ *
+ * Messages are an int with the size of the rest of the message, a byte with its type and then:
+ * - RIDERS: the tick length in nanoseconds (long), the number of riders (int) and the Y coordinate, seat
+ * length and color (ints) of every rider. Sent first, and again whenever the riders change
+ * - FRAME: the tick (long) and a frame
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class RaceBroadcastServer implements TickListener, AutoCloseable {
+
+	/**
+	 * Type of the messages with the riders of the race
+	 */
+	static final byte RIDERS = 1;
+
+	/**
+	 * Type of the messages with the positions of the riders in a tick
+	 */
+	static final byte FRAME = 2;
+
+	/**
+	 * Number of ticks between two keyframes used by the constructor without keyframeInterval
+	 */
+	private static final int DEFAULT_KEYFRAME_INTERVAL = 60;
+
+	/**
+	 * Number of bytes a client can fall behind before it is dropped to the next keyframe, used by the
+	 * constructor without maxQueuedBytes
+	 */
+	private static final int DEFAULT_MAX_QUEUED_BYTES = 1 << 22;
+
+	/**
+	 * Size of the int that precedes every message
+	 */
+	private static final int LENGTH_SIZE = 4;
+
+	/**
+	 * The MovingObject whose riders are broadcast
+	 */
+	private final RaceView movingObject;
+
+	/**
+	 * The amount of simulated time between two ticks, sent to the clients so that they can interpolate
+	 */
+	private final long tickLengthNanos;
+
+	/**
+	 * Number of ticks between two keyframes
+	 */
+	private final int keyframeInterval;
+
+	/**
+	 * Number of bytes a client can fall behind before it is dropped to the next keyframe
+	 */
+	private final int maxQueuedBytes;
+
+	/**
+	 * The selector of the server's thread
+	 */
+	private final Selector selector;
+
+	/**
+	 * The socket clients connect to
+	 */
+	private final ServerSocketChannel serverChannel;
+
+	/**
+	 * Messages encoded by the simulation thread and not yet taken by the server's thread
+	 */
+	private final ConcurrentLinkedQueue<Message> pendingMessages = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The messages a client needs to join the race: the riders, the latest keyframe and the frames since then.
+	 * Only used by the server's thread
+	 */
+	private final ArrayList<Message> catchUpMessages = new ArrayList<>();
+
+	/**
+	 * The connected clients. Only used by the server's thread
+	 */
+	private final ArrayList<Client> clients = new ArrayList<>();
+
+	/**
+	 * The server's own thread (null until start() is called)
+	 */
+	private Thread thread;
+
+	/**
+	 * Whether the server's thread should keep running
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Number of connected clients
+	 */
+	private volatile int clientCount;
+
+	/**
+	 * Number of times a slow client was dropped to the next keyframe
+	 */
+	private volatile long resyncCount;
+
+	/**
+	 * The speed last set with setSpeed
+	 */
+	private volatile int speed;
+
+	/**
+	 * The speed sent in the previous frame
+	 */
+	private int previousSpeed;
+
+	/**
+	 * X coordinates of the riders in the tick being broadcast
+	 */
+	private int[] xPositions = new int[0];
+
+	/**
+	 * X coordinates of the riders in the previous tick
+	 */
+	private int[] previousXPositions = new int[0];
+
+	/**
+	 * Number of riders of the race (-1 until the riders are first sent)
+	 */
+	private int riderCount = -1;
+
+	/**
+	 * The simulated time of the previous tick
+	 */
+	private long previousTimeNanos;
+
+	/**
+	 * Number of frames encoded since the last keyframe (keyframeInterval to force a keyframe)
+	 */
+	private int framesSinceKeyframe;
+
+	/**
+	 * Buffer the frames are encoded into before being copied into a message of the right size
+	 */
+	private ByteBuffer encodeBuffer = ByteBuffer.allocate(0);
+
+	/**
+	 * Constructor that opens the server socket, with a keyframe every 60 ticks and 4 MB of queue per client
+	 * @param movingObject the MovingObject whose riders are broadcast
+	 * @param address the address the server listens on (port 0 picks any free port)
+	 * @param tickLengthNanos the amount of simulated time between two ticks (see SimulationClock.getTickLengthNanos())
+	 * @throws IOException if the socket can't be opened
+	 */
+	public RaceBroadcastServer(RaceView movingObject, InetSocketAddress address, long tickLengthNanos) throws IOException {
+
+		this(movingObject, address, tickLengthNanos, DEFAULT_KEYFRAME_INTERVAL, DEFAULT_MAX_QUEUED_BYTES);
+	}
+
+	/**
+	 * Constructor that opens the server socket
+	 * @param movingObject the MovingObject whose riders are broadcast
+	 * @param address the address the server listens on (port 0 picks any free port)
+	 * @param tickLengthNanos the amount of simulated time between two ticks (see SimulationClock.getTickLengthNanos())
+	 * @param keyframeInterval the number of ticks between two keyframes (the most a client skips when it is too slow)
+	 * @param maxQueuedBytes the number of bytes a client can fall behind before it is dropped to the next keyframe
+	 * @throws IOException if the socket can't be opened
+	 */
+	public RaceBroadcastServer(RaceView movingObject, InetSocketAddress address, long tickLengthNanos, int keyframeInterval, int maxQueuedBytes) throws IOException {
+
+		if(keyframeInterval < 1) {
+
+			throw new IllegalArgumentException("The keyframe interval must be positive: " + keyframeInterval);
+		}
+
+		this.movingObject = movingObject;
+		this.tickLengthNanos = tickLengthNanos;
+		this.keyframeInterval = keyframeInterval;
+		this.maxQueuedBytes = maxQueuedBytes;
+
+		selector = Selector.open();
+
+		try {
+
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.bind(address);
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		} catch (IOException e) {
+
+			selector.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Method that starts accepting clients and sending them the race on the server's own thread
+	 */
+	public synchronized void start() {
+
+		if(thread != null) {
+
+			throw new IllegalStateException("The server was already started");
+		}
+
+		running = true;
+
+		thread = new Thread(this::serve, "broadcast-server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Method that returns the address the server listens on (with the port that was picked if it was 0)
+	 * @return the address of the server
+	 * @throws IOException if the address can't be read
+	 */
+	public InetSocketAddress getAddress() throws IOException {
+
+		return (InetSocketAddress) serverChannel.getLocalAddress();
+	}
+
+	/**
+	 * Method that returns the number of connected clients
+	 * @return the number of clients
+	 */
+	public int getClientCount() {
+
+		return clientCount;
+	}
+
+	/**
+	 * Method that returns how many times a client was too slow and was dropped to the next keyframe
+	 * @return the number of resyncs
+	 */
+	public long getResyncCount() {
+
+		return resyncCount;
+	}
+
+	/**
+	 * Method that sets the speed of the race sent with the next frames (like the Tester's slider), so that
+	 * spectators can show it. Can be called from any thread
+	 * @param speed the new speed
+	 */
+	public void setSpeed(int speed) {
+
+		this.speed = speed;
+	}
+
+	@Override
+	public void tickCompleted(long tick, long simulatedTimeNanos) {
+
+		if(!running) {
+
+			return;
+		}
+
+		boolean ridersChanged;
+
+		try {
+
+			ridersChanged = movingObject.getRiderXPositions(xPositions, 0) != riderCount;
+
+		} catch (IndexOutOfBoundsException e) {
+
+			ridersChanged = true;
+		}
+
+		//New riders (or the first tick): send them, and a keyframe since the old positions mean nothing
+		if(ridersChanged) {
+
+			pendingMessages.add(encodeRiders());
+			movingObject.getRiderXPositions(xPositions, 0);
+			framesSinceKeyframe = keyframeInterval;
+		}
+
+		boolean keyframe = framesSinceKeyframe >= keyframeInterval;
+		int currentSpeed = speed;
+		long maxSize = LENGTH_SIZE + 1 + 8 + RaceFrameCodec.maxFrameSize(riderCount);
+
+		if(encodeBuffer.capacity() < maxSize) {
+
+			encodeBuffer = ByteBuffer.allocate((int) Math.min(maxSize, Integer.MAX_VALUE));
+		}
+
+		encodeBuffer.clear();
+		encodeBuffer.position(LENGTH_SIZE);
+		encodeBuffer.put(FRAME);
+		encodeBuffer.putLong(tick);
+
+		if(keyframe) {
+
+			RaceFrameCodec.putKeyframe(encodeBuffer, simulatedTimeNanos, currentSpeed, xPositions, riderCount);
+			framesSinceKeyframe = 1;
+
+		} else {
+
+			RaceFrameCodec.putDeltaFrame(encodeBuffer, simulatedTimeNanos - previousTimeNanos, currentSpeed - previousSpeed, xPositions, previousXPositions, riderCount);
+			framesSinceKeyframe++;
+		}
+
+		encodeBuffer.putInt(0, encodeBuffer.position() - LENGTH_SIZE);
+		encodeBuffer.flip();
+
+		byte[] bytes = new byte[encodeBuffer.remaining()];
+		encodeBuffer.get(bytes);
+
+		pendingMessages.add(new Message(bytes, keyframe, false));
+		selector.wakeup();
+
+		previousTimeNanos = simulatedTimeNanos;
+		previousSpeed = currentSpeed;
+
+		int[] lastXPositions = previousXPositions;
+		previousXPositions = xPositions;
+		xPositions = lastXPositions;
+	}
+
+	/**
+	 * Method that stops the server's thread and disconnects every client
+	 * @throws IOException if the sockets can't be closed
+	 */
+	@Override
+	public void close() throws IOException {
+
+		Thread serverThread;
+
+		synchronized(this) {
+
+			running = false;
+			serverThread = thread;
+		}
+
+		selector.wakeup();
+
+		if(serverThread != null) {
+
+			try {
+
+				serverThread.join();
+
+			} catch (InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		for(Client client : clients) {
+
+			client.channel.close();
+		}
+
+		clients.clear();
+		clientCount = 0;
+		serverChannel.close();
+		selector.close();
+	}
+
+	/**
+	 * Helper method that encodes the riders of the race (and resizes the position arrays for them)
+	 * @return the RIDERS message
+	 */
+	private Message encodeRiders() {
+
+		ArrayList<int[]> riders = new ArrayList<>();
+		movingObject.visitRiders((x, y, seatLength, rgb) -> riders.add(new int[] {y, seatLength, rgb}));
+
+		riderCount = riders.size();
+		xPositions = new int[riderCount];
+		previousXPositions = new int[riderCount];
+
+		ByteBuffer buffer = ByteBuffer.allocate(LENGTH_SIZE + 1 + 8 + 4 + 12 * riderCount);
+		buffer.putInt(buffer.capacity() - LENGTH_SIZE);
+		buffer.put(RIDERS);
+		buffer.putLong(tickLengthNanos);
+		buffer.putInt(riderCount);
+
+		for(int[] rider : riders) {
+
+			buffer.putInt(rider[0]);
+			buffer.putInt(rider[1]);
+			buffer.putInt(rider[2]);
+		}
+
+		return new Message(buffer.array(), false, true);
+	}
+
+	/**
+	 * Helper method run by the server's thread: accepts clients and sends them the messages of the simulation
+	 */
+	private void serve() {
+
+		try {
+
+			while(running) {
+
+				selector.select();
+
+				for(Message message = pendingMessages.poll(); message != null; message = pendingMessages.poll()) {
+
+					broadcast(message);
+				}
+
+				Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+
+				while(selectedKeys.hasNext()) {
+
+					SelectionKey key = selectedKeys.next();
+					selectedKeys.remove();
+
+					if(!key.isValid()) {
+
+						continue;
+					}
+
+					if(key.isAcceptable()) {
+
+						accept();
+
+					} else {
+
+						Client client = (Client) key.attachment();
+
+						if(key.isReadable()) {
+
+							read(client);
+						}
+
+						if(key.isValid() && key.isWritable()) {
+
+							write(client);
+						}
+					}
+				}
+			}
+
+		} catch (IOException e) {
+
+			//The selector or the server socket failed: nothing more can be sent
+			running = false;
+		}
+	}
+
+	/**
+	 * Helper method that keeps a message for the clients that join later and queues it for every client
+	 * @param message the message to be sent
+	 */
+	private void broadcast(Message message) {
+
+		if(message.riders) {
+
+			catchUpMessages.clear();
+
+		} else if(message.keyframe) {
+
+			//Only the riders are still needed to join from the new keyframe
+			catchUpMessages.subList(1, catchUpMessages.size()).clear();
+		}
+
+		catchUpMessages.add(message);
+
+		for(int i = clients.size() - 1; i >= 0; i--) {
+
+			Client client = clients.get(i);
+
+			if(client.waitingForKeyframe) {
+
+				//The riders are part of the catch-up messages, so only a keyframe matters
+				if(message.keyframe) {
+
+					resync(client);
+				}
+
+			} else if(client.queuedBytes + message.bytes.length > maxQueuedBytes) {
+
+				//Too slow: drop what is queued and send nothing more until the next keyframe
+				client.dropQueue();
+				client.waitingForKeyframe = true;
+				resyncCount++;
+
+			} else {
+
+				client.enqueue(message);
+			}
+
+			write(client);
+		}
+	}
+
+	/**
+	 * Helper method that accepts a new client and queues the messages it needs to join the race
+	 * @throws IOException if the selector fails
+	 */
+	private void accept() throws IOException {
+
+		SocketChannel channel = serverChannel.accept();
+
+		if(channel == null) {
+
+			return;
+		}
+
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+		Client client = new Client(channel);
+		client.key = channel.register(selector, SelectionKey.OP_READ, client);
+
+		clients.add(client);
+		clientCount = clients.size();
+
+		resync(client);
+		write(client);
+	}
+
+	/**
+	 * Helper method that drops every queued message of a client (except the one being written, so that the
+	 * stream stays whole) and queues the riders, the latest keyframe and the frames since then
+	 * @param client the client to be resynchronized
+	 */
+	private void resync(Client client) {
+
+		client.dropQueue();
+		client.waitingForKeyframe = false;
+
+		for(Message message : catchUpMessages) {
+
+			client.enqueue(message);
+		}
+	}
+
+	/**
+	 * Helper method that reads (and ignores) what a client sends, to find out when it disconnects
+	 * @param client the client to be read from
+	 */
+	private void read(Client client) {
+
+		ByteBuffer ignored = ByteBuffer.allocate(256);
+
+		try {
+
+			if(client.channel.read(ignored) < 0) {
+
+				disconnect(client);
+			}
+
+		} catch (IOException e) {
+
+			disconnect(client);
+		}
+	}
+
+	/**
+	 * Helper method that writes as much of the queue of a client as its socket takes without blocking,
+	 * and only asks the selector to tell when it is writable while something is left
+	 * @param client the client to be written to
+	 */
+	private void write(Client client) {
+
+		if(!client.key.isValid()) {
+
+			return;
+		}
+
+		try {
+
+			while(!client.queue.isEmpty()) {
+
+				ByteBuffer head = client.queue.peek();
+				client.channel.write(head);
+
+				if(head.hasRemaining()) {
+
+					break;
+				}
+
+				client.queue.poll();
+				client.queuedBytes -= head.capacity();
+			}
+
+		} catch (IOException e) {
+
+			disconnect(client);
+			return;
+		}
+
+		client.key.interestOps(client.queue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+	}
+
+	/**
+	 * Helper method that closes the connection of a client
+	 * @param client the client to be disconnected
+	 */
+	private void disconnect(Client client) {
+
+		client.key.cancel();
+
+		try {
+
+			client.channel.close();
+
+		} catch (IOException e) {
+
+			//Already closed by the other side
+		}
+
+		clients.remove(client);
+		clientCount = clients.size();
+	}
+
+	/**
+	 * Class that holds an encoded message, shared (read-only) by the queues of every client
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	private static final class Message {
+
+		/**
+		 * The bytes of the message, including the int with its size
+		 */
+		private final byte[] bytes;
+
+		/**
+		 * Whether the message is a keyframe
+		 */
+		private final boolean keyframe;
+
+		/**
+		 * Whether the message holds the riders of the race
+		 */
+		private final boolean riders;
+
+		/**
+		 * Constructor that simply initializes the class's fields
+		 * @param bytes the bytes of the message
+		 * @param keyframe whether the message is a keyframe
+		 * @param riders whether the message holds the riders of the race
+		 */
+		private Message(byte[] bytes, boolean keyframe, boolean riders) {
+
+			this.bytes = bytes;
+			this.keyframe = keyframe;
+			this.riders = riders;
+		}
+	}
+
+	/**
+	 * Class that holds a connected client and the messages queued for it
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	private static final class Client {
+
+		/**
+		 * The socket of the client
+		 */
+		private final SocketChannel channel;
+
+		/**
+		 * The registration of the socket with the selector
+		 */
+		private SelectionKey key;
+
+		/**
+		 * The messages not yet completely written, the first one possibly partially written
+		 */
+		private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+
+		/**
+		 * Number of bytes of the messages in the queue
+		 */
+		private long queuedBytes;
+
+		/**
+		 * Whether the client was too slow and nothing is sent to it until the next keyframe
+		 */
+		private boolean waitingForKeyframe;
+
+		/**
+		 * Constructor that creates a client with an empty queue
+		 * @param channel the socket of the client
+		 */
+		private Client(SocketChannel channel) {
+
+			this.channel = channel;
+		}
+
+		/**
+		 * Method that adds a message to the queue
+		 * @param message the message to be sent
+		 */
+		private void enqueue(Message message) {
+
+			queue.add(ByteBuffer.wrap(message.bytes));
+			queuedBytes += message.bytes.length;
+		}
+
+		/**
+		 * Method that empties the queue, except for a message that was partially written
+		 */
+		private void dropQueue() {
+
+			ByteBuffer head = queue.peek();
+
+			queue.clear();
+			queuedBytes = 0;
+
+			if(head != null && head.position() > 0) {
+
+				queue.add(head);
+				queuedBytes = head.capacity();
+			}
+		}
+	}
+}
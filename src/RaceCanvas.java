@@ -0,0 +1,488 @@
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class that displays a race with active rendering instead of through MyIcon and the Swing repaint manager:
+ * a loop on its own thread draws every frame straight into the back buffer of a BufferStrategy and flips it
+ * on the screen, at the frame rate it is started with. Frames are never coalesced or delayed by other Swing
+ * painting, and every frame shows the race as it is right after the tick that precedes it.
+ *
+ * The canvas either drives the race itself (its Driver is driven once per frame, on the rendering thread, so
+ * the race must only be controlled through a ControlledDriver) or displays the snapshots of a race moved on
+ * another thread. It keeps the statistics of the pacing of its frames: how far apart they were shown, how long
+ * they took to render and how many were missed
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class RaceCanvas extends Canvas {
+
+	/**
+	 * Serial version of the class (a Canvas is Serializable)
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Number of buffers of the BufferStrategy (one on the screen and two to draw the next frames in)
+	 */
+	private static final int BUFFERS = 3;
+
+	/**
+	 * X coordinate of the baseline of the pacing statistics
+	 */
+	private static final int STATS_X = 8;
+
+	/**
+	 * Y coordinate of the baseline of the pacing statistics
+	 */
+	private static final int STATS_Y = 18;
+
+	/**
+	 * Milliseconds in a nanosecond, to show the statistics in milliseconds
+	 */
+	private static final double NANOS_TO_MILLIS = 1e-6;
+
+	/**
+	 * The MovingObject drawn every frame (null if snapshots are displayed)
+	 */
+	private final RaceView movingObject;
+
+	/**
+	 * The Driver that moves the MovingObject before every frame (null if snapshots are displayed)
+	 */
+	private final Driver driver;
+
+	/**
+	 * The source of the snapshots displayed every frame (null if the MovingObject is drawn)
+	 */
+	private final SnapshotSource snapshotSource;
+
+	/**
+	 * Rectangle the bounds of the clip are copied to when drawing a snapshot, so that drawing creates no object
+	 */
+	private final Rectangle clipBounds = new Rectangle();
+
+	/**
+	 * Array the snapshot source writes the interpolated positions of the riders to, reused by every frame
+	 */
+	private int[] interpolationBuffer = new int[0];
+
+	/**
+	 * Time between two frames shown one after the other
+	 */
+	private final LatencyHistogram frameIntervals = new LatencyHistogram();
+
+	/**
+	 * Time a frame took from its start (including the tick) until it was shown
+	 */
+	private final LatencyHistogram renderTimes = new LatencyHistogram();
+
+	/**
+	 * The thread of the rendering loop (null when it is not running)
+	 */
+	private volatile Thread thread;
+
+	/**
+	 * Whether the rendering loop should keep running
+	 */
+	private volatile boolean running;
+
+	/**
+	 * The level of detail the riders are drawn with, adapted to how long the frames of this canvas take (null if
+	 * they are always drawn in full detail)
+	 */
+	private volatile LevelOfDetail levelOfDetail;
+
+	/**
+	 * Whether the pacing statistics are drawn on top of the race
+	 */
+	private volatile boolean statsVisible;
+
+	/**
+	 * Number of frames shown so far
+	 */
+	private volatile long frameCount;
+
+	/**
+	 * Number of frames that were not shown because the previous ones took too long
+	 */
+	private volatile long missedFrames;
+
+	/**
+	 * Number of frames shown per second, measured over the last second
+	 */
+	private volatile double framesPerSecond;
+
+	/**
+	 * The exception that stopped the rendering loop (null if none did)
+	 */
+	private volatile Throwable failure;
+
+	/**
+	 * Constructor for a canvas that drives the race itself: before every frame, its Driver is driven once on
+	 * the rendering thread, and the MovingObject is drawn right after
+	 * @param width the width of the canvas
+	 * @param height the height of the canvas
+	 * @param movingObject the MovingObject to be displayed
+	 * @param driver the Driver that moves the MovingObject (a ControlledDriver to change the race from other
+	 * threads)
+	 */
+	public RaceCanvas(int width, int height, RaceView movingObject, Driver driver) {
+
+		if(movingObject == null || driver == null) {
+
+			throw new IllegalArgumentException("The MovingObject and the driver must not be null");
+		}
+
+		this.movingObject = movingObject;
+		this.driver = driver;
+		this.snapshotSource = null;
+
+		setFixedSize(width, height);
+	}
+
+	/**
+	 * Constructor for a canvas that displays the snapshots of a race moved on another thread
+	 * @param width the width of the canvas
+	 * @param height the height of the canvas
+	 * @param snapshotSource the source of the snapshots to be displayed
+	 */
+	public RaceCanvas(int width, int height, SnapshotSource snapshotSource) {
+
+		if(snapshotSource == null) {
+
+			throw new IllegalArgumentException("The snapshot source must not be null");
+		}
+
+		this.movingObject = null;
+		this.driver = null;
+		this.snapshotSource = snapshotSource;
+
+		setFixedSize(width, height);
+	}
+
+	/**
+	 * Helper method that makes the canvas keep its size in any layout and leaves all of its painting to the
+	 * rendering loop
+	 * @param width the width of the canvas
+	 * @param height the height of the canvas
+	 */
+	private void setFixedSize(int width, int height) {
+
+		if(width < 1 || height < 1) {
+
+			throw new IllegalArgumentException("The size of the canvas must be positive: " + width + "x" + height);
+		}
+
+		Dimension size = new Dimension(width, height);
+		setPreferredSize(size);
+		setMinimumSize(size);
+		setMaximumSize(size);
+
+		//Repaints requested by the system would only draw over a frame with an empty one
+		setIgnoreRepaint(true);
+	}
+
+	/**
+	 * Method that starts the rendering loop. The canvas must already be displayable (added to a frame that was
+	 * packed or made visible)
+	 * @param framesPerSecond the number of frames per second, or 0 to render frames back to back
+	 */
+	public synchronized void start(int framesPerSecond) {
+
+		if(framesPerSecond < 0) {
+
+			throw new IllegalArgumentException("The number of frames per second must not be negative: " + framesPerSecond);
+		}
+
+		if(!isDisplayable()) {
+
+			throw new IllegalStateException("The canvas must be displayable before it is started");
+		}
+
+		if(thread != null) {
+
+			throw new IllegalStateException("The canvas was already started");
+		}
+
+		createBufferStrategy(BUFFERS);
+
+		long frameLengthNanos = framesPerSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+
+		running = true;
+		thread = new Thread(() -> renderLoop(frameLengthNanos), "race-canvas");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Method that stops the rendering loop and waits for its last frame to be shown
+	 * @throws InterruptedException if the calling thread is interrupted while waiting
+	 */
+	public synchronized void stop() throws InterruptedException {
+
+		Thread renderThread = thread;
+
+		if(renderThread == null) {
+
+			return;
+		}
+
+		running = false;
+		LockSupport.unpark(renderThread);
+		renderThread.join();
+
+		thread = null;
+	}
+
+	/**
+	 * Method that makes the canvas draw the riders with less detail where they can't be told apart on the screen
+	 * (or always in full detail, with null). The level of detail adapts to the frames of this canvas only, so it
+	 * must not be shared with another view
+	 * @param levelOfDetail the level of detail the riders are drawn with, or null
+	 */
+	public void setLevelOfDetail(LevelOfDetail levelOfDetail) {
+
+		this.levelOfDetail = levelOfDetail;
+	}
+
+	/**
+	 * Method that shows or hides the pacing statistics on top of the race
+	 * @param statsVisible whether the statistics are drawn
+	 */
+	public void setStatsVisible(boolean statsVisible) {
+
+		this.statsVisible = statsVisible;
+	}
+
+	/**
+	 * Method that returns the time between frames shown one after the other. With steady pacing they are all
+	 * close to the length of a frame
+	 * @return the histogram of the frame intervals
+	 */
+	public LatencyHistogram getFrameIntervals() {
+
+		return frameIntervals;
+	}
+
+	/**
+	 * Method that returns how long frames took from their start (including the tick when the canvas drives the
+	 * race) until they were shown
+	 * @return the histogram of the render times
+	 */
+	public LatencyHistogram getRenderTimes() {
+
+		return renderTimes;
+	}
+
+	/**
+	 * Method that returns the number of frames shown so far
+	 * @return the number of frames
+	 */
+	public long getFrameCount() {
+
+		return frameCount;
+	}
+
+	/**
+	 * Method that returns the number of frames that were not shown because the previous ones took too long
+	 * @return the number of missed frames (always 0 when frames are rendered back to back)
+	 */
+	public long getMissedFrames() {
+
+		return missedFrames;
+	}
+
+	/**
+	 * Method that returns the number of frames shown per second
+	 * @return the frame rate measured over the last second
+	 */
+	public double getFramesPerSecond() {
+
+		return framesPerSecond;
+	}
+
+	/**
+	 * Method that returns the exception that stopped the rendering loop
+	 * @return the exception, or null if the loop was not stopped by one
+	 */
+	public Throwable getFailure() {
+
+		return failure;
+	}
+
+	/**
+	 * Helper method that runs the rendering loop: every frame when it is due, until the canvas is stopped
+	 * @param frameLengthNanos the amount of time between two frames (0 to render them back to back)
+	 */
+	private void renderLoop(long frameLengthNanos) {
+
+		BufferStrategy bufferStrategy = getBufferStrategy();
+
+		long nextFrameNanos = System.nanoTime();
+		long lastShownNanos = 0;
+		long windowStartNanos = nextFrameNanos;
+		long windowFrames = 0;
+
+		try {
+
+			while(running) {
+
+				long now = System.nanoTime();
+
+				while(now < nextFrameNanos) {
+
+					LockSupport.parkNanos(this, nextFrameNanos - now);
+
+					if(!running) {
+
+						return;
+					}
+
+					now = System.nanoTime();
+				}
+
+				long frameStart = now;
+
+				if(driver != null) {
+
+					driver.drive();
+				}
+
+				renderFrame(bufferStrategy);
+
+				long shownNanos = System.nanoTime();
+
+				if(lastShownNanos != 0) {
+
+					frameIntervals.record(shownNanos - lastShownNanos);
+				}
+
+				renderTimes.record(shownNanos - frameStart);
+
+				if(RaceInstrumentation.ENABLED) {
+
+					RaceInstrumentation.getMetrics().recordPaint(frameStart, shownNanos - frameStart, -1);
+				}
+
+				lastShownNanos = shownNanos;
+				frameCount++;
+				windowFrames++;
+
+				if(shownNanos - windowStartNanos >= TimeUnit.SECONDS.toNanos(1)) {
+
+					framesPerSecond = windowFrames * 1e9 / (shownNanos - windowStartNanos);
+					windowStartNanos = shownNanos;
+					windowFrames = 0;
+				}
+
+				nextFrameNanos += frameLengthNanos;
+
+				//Late frames are dropped instead of rendered in a burst, so frames stay one frame length apart
+				if(frameLengthNanos > 0 && shownNanos > nextFrameNanos) {
+
+					long late = (shownNanos - nextFrameNanos) / frameLengthNanos + 1;
+
+					missedFrames += late;
+					nextFrameNanos += late * frameLengthNanos;
+				}
+			}
+
+		} catch (RuntimeException | Error e) {
+
+			failure = e;
+			running = false;
+		}
+	}
+
+	/**
+	 * Helper method that draws a frame into the back buffer and shows it, drawing it again if the contents of
+	 * the buffers were lost in the meantime (e.g. the display mode changed)
+	 * @param bufferStrategy the BufferStrategy of the canvas
+	 */
+	private void renderFrame(BufferStrategy bufferStrategy) {
+
+		do {
+
+			do {
+
+				Graphics2D graphics2d = (Graphics2D) bufferStrategy.getDrawGraphics();
+
+				try {
+
+					drawFrame(graphics2d);
+
+				} finally {
+
+					graphics2d.dispose();
+				}
+
+			} while(bufferStrategy.contentsRestored());
+
+			bufferStrategy.show();
+
+		} while(bufferStrategy.contentsLost());
+
+		//Flush the drawing to the screen right away on systems that buffer it (e.g. X11)
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+	/**
+	 * Helper method that draws a frame: the background, the race and, if visible, the pacing statistics
+	 * @param graphics2d the Graphics2D of the back buffer
+	 */
+	private void drawFrame(Graphics2D graphics2d) {
+
+		//Nothing of the previous frames is kept, so every frame is drawn over the whole canvas
+		graphics2d.setColor(getBackground());
+		graphics2d.fillRect(0, 0, getWidth(), getHeight());
+
+		LevelOfDetail levelOfDetail = this.levelOfDetail;
+		long levelOfDetailStart = System.nanoTime();
+
+		if(levelOfDetail != null) {
+
+			levelOfDetail.setScale(1);
+		}
+
+		if(snapshotSource != null) {
+
+			RaceSnapshot snapshot = snapshotSource.getSnapshot(interpolationBuffer);
+
+			if(snapshot != null) {
+
+				snapshot.draw(graphics2d, ExtentIndex.getClipBounds(graphics2d, clipBounds), levelOfDetail);
+
+				//Riders were added: make room for all of them for the next frame
+				if(snapshot.getRiderCount() > interpolationBuffer.length) {
+
+					interpolationBuffer = new int[snapshot.getRiderCount()];
+				}
+			}
+
+		} else {
+
+			movingObject.draw(graphics2d, levelOfDetail);
+		}
+
+		if(levelOfDetail != null) {
+
+			levelOfDetail.frameCompleted(System.nanoTime() - levelOfDetailStart);
+		}
+
+		if(statsVisible) {
+
+			graphics2d.setColor(Color.BLACK);
+			graphics2d.drawString(String.format("%.1f frames/s  interval p50 %.2f ms  p99 %.2f ms  render p99 %.2f ms  missed %d", framesPerSecond,
+					frameIntervals.getPercentile(0.5) * NANOS_TO_MILLIS, frameIntervals.getPercentile(0.99) * NANOS_TO_MILLIS,
+					renderTimes.getPercentile(0.99) * NANOS_TO_MILLIS, missedFrames), STATS_X, STATS_Y);
+		}
+	}
+}
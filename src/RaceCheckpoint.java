@@ -0,0 +1,533 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Class that saves a race in progress (the whole tree of MovingObjectGroups, UnicycleFleets and Unicycles, the
+ * sizes, colors and current positions of its riders, and the state of its Driver) to a compact binary file, and
+ * restores it later exactly as it was, without Java serialization.
+ * The file is written and read through a memory-mapped buffer, and the riders of a fleet are stored column by
+ * column, so they are written and read with bulk copies: restoring takes time proportional to the size of the
+ * file (a million riders in a few dozen milliseconds once the file is in the page cache).
+ * A Driver wrapped in a ControlledDriver (and an InstrumentedDriver) is restored wrapped the same way, paused if it
+ * was, but with an empty ControlQueue: commands not yet applied when the race was saved are lost.
+ *
+ * Format of the file (big-endian):
+ * - Header: magic, version, driver (STOP_DRIVER or LEFT_AND_RIGHT_DRIVER), length of the GUI, current speed and
+ * number of elements (ints), number of riders (long), how the driver was wrapped (CONTROLLED, PAUSED,
+ * SPEED_CONTROLLED and INSTRUMENTED flags) and the speed of its ControlledDriver (ints)
+ * - Elements, parents before their children (the root group first):
+ *   - GROUP, number of elements (ints), speed multiplier (double), followed by its elements
+ *   - FLEET, number of riders (ints), then the X coordinates, Y coordinates, seat lengths and colors of all of
+ *   them (ints)
+ *   - UNICYCLE, X coordinate, Y coordinate, seat length and color (ints)
+ *
+ * @author Luiz do Valle
+ *
+ */
+public final class RaceCheckpoint {
+
+	/**
+	 * The first int of every checkpoint ("URCP")
+	 */
+	static final int MAGIC = 0x55524350;
+
+	/**
+	 * The version of the format
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * Size of the header in bytes
+	 */
+	static final int HEADER_SIZE = 40;
+
+	/**
+	 * Driver of a race driven by a StopDriver
+	 */
+	static final int STOP_DRIVER = 1;
+
+	/**
+	 * Driver of a race driven by a LeftAndRightDriver
+	 */
+	static final int LEFT_AND_RIGHT_DRIVER = 2;
+
+	/**
+	 * Flag of a Driver wrapped in a ControlledDriver
+	 */
+	static final int CONTROLLED = 1;
+
+	/**
+	 * Flag of a ControlledDriver that was paused
+	 */
+	static final int PAUSED = 2;
+
+	/**
+	 * Flag of a ControlledDriver that drives with a speed it was given
+	 */
+	static final int SPEED_CONTROLLED = 4;
+
+	/**
+	 * Flag of a Driver wrapped in an InstrumentedDriver
+	 */
+	static final int INSTRUMENTED = 8;
+
+	/**
+	 * Tag of a MovingObjectGroup
+	 */
+	static final int GROUP = 1;
+
+	/**
+	 * Tag of a UnicycleFleet
+	 */
+	static final int FLEET = 2;
+
+	/**
+	 * Tag of a Unicycle
+	 */
+	static final int UNICYCLE = 3;
+
+	/**
+	 * Private constructor, as checkpoints are written and restored with the static methods
+	 */
+	private RaceCheckpoint() {
+
+	}
+
+	/**
+	 * Method that saves a race to a file, replacing it if it exists. Must be called on the thread that moves
+	 * the race (or while it is not moving)
+	 * @param path the file the race is saved to
+	 * @param race the root group of the race
+	 * @param driver the Driver of the race: a StopDriver or a LeftAndRightDriver driving the root group, or an
+	 * InstrumentedDriver or ControlledDriver of one of them
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(Path path, MovingObjectGroup race, Driver driver) throws IOException {
+
+		int wrapping = 0;
+		int controlledSpeed = 0;
+
+		if(driver instanceof ControlledDriver) {
+
+			ControlledDriver controlledDriver = (ControlledDriver) driver;
+
+			wrapping |= CONTROLLED;
+			wrapping |= controlledDriver.isPaused() ? PAUSED : 0;
+			wrapping |= controlledDriver.isSpeedControlled() ? SPEED_CONTROLLED : 0;
+			controlledSpeed = controlledDriver.getSpeed();
+		}
+
+		while(driver instanceof InstrumentedDriver || driver instanceof ControlledDriver) {
+
+			wrapping |= driver instanceof InstrumentedDriver ? INSTRUMENTED : 0;
+			driver = driver instanceof InstrumentedDriver ? ((InstrumentedDriver) driver).getDriver() : ((ControlledDriver) driver).getDriver();
+		}
+
+		int driverType;
+		int guiLength;
+		int currentSpeed;
+
+		if(driver instanceof StopDriver) {
+
+			driverType = STOP_DRIVER;
+			guiLength = ((StopDriver) driver).getGuiLength();
+			currentSpeed = ((StopDriver) driver).getCurrentSpeed();
+
+		} else if(driver instanceof LeftAndRightDriver) {
+
+			driverType = LEFT_AND_RIGHT_DRIVER;
+			guiLength = ((LeftAndRightDriver) driver).getGuiLength();
+			currentSpeed = ((LeftAndRightDriver) driver).getCurrentSpeed();
+
+		} else {
+
+			throw new IllegalArgumentException("Only races driven by a StopDriver or a LeftAndRightDriver can be saved: " + driver);
+		}
+
+		//First pass: the elements in the order they are written, to know the size of the file
+		ArrayList<MovingObject> elements = new ArrayList<>();
+		ArrayDeque<MovingObject> pending = new ArrayDeque<>();
+		pending.push(race);
+
+		long size = HEADER_SIZE;
+		long riders = 0;
+
+		while(!pending.isEmpty()) {
+
+			MovingObject movingObject = pending.pop();
+			elements.add(movingObject);
+
+			if(movingObject instanceof MovingObjectGroup) {
+
+				MovingObjectGroup group = (MovingObjectGroup) movingObject;
+				size += 16;
+
+				//Pushed backwards so that they are popped (and written) in order
+				for(int i = group.size() - 1; i >= 0; i--) {
+
+					pending.push(group.getGroupElement(i));
+				}
+
+			} else if(movingObject instanceof UnicycleFleet) {
+
+				int fleetSize = ((UnicycleFleet) movingObject).size();
+				size += 8 + 16L * fleetSize;
+				riders += fleetSize;
+
+			} else if(movingObject instanceof Unicycle) {
+
+				size += 20;
+				riders++;
+
+			} else {
+
+				throw new IllegalArgumentException("Only MovingObjectGroups, UnicycleFleets and Unicycles can be saved: " + movingObject);
+			}
+		}
+
+		if(size > Integer.MAX_VALUE) {
+
+			throw new IllegalArgumentException("The race is too large to be saved in a single checkpoint: " + riders + " riders");
+		}
+
+		Files.deleteIfExists(path);
+
+		MappedByteBuffer buffer;
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(driverType);
+		buffer.putInt(guiLength);
+		buffer.putInt(currentSpeed);
+		buffer.putInt(elements.size());
+		buffer.putLong(riders);
+		buffer.putInt(wrapping);
+		buffer.putInt(controlledSpeed);
+
+		int[] column = new int[0];
+
+		for(MovingObject movingObject : elements) {
+
+			if(movingObject instanceof MovingObjectGroup) {
+
+				MovingObjectGroup group = (MovingObjectGroup) movingObject;
+
+				buffer.putInt(GROUP);
+				buffer.putInt(group.size());
+				buffer.putDouble(group.getSpeedMultiplier());
+
+			} else if(movingObject instanceof UnicycleFleet) {
+
+				UnicycleFleet unicycleFleet = (UnicycleFleet) movingObject;
+				int fleetSize = unicycleFleet.size();
+
+				buffer.putInt(FLEET);
+				buffer.putInt(fleetSize);
+
+				if(column.length < fleetSize) {
+
+					column = new int[fleetSize];
+				}
+
+				//One column at a time, each one copied into the file in bulk
+				IntBuffer columns = buffer.asIntBuffer();
+
+				unicycleFleet.getRiderXPositions(column, 0);
+				columns.put(column, 0, fleetSize);
+
+				for(int i = 0; i < fleetSize; i++) {
+
+					column[i] = unicycleFleet.getYPosition(i);
+				}
+
+				columns.put(column, 0, fleetSize);
+
+				for(int i = 0; i < fleetSize; i++) {
+
+					column[i] = unicycleFleet.getSeatLength(i);
+				}
+
+				columns.put(column, 0, fleetSize);
+
+				for(int i = 0; i < fleetSize; i++) {
+
+					column[i] = unicycleFleet.getColor(i);
+				}
+
+				columns.put(column, 0, fleetSize);
+
+				buffer.position(buffer.position() + 16 * fleetSize);
+
+			} else {
+
+				buffer.putInt(UNICYCLE);
+				movingObject.visitRiders((x, y, seatLength, rgb) -> {
+
+					buffer.putInt(x);
+					buffer.putInt(y);
+					buffer.putInt(seatLength);
+					buffer.putInt(rgb);
+				});
+			}
+		}
+
+		buffer.force();
+	}
+
+	/**
+	 * Method that restores a race saved with write
+	 * @param path the file the race was saved to
+	 * @return the race, with a new Driver of the same kind and with the same speed as the one saved, wrapped
+	 * like it was (and no load report)
+	 * @throws IOException if the file can't be read or is not a valid checkpoint
+	 */
+	public static LoadedRace read(Path path) throws IOException {
+
+		MappedByteBuffer buffer;
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			if(channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+
+				throw new IOException("Not a race checkpoint: " + path);
+			}
+
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if(buffer.getInt() != MAGIC) {
+
+			throw new IOException("Not a race checkpoint: " + path);
+		}
+
+		int version = buffer.getInt();
+
+		if(version != VERSION) {
+
+			throw new IOException("Unsupported checkpoint version: " + version);
+		}
+
+		int driverType = buffer.getInt();
+		int guiLength = buffer.getInt();
+		int currentSpeed = buffer.getInt();
+		int elementCount = buffer.getInt();
+		long riders = buffer.getLong();
+		int wrapping = buffer.getInt();
+		int controlledSpeed = buffer.getInt();
+
+		try {
+
+			MovingObjectGroup race = readElements(buffer, elementCount, riders);
+
+			if(buffer.hasRemaining()) {
+
+				throw new IOException("Corrupted checkpoint: " + buffer.remaining() + " bytes after the last element");
+			}
+
+			Driver driver;
+
+			if(driverType == STOP_DRIVER) {
+
+				driver = new StopDriver(race, currentSpeed, guiLength);
+
+			} else if(driverType == LEFT_AND_RIGHT_DRIVER) {
+
+				driver = new LeftAndRightDriver(race, currentSpeed, guiLength);
+
+			} else {
+
+				throw new IOException("Corrupted checkpoint: unknown driver " + driverType);
+			}
+
+			//Wrapped like the Tester does, the instrumentation inside the control
+			if((wrapping & INSTRUMENTED) != 0) {
+
+				driver = RaceInstrumentation.instrument(driver);
+			}
+
+			if((wrapping & CONTROLLED) != 0) {
+
+				driver = new ControlledDriver(driver, controlledSpeed, (wrapping & SPEED_CONTROLLED) != 0, (wrapping & PAUSED) != 0);
+			}
+
+			return new LoadedRace(race, driver, guiLength, currentSpeed);
+
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+
+			throw new IOException("Truncated checkpoint: " + path, e);
+		}
+	}
+
+	/**
+	 * Helper method that rebuilds the tree of the race from its elements. Every fleet is added to its group
+	 * once it is complete, so that its bounds are only propagated up the tree once
+	 * @param buffer the mapped file, positioned at the first element
+	 * @param elementCount the number of elements
+	 * @param riders the number of riders
+	 * @return the root group
+	 * @throws IOException if the elements don't form a valid tree
+	 */
+	private static MovingObjectGroup readElements(MappedByteBuffer buffer, int elementCount, long riders) throws IOException {
+
+		MovingObjectGroup root = null;
+
+		//The groups that still expect elements, the innermost last, with how many they still expect
+		ArrayList<MovingObjectGroup> openGroups = new ArrayList<>();
+		ArrayList<Integer> remaining = new ArrayList<>();
+
+		int[] x = new int[0];
+		int[] y = new int[0];
+		int[] seatLength = new int[0];
+		int[] color = new int[0];
+
+		long ridersRead = 0;
+
+		for(int element = 0; element < elementCount; element++) {
+
+			//Groups that got all their elements don't expect any more
+			while(!remaining.isEmpty() && remaining.get(remaining.size() - 1) == 0) {
+
+				openGroups.remove(openGroups.size() - 1);
+				remaining.remove(remaining.size() - 1);
+			}
+
+			MovingObjectGroup parent = null;
+
+			if(root != null) {
+
+				if(openGroups.isEmpty()) {
+
+					throw new IOException("Corrupted checkpoint: more elements than the root group has");
+				}
+
+				parent = openGroups.get(openGroups.size() - 1);
+				remaining.set(remaining.size() - 1, remaining.get(remaining.size() - 1) - 1);
+			}
+
+			int tag = buffer.getInt();
+
+			if(tag == GROUP) {
+
+				int size = buffer.getInt();
+				double speedMultiplier = buffer.getDouble();
+
+				if(size < 0 || !Double.isFinite(speedMultiplier)) {
+
+					throw new IOException("Corrupted checkpoint: group of " + size + " elements with speed multiplier " + speedMultiplier);
+				}
+
+				MovingObjectGroup group = new MovingObjectGroup(speedMultiplier);
+
+				if(parent == null) {
+
+					root = group;
+
+				} else {
+
+					parent.addMovingObject(group);
+				}
+
+				openGroups.add(group);
+				remaining.add(size);
+
+			} else if(tag == FLEET && parent != null) {
+
+				int size = buffer.getInt();
+
+				if(size < 0 || 16L * size > buffer.remaining()) {
+
+					throw new IOException("Corrupted checkpoint: fleet of " + size + " riders");
+				}
+
+				if(x.length < size) {
+
+					x = new int[size];
+					y = new int[size];
+					seatLength = new int[size];
+					color = new int[size];
+				}
+
+				IntBuffer columns = buffer.asIntBuffer();
+				columns.get(x, 0, size);
+				columns.get(y, 0, size);
+				columns.get(seatLength, 0, size);
+				columns.get(color, 0, size);
+				buffer.position(buffer.position() + 16 * size);
+
+				UnicycleFleet unicycleFleet = new UnicycleFleet(size);
+
+				for(int i = 0; i < size; i++) {
+
+					unicycleFleet.addUnicycle(x[i], y[i], seatLength[i], color[i]);
+				}
+
+				parent.addMovingObject(unicycleFleet);
+				ridersRead += size;
+
+			} else if(tag == UNICYCLE && parent != null) {
+
+				int unicycleX = buffer.getInt();
+				int unicycleY = buffer.getInt();
+				int unicycleSeatLength = buffer.getInt();
+				int rgb = buffer.getInt();
+
+				parent.addMovingObject(new Unicycle(unicycleX, unicycleY, unicycleSeatLength, new Color(rgb, true)));
+				ridersRead++;
+
+			} else {
+
+				throw new IOException("Corrupted checkpoint: unexpected element " + tag);
+			}
+		}
+
+		if(root == null || ridersRead != riders || remaining.stream().anyMatch(count -> count != 0)) {
+
+			throw new IOException("Corrupted checkpoint: the elements don't form the race that was saved");
+		}
+
+		return root;
+	}
+
+	/**
+	 * Method that loads a race file, saves it as a checkpoint and restores it, printing how long each step took
+	 * Usage: java RaceCheckpoint raceFile checkpoint
+	 * @param args the race file and the checkpoint to be written
+	 * @throws IOException if a file can't be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if(args.length != 2) {
+
+			System.err.println("Usage: java RaceCheckpoint raceFile checkpoint");
+			return;
+		}
+
+		LoadedRace loadedRace = RaceLoader.load(Path.of(args[0]));
+		System.out.println(args[0] + ": " + loadedRace.getReport());
+
+		long start = System.nanoTime();
+		write(Path.of(args[1]), loadedRace.getRace(), loadedRace.getDriver());
+		long writeNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		LoadedRace restoredRace = read(Path.of(args[1]));
+		long readNanos = System.nanoTime() - start;
+
+		System.out.printf("%s: %.1f MB saved in %.3f s, restored in %.3f s (%d..%d)%n", args[1], Files.size(Path.of(args[1])) / 1e6, writeNanos / 1e9, readNanos / 1e9,
+				restoredRace.getRace().getLeftEndXPosition(), restoredRace.getRace().getRightEndXPosition());
+	}
+}
@@ -0,0 +1,240 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Class that encodes and decodes the frames (positions of the riders in one tick) shared by recorded races
+ * (RaceRecorder and RaceRecording) and broadcast races (RaceBroadcastServer and RaceBroadcastClient).
+ * A keyframe is the byte KEYFRAME, the simulated time, the speed and the X coordinate of every rider minus the
+ * one of the previous rider. Any other frame is the byte DELTA_FRAME, the changes of the simulated time and of
+ * the speed since the previous frame, and pairs (amount moved, number of riders) of consecutive riders that
+ * moved by the same amount, so a peloton that moves together costs a couple of bytes no matter how many riders
+ * it has. All the numbers are zigzag varints (see putVarLong)
+ *
+ * An instance of the class is a decoder: it holds the positions, time and speed of the last frame decoded
+ *
+ * @author Luiz do Valle
+ *
+ */
+final class RaceFrameCodec {
+
+	/**
+	 * First byte of a frame with the absolute positions of the riders
+	 */
+	static final byte KEYFRAME = 1;
+
+	/**
+	 * First byte of a frame with how much the riders moved since the previous frame
+	 */
+	static final byte DELTA_FRAME = 2;
+
+	/**
+	 * Number of riders of the frames
+	 */
+	private final int riderCount;
+
+	/**
+	 * X coordinates of the riders in the last frame decoded
+	 */
+	private final int[] xPositions;
+
+	/**
+	 * The simulated time of the last frame decoded
+	 */
+	private long simulatedTimeNanos;
+
+	/**
+	 * The speed of the race in the last frame decoded
+	 */
+	private int speed;
+
+	/**
+	 * Constructor that creates a decoder for frames of the specified number of riders
+	 * @param riderCount the number of riders of the frames
+	 */
+	RaceFrameCodec(int riderCount) {
+
+		this.riderCount = riderCount;
+		this.xPositions = new int[riderCount];
+	}
+
+	/**
+	 * Method that decodes the frame at the position of the buffer (a delta frame is applied to the positions of
+	 * the last frame decoded) and moves the buffer past it
+	 * @param buffer the buffer the frame is read from
+	 */
+	void decode(ByteBuffer buffer) {
+
+		byte kind = buffer.get();
+
+		if(kind == KEYFRAME) {
+
+			simulatedTimeNanos = getVarLong(buffer);
+			speed = (int) getVarLong(buffer);
+
+			int x = 0;
+
+			for(int i = 0; i < riderCount; i++) {
+
+				x += (int) getVarLong(buffer);
+				xPositions[i] = x;
+			}
+
+		} else if(kind == DELTA_FRAME) {
+
+			simulatedTimeNanos += getVarLong(buffer);
+			speed += (int) getVarLong(buffer);
+
+			int i = 0;
+
+			while(i < riderCount) {
+
+				int deltaX = (int) getVarLong(buffer);
+				int runEnd = i + (int) getVarLong(buffer);
+
+				for(; i < runEnd; i++) {
+
+					xPositions[i] += deltaX;
+				}
+			}
+
+		} else {
+
+			throw new IllegalStateException("Corrupted frame: unknown kind " + kind + " at " + (buffer.position() - 1));
+		}
+	}
+
+	/**
+	 * Method that returns the X coordinates of the riders in the last frame decoded. The array is updated by
+	 * every call to decode
+	 * @return the X coordinates of the centers of the riders' wheels
+	 */
+	int[] getXPositions() {
+
+		return xPositions;
+	}
+
+	/**
+	 * Method that returns the simulated time of the last frame decoded
+	 * @return the simulated time in nanoseconds
+	 */
+	long getSimulatedTimeNanos() {
+
+		return simulatedTimeNanos;
+	}
+
+	/**
+	 * Method that returns the speed of the race in the last frame decoded
+	 * @return the speed
+	 */
+	int getSpeed() {
+
+		return speed;
+	}
+
+	/**
+	 * Method that returns the largest number of bytes a frame of the specified number of riders can take
+	 * @param riderCount the number of riders
+	 * @return the maximum size of a frame in bytes
+	 */
+	static long maxFrameSize(int riderCount) {
+
+		//Kind, time and speed, then at most one varint per rider (keyframes) or two per run of riders (delta frames)
+		return 1 + 10 + 5 + 10L * riderCount;
+	}
+
+	/**
+	 * Method that writes a keyframe
+	 * @param buffer the buffer the frame is written to
+	 * @param simulatedTimeNanos the simulated time of the tick
+	 * @param speed the speed of the race
+	 * @param xPositions the X coordinates of the riders
+	 * @param riderCount the number of riders
+	 */
+	static void putKeyframe(ByteBuffer buffer, long simulatedTimeNanos, int speed, int[] xPositions, int riderCount) {
+
+		buffer.put(KEYFRAME);
+		putVarLong(buffer, simulatedTimeNanos);
+		putVarLong(buffer, speed);
+
+		int previousX = 0;
+
+		for(int i = 0; i < riderCount; i++) {
+
+			putVarLong(buffer, xPositions[i] - (long) previousX);
+			previousX = xPositions[i];
+		}
+	}
+
+	/**
+	 * Method that writes a delta frame
+	 * @param buffer the buffer the frame is written to
+	 * @param timeDeltaNanos the simulated time since the previous frame
+	 * @param speedDelta the change of the speed since the previous frame
+	 * @param xPositions the X coordinates of the riders
+	 * @param previousXPositions the X coordinates of the riders in the previous frame
+	 * @param riderCount the number of riders
+	 */
+	static void putDeltaFrame(ByteBuffer buffer, long timeDeltaNanos, int speedDelta, int[] xPositions, int[] previousXPositions, int riderCount) {
+
+		buffer.put(DELTA_FRAME);
+		putVarLong(buffer, timeDeltaNanos);
+		putVarLong(buffer, speedDelta);
+
+		int i = 0;
+
+		while(i < riderCount) {
+
+			int deltaX = xPositions[i] - previousXPositions[i];
+			int runStart = i;
+
+			do {
+
+				i++;
+
+			} while(i < riderCount && xPositions[i] - previousXPositions[i] == deltaX);
+
+			putVarLong(buffer, deltaX);
+			putVarLong(buffer, i - runStart);
+		}
+	}
+
+	/**
+	 * Method that writes a long as a zigzag varint: the sign is moved to the lowest bit so that small negative
+	 * numbers are small too, and 7 bits are written per byte, the highest bit telling whether more bytes follow
+	 * @param buffer the buffer the long is written to
+	 * @param value the long to be written
+	 */
+	static void putVarLong(ByteBuffer buffer, long value) {
+
+		long zigzag = (value << 1) ^ (value >> 63);
+
+		while((zigzag & ~0x7FL) != 0) {
+
+			buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+
+		buffer.put((byte) zigzag);
+	}
+
+	/**
+	 * Method that reads a long written by putVarLong
+	 * @param buffer the buffer the long is read from
+	 * @return the long
+	 */
+	static long getVarLong(ByteBuffer buffer) {
+
+		long zigzag = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+
+			b = buffer.get();
+			zigzag |= (long) (b & 0x7F) << shift;
+			shift += 7;
+
+		} while(b < 0);
+
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+}
@@ -0,0 +1,311 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that runs many independent races at once in the same JVM, without any GUI: every race (a MovingObject
+ * tree and its Driver) ticks at its own rate, can change speed and be stopped on its own, and keeps the
+ * statistics of its ticks (see HostedRace).
+ *
+ * When the JVM has virtual threads (Java 21 on), every race runs its own tick loop on a virtual thread, so tens
+ * of thousands of races only need as many platform threads as there are cores. Before that, the races are
+ * ticked by a scheduler shared by all of them, with one platform thread per core. The start of the races is
+ * spread over a tick, so that races started together don't all tick at the same instant
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class RaceHost implements AutoCloseable {
+
+	/**
+	 * Number of races run by main when none is specified
+	 */
+	private static final int DEFAULT_RACES = 10000;
+
+	/**
+	 * Number of riders of every race run by main when none is specified
+	 */
+	private static final int DEFAULT_RIDERS = 10;
+
+	/**
+	 * Number of ticks per second of the races run by main when none is specified
+	 */
+	private static final int DEFAULT_TICKS_PER_SECOND = 10;
+
+	/**
+	 * Number of seconds main runs the races for when none is specified
+	 */
+	private static final int DEFAULT_SECONDS = 10;
+
+	/**
+	 * Length of the track of the races run by main (the length of the Tester's GUI)
+	 */
+	private static final int TRACK_LENGTH = 1500;
+
+	/**
+	 * Multiplier that spreads the ids of the races evenly over a tick (the golden ratio of 2^64)
+	 */
+	private static final long SPREAD = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Factory of virtual threads (null if the races are ticked by the scheduler)
+	 */
+	private final ThreadFactory threadFactory;
+
+	/**
+	 * Scheduler ticking the races (null if every race has its own virtual thread)
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * The races started by the host, by id
+	 */
+	private final ConcurrentHashMap<Long, HostedRace> races = new ConcurrentHashMap<>();
+
+	/**
+	 * The id of the next race
+	 */
+	private final AtomicLong nextId = new AtomicLong();
+
+	/**
+	 * Latency of the ticks of every race
+	 */
+	private final LatencyHistogram tickLatency = new LatencyHistogram();
+
+	/**
+	 * Lateness of the ticks of every race compared to when they were due
+	 */
+	private final LatencyHistogram tickJitter = new LatencyHistogram();
+
+	/**
+	 * Default constructor that runs every race on a virtual thread if the JVM has them, or else on a scheduler
+	 * with one thread per core
+	 */
+	public RaceHost() {
+
+		threadFactory = createVirtualThreadFactory();
+		scheduler = threadFactory == null ? createScheduler(Runtime.getRuntime().availableProcessors()) : null;
+	}
+
+	/**
+	 * Constructor that runs every race on a scheduler with the specified number of platform threads, even if
+	 * the JVM has virtual threads
+	 * @param threads the number of threads of the scheduler
+	 */
+	public RaceHost(int threads) {
+
+		if(threads < 1) {
+
+			throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+		}
+
+		threadFactory = null;
+		scheduler = createScheduler(threads);
+	}
+
+	/**
+	 * Method that tells whether the JVM has virtual threads
+	 * @return true if races can run on virtual threads
+	 */
+	public static boolean isVirtualThreadSupported() {
+
+		return createVirtualThreadFactory() != null;
+	}
+
+	/**
+	 * Helper method that creates a factory of virtual threads. Thread.ofVirtual is looked up by reflection, so
+	 * that the host compiles and runs on Java versions without it
+	 * @return the factory, or null if the JVM doesn't have virtual threads
+	 */
+	private static ThreadFactory createVirtualThreadFactory() {
+
+		try {
+
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+
+		} catch (ReflectiveOperationException | RuntimeException e) {
+
+			//Before Java 21 (or Java 19 and 20 without --enable-preview) there are no virtual threads
+			return null;
+		}
+	}
+
+	/**
+	 * Helper method that creates the scheduler of the races
+	 * @param threads the number of threads of the scheduler
+	 * @return the scheduler, with daemon threads
+	 */
+	private static ScheduledExecutorService createScheduler(int threads) {
+
+		AtomicLong threadCount = new AtomicLong();
+		ThreadFactory daemonThreadFactory = (runnable) -> {
+
+			Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+			thread.setName("race-host-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		};
+
+		ScheduledThreadPoolExecutor scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(threads, daemonThreadFactory);
+
+		//Stopped races are forgotten right away instead of when they would have ticked next
+		scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+
+		return scheduledThreadPoolExecutor;
+	}
+
+	/**
+	 * Method that starts a race
+	 * @param driver the Driver that moves the race every tick (measured when the race is instrumented, see
+	 * RaceInstrumentation)
+	 * @param ticksPerSecond the number of ticks per second of the race
+	 * @return the race, to change its speed, stop it or read its statistics
+	 */
+	public HostedRace start(Driver driver, int ticksPerSecond) {
+
+		if(ticksPerSecond < 1) {
+
+			throw new IllegalArgumentException("The number of ticks per second must be positive: " + ticksPerSecond);
+		}
+
+		if(scheduler != null && scheduler.isShutdown()) {
+
+			throw new IllegalStateException("The host was closed");
+		}
+
+		long id = nextId.getAndIncrement();
+		long tickLengthNanos = TimeUnit.SECONDS.toNanos(1) / ticksPerSecond;
+		long phaseNanos = Long.remainderUnsigned(id * SPREAD, tickLengthNanos);
+
+		HostedRace hostedRace = new HostedRace(id, driver, tickLengthNanos, System.nanoTime() + tickLengthNanos + phaseNanos, this);
+		races.put(id, hostedRace);
+
+		if(threadFactory != null) {
+
+			hostedRace.start(threadFactory);
+
+		} else {
+
+			hostedRace.start(scheduler);
+		}
+
+		return hostedRace;
+	}
+
+	/**
+	 * Method that stops a race and forgets it. Races stopped by an exception of their Driver are forgotten too
+	 * @param hostedRace the race to be stopped
+	 */
+	public void stop(HostedRace hostedRace) {
+
+		hostedRace.stop();
+		races.remove(hostedRace.getId(), hostedRace);
+	}
+
+	/**
+	 * Method that returns the races of the host
+	 * @return the races started and not stopped (with stop(HostedRace) or by an exception of their Driver),
+	 * in no particular order
+	 */
+	public Collection<HostedRace> getRaces() {
+
+		return Collections.unmodifiableCollection(races.values());
+	}
+
+	/**
+	 * Method that tells whether the races run on virtual threads
+	 * @return true if every race has its own virtual thread, false if they are ticked by a scheduler
+	 */
+	public boolean isVirtual() {
+
+		return threadFactory != null;
+	}
+
+	/**
+	 * Method that returns the latency of the ticks of every race
+	 * @return the histogram of how long the ticks took
+	 */
+	public LatencyHistogram getTickLatency() {
+
+		return tickLatency;
+	}
+
+	/**
+	 * Method that returns the lateness of the ticks of every race compared to when they were due
+	 * @return the histogram of how late the ticks started
+	 */
+	public LatencyHistogram getTickJitter() {
+
+		return tickJitter;
+	}
+
+	/**
+	 * Method that stops every race
+	 */
+	@Override
+	public void close() {
+
+		for(HostedRace hostedRace : races.values()) {
+
+			stop(hostedRace);
+		}
+
+		if(scheduler != null) {
+
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * Method that runs many small races at once for a while and prints how many ticks per second they reached
+	 * and how late their ticks were
+	 * Usage: java RaceHost [races] [riders] [ticksPerSecond] [seconds] [threads]
+	 * @param args the number of races, the number of riders of every race, the number of ticks per second of
+	 * every race, the number of seconds to run them for and the number of threads of a scheduler to be used
+	 * instead of virtual threads (all optional)
+	 * @throws InterruptedException if the main thread is interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		int raceCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RACES;
+		int riders = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RIDERS;
+		int ticksPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_TICKS_PER_SECOND;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_SECONDS;
+
+		try(RaceHost raceHost = args.length > 4 ? new RaceHost(Integer.parseInt(args[4])) : new RaceHost()) {
+
+			for(int i = 0; i < raceCount; i++) {
+
+				//Every race has its own riders, kept moving back and forth along the track
+				MovingObjectGroup unicycleGroup = new MovingObjectGroup();
+				unicycleGroup.addMovingObject(new RiderGenerator(i, 50, 250).generateFleet(riders, 0));
+
+				raceHost.start(new LeftAndRightDriver(unicycleGroup, 5, TRACK_LENGTH), ticksPerSecond);
+			}
+
+			//The first ticks only measure the start of the races
+			Thread.sleep(1000);
+			raceHost.getTickLatency().reset();
+			raceHost.getTickJitter().reset();
+
+			Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+
+			LatencyHistogram tickLatency = raceHost.getTickLatency();
+			LatencyHistogram tickJitter = raceHost.getTickJitter();
+
+			System.out.printf("%d races on %s, %d riders each at %d ticks per second: %.0f ticks per second (%.0f expected)%n", raceCount, raceHost.isVirtual() ? "virtual threads" : "a scheduler",
+					riders, ticksPerSecond, tickLatency.getCount() / (double) seconds, (double) raceCount * ticksPerSecond);
+			System.out.printf("tick latency p50 %.3f ms, p99 %.3f ms, max %.3f ms%n", tickLatency.getPercentile(0.5) / 1e6, tickLatency.getPercentile(0.99) / 1e6, tickLatency.getMax() / 1e6);
+			System.out.printf("tick jitter p50 %.3f ms, p99 %.3f ms, max %.3f ms%n", tickJitter.getPercentile(0.5) / 1e6, tickJitter.getPercentile(0.99) / 1e6, tickJitter.getMax() / 1e6);
+		}
+	}
+}
@@ -0,0 +1,240 @@
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Class that instruments the hot paths of a race: Driver.drive, MovingObjectGroup.translate, the recomputation
+ * of the ends of a group and MyIcon.paintIcon. Each one emits a JFR event (recorded with
+ * java -XX:StartFlightRecording ...), and ticks and frames are measured in a RaceMetrics registered as a JMX
+ * MXBean, which MyIcon can also draw on top of the race.
+ *
+ * Everything is turned on by starting the JVM with -Dunicyclerace.instrument=true. ENABLED is a constant, so
+ * without the property the JIT compiler removes every instrumented branch and races run exactly as fast as
+ * without instrumentation
+ *
+ * @author Luiz do Valle
+ *
+ */
+public final class RaceInstrumentation {
+
+	/**
+	 * Whether the race is instrumented (read once, when the class is loaded)
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("unicyclerace.instrument");
+
+	/**
+	 * Name the RaceMetrics is registered with
+	 */
+	public static final String METRICS_OBJECT_NAME = "unicyclerace:type=RaceMetrics";
+
+	/**
+	 * The metrics of the race (null if the race is not instrumented)
+	 */
+	private static final RaceMetrics METRICS = ENABLED ? registerMetrics() : null;
+
+	/**
+	 * Private constructor, as the class only has static methods
+	 */
+	private RaceInstrumentation() {
+
+	}
+
+	/**
+	 * Method that returns the metrics of the race
+	 * @return the metrics, or null if the race is not instrumented
+	 */
+	public static RaceMetrics getMetrics() {
+
+		return METRICS;
+	}
+
+	/**
+	 * Method that instruments a Driver, so that every call to drive is measured as a tick
+	 * @param driver the Driver to be instrumented
+	 * @return an instrumented Driver that drives the specified one, or the Driver itself if the race is not
+	 * instrumented (or the Driver already is)
+	 */
+	public static Driver instrument(Driver driver) {
+
+		if(!ENABLED || driver instanceof InstrumentedDriver) {
+
+			return driver;
+		}
+
+		return new InstrumentedDriver(driver, METRICS);
+	}
+
+	/**
+	 * Helper method that registers the metrics with the platform MBean server
+	 * @return the registered metrics
+	 */
+	private static RaceMetrics registerMetrics() {
+
+		RaceMetrics raceMetrics = new RaceMetrics();
+
+		try {
+
+			ManagementFactory.getPlatformMBeanServer().registerMBean(raceMetrics, new ObjectName(METRICS_OBJECT_NAME));
+
+		} catch (JMException e) {
+
+			throw new IllegalStateException("The race metrics can't be registered as " + METRICS_OBJECT_NAME, e);
+		}
+
+		return raceMetrics;
+	}
+
+	/**
+	 * JFR event of a call to Driver.drive
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	@Name("unicyclerace.Drive")
+	@Label("Drive")
+	@Category("Unicycle Race")
+	@Description("A tick: a call to Driver.drive")
+	static final class DriveEvent extends Event {
+
+		/**
+		 * The class of the Driver
+		 */
+		@Label("Driver")
+		Class<?> driver;
+
+		/**
+		 * The speed passed to drive(int), or Integer.MIN_VALUE for drive()
+		 */
+		@Label("Speed")
+		int speed;
+
+		/**
+		 * The bytes allocated by the tick
+		 */
+		@Label("Allocated")
+		@DataAmount
+		long allocated;
+	}
+
+	/**
+	 * JFR event of a call to MovingObjectGroup.translate. Nested groups emit their own events inside the one of
+	 * their parent, so a recording shows how long every group of the tree took
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	@Name("unicyclerace.Translate")
+	@Label("Translate Group")
+	@Category("Unicycle Race")
+	@Description("A MovingObjectGroup translating its elements")
+	static final class TranslateEvent extends Event {
+
+		/**
+		 * The identity hash code of the group
+		 */
+		@Label("Group")
+		int group;
+
+		/**
+		 * How deep the group is in its tree (0 for the root)
+		 */
+		@Label("Depth")
+		int depth;
+
+		/**
+		 * Number of elements of the group
+		 */
+		@Label("Elements")
+		int elements;
+
+		/**
+		 * The speed multiplier of the group
+		 */
+		@Label("Speed Multiplier")
+		double speedMultiplier;
+
+		/**
+		 * The amount every element was translated by
+		 */
+		@Label("Scaled Delta X")
+		int scaledDeltaX;
+
+		/**
+		 * Whether every element moved by scaledDeltaX (if not, the ends of the group are recomputed)
+		 */
+		@Label("Uniform")
+		boolean uniform;
+	}
+
+	/**
+	 * JFR event of a MovingObjectGroup recomputing its ends from the ones of its elements (queries of ends that
+	 * are up to date take a few nanoseconds and are not recorded)
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	@Name("unicyclerace.ComputeBounds")
+	@Label("Compute Group Bounds")
+	@Category("Unicycle Race")
+	@Description("A MovingObjectGroup recomputing its left and right ends")
+	static final class BoundsEvent extends Event {
+
+		/**
+		 * The identity hash code of the group
+		 */
+		@Label("Group")
+		int group;
+
+		/**
+		 * How deep the group is in its tree (0 for the root)
+		 */
+		@Label("Depth")
+		int depth;
+
+		/**
+		 * Number of elements of the group
+		 */
+		@Label("Elements")
+		int elements;
+	}
+
+	/**
+	 * JFR event of a call to MyIcon.paintIcon
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	@Name("unicyclerace.Paint")
+	@Label("Paint")
+	@Category("Unicycle Race")
+	@Description("A frame: a call to MyIcon.paintIcon")
+	static final class PaintEvent extends Event {
+
+		/**
+		 * How the riders were drawn: moving objects, snapshot, tiled or camera
+		 */
+		@Label("Mode")
+		String mode;
+
+		/**
+		 * The area of the clip painted
+		 */
+		@Label("Clip Area")
+		long clipArea;
+
+		/**
+		 * The bytes allocated by the frame
+		 */
+		@Label("Allocated")
+		@DataAmount
+		long allocated;
+	}
+}
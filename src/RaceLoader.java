@@ -0,0 +1,680 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Class that builds a race (a tree of MovingObjectGroups, UnicycleFleets and Unicycles, and its Driver) from a
+ * race file, so that races don't have to be hard-coded in the Tester.
+ * The file is read in a single pass, a buffer at a time, and every rider is added to the tree as soon as its
+ * line is read: no line, token or document is kept in memory, so a file with millions of riders loads with
+ * hardly any memory besides the tree itself.
+ *
+ * A race file has one element per line (blank lines and lines starting with # are ignored):
+ * - race trackLength driver [initialSpeed]: the first line. The driver is stop (StopDriver) or leftandright
+ * (LeftAndRightDriver)
+ * - group [speedMultiplier]: a MovingObjectGroup (speedMultiplier 1 if omitted). Everything up to the matching
+ * end line is added to it
+ * - fleet [riders]: a UnicycleFleet, sized for the number of riders if given. Every line up to the matching end
+ * line is a rider: x y seatLength [color], the color as a hex RGB like ff8000 (random if omitted)
+ * - unicycle x y seatLength [color]: a single Unicycle
+ * - end: closes the last group or fleet
+ *
+ * Everything outside a group is added to the root group of the race
+ *
+ * @author Luiz do Valle
+ *
+ */
+public final class RaceLoader {
+
+	/**
+	 * Size of the buffer the file is read into
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The stream the race file is read from
+	 */
+	private final InputStream input;
+
+	/**
+	 * Buffer with the bytes of the file being parsed
+	 */
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * Position of the next byte to be parsed in buffer
+	 */
+	private int position;
+
+	/**
+	 * Number of bytes of buffer that were read from the file
+	 */
+	private int limit;
+
+	/**
+	 * Number of bytes read from the file before the ones in buffer
+	 */
+	private long bytesBefore;
+
+	/**
+	 * Number of the line being parsed (the first line is 1)
+	 */
+	private long lineNumber;
+
+	/**
+	 * The last word read by readWord() (only its first wordLength bytes)
+	 */
+	private byte[] word = new byte[32];
+
+	/**
+	 * Number of bytes of the last word read
+	 */
+	private int wordLength;
+
+	/**
+	 * Number of riders loaded so far
+	 */
+	private long riders;
+
+	/**
+	 * Number of MovingObjectGroups loaded so far (including the root group)
+	 */
+	private int groups;
+
+	/**
+	 * Number of UnicycleFleets loaded so far
+	 */
+	private int fleets;
+
+	/**
+	 * Private constructor, as races are loaded with the static load methods
+	 * @param input the stream the race file is read from
+	 */
+	private RaceLoader(InputStream input) {
+
+		this.input = input;
+	}
+
+	/**
+	 * Method that loads a race file
+	 * @param path the race file
+	 * @return the race, with a report of how long it took and how much memory it used
+	 * @throws IOException if the file can't be read or is not a valid race file
+	 */
+	public static LoadedRace load(Path path) throws IOException {
+
+		try(InputStream input = Files.newInputStream(path)) {
+
+			return load(input);
+		}
+	}
+
+	/**
+	 * Method that loads a race from a stream with the contents of a race file (the stream is not closed)
+	 * @param input the stream the race is read from
+	 * @return the race, with a report of how long it took and how much memory it used
+	 * @throws IOException if the stream can't be read or is not a valid race file
+	 */
+	public static LoadedRace load(InputStream input) throws IOException {
+
+		//Peak heap usage is measured from here on
+		ArrayList<MemoryPoolMXBean> heapPools = new ArrayList<>();
+		long heapBefore = 0;
+
+		for(MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+
+			if(memoryPool.getType() == MemoryType.HEAP && memoryPool.isValid()) {
+
+				memoryPool.resetPeakUsage();
+				heapPools.add(memoryPool);
+				heapBefore += memoryPool.getUsage().getUsed();
+			}
+		}
+
+		long allocatedBefore = AllocationMeter.allocatedBytes();
+		long start = System.nanoTime();
+
+		RaceLoader raceLoader = new RaceLoader(input);
+		LoadedRace loadedRace = raceLoader.parse();
+
+		long loadTimeNanos = System.nanoTime() - start;
+		long allocatedBytes = AllocationMeter.isSupported() ? AllocationMeter.allocatedBytes() - allocatedBefore : -1;
+		long peakHeap = 0;
+
+		for(MemoryPoolMXBean memoryPool : heapPools) {
+
+			peakHeap += memoryPool.getPeakUsage().getUsed();
+		}
+
+		loadedRace.setReport(new LoadReport(raceLoader.riders, raceLoader.groups, raceLoader.fleets, raceLoader.bytesBefore + raceLoader.position, raceLoader.lineNumber, loadTimeNanos, allocatedBytes, heapBefore, peakHeap));
+
+		return loadedRace;
+	}
+
+	/**
+	 * Method that loads a race file and prints the report
+	 * Usage: java RaceLoader file
+	 * @param args the race file
+	 * @throws IOException if the file can't be loaded
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if(args.length != 1) {
+
+			System.err.println("Usage: java RaceLoader file");
+			return;
+		}
+
+		System.out.println(load(Path.of(args[0])).getReport());
+	}
+
+	/**
+	 * Helper method that parses the whole race file
+	 * @return the race
+	 * @throws IOException if the stream can't be read or is not a valid race file
+	 */
+	private LoadedRace parse() throws IOException {
+
+		if(!nextLine() || !readWord() || !isWord("race")) {
+
+			throw error("A race file must start with: race trackLength driver [initialSpeed]");
+		}
+
+		int trackLength = readInt();
+
+		if(!readWord()) {
+
+			throw error("Missing driver (stop or leftandright)");
+		}
+
+		boolean leftAndRight;
+
+		if(isWord("stop")) {
+
+			leftAndRight = false;
+
+		} else if(isWord("leftandright")) {
+
+			leftAndRight = true;
+
+		} else {
+
+			throw error("Unknown driver: " + wordString() + " (expected stop or leftandright)");
+		}
+
+		int initialSpeed = hasToken() ? readInt() : 0;
+		endLine();
+
+		MovingObjectGroup root = new MovingObjectGroup();
+		groups++;
+
+		//The groups that are open, the innermost last
+		ArrayList<MovingObjectGroup> openGroups = new ArrayList<>();
+		openGroups.add(root);
+
+		while(nextLine()) {
+
+			readWord();
+			MovingObjectGroup parent = openGroups.get(openGroups.size() - 1);
+
+			if(isWord("group")) {
+
+				MovingObjectGroup group = new MovingObjectGroup(hasToken() ? readDouble() : 1);
+				endLine();
+
+				parent.addMovingObject(group);
+				openGroups.add(group);
+				groups++;
+
+			} else if(isWord("fleet")) {
+
+				UnicycleFleet unicycleFleet = hasToken() ? new UnicycleFleet(readInt()) : new UnicycleFleet();
+				endLine();
+
+				parseFleet(unicycleFleet);
+
+				//Added once it is complete, so that its bounds are only propagated up the tree once
+				parent.addMovingObject(unicycleFleet);
+				fleets++;
+				riders += unicycleFleet.size();
+
+			} else if(isWord("unicycle")) {
+
+				int x = readInt();
+				int y = readInt();
+				int seatLength = readInt();
+				Unicycle unicycle = hasToken() ? new Unicycle(x, y, seatLength, new Color(readColor())) : new Unicycle(x, y, seatLength);
+				endLine();
+
+				parent.addMovingObject(unicycle);
+				riders++;
+
+			} else if(isWord("end")) {
+
+				endLine();
+
+				if(openGroups.size() == 1) {
+
+					throw error("end without a group or fleet to close");
+				}
+
+				openGroups.remove(openGroups.size() - 1);
+
+			} else {
+
+				throw error("Unknown element: " + wordString() + " (expected group, fleet, unicycle or end)");
+			}
+		}
+
+		if(openGroups.size() > 1) {
+
+			throw error("Missing end for " + (openGroups.size() - 1) + " group(s)");
+		}
+
+		Driver driver = leftAndRight ? new LeftAndRightDriver(root, initialSpeed, trackLength) : new StopDriver(root, initialSpeed, trackLength);
+
+		return new LoadedRace(root, driver, trackLength, initialSpeed);
+	}
+
+	/**
+	 * Helper method that parses the riders of a fleet, up to its end line
+	 * @param unicycleFleet the fleet the riders are added to
+	 * @throws IOException if the stream can't be read or a rider is not valid
+	 */
+	private void parseFleet(UnicycleFleet unicycleFleet) throws IOException {
+
+		while(nextLine()) {
+
+			//Riders are just numbers, so a line starting with a letter can only be the end of the fleet
+			if(isLetter(peek())) {
+
+				readWord();
+
+				if(!isWord("end")) {
+
+					throw error("Expected a rider (x y seatLength [color]) or end, found: " + wordString());
+				}
+
+				endLine();
+				return;
+			}
+
+			int x = readInt();
+			int y = readInt();
+			int seatLength = readInt();
+			int rgb = hasToken() ? readColor() : (int) (Math.random() * 0xFFFFFF);
+			endLine();
+
+			unicycleFleet.addUnicycle(x, y, seatLength, rgb);
+		}
+
+		throw error("Missing end for a fleet");
+	}
+
+	/**
+	 * Helper method that moves to the beginning of the next line with an element, skipping blank lines and comments
+	 * @return false if the end of the file was reached
+	 * @throws IOException if the stream can't be read
+	 */
+	private boolean nextLine() throws IOException {
+
+		while(true) {
+
+			lineNumber++;
+			skipSpaces();
+
+			int b = peek();
+
+			if(b == '#') {
+
+				skipLine();
+
+			} else if(b == '\n') {
+
+				position++;
+
+			} else if(b < 0) {
+
+				//There is no line after the last one
+				lineNumber--;
+				return false;
+
+			} else {
+
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Helper method that makes sure nothing else is left on the line and moves past its end
+	 * @throws IOException if the stream can't be read or the line has more tokens
+	 */
+	private void endLine() throws IOException {
+
+		skipSpaces();
+
+		int b = peek();
+
+		if(b == '#') {
+
+			skipLine();
+
+		} else if(b == '\n') {
+
+			position++;
+
+		} else if(b >= 0) {
+
+			throw error("Unexpected " + describeByte(b) + " at the end of the line");
+		}
+	}
+
+	/**
+	 * Helper method that skips everything up to the next line
+	 * @throws IOException if the stream can't be read
+	 */
+	private void skipLine() throws IOException {
+
+		int b;
+
+		do {
+
+			b = read();
+
+		} while(b >= 0 && b != '\n');
+	}
+
+	/**
+	 * Helper method that tells whether the line has another token
+	 * @return true if something other than spaces, a comment or the end of the line follows
+	 * @throws IOException if the stream can't be read
+	 */
+	private boolean hasToken() throws IOException {
+
+		skipSpaces();
+
+		int b = peek();
+
+		return b >= 0 && b != '\n' && b != '#';
+	}
+
+	/**
+	 * Helper method that reads the next word of the line into word
+	 * @return false if the line has no more words
+	 * @throws IOException if the stream can't be read
+	 */
+	private boolean readWord() throws IOException {
+
+		if(!hasToken()) {
+
+			return false;
+		}
+
+		wordLength = 0;
+
+		for(int b = peek(); b > ' '; b = peek()) {
+
+			if(wordLength == word.length) {
+
+				word = Arrays.copyOf(word, wordLength * 2);
+			}
+
+			word[wordLength++] = (byte) b;
+			position++;
+		}
+
+		//A control character other than a space, a tab or a line break can't start a token
+		if(wordLength == 0) {
+
+			throw error("Unexpected " + describeByte(peek()));
+		}
+
+		return true;
+	}
+
+	/**
+	 * Helper method that tells whether the last word read is the specified keyword (ignoring case)
+	 * @param keyword the keyword in lower case
+	 * @return true if the word is the keyword
+	 */
+	private boolean isWord(String keyword) {
+
+		if(wordLength != keyword.length()) {
+
+			return false;
+		}
+
+		for(int i = 0; i < wordLength; i++) {
+
+			if(Character.toLowerCase(word[i]) != keyword.charAt(i)) {
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Helper method that returns the last word read as a String (for error messages)
+	 * @return the word
+	 */
+	private String wordString() {
+
+		return new String(word, 0, wordLength, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Helper method that reads a decimal int straight from the bytes of the line
+	 * @return the int
+	 * @throws IOException if the stream can't be read or the next token is not an int
+	 */
+	private int readInt() throws IOException {
+
+		if(!hasToken()) {
+
+			throw error("Missing number");
+		}
+
+		boolean negative = peek() == '-';
+
+		if(negative) {
+
+			position++;
+		}
+
+		long value = 0;
+		int digits = 0;
+
+		for(int b = peek(); b >= '0' && b <= '9'; b = peek()) {
+
+			value = value * 10 + (b - '0');
+			position++;
+
+			if(++digits > 10) {
+
+				throw error("Number too large");
+			}
+		}
+
+		if(digits == 0 || peek() > ' ') {
+
+			readWord();
+			throw error("Not an integer: " + wordString());
+		}
+
+		value = negative ? -value : value;
+
+		if(value != (int) value) {
+
+			throw error("Number too large: " + value);
+		}
+
+		return (int) value;
+	}
+
+	/**
+	 * Helper method that reads a decimal number (only used for speed multipliers, which are rare)
+	 * @return the number
+	 * @throws IOException if the stream can't be read or the next token is not a number
+	 */
+	private double readDouble() throws IOException {
+
+		readWord();
+
+		try {
+
+			return Double.parseDouble(wordString());
+
+		} catch (NumberFormatException e) {
+
+			throw error("Not a number: " + wordString());
+		}
+	}
+
+	/**
+	 * Helper method that reads a hex RGB color (an optional leading # or 0x is allowed)
+	 * @return the color as an RGB int
+	 * @throws IOException if the stream can't be read or the next token is not a color
+	 */
+	private int readColor() throws IOException {
+
+		readWord();
+
+		int start = 0;
+
+		if(wordLength > 0 && word[0] == '#') {
+
+			start = 1;
+
+		} else if(wordLength > 1 && word[0] == '0' && (word[1] == 'x' || word[1] == 'X')) {
+
+			start = 2;
+		}
+
+		if(wordLength == start || wordLength - start > 8) {
+
+			throw error("Not a color: " + wordString());
+		}
+
+		int rgb = 0;
+
+		for(int i = start; i < wordLength; i++) {
+
+			int digit = Character.digit(word[i], 16);
+
+			if(digit < 0) {
+
+				throw error("Not a color: " + wordString());
+			}
+
+			rgb = (rgb << 4) | digit;
+		}
+
+		return rgb;
+	}
+
+	/**
+	 * Helper method that skips spaces, tabs and carriage returns
+	 * @throws IOException if the stream can't be read
+	 */
+	private void skipSpaces() throws IOException {
+
+		for(int b = peek(); b == ' ' || b == '\t' || b == '\r'; b = peek()) {
+
+			position++;
+		}
+	}
+
+	/**
+	 * Helper method that returns the next byte without moving past it
+	 * @return the byte (from 0 to 255, so that bytes of UTF-8 characters are not taken for the end of the
+	 * file), or -1 at the end of the file
+	 * @throws IOException if the stream can't be read
+	 */
+	private int peek() throws IOException {
+
+		if(position == limit && !fill()) {
+
+			return -1;
+		}
+
+		return buffer[position] & 0xFF;
+	}
+
+	/**
+	 * Helper method that returns the next byte and moves past it
+	 * @return the byte, or -1 at the end of the file
+	 * @throws IOException if the stream can't be read
+	 */
+	private int read() throws IOException {
+
+		int b = peek();
+
+		if(b >= 0) {
+
+			position++;
+		}
+
+		return b;
+	}
+
+	/**
+	 * Helper method that reads the next bytes of the file into the buffer
+	 * @return false if the end of the file was reached
+	 * @throws IOException if the stream can't be read
+	 */
+	private boolean fill() throws IOException {
+
+		bytesBefore += limit;
+		position = 0;
+		limit = input.read(buffer, 0, buffer.length);
+
+		if(limit < 0) {
+
+			limit = 0;
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Helper method that creates the exception for an invalid race file
+	 * @param message what is wrong
+	 * @return the exception, with the line number
+	 */
+	private IOException error(String message) {
+
+		return new IOException("Line " + lineNumber + ": " + message);
+	}
+
+	/**
+	 * Helper method that describes a byte for error messages
+	 * @param b the byte
+	 * @return the character between quotes if it is printable ASCII, or else its value in hexadecimal
+	 */
+	private static String describeByte(int b) {
+
+		return b > ' ' && b < 0x7F ? "'" + (char) b + "'" : String.format("byte 0x%02X", b);
+	}
+
+	/**
+	 * Helper method that tells whether a byte is an ASCII letter
+	 * @param b the byte
+	 * @return true if it is a letter
+	 */
+	private static boolean isLetter(int b) {
+
+		return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+	}
+}
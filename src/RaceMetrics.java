@@ -0,0 +1,265 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that implements the RaceMetricsMXBean Interface and keeps the live metrics of a race: latency
+ * histograms of the ticks and of the frames, ticks and frames per second, dropped frames and allocation rate.
+ * Ticks are recorded by the thread that drives the race and frames by the painting thread, each one updating
+ * its own counters, so recording never waits for the other thread (or for a JMX client reading the metrics)
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class RaceMetrics implements RaceMetricsMXBean {
+
+	/**
+	 * Length of the window the rates are measured over
+	 */
+	private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * Frame budget used when none is specified (60 frames per second)
+	 */
+	private static final long DEFAULT_FRAME_BUDGET_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+	/**
+	 * Latencies of the ticks
+	 */
+	private final LatencyHistogram tickLatencies = new LatencyHistogram();
+
+	/**
+	 * Latencies of the frames
+	 */
+	private final LatencyHistogram paintLatencies = new LatencyHistogram();
+
+	/**
+	 * A frame that takes longer than this to paint drops a frame per whole budget it took
+	 */
+	private final long frameBudgetNanos;
+
+	/**
+	 * Rate of the ticks and of what they allocate. Only updated by the thread that drives the race
+	 */
+	private final RateWindow tickWindow = new RateWindow();
+
+	/**
+	 * Rate of the frames and of what they allocate. Only updated by the painting thread
+	 */
+	private final RateWindow paintWindow = new RateWindow();
+
+	/**
+	 * Number of frames dropped
+	 */
+	private volatile long droppedFrames;
+
+	/**
+	 * Default constructor that uses a frame budget of 1/60 of a second
+	 */
+	public RaceMetrics() {
+
+		this(DEFAULT_FRAME_BUDGET_NANOS);
+	}
+
+	/**
+	 * Constructor that specifies how long painting a frame may take before frames are dropped
+	 * @param frameBudgetNanos the frame budget in nanoseconds
+	 */
+	public RaceMetrics(long frameBudgetNanos) {
+
+		if(frameBudgetNanos <= 0) {
+
+			throw new IllegalArgumentException("The frame budget must be positive: " + frameBudgetNanos);
+		}
+
+		this.frameBudgetNanos = frameBudgetNanos;
+	}
+
+	/**
+	 * Method that records a tick
+	 * @param startNanos the System.nanoTime() at which the tick started
+	 * @param latencyNanos how long the tick took
+	 * @param allocatedBytes the bytes allocated by the tick (negative if unknown)
+	 */
+	public void recordTick(long startNanos, long latencyNanos, long allocatedBytes) {
+
+		tickLatencies.record(latencyNanos);
+		tickWindow.record(startNanos + latencyNanos, allocatedBytes);
+	}
+
+	/**
+	 * Method that records a frame
+	 * @param startNanos the System.nanoTime() at which painting started
+	 * @param latencyNanos how long painting took
+	 * @param allocatedBytes the bytes allocated by painting (negative if unknown)
+	 */
+	public void recordPaint(long startNanos, long latencyNanos, long allocatedBytes) {
+
+		paintLatencies.record(latencyNanos);
+		paintWindow.record(startNanos + latencyNanos, allocatedBytes);
+
+		if(latencyNanos > frameBudgetNanos) {
+
+			droppedFrames += latencyNanos / frameBudgetNanos;
+		}
+	}
+
+	@Override
+	public long getTickCount() {
+
+		return tickLatencies.getCount();
+	}
+
+	@Override
+	public double getTicksPerSecond() {
+
+		return tickWindow.eventsPerSecond;
+	}
+
+	@Override
+	public long getTickLatencyP50() {
+
+		return tickLatencies.getPercentile(0.5);
+	}
+
+	@Override
+	public long getTickLatencyP99() {
+
+		return tickLatencies.getPercentile(0.99);
+	}
+
+	@Override
+	public long getTickLatencyMax() {
+
+		return tickLatencies.getMax();
+	}
+
+	@Override
+	public long[] getTickLatencyHistogram() {
+
+		return tickLatencies.getCounts();
+	}
+
+	@Override
+	public long getFrameCount() {
+
+		return paintLatencies.getCount();
+	}
+
+	@Override
+	public double getFramesPerSecond() {
+
+		return paintWindow.eventsPerSecond;
+	}
+
+	@Override
+	public long getPaintLatencyP50() {
+
+		return paintLatencies.getPercentile(0.5);
+	}
+
+	@Override
+	public long getPaintLatencyP99() {
+
+		return paintLatencies.getPercentile(0.99);
+	}
+
+	@Override
+	public long getPaintLatencyMax() {
+
+		return paintLatencies.getMax();
+	}
+
+	@Override
+	public long[] getPaintLatencyHistogram() {
+
+		return paintLatencies.getCounts();
+	}
+
+	@Override
+	public long[] getLatencyBucketUpperBounds() {
+
+		return LatencyHistogram.getUpperBounds();
+	}
+
+	@Override
+	public long getDroppedFrames() {
+
+		return droppedFrames;
+	}
+
+	@Override
+	public double getAllocationRate() {
+
+		return tickWindow.bytesPerSecond + paintWindow.bytesPerSecond;
+	}
+
+	@Override
+	public void reset() {
+
+		tickLatencies.reset();
+		paintLatencies.reset();
+		droppedFrames = 0;
+	}
+
+	/**
+	 * Class that measures how many events happen and how many bytes they allocate per second, over windows
+	 * of RATE_WINDOW_NANOS. Only updated by one thread, read by any
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	private static final class RateWindow {
+
+		/**
+		 * The System.nanoTime() at which the current window started (0 before the first event)
+		 */
+		private long windowStartNanos;
+
+		/**
+		 * Number of events of the current window
+		 */
+		private long events;
+
+		/**
+		 * Bytes allocated by the events of the current window
+		 */
+		private long bytes;
+
+		/**
+		 * Events per second of the last complete window
+		 */
+		private volatile double eventsPerSecond;
+
+		/**
+		 * Bytes allocated per second in the last complete window
+		 */
+		private volatile double bytesPerSecond;
+
+		/**
+		 * Method that records an event, completing the current window if it is over
+		 * @param endNanos the System.nanoTime() at which the event ended
+		 * @param allocatedBytes the bytes allocated by the event (negative if unknown)
+		 */
+		private void record(long endNanos, long allocatedBytes) {
+
+			if(windowStartNanos == 0) {
+
+				windowStartNanos = endNanos;
+			}
+
+			events++;
+			bytes += Math.max(allocatedBytes, 0);
+
+			long elapsed = endNanos - windowStartNanos;
+
+			if(elapsed >= RATE_WINDOW_NANOS) {
+
+				eventsPerSecond = events * 1e9 / elapsed;
+				bytesPerSecond = bytes * 1e9 / elapsed;
+
+				windowStartNanos = endNanos;
+				events = 0;
+				bytes = 0;
+			}
+		}
+	}
+}
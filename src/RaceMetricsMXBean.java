@@ -0,0 +1,105 @@
+/**
+ * Interface of the JMX MXBean that exposes the live metrics of a race (see RaceMetrics), registered as
+ * unicyclerace:type=RaceMetrics when the race is instrumented (see RaceInstrumentation)
+ * All the latencies are in nanoseconds
+ *
+ * @author Luiz do Valle
+ *
+ */
+public interface RaceMetricsMXBean {
+
+	/**
+	 * Method that returns the number of ticks (calls to Driver.drive) measured
+	 * @return the number of ticks
+	 */
+	public abstract long getTickCount();
+
+	/**
+	 * Method that returns the number of ticks per second over the last second
+	 * @return the ticks per second
+	 */
+	public abstract double getTicksPerSecond();
+
+	/**
+	 * Method that returns the median latency of a tick
+	 * @return the 50th percentile of the tick latencies
+	 */
+	public abstract long getTickLatencyP50();
+
+	/**
+	 * Method that returns the 99th percentile of the latency of a tick
+	 * @return the 99th percentile of the tick latencies
+	 */
+	public abstract long getTickLatencyP99();
+
+	/**
+	 * Method that returns the highest latency of a tick
+	 * @return the highest tick latency
+	 */
+	public abstract long getTickLatencyMax();
+
+	/**
+	 * Method that returns the number of tick latencies in every bucket of the histogram
+	 * @return the counts, in the order of getLatencyBucketUpperBounds()
+	 */
+	public abstract long[] getTickLatencyHistogram();
+
+	/**
+	 * Method that returns the number of frames (calls to MyIcon.paintIcon) measured
+	 * @return the number of frames
+	 */
+	public abstract long getFrameCount();
+
+	/**
+	 * Method that returns the number of frames per second over the last second
+	 * @return the frames per second
+	 */
+	public abstract double getFramesPerSecond();
+
+	/**
+	 * Method that returns the median latency of painting a frame
+	 * @return the 50th percentile of the paint latencies
+	 */
+	public abstract long getPaintLatencyP50();
+
+	/**
+	 * Method that returns the 99th percentile of the latency of painting a frame
+	 * @return the 99th percentile of the paint latencies
+	 */
+	public abstract long getPaintLatencyP99();
+
+	/**
+	 * Method that returns the highest latency of painting a frame
+	 * @return the highest paint latency
+	 */
+	public abstract long getPaintLatencyMax();
+
+	/**
+	 * Method that returns the number of paint latencies in every bucket of the histogram
+	 * @return the counts, in the order of getLatencyBucketUpperBounds()
+	 */
+	public abstract long[] getPaintLatencyHistogram();
+
+	/**
+	 * Method that returns the highest latency of every bucket of the histograms
+	 * @return the upper bounds of the buckets
+	 */
+	public abstract long[] getLatencyBucketUpperBounds();
+
+	/**
+	 * Method that returns the number of frames dropped because painting took longer than the frame budget
+	 * @return the number of dropped frames
+	 */
+	public abstract long getDroppedFrames();
+
+	/**
+	 * Method that returns how many bytes ticks and frames allocated per second over the last second
+	 * @return the allocation rate in bytes per second (0 if the JVM can't measure allocations)
+	 */
+	public abstract double getAllocationRate();
+
+	/**
+	 * Method that forgets every latency, tick, frame and dropped frame measured so far
+	 */
+	public abstract void reset();
+}
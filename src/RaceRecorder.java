@@ -0,0 +1,411 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class that implements the TickListener Interface and records a race into a compact binary file (see
+ * RaceRecording for the format), so that it can be played back later with a ReplayDriver.
+ * The riders (their Y coordinates, seat lengths and colors) are written once. After that, every tick only
+ * writes how much each rider moved, as runs of riders that moved by the same amount: a peloton that moves
+ * together costs a couple of bytes per tick no matter how many riders it has. Every keyframeInterval ticks
+ * a keyframe with the absolute positions is written instead, so that a replay can seek without decoding the
+ * race from the beginning. A keyframe is also written after ticks that were not recorded (the recorder was
+ * added to a running race, or a clock skipped ticks to catch up), so that every tick of the index is exact.
+ *
+ * The file is written through memory-mapped regions, so recording a tick never makes a system call: it is
+ * a bulk copy of the riders' positions (getRiderXPositions) and a comparison per rider
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class RaceRecorder implements TickListener, AutoCloseable {
+
+	/**
+	 * Number of ticks between two keyframes used by the constructor without keyframeInterval
+	 */
+	private static final int DEFAULT_KEYFRAME_INTERVAL = 300;
+
+	/**
+	 * Size of the regions of the file mapped at once (a region is never smaller than the largest frame)
+	 */
+	private static final int REGION_SIZE = 1 << 24;
+
+	/**
+	 * The MovingObject whose riders are recorded
+	 */
+	private final RaceView movingObject;
+
+	/**
+	 * The channel of the file being written
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Number of ticks between two keyframes
+	 */
+	private final int keyframeInterval;
+
+	/**
+	 * Number of riders of the race
+	 */
+	private final int riderCount;
+
+	/**
+	 * The largest number of bytes a frame can take
+	 */
+	private final long maxFrameSize;
+
+	/**
+	 * The mapped region of the file the frames are written to
+	 */
+	private MappedByteBuffer region;
+
+	/**
+	 * The position in the file of the beginning of region
+	 */
+	private long regionStart;
+
+	/**
+	 * X coordinates of the riders in the tick being recorded
+	 */
+	private int[] xPositions;
+
+	/**
+	 * X coordinates of the riders in the previous tick
+	 */
+	private int[] previousXPositions;
+
+	/**
+	 * The speed last set with setSpeed
+	 */
+	private volatile int speed;
+
+	/**
+	 * The speed written in the previous frame
+	 */
+	private int previousSpeed;
+
+	/**
+	 * The simulated time written in the previous frame
+	 */
+	private long previousTimeNanos;
+
+	/**
+	 * The tick of the first frame (0 until a tick is recorded)
+	 */
+	private long firstTick;
+
+	/**
+	 * The tick of the previous frame
+	 */
+	private long previousTick;
+
+	/**
+	 * Number of frames written since the last keyframe
+	 */
+	private int framesSinceKeyframe;
+
+	/**
+	 * Number of frames written
+	 */
+	private long frameCount;
+
+	/**
+	 * Ticks of the keyframes
+	 */
+	private long[] keyframeTicks = new long[16];
+
+	/**
+	 * Positions in the file of the keyframes
+	 */
+	private long[] keyframeOffsets = new long[16];
+
+	/**
+	 * Number of keyframes written
+	 */
+	private int keyframeCount;
+
+	/**
+	 * Whether close() was called
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructor that creates (or replaces) the file and writes the riders the race currently has,
+	 * with a keyframe every 300 ticks
+	 * @param movingObject the MovingObject whose riders are recorded
+	 * @param path the file the race is recorded to
+	 * @throws IOException if the file can't be written
+	 */
+	public RaceRecorder(RaceView movingObject, Path path) throws IOException {
+
+		this(movingObject, path, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * Constructor that creates (or replaces) the file and writes the riders the race currently has
+	 * @param movingObject the MovingObject whose riders are recorded
+	 * @param path the file the race is recorded to
+	 * @param keyframeInterval the number of ticks between two keyframes (fewer makes seeking faster and the file larger)
+	 * @throws IOException if the file can't be written
+	 */
+	public RaceRecorder(RaceView movingObject, Path path, int keyframeInterval) throws IOException {
+
+		if(keyframeInterval < 1) {
+
+			throw new IllegalArgumentException("The keyframe interval must be positive: " + keyframeInterval);
+		}
+
+		this.movingObject = movingObject;
+		this.keyframeInterval = keyframeInterval;
+
+		int[] count = {0};
+		movingObject.visitRiders((x, y, seatLength, rgb) -> count[0]++);
+		riderCount = count[0];
+
+		xPositions = new int[riderCount];
+		previousXPositions = new int[riderCount];
+
+		maxFrameSize = RaceFrameCodec.maxFrameSize(riderCount);
+
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+
+			//The header is completed by close(), the riders never change
+			map(0, RaceRecording.HEADER_SIZE + 12L * riderCount);
+			region.position(RaceRecording.HEADER_SIZE);
+
+			movingObject.visitRiders((x, y, seatLength, rgb) -> {
+
+				region.putInt(y);
+				region.putInt(seatLength);
+				region.putInt(rgb);
+			});
+
+		} catch (IOException | RuntimeException e) {
+
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Method that records a change of the speed of the race (like the Tester's slider), written with the next tick.
+	 * Can be called from any thread
+	 * @param speed the new speed
+	 */
+	public void setSpeed(int speed) {
+
+		this.speed = speed;
+	}
+
+	@Override
+	public void tickCompleted(long tick, long simulatedTimeNanos) {
+
+		if(closed) {
+
+			return;
+		}
+
+		int visited;
+
+		try {
+
+			visited = movingObject.getRiderXPositions(xPositions, 0);
+
+		} catch (IndexOutOfBoundsException e) {
+
+			visited = -1;
+		}
+
+		if(visited != riderCount) {
+
+			throw new IllegalStateException("The number of riders changed while recording (" + riderCount + " riders recorded)");
+		}
+
+		if(frameCount > 0 && tick <= previousTick) {
+
+			throw new IllegalStateException("Tick " + tick + " completed after tick " + previousTick);
+		}
+
+		try {
+
+			ensureCapacity(maxFrameSize);
+
+		} catch (IOException e) {
+
+			throw new IllegalStateException("The recording could not be written", e);
+		}
+
+		if(frameCount == 0) {
+
+			firstTick = tick;
+		}
+
+		int currentSpeed = speed;
+
+		//A delta frame is always the tick right after the previous frame
+		if(frameCount == 0 || framesSinceKeyframe >= keyframeInterval || tick != previousTick + 1) {
+
+			writeKeyframe(tick, simulatedTimeNanos, currentSpeed);
+
+		} else {
+
+			writeDeltaFrame(simulatedTimeNanos, currentSpeed);
+		}
+
+		previousSpeed = currentSpeed;
+		previousTimeNanos = simulatedTimeNanos;
+		previousTick = tick;
+		framesSinceKeyframe++;
+		frameCount++;
+
+		int[] lastXPositions = previousXPositions;
+		previousXPositions = xPositions;
+		xPositions = lastXPositions;
+	}
+
+	/**
+	 * Method that returns the number of ticks recorded so far
+	 * @return the number of frames written
+	 */
+	public long getFrameCount() {
+
+		return frameCount;
+	}
+
+	/**
+	 * Method that returns the number of riders recorded
+	 * @return the number of riders
+	 */
+	public int getRiderCount() {
+
+		return riderCount;
+	}
+
+	/**
+	 * Method that writes the index of the keyframes and the header, and cuts the file to the size of the
+	 * recording. Must not be called while a tick is being recorded (remove the recorder from the
+	 * SimulationRunner, or stop it, first)
+	 * @throws IOException if the file can't be written
+	 */
+	@Override
+	public void close() throws IOException {
+
+		if(closed) {
+
+			return;
+		}
+
+		closed = true;
+
+		try {
+
+			ensureCapacity(16L * keyframeCount);
+			long indexOffset = regionStart + region.position();
+
+			for(int i = 0; i < keyframeCount; i++) {
+
+				region.putLong(keyframeTicks[i]);
+				region.putLong(keyframeOffsets[i]);
+			}
+
+			long end = regionStart + region.position();
+			region.force();
+
+			ByteBuffer header = ByteBuffer.allocate(RaceRecording.HEADER_SIZE);
+			header.putInt(RaceRecording.MAGIC);
+			header.putInt(RaceRecording.VERSION);
+			header.putInt(riderCount);
+			header.putInt(keyframeInterval);
+			header.putLong(firstTick);
+			header.putLong(frameCount);
+			header.putLong(indexOffset);
+			header.putInt(keyframeCount);
+			header.putInt(0);
+			header.putLong(previousTick);
+			header.flip();
+
+			while(header.hasRemaining()) {
+
+				channel.write(header, header.position());
+			}
+
+			region = null;
+			channel.truncate(end);
+
+		} finally {
+
+			channel.close();
+		}
+	}
+
+	/**
+	 * Helper method that writes a keyframe and adds it to the index
+	 * @param tick the tick
+	 * @param simulatedTimeNanos the simulated time of the tick
+	 * @param currentSpeed the speed of the race
+	 */
+	private void writeKeyframe(long tick, long simulatedTimeNanos, int currentSpeed) {
+
+		if(keyframeCount == keyframeOffsets.length) {
+
+			keyframeTicks = Arrays.copyOf(keyframeTicks, keyframeCount * 2);
+			keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+		}
+
+		keyframeTicks[keyframeCount] = tick;
+		keyframeOffsets[keyframeCount++] = regionStart + region.position();
+		framesSinceKeyframe = 0;
+
+		RaceFrameCodec.putKeyframe(region, simulatedTimeNanos, currentSpeed, xPositions, riderCount);
+	}
+
+	/**
+	 * Helper method that writes a frame with the changes since the previous frame
+	 * @param simulatedTimeNanos the simulated time of the tick
+	 * @param currentSpeed the speed of the race
+	 */
+	private void writeDeltaFrame(long simulatedTimeNanos, int currentSpeed) {
+
+		RaceFrameCodec.putDeltaFrame(region, simulatedTimeNanos - previousTimeNanos, currentSpeed - previousSpeed, xPositions, previousXPositions, riderCount);
+	}
+
+	/**
+	 * Helper method that maps a new region of the file when the current one doesn't have the specified
+	 * number of bytes left
+	 * @param size the number of bytes about to be written
+	 * @throws IOException if the file can't be mapped
+	 */
+	private void ensureCapacity(long size) throws IOException {
+
+		if(region.remaining() < size) {
+
+			map(regionStart + region.position(), size);
+		}
+	}
+
+	/**
+	 * Helper method that maps a region of the file starting at the specified position
+	 * @param position the position in the file of the beginning of the region
+	 * @param size the minimum size of the region
+	 * @throws IOException if the file can't be mapped
+	 */
+	private void map(long position, long size) throws IOException {
+
+		long regionSize = Math.max(REGION_SIZE, size);
+
+		if(regionSize > Integer.MAX_VALUE) {
+
+			throw new IOException("Too many riders to be recorded: " + riderCount);
+		}
+
+		region = channel.map(FileChannel.MapMode.READ_WRITE, position, regionSize);
+		regionStart = position;
+	}
+}
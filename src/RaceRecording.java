@@ -0,0 +1,435 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class that reads a race recorded by a RaceRecorder. The frames are mapped into memory one region at a time,
+ * like the RaceRecorder writes them, so recordings of any size can be read. The recording keeps a playhead: the
+ * positions of the riders in one tick, which next() moves to the following tick and seek(long) moves to any tick
+ * by decoding from the closest keyframe before it (never from the beginning). Ticks the recorder didn't see
+ * (skipped by a clock catching up, or before the recorder was added) are played as the last recorded tick before them.
+ *
+ * Format of the file (big-endian):
+ * - Header: magic, version, number of riders, keyframe interval (ints), first tick, number of frames,
+ * position of the index (longs), number of keyframes, an unused int and last tick (long)
+ * - Riders: Y coordinate, seat length and color (ints) of every rider, in the order visitRiders visits them
+ * - Frames, one per recorded tick, a keyframe every keyframe interval frames and after every skipped tick, so
+ * that the frames between two keyframes are consecutive ticks (see RaceFrameCodec)
+ * - Index: tick and position in the file (longs) of every keyframe
+ *
+ * A recording is not thread safe: it should be read by a single thread (like the one driving a ReplayDriver)
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class RaceRecording {
+
+	/**
+	 * The first int of every recording ("URC1")
+	 */
+	static final int MAGIC = 0x55524331;
+
+	/**
+	 * The version of the format
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * Size of the header in bytes
+	 */
+	static final int HEADER_SIZE = 56;
+
+	/**
+	 * Size of the regions of the file mapped at once (a region is never smaller than the largest frame)
+	 */
+	private static final int REGION_SIZE = 1 << 24;
+
+	/**
+	 * The file of the recording, opened again whenever another region has to be mapped
+	 */
+	private final Path path;
+
+	/**
+	 * The size of the file in bytes
+	 */
+	private final long fileSize;
+
+	/**
+	 * The largest number of bytes a frame can take
+	 */
+	private final long maxFrameSize;
+
+	/**
+	 * The mapped region of the file the frames are read from
+	 */
+	private MappedByteBuffer region;
+
+	/**
+	 * The position in the file of the beginning of region
+	 */
+	private long regionStart;
+
+	/**
+	 * Number of riders of the race
+	 */
+	private final int riderCount;
+
+	/**
+	 * The tick of the first frame
+	 */
+	private final long firstTick;
+
+	/**
+	 * The tick of the last frame
+	 */
+	private final long lastTick;
+
+	/**
+	 * Ticks of the keyframes
+	 */
+	private final long[] keyframeTicks;
+
+	/**
+	 * Positions in the file of the keyframes
+	 */
+	private final long[] keyframeOffsets;
+
+	/**
+	 * Y coordinates of the bottom of the riders' wheels
+	 */
+	private final int[] yPositions;
+
+	/**
+	 * Seat lengths of the riders
+	 */
+	private final int[] seatLengths;
+
+	/**
+	 * Colors of the riders as RGB ints
+	 */
+	private final int[] colors;
+
+	/**
+	 * Decoder holding the positions of the riders in the tick of the playhead
+	 */
+	private final RaceFrameCodec raceFrameCodec;
+
+	/**
+	 * The tick of the playhead
+	 */
+	private long tick;
+
+	/**
+	 * The index of the last keyframe at or before the playhead
+	 */
+	private int keyframe;
+
+	/**
+	 * Position in the file of the frame after the one of the playhead
+	 */
+	private long nextFrameOffset;
+
+	/**
+	 * Constructor that maps the file, reads the riders and the index, and moves the playhead to the first tick
+	 * @param path the file written by a RaceRecorder
+	 * @throws IOException if the file can't be read or is not a complete recording
+	 */
+	public RaceRecording(Path path) throws IOException {
+
+		this.path = path;
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			fileSize = channel.size();
+
+			if(fileSize < HEADER_SIZE) {
+
+				throw new IOException("Not a race recording: " + path);
+			}
+
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+			if(header.getInt(0) != MAGIC) {
+
+				throw new IOException("Not a race recording: " + path);
+			}
+
+			if(header.getInt(4) != VERSION) {
+
+				throw new IOException("Unsupported recording version: " + header.getInt(4));
+			}
+
+			//The keyframe interval (at 12) isn't needed to read the recording: the index has the tick of every keyframe
+			riderCount = header.getInt(8);
+			firstTick = header.getLong(16);
+			long frameCount = header.getLong(24);
+			long indexOffset = header.getLong(32);
+			int keyframeCount = header.getInt(40);
+			lastTick = header.getLong(48);
+
+			//A recorder that was never closed leaves the header empty
+			if(frameCount < 1 || keyframeCount < 1 || lastTick < firstTick || indexOffset < HEADER_SIZE || indexOffset + 16L * keyframeCount > fileSize) {
+
+				throw new IOException("The recording is empty or was not closed: " + path);
+			}
+
+			yPositions = new int[riderCount];
+			seatLengths = new int[riderCount];
+			colors = new int[riderCount];
+			raceFrameCodec = new RaceFrameCodec(riderCount);
+			maxFrameSize = RaceFrameCodec.maxFrameSize(riderCount);
+
+			//The riders and the index are only read once, so they are mapped just while they are read
+			MappedByteBuffer riders = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 12L * riderCount);
+
+			for(int i = 0; i < riderCount; i++) {
+
+				yPositions[i] = riders.getInt();
+				seatLengths[i] = riders.getInt();
+				colors[i] = riders.getInt();
+			}
+
+			MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, 16L * keyframeCount);
+			keyframeTicks = new long[keyframeCount];
+			keyframeOffsets = new long[keyframeCount];
+
+			for(int i = 0; i < keyframeCount; i++) {
+
+				keyframeTicks[i] = index.getLong(16 * i);
+				keyframeOffsets[i] = index.getLong(16 * i + 8);
+			}
+		}
+
+		seekKeyframe(0);
+	}
+
+	/**
+	 * Method that moves the playhead to the next tick
+	 * @return false if the playhead was already at the last tick (and didn't move)
+	 */
+	public boolean next() {
+
+		if(tick >= lastTick) {
+
+			return false;
+		}
+
+		//After the last frame of a run of consecutive ticks comes a keyframe with the tick it was recorded in
+		if(nextFrameIsKeyframe()) {
+
+			seekKeyframe(keyframe + 1);
+
+		} else {
+
+			readFrame(nextFrameOffset);
+			tick++;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Method that moves the playhead to any tick, decoding the frames since the closest keyframe before it
+	 * (or since the playhead, if it is closer)
+	 * @param targetTick the tick to be moved to (clamped to the ticks of the recording, and moved back to the last
+	 * recorded tick before it if it wasn't recorded)
+	 */
+	public void seek(long targetTick) {
+
+		targetTick = Math.max(firstTick, Math.min(targetTick, lastTick));
+
+		int targetKeyframe = Arrays.binarySearch(keyframeTicks, targetTick);
+
+		if(targetKeyframe < 0) {
+
+			targetKeyframe = -targetKeyframe - 2;
+		}
+
+		//Going forward from the playhead is cheaper unless there is a keyframe in between
+		if(targetTick < tick || targetKeyframe != keyframe) {
+
+			seekKeyframe(targetKeyframe);
+		}
+
+		//The run of consecutive ticks of the keyframe may end before the target tick
+		while(tick < targetTick && !nextFrameIsKeyframe()) {
+
+			next();
+		}
+	}
+
+	/**
+	 * Method that returns the tick of the playhead
+	 * @return the tick
+	 */
+	public long getTick() {
+
+		return tick;
+	}
+
+	/**
+	 * Method that returns the simulated time of the tick of the playhead
+	 * @return the simulated time in nanoseconds
+	 */
+	public long getSimulatedTimeNanos() {
+
+		return raceFrameCodec.getSimulatedTimeNanos();
+	}
+
+	/**
+	 * Method that returns the speed the race had in the tick of the playhead (like the Tester's slider)
+	 * @return the speed
+	 */
+	public int getSpeed() {
+
+		return raceFrameCodec.getSpeed();
+	}
+
+	/**
+	 * Method that returns the X coordinates of the riders in the tick of the playhead, in the order
+	 * visitRiders visits them. The array is updated when the playhead moves
+	 * @return the X coordinates of the centers of the riders' wheels
+	 */
+	public int[] getXPositions() {
+
+		return raceFrameCodec.getXPositions();
+	}
+
+	/**
+	 * Method that returns the first tick of the recording
+	 * @return the tick of the first frame
+	 */
+	public long getFirstTick() {
+
+		return firstTick;
+	}
+
+	/**
+	 * Method that returns the last tick of the recording
+	 * @return the tick of the last frame
+	 */
+	public long getLastTick() {
+
+		return lastTick;
+	}
+
+	/**
+	 * Method that returns the number of riders of the race
+	 * @return the number of riders
+	 */
+	public int getRiderCount() {
+
+		return riderCount;
+	}
+
+	/**
+	 * Method that returns the Y coordinate of the bottom of a rider's wheel
+	 * @param index the index of the rider
+	 * @return the Y coordinate
+	 */
+	public int getYPosition(int index) {
+
+		return yPositions[index];
+	}
+
+	/**
+	 * Method that returns the seat length of a rider
+	 * @param index the index of the rider
+	 * @return the seat length
+	 */
+	public int getSeatLength(int index) {
+
+		return seatLengths[index];
+	}
+
+	/**
+	 * Method that returns the color of a rider
+	 * @param index the index of the rider
+	 * @return the color as an RGB int
+	 */
+	public int getColor(int index) {
+
+		return colors[index];
+	}
+
+	/**
+	 * Method that creates a fleet with the riders of the race at their positions in the tick of the playhead,
+	 * so that a recording can be played back without the code that created the race
+	 * @return a new fleet with every rider of the recording
+	 */
+	public UnicycleFleet createFleet() {
+
+		UnicycleFleet unicycleFleet = new UnicycleFleet(riderCount);
+		int[] xPositions = raceFrameCodec.getXPositions();
+
+		for(int i = 0; i < riderCount; i++) {
+
+			unicycleFleet.addUnicycle(xPositions[i], yPositions[i], seatLengths[i], colors[i]);
+		}
+
+		return unicycleFleet;
+	}
+
+	/**
+	 * Helper method that decodes a frame into the playhead, mapping the region of the file it is in first if it
+	 * is not mapped yet
+	 * @param frameOffset the position of the frame in the file
+	 */
+	private void readFrame(long frameOffset) {
+
+		long regionEnd = region == null ? 0 : regionStart + region.limit();
+
+		//A frame is never larger than maxFrameSize, but the last ones may end closer to the end of the file
+		if(region == null || frameOffset < regionStart || (frameOffset + maxFrameSize > regionEnd && regionEnd < fileSize)) {
+
+			map(frameOffset);
+		}
+
+		region.position((int) (frameOffset - regionStart));
+		raceFrameCodec.decode(region);
+		nextFrameOffset = regionStart + region.position();
+	}
+
+	/**
+	 * Helper method that maps the region of the file starting at a position
+	 * @param position the position in the file of the beginning of the region
+	 */
+	private void map(long position) {
+
+		long regionSize = Math.min(Math.max(REGION_SIZE, maxFrameSize), fileSize - position);
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			//The mapping stays valid after the channel is closed
+			region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+			regionStart = position;
+
+		} catch (IOException e) {
+
+			throw new IllegalStateException("The recording could not be read: " + path, e);
+		}
+	}
+
+	/**
+	 * Helper method that moves the playhead to a keyframe
+	 * @param keyframe the index of the keyframe
+	 */
+	private void seekKeyframe(int keyframe) {
+
+		readFrame(keyframeOffsets[keyframe]);
+		tick = keyframeTicks[keyframe];
+		this.keyframe = keyframe;
+	}
+
+	/**
+	 * Helper method that tells whether the frame after the one of the playhead is a keyframe
+	 * @return true if the next frame is a keyframe, false if it is a delta frame or there is none
+	 */
+	private boolean nextFrameIsKeyframe() {
+
+		return keyframe + 1 < keyframeOffsets.length && nextFrameOffset == keyframeOffsets[keyframe + 1];
+	}
+}
@@ -0,0 +1,361 @@
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Class that holds an immutable copy of the positions, sizes and colors of all the riders of a MovingObject
+ * at a given tick. Snapshots can be handed from the simulation thread to the GUI without any locking, and
+ * two consecutive snapshots can be interpolated so that motion looks smooth no matter how often the GUI
+ * paints compared to how often the simulation ticks
+ *
+ * @author Luiz do Valle
+ *
+ */
+public final class RaceSnapshot {
+
+	/**
+	 * The number of riders in the snapshot
+	 */
+	private final int riderCount;
+
+	/**
+	 * X coordinates of the centers of the riders' wheels
+	 */
+	private final int[] x;
+
+	/**
+	 * Y coordinates of the bottoms of the riders' wheels
+	 */
+	private final int[] y;
+
+	/**
+	 * Seat lengths of the riders
+	 */
+	private final int[] seatLength;
+
+	/**
+	 * Colors of the riders as RGB ints
+	 */
+	private final int[] rgb;
+
+	/**
+	 * The tick the snapshot was taken at
+	 */
+	private final long tick;
+
+	/**
+	 * The simulated time of the tick in nanoseconds
+	 */
+	private final long simulatedTimeNanos;
+
+	/**
+	 * Constructor that simply initializes the class's fields. The arrays are not copied, so they must never
+	 * be modified afterwards (they may be shared with other snapshots)
+	 * @param riderCount the number of riders
+	 * @param x X coordinates of the centers of the wheels
+	 * @param y Y coordinates of the bottoms of the wheels
+	 * @param seatLength seat lengths
+	 * @param rgb colors as RGB ints
+	 * @param tick the tick the snapshot was taken at
+	 * @param simulatedTimeNanos the simulated time of the tick
+	 */
+	RaceSnapshot(int riderCount, int[] x, int[] y, int[] seatLength, int[] rgb, long tick, long simulatedTimeNanos) {
+
+		this.riderCount = riderCount;
+		this.x = x;
+		this.y = y;
+		this.seatLength = seatLength;
+		this.rgb = rgb;
+		this.tick = tick;
+		this.simulatedTimeNanos = simulatedTimeNanos;
+	}
+
+	/**
+	 * Method that takes a snapshot of all the riders of a MovingObject.
+	 * Must be called on the thread that moves the MovingObject
+	 * @param movingObject the MovingObject whose riders are copied
+	 * @param tick the current tick
+	 * @param simulatedTimeNanos the simulated time of the current tick
+	 * @param previous the previous snapshot of the same MovingObject (may be null). The Y coordinates, seat
+	 * lengths and colors are shared with it when they didn't change, which they normally don't
+	 * @return the new snapshot
+	 */
+	public static RaceSnapshot capture(RaceView movingObject, long tick, long simulatedTimeNanos, RaceSnapshot previous) {
+
+		Capture capture = new Capture(previous);
+		movingObject.visitRiders(capture);
+
+		return capture.toSnapshot(tick, simulatedTimeNanos);
+	}
+
+	/**
+	 * Method that returns a snapshot whose riders are between their positions in this snapshot and in the next
+	 * one. If the two snapshots don't have the same riders, the next one is returned unchanged
+	 * @param next the snapshot of a later tick
+	 * @param alpha how far to go from this snapshot (0) to the next one (1)
+	 * @return the interpolated snapshot
+	 */
+	public RaceSnapshot interpolate(RaceSnapshot next, double alpha) {
+
+		return interpolate(next, alpha, null);
+	}
+
+	/**
+	 * Method that returns a snapshot whose riders are between their positions in this snapshot and in the next
+	 * one, writing their X coordinates into an array of the caller instead of a new one, so that interpolating
+	 * on every paint allocates no array. The snapshot returned is only valid until the array is written again.
+	 * If the two snapshots don't have the same riders, the next one is returned unchanged
+	 * @param next the snapshot of a later tick
+	 * @param alpha how far to go from this snapshot (0) to the next one (1)
+	 * @param buffer the array the X coordinates are written to (a new one is used if it is null or shorter than
+	 * the number of riders)
+	 * @return the interpolated snapshot
+	 */
+	public RaceSnapshot interpolate(RaceSnapshot next, double alpha, int[] buffer) {
+
+		if(alpha >= 1 || next.riderCount != riderCount) {
+
+			return next;
+		}
+
+		if(alpha <= 0) {
+
+			return this;
+		}
+
+		int[] interpolatedX = buffer != null && buffer.length >= riderCount ? buffer : new int[riderCount];
+
+		for(int i = 0; i < riderCount; i++) {
+
+			interpolatedX[i] = x[i] + (int) Math.round((next.x[i] - x[i]) * alpha);
+		}
+
+		long interpolatedTime = simulatedTimeNanos + Math.round((next.simulatedTimeNanos - simulatedTimeNanos) * alpha);
+
+		return new RaceSnapshot(riderCount, interpolatedX, next.y, next.seatLength, next.rgb, next.tick, interpolatedTime);
+	}
+
+	/**
+	 * Method that draws the riders of the snapshot that intersect an area, looking exactly like they do
+	 * when every rider is drawn. To draw the riders inside the clip of graphics2d, pass the bounds of the clip
+	 * copied into a Rectangle of the caller (see ExtentIndex.getClipBounds), so that drawing creates no object
+	 * @param graphics2d the Graphics2D reference used to draw the riders
+	 * @param area only riders intersecting this area are drawn (null to draw every rider)
+	 */
+	public void draw(Graphics2D graphics2d, Rectangle area) {
+
+		draw(graphics2d, area, null);
+	}
+
+	/**
+	 * Method that draws the riders of the snapshot that intersect an area with a level of detail, like
+	 * draw(Graphics2D, Rectangle) does
+	 * @param graphics2d the Graphics2D reference used to draw the riders
+	 * @param area only riders intersecting this area are drawn (null to draw every rider)
+	 * @param levelOfDetail the level of detail of the view the riders are drawn in (null to draw them in full
+	 * detail)
+	 */
+	public void draw(Graphics2D graphics2d, Rectangle area, LevelOfDetail levelOfDetail) {
+
+		UnicycleGeometry.drawRiders(graphics2d, x, y, seatLength, rgb, 0, riderCount, area, levelOfDetail);
+	}
+
+	/**
+	 * Method that returns the number of riders in the snapshot
+	 * @return the number of riders
+	 */
+	public int getRiderCount() {
+
+		return riderCount;
+	}
+
+	/**
+	 * Method that returns the X coordinate of the center of the wheel of a rider
+	 * @param index the index of the rider (in the order MovingObject.visitRiders visits them)
+	 * @return the X coordinate of the center of the rider's wheel
+	 */
+	public int getXPosition(int index) {
+
+		checkIndex(index);
+		return x[index];
+	}
+
+	/**
+	 * Method that returns the Y coordinate of the bottom of the wheel of a rider
+	 * @param index the index of the rider
+	 * @return the Y coordinate of the bottom of the rider's wheel
+	 */
+	public int getYPosition(int index) {
+
+		checkIndex(index);
+		return y[index];
+	}
+
+	/**
+	 * Method that returns the seat length of a rider
+	 * @param index the index of the rider
+	 * @return the seat length of the rider
+	 */
+	public int getSeatLength(int index) {
+
+		checkIndex(index);
+		return seatLength[index];
+	}
+
+	/**
+	 * Method that returns the color of a rider
+	 * @param index the index of the rider
+	 * @return the color of the rider as an RGB int
+	 */
+	public int getColor(int index) {
+
+		checkIndex(index);
+		return rgb[index];
+	}
+
+	/**
+	 * Method that returns the tick the snapshot was taken at
+	 * @return the tick
+	 */
+	public long getTick() {
+
+		return tick;
+	}
+
+	/**
+	 * Method that returns the simulated time of the snapshot
+	 * @return the simulated time in nanoseconds
+	 */
+	public long getSimulatedTimeNanos() {
+
+		return simulatedTimeNanos;
+	}
+
+	/**
+	 * Helper method that makes sure the index refers to a rider of the snapshot
+	 * @param index the index to be checked
+	 */
+	private void checkIndex(int index) {
+
+		if(index < 0 || index >= riderCount) {
+
+			throw new IndexOutOfBoundsException("Index: " + index + ", Riders: " + riderCount);
+		}
+	}
+
+	/**
+	 * Class that collects the riders of a MovingObject into arrays. The Y coordinates, seat lengths and colors
+	 * of the previous snapshot are kept (and shared) until a rider is found that differs from it
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	private static final class Capture implements RiderVisitor {
+
+		/**
+		 * The previous snapshot (null if there is none)
+		 */
+		private final RaceSnapshot previous;
+
+		/**
+		 * The number of riders visited so far
+		 */
+		private int riderCount;
+
+		/**
+		 * X coordinates collected so far
+		 */
+		private int[] x;
+
+		/**
+		 * Y coordinates collected so far (the previous snapshot's array while shared is true)
+		 */
+		private int[] y;
+
+		/**
+		 * Seat lengths collected so far (the previous snapshot's array while shared is true)
+		 */
+		private int[] seatLength;
+
+		/**
+		 * Colors collected so far (the previous snapshot's array while shared is true)
+		 */
+		private int[] rgb;
+
+		/**
+		 * Whether y, seatLength and rgb are still the previous snapshot's arrays
+		 */
+		private boolean shared;
+
+		/**
+		 * Constructor that prepares the arrays, sized for as many riders as the previous snapshot had
+		 * @param previous the previous snapshot (may be null)
+		 */
+		private Capture(RaceSnapshot previous) {
+
+			this.previous = previous;
+
+			if(previous != null) {
+
+				x = new int[Math.max(previous.riderCount, 1)];
+				y = previous.y;
+				seatLength = previous.seatLength;
+				rgb = previous.rgb;
+				shared = true;
+
+			} else {
+
+				x = new int[16];
+				y = new int[16];
+				seatLength = new int[16];
+				rgb = new int[16];
+			}
+		}
+
+		@Override
+		public void visitRider(int x, int y, int seatLength, int rgb) {
+
+			int i = riderCount;
+
+			if(shared && (i >= previous.riderCount || this.y[i] != y || this.seatLength[i] != seatLength || this.rgb[i] != rgb)) {
+
+				//First difference with the previous snapshot: stop sharing its arrays
+				this.y = Arrays.copyOf(this.y, this.x.length);
+				this.seatLength = Arrays.copyOf(this.seatLength, this.x.length);
+				this.rgb = Arrays.copyOf(this.rgb, this.x.length);
+				shared = false;
+			}
+
+			if(i == this.x.length) {
+
+				int newLength = this.x.length * 2;
+				this.x = Arrays.copyOf(this.x, newLength);
+				this.y = Arrays.copyOf(this.y, newLength);
+				this.seatLength = Arrays.copyOf(this.seatLength, newLength);
+				this.rgb = Arrays.copyOf(this.rgb, newLength);
+			}
+
+			this.x[i] = x;
+
+			if(!shared) {
+
+				this.y[i] = y;
+				this.seatLength[i] = seatLength;
+				this.rgb[i] = rgb;
+			}
+
+			riderCount++;
+		}
+
+		/**
+		 * Method that builds the snapshot from the collected riders
+		 * @param tick the current tick
+		 * @param simulatedTimeNanos the simulated time of the current tick
+		 * @return the new snapshot
+		 */
+		private RaceSnapshot toSnapshot(long tick, long simulatedTimeNanos) {
+
+			return new RaceSnapshot(riderCount, x, y, seatLength, rgb, tick, simulatedTimeNanos);
+		}
+	}
+}
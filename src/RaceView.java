@@ -0,0 +1,86 @@
+import java.awt.Graphics2D;
+
+/**
+ * Interface that serves as the blueprint for anything that displays riders without moving them: the read-only
+ * part of MovingObject. A race simulated somewhere else (like the one of a SharedRaceView) is only a RaceView,
+ * while every MovingObject is also one, so the classes that only draw, follow, rank, record or publish riders
+ * take a RaceView
+ * 
+ * @author Luiz do Valle
+ *
+ */
+public interface RaceView {
+
+	/**
+	 * Method that draws the RaceView on the GUI. Based on the example on Courseworks
+	 * @param graphics2d the Graphics2D reference used to draw the objects on the GUI
+	 */
+	public abstract void draw(Graphics2D graphics2d);
+	
+	/**
+	 * Method that draws the RaceView on the GUI with less detail where it can't be told apart on the screen
+	 * (see LevelOfDetail). The level of detail belongs to the view the RaceView is drawn in, like a MyIcon or a
+	 * RaceCanvas, so the same RaceView can be drawn in several views with different ones. By default, the
+	 * RaceView is drawn in full detail
+	 * @param graphics2d the Graphics2D reference used to draw the objects on the GUI
+	 * @param levelOfDetail the level of detail of the view (null to draw in full detail)
+	 */
+	public default void draw(Graphics2D graphics2d, LevelOfDetail levelOfDetail) {
+		
+		draw(graphics2d);
+	}
+	
+	/**
+	 * Method that returns the X coordinate of the right end of the RaceView so that the system knows
+	 * when the RaceView has hit the "wall" of the GUI
+	 * @return the X coordinate of the rightmost end of the RaceView
+	 */
+	public abstract int getRightEndXPosition();
+	
+	/**
+	 * Method that returns the X coordinate of the left end of the RaceView so that the system knows
+	 * when the RaceView has hit the "wall" of the GUI
+	 * @return the X coordinate of the leftmost end of the RaceView
+	 */
+	public abstract int getLeftEndXPosition();
+	
+	/**
+	 * Method that calls the visitor once for every rider (single unicycle) of the RaceView, always in the
+	 * same order (the order the riders were added in), so that the riders of two visits can be matched by position.
+	 * By default, the RaceView has no riders (e.g. an obstacle on the track), so the visitor is never called
+	 * @param riderVisitor the visitor to be called for every rider
+	 */
+	public default void visitRiders(RiderVisitor riderVisitor) {
+		
+	}
+	
+	/**
+	 * Method that adds to the region the areas of the GUI that changed since the last call: where the
+	 * RaceView was and where it is now, if it moved. Nothing is added if it didn't move, so that the GUI
+	 * only repaints what changed. By default, the RaceView doesn't keep track of where it was, so the whole
+	 * GUI is marked as changed every time
+	 * @param damageRegion the region the changed areas are added to
+	 */
+	public default void collectDamage(DamageRegion damageRegion) {
+		
+		damageRegion.addEverything();
+	}
+	
+	/**
+	 * Method that copies the X coordinate (of the center of the wheel) of every rider of the RaceView, in
+	 * the order visitRiders visits the riders. Much faster than visitRiders when only the positions are needed,
+	 * except by default, where the X coordinates are copied from visitRiders
+	 * @param xPositions the array the X coordinates are copied to
+	 * @param offset the position in xPositions where the X coordinate of the first rider is copied to
+	 * @return the number of riders copied
+	 * @throws IndexOutOfBoundsException if xPositions doesn't have room for every rider
+	 */
+	public default int getRiderXPositions(int[] xPositions, int offset) {
+		
+		int[] riderCount = new int[1];
+		visitRiders((x, y, seatLength, rgb) -> xPositions[offset + riderCount[0]++] = x);
+		
+		return riderCount[0];
+	}
+	
+}
@@ -0,0 +1,105 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class that implements the SimulationClock Interface.
+ * This implementation ticks at a fixed rate in real time, like the Swing Timer of the Tester does, but
+ * without needing a display. If the simulation falls behind, it catches up by ticking immediately, unless
+ * it is so far behind that it is better to start counting again from now
+ * @author Luiz do Valle
+ *
+ */
+public class RealTimeClock implements SimulationClock {
+
+	/**
+	 * Maximum number of late ticks that are run back to back to catch up
+	 */
+	private static final int MAX_CATCH_UP_TICKS = 5;
+	
+	/**
+	 * The length of a tick in nanoseconds
+	 */
+	private final long tickLengthNanos;
+	
+	/**
+	 * The System.nanoTime() at which the next tick is due
+	 */
+	private long nextTickNanos;
+	
+	/**
+	 * The simulated time of the last tick
+	 */
+	private long simulatedTimeNanos;
+	
+	/**
+	 * Whether awaitNextTick was already called (the first tick happens immediately)
+	 */
+	private boolean started;
+	
+	/**
+	 * Constructor that initializes the clock with the specified tick length
+	 * @param tickLength the amount of time between two ticks
+	 * @param unit the unit of tickLength
+	 */
+	public RealTimeClock(long tickLength, TimeUnit unit) {
+		
+		this.tickLengthNanos = unit.toNanos(tickLength);
+		
+		if(tickLengthNanos <= 0) {
+			
+			throw new IllegalArgumentException("The tick length must be positive");
+		}
+	}
+	
+	/**
+	 * Constructor that initializes the clock with the specified number of ticks per second
+	 * @param ticksPerSecond the number of ticks per second (60 for the Tester's 60 Hz)
+	 */
+	public RealTimeClock(int ticksPerSecond) {
+		
+		this(TimeUnit.SECONDS.toNanos(1) / ticksPerSecond, TimeUnit.NANOSECONDS);
+	}
+	
+	@Override
+	public long awaitNextTick() throws InterruptedException {
+		
+		long now = System.nanoTime();
+		
+		if(!started) {
+			
+			started = true;
+			nextTickNanos = now + tickLengthNanos;
+			return simulatedTimeNanos;
+		}
+		
+		//Too far behind (e.g. the process was suspended): don't run a burst of ticks, start counting from now
+		if(now - nextTickNanos > MAX_CATCH_UP_TICKS * tickLengthNanos) {
+			
+			nextTickNanos = now;
+		}
+		
+		while(now < nextTickNanos) {
+			
+			LockSupport.parkNanos(this, nextTickNanos - now);
+			
+			if(Thread.interrupted()) {
+				
+				throw new InterruptedException();
+			}
+			
+			now = System.nanoTime();
+		}
+		
+		nextTickNanos += tickLengthNanos;
+		simulatedTimeNanos += tickLengthNanos;
+		
+		return simulatedTimeNanos;
+	}
+
+	@Override
+	public long getTickLengthNanos() {
+		
+		return tickLengthNanos;
+	}
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Class that implements the Driver Interface.
+ * This implementation doesn't decide how the MovingObject moves: it plays back a race recorded by a
+ * RaceRecorder, moving every rider to its recorded position. The MovingObject must have the same riders, in
+ * the same order, as the recorded one (like the same tree rebuilt, or RaceRecording.createFleet()).
+ * The playback speed is how many recorded ticks each call to drive() advances: it can be fractional (slow
+ * motion), larger than 1 (fast forward) or negative (rewind), and seek(long) jumps to any tick
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class ReplayDriver implements Driver {
+
+	/**
+	 * The MovingObject the race is played back into
+	 */
+	private final MovingObject movingObject;
+
+	/**
+	 * The recorded race
+	 */
+	private final RaceRecording raceRecording;
+
+	/**
+	 * Number of recorded ticks advanced by every call to drive()
+	 */
+	private double playbackSpeed = 1;
+
+	/**
+	 * The tick being played, with the fraction of a tick accumulated by fractional playback speeds
+	 */
+	private double playhead;
+
+	/**
+	 * Constructor that moves the riders to their positions in the first recorded tick
+	 * @param movingObject the MovingObject the race is played back into
+	 * @param raceRecording the recorded race
+	 */
+	public ReplayDriver(MovingObject movingObject, RaceRecording raceRecording) {
+
+		int[] count = {0};
+		movingObject.visitRiders((x, y, seatLength, rgb) -> count[0]++);
+
+		if(count[0] != raceRecording.getRiderCount()) {
+
+			throw new IllegalArgumentException("The recording has " + raceRecording.getRiderCount() + " riders, the MovingObject has " + count[0]);
+		}
+
+		this.movingObject = movingObject;
+		this.raceRecording = raceRecording;
+
+		seek(raceRecording.getFirstTick());
+	}
+
+	@Override
+	public void drive() {
+
+		playhead = clamp(playhead + playbackSpeed);
+
+		long targetTick = (long) Math.floor(playhead);
+
+		if(targetTick != raceRecording.getTick()) {
+
+			raceRecording.seek(targetTick);
+			movingObject.setRiderXPositions(raceRecording.getXPositions(), 0);
+		}
+	}
+
+	@Override
+	public void drive(int speed) {
+
+		playbackSpeed = speed;
+
+		drive();
+	}
+
+	/**
+	 * Method that sets how many recorded ticks every call to drive() advances
+	 * @param playbackSpeed the playback speed (1 plays the race as recorded, negative values rewind it)
+	 */
+	public void setPlaybackSpeed(double playbackSpeed) {
+
+		this.playbackSpeed = playbackSpeed;
+	}
+
+	/**
+	 * Method that moves the riders to their positions in any recorded tick
+	 * @param tick the tick to be played (clamped to the ticks of the recording)
+	 */
+	public void seek(long tick) {
+
+		playhead = clamp(tick);
+
+		raceRecording.seek((long) playhead);
+		movingObject.setRiderXPositions(raceRecording.getXPositions(), 0);
+	}
+
+	/**
+	 * Method that returns the recorded tick being played
+	 * @return the tick
+	 */
+	public long getTick() {
+
+		return raceRecording.getTick();
+	}
+
+	/**
+	 * Method that returns the speed the race had in the tick being played (like the Tester's slider)
+	 * @return the recorded speed
+	 */
+	public int getRecordedSpeed() {
+
+		return raceRecording.getSpeed();
+	}
+
+	/**
+	 * Method that returns the recorded race
+	 * @return the recording being played
+	 */
+	public RaceRecording getRaceRecording() {
+
+		return raceRecording;
+	}
+
+	/**
+	 * Helper method that keeps a tick inside the ticks of the recording
+	 * @param tick the tick
+	 * @return the closest recorded tick
+	 */
+	private double clamp(double tick) {
+
+		return Math.max(raceRecording.getFirstTick(), Math.min(tick, raceRecording.getLastTick()));
+	}
+}
@@ -0,0 +1,354 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class that generates random riders, fleets and pelotons from a seed, so that the same seed always produces
+ * exactly the same race (a race seen in production can be reproduced by reusing its seed).
+ * Riders are placed like the ones of the Tester: up to 5 units after the start of their peloton, up to a unit
+ * above the ground, with a seat between half a unit and two units and a random color.
+ * Large fleets are generated in parallel: every CHUNK_SIZE riders get their own generator, split from the
+ * generator of the class in order before any of them is used, so the riders only depend on the seed and never
+ * on how many threads generated them or in which order the chunks ran
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class RiderGenerator {
+
+	/**
+	 * Number of riders generated with the same generator (and by the same task)
+	 */
+	public static final int CHUNK_SIZE = 1 << 14;
+
+	/**
+	 * Generator every chunk's generator is split from. Only used by the thread calling the methods of the class
+	 */
+	private final SplittableRandom random;
+
+	/**
+	 * The unit the riders are placed and scaled with (like the UNIT of the Tester)
+	 */
+	private final int unit;
+
+	/**
+	 * The Y coordinate of the ground the riders stand on
+	 */
+	private final int groundY;
+
+	/**
+	 * The pool the chunks are generated in
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor that creates a generator using the common ForkJoinPool (one thread per core)
+	 * @param seed the seed the whole race is generated from
+	 * @param unit the unit the riders are placed and scaled with
+	 * @param groundY the Y coordinate of the ground the riders stand on
+	 */
+	public RiderGenerator(long seed, int unit, int groundY) {
+
+		this(seed, unit, groundY, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor that creates a generator using the specified pool
+	 * @param seed the seed the whole race is generated from
+	 * @param unit the unit the riders are placed and scaled with
+	 * @param groundY the Y coordinate of the ground the riders stand on
+	 * @param pool the pool the chunks are generated in (its parallelism does not change the riders generated)
+	 */
+	public RiderGenerator(long seed, int unit, int groundY, ForkJoinPool pool) {
+
+		if(unit < 1) {
+
+			throw new IllegalArgumentException("The unit must be positive: " + unit);
+		}
+
+		this.random = new SplittableRandom(seed);
+		this.unit = unit;
+		this.groundY = groundY;
+		this.pool = pool;
+	}
+
+	/**
+	 * Method that generates a single Unicycle
+	 * @param startX the X coordinate the rider is placed after
+	 * @return the new Unicycle
+	 */
+	public Unicycle generateUnicycle(int startX) {
+
+		int x = startX + generateXOffset(random);
+		int y = generateYPosition(random);
+		int seatLength = generateSeatLength(random);
+
+		return new Unicycle(x, y, seatLength, new Color(generateColor(random)));
+	}
+
+	/**
+	 * Method that generates a fleet of riders
+	 * @param riders the number of riders of the fleet
+	 * @param startX the X coordinate the riders are placed after
+	 * @return the new fleet
+	 */
+	public UnicycleFleet generateFleet(int riders, int startX) {
+
+		return generateFleets(new int[] {riders}, new int[] {startX})[0];
+	}
+
+	/**
+	 * Method that generates a peloton: a fleet of riders inside a group with a random speed multiplier
+	 * between 1 and 2
+	 * @param riders the number of riders of the peloton
+	 * @param startX the X coordinate the riders are placed after
+	 * @return the group with the fleet
+	 */
+	public MovingObjectGroup generatePeloton(int riders, int startX) {
+
+		MovingObjectGroup peloton = new MovingObjectGroup(random.nextDouble() + 1);
+		peloton.addMovingObject(generateFleet(riders, startX));
+
+		return peloton;
+	}
+
+	/**
+	 * Method that generates a whole race: pelotons with random speed multipliers between 1 and 2, each one
+	 * starting somewhere in the first part of the track. The riders of all the pelotons are generated in
+	 * parallel at once, so many small pelotons are as fast to generate as a single large one
+	 * @param pelotons the number of pelotons
+	 * @param ridersPerPeloton the number of riders of each peloton
+	 * @param startSpread the pelotons start between 0 and this X coordinate
+	 * @return the group with every peloton
+	 */
+	public MovingObjectGroup generateRace(int pelotons, int ridersPerPeloton, int startSpread) {
+
+		if(startSpread < 1) {
+
+			throw new IllegalArgumentException("The start spread must be positive: " + startSpread);
+		}
+
+		double[] speedMultipliers = new double[pelotons];
+		int[] riders = new int[pelotons];
+		int[] startXs = new int[pelotons];
+
+		for(int i = 0; i < pelotons; i++) {
+
+			speedMultipliers[i] = random.nextDouble() + 1;
+			riders[i] = ridersPerPeloton;
+			startXs[i] = random.nextInt(startSpread);
+		}
+
+		UnicycleFleet[] unicycleFleets = generateFleets(riders, startXs);
+		MovingObjectGroup unicycleGroup = new MovingObjectGroup();
+
+		for(int i = 0; i < pelotons; i++) {
+
+			MovingObjectGroup peloton = new MovingObjectGroup(speedMultipliers[i]);
+			peloton.addMovingObject(unicycleFleets[i]);
+			unicycleGroup.addMovingObject(peloton);
+		}
+
+		return unicycleGroup;
+	}
+
+	/**
+	 * Helper method that generates several fleets, all their chunks in parallel
+	 * @param riders the number of riders of every fleet
+	 * @param startXs the X coordinate the riders of every fleet are placed after
+	 * @return the new fleets
+	 */
+	private UnicycleFleet[] generateFleets(int[] riders, int[] startXs) {
+
+		List<RiderChunk> chunks = new ArrayList<>();
+		int[][] fleetArrays = new int[riders.length * 4][];
+
+		//Split one generator per chunk, in order and on this thread, before any chunk runs
+		for(int i = 0; i < riders.length; i++) {
+
+			if(riders[i] < 0) {
+
+				throw new IllegalArgumentException("The number of riders can't be negative: " + riders[i]);
+			}
+
+			int[] x = fleetArrays[i * 4] = new int[riders[i]];
+			int[] y = fleetArrays[i * 4 + 1] = new int[riders[i]];
+			int[] seatLength = fleetArrays[i * 4 + 2] = new int[riders[i]];
+			int[] rgb = fleetArrays[i * 4 + 3] = new int[riders[i]];
+
+			for(int from = 0; from < riders[i]; from += CHUNK_SIZE) {
+
+				int to = Math.min(from + CHUNK_SIZE, riders[i]);
+				chunks.add(new RiderChunk(random.split(), startXs[i], x, y, seatLength, rgb, from, to));
+			}
+		}
+
+		pool.invoke(new RecursiveAction() {
+
+			@Override
+			protected void compute() {
+
+				ForkJoinTask.invokeAll(chunks);
+			}
+		});
+
+		//Adding the riders is cheap compared to generating them, and keeps the fleets' bounds and damage consistent
+		UnicycleFleet[] unicycleFleets = new UnicycleFleet[riders.length];
+
+		for(int i = 0; i < riders.length; i++) {
+
+			int[] x = fleetArrays[i * 4];
+			int[] y = fleetArrays[i * 4 + 1];
+			int[] seatLength = fleetArrays[i * 4 + 2];
+			int[] rgb = fleetArrays[i * 4 + 3];
+
+			unicycleFleets[i] = new UnicycleFleet(riders[i]);
+
+			for(int j = 0; j < riders[i]; j++) {
+
+				unicycleFleets[i].addUnicycle(x[j], y[j], seatLength[j], rgb[j]);
+			}
+
+			//Let the temporary arrays be collected as soon as their fleet is filled
+			for(int k = 0; k < 4; k++) {
+
+				fleetArrays[i * 4 + k] = null;
+			}
+		}
+
+		return unicycleFleets;
+	}
+
+	/**
+	 * Helper method that generates how far after the start of its peloton a rider is placed
+	 * @param random the generator used
+	 * @return the offset of the X coordinate of the rider
+	 */
+	private int generateXOffset(SplittableRandom random) {
+
+		return (int) (random.nextDouble() * unit * 5 + 20);
+	}
+
+	/**
+	 * Helper method that generates the Y coordinate of a rider, up to a unit above the ground
+	 * @param random the generator used
+	 * @return the Y coordinate of the bottom of the wheel
+	 */
+	private int generateYPosition(SplittableRandom random) {
+
+		return groundY - (int) (random.nextDouble() * unit);
+	}
+
+	/**
+	 * Helper method that generates the seat length of a rider, between half a unit and two units
+	 * @param random the generator used
+	 * @return the seat length
+	 */
+	private int generateSeatLength(SplittableRandom random) {
+
+		return (int) ((random.nextDouble() * 1.5 + 0.5) * unit);
+	}
+
+	/**
+	 * Helper method that generates the color of a rider
+	 * @param random the generator used
+	 * @return the color as an RGB int
+	 */
+	private int generateColor(SplittableRandom random) {
+
+		return random.nextInt(0x1000000);
+	}
+
+	/**
+	 * Class that generates a range of the riders of a fleet with its own generator
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	private final class RiderChunk extends RecursiveAction {
+
+		/**
+		 * Serial version of the task (ForkJoinTask is Serializable)
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The generator of the chunk
+		 */
+		private final SplittableRandom random;
+
+		/**
+		 * The X coordinate the riders are placed after
+		 */
+		private final int startX;
+
+		/**
+		 * X coordinates of the riders of the fleet
+		 */
+		private final int[] x;
+
+		/**
+		 * Y coordinates of the riders of the fleet
+		 */
+		private final int[] y;
+
+		/**
+		 * Seat lengths of the riders of the fleet
+		 */
+		private final int[] seatLength;
+
+		/**
+		 * Colors of the riders of the fleet
+		 */
+		private final int[] rgb;
+
+		/**
+		 * Index of the first rider of the chunk
+		 */
+		private final int from;
+
+		/**
+		 * Index after the last rider of the chunk
+		 */
+		private final int to;
+
+		/**
+		 * Constructor that initializes class fields
+		 * @param random the generator of the chunk
+		 * @param startX the X coordinate the riders are placed after
+		 * @param x X coordinates of the riders of the fleet
+		 * @param y Y coordinates of the riders of the fleet
+		 * @param seatLength seat lengths of the riders of the fleet
+		 * @param rgb colors of the riders of the fleet
+		 * @param from index of the first rider of the chunk
+		 * @param to index after the last rider of the chunk
+		 */
+		private RiderChunk(SplittableRandom random, int startX, int[] x, int[] y, int[] seatLength, int[] rgb, int from, int to) {
+
+			this.random = random;
+			this.startX = startX;
+			this.x = x;
+			this.y = y;
+			this.seatLength = seatLength;
+			this.rgb = rgb;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+
+			for(int i = from; i < to; i++) {
+
+				x[i] = startX + generateXOffset(random);
+				y[i] = generateYPosition(random);
+				seatLength[i] = generateSeatLength(random);
+				rgb[i] = generateColor(random);
+			}
+		}
+	}
+}
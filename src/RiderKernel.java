@@ -0,0 +1,237 @@
+/**
+ * Class that does the per-rider arithmetic of a tick on whole primitive arrays of riders (like the ones of
+ * UnicycleFleet) in a single call: translating the riders and their ends, and moving them to new X coordinates
+ * while recomputing the ends of all of them (every tick of a replay or of a broadcast race).
+ *
+ * There are two implementations with identical results: a scalar one, and one that uses the SIMD registers of
+ * the CPU through the Vector API (jdk.incubator.vector), several riders per instruction. The vector one is in
+ * its own source directory (vector/), so that the rest of the race compiles without the module, and is only
+ * loaded (by name) when the JVM was started with --add-modules jdk.incubator.vector. It is then used by
+ * default, and either one can be chosen with -Dunicyclerace.kernel=scalar or -Dunicyclerace.kernel=vector
+ *
+ * @author Luiz do Valle
+ *
+ */
+public abstract class RiderKernel {
+
+	/**
+	 * Name of the module of the Vector API
+	 */
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+	/**
+	 * Name of the class of the implementation that uses the Vector API (compiled from vector/)
+	 */
+	private static final String VECTOR_CLASS = "VectorRiderKernel";
+
+	/**
+	 * The scalar implementation
+	 */
+	private static final RiderKernel SCALAR = new ScalarRiderKernel();
+
+	/**
+	 * Method that returns the scalar implementation
+	 * @return the kernel that handles one rider at a time
+	 */
+	public static RiderKernel scalar() {
+
+		return SCALAR;
+	}
+
+	/**
+	 * Method that returns the implementation that uses the Vector API
+	 * @return the kernel that handles several riders per instruction
+	 * @throws IllegalStateException if the JVM was started without the module of the Vector API, or the class of
+	 * the implementation was not compiled
+	 */
+	public static RiderKernel vector() {
+
+		if(!isVectorSupported()) {
+
+			throw new IllegalStateException(getVectorUnsupportedReason());
+		}
+
+		return VectorRiderKernelHolder.VECTOR;
+	}
+
+	/**
+	 * Method that tells whether the implementation that uses the Vector API can be used
+	 * @return true if the module of the Vector API is loaded and the class of the implementation was compiled
+	 */
+	public static boolean isVectorSupported() {
+
+		return VectorRiderKernelHolder.VECTOR != null;
+	}
+
+	/**
+	 * Method that returns the implementation used by default: the one chosen with -Dunicyclerace.kernel, or else
+	 * the vector one if the Vector API can be used. If the vector one is chosen but can't be used, the scalar
+	 * one is used instead and the reason is printed
+	 * @return the default kernel
+	 */
+	public static RiderKernel getDefault() {
+
+		String kernel = System.getProperty("unicyclerace.kernel", "");
+
+		if(kernel.equals("scalar") || !isVectorSupported()) {
+
+			if(kernel.equals("vector")) {
+
+				System.err.println("-Dunicyclerace.kernel=vector ignored, using the scalar kernel: " + getVectorUnsupportedReason());
+			}
+
+			return scalar();
+		}
+
+		return vector();
+	}
+
+	/**
+	 * Method that moves a range of riders and their ends by the same amount
+	 * @param x the X coordinates of the riders
+	 * @param leftEndXPosition the X coordinates of the left ends of the riders
+	 * @param rightEndXPosition the X coordinates of the right ends of the riders
+	 * @param from the index of the first rider to be moved
+	 * @param to the index after the last rider to be moved
+	 * @param deltaX the amount every rider moves by
+	 */
+	public abstract void translate(int[] x, int[] leftEndXPosition, int[] rightEndXPosition, int from, int to, int deltaX);
+
+	/**
+	 * Method that moves a range of riders (and their ends) to new X coordinates and recomputes the ends of
+	 * all of them together
+	 * @param newX the new X coordinates of the riders
+	 * @param offset the index of the new X coordinate of the first rider in newX
+	 * @param x the X coordinates of the riders
+	 * @param leftEndXPosition the X coordinates of the left ends of the riders
+	 * @param rightEndXPosition the X coordinates of the right ends of the riders
+	 * @param count the number of riders, starting from index 0
+	 * @return the leftmost left end in the high 32 bits and the rightmost right end in the low 32 bits
+	 * (see getLeftEnd and getRightEnd)
+	 */
+	public abstract long moveTo(int[] newX, int offset, int[] x, int[] leftEndXPosition, int[] rightEndXPosition, int count);
+
+	/**
+	 * Method that returns the leftmost left end of the bounds returned by moveTo
+	 * @param bounds the bounds returned by moveTo
+	 * @return the X coordinate of the leftmost left end
+	 */
+	public static int getLeftEnd(long bounds) {
+
+		return (int) (bounds >> 32);
+	}
+
+	/**
+	 * Method that returns the rightmost right end of the bounds returned by moveTo
+	 * @param bounds the bounds returned by moveTo
+	 * @return the X coordinate of the rightmost right end
+	 */
+	public static int getRightEnd(long bounds) {
+
+		return (int) bounds;
+	}
+
+	/**
+	 * Helper method that packs the ends of a range of riders like moveTo returns them
+	 * @param left the X coordinate of the leftmost left end
+	 * @param right the X coordinate of the rightmost right end
+	 * @return the packed bounds
+	 */
+	static long packBounds(int left, int right) {
+
+		return (long) left << 32 | (right & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Helper method that explains why the implementation that uses the Vector API can't be used
+	 * @return the reason
+	 */
+	private static String getVectorUnsupportedReason() {
+
+		if(ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+
+			return "the Vector API needs the JVM to be started with --add-modules " + VECTOR_MODULE;
+		}
+
+		return VECTOR_CLASS + " was not compiled (it is in vector/, compiled with --add-modules " + VECTOR_MODULE + ")";
+	}
+
+	/**
+	 * Helper method that creates the implementation that uses the Vector API, by name so that the rest of the
+	 * race neither needs it compiled nor the module loaded
+	 * @return the implementation, or null if the module is missing or the class was not compiled
+	 */
+	private static RiderKernel createVector() {
+
+		if(ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+
+			return null;
+		}
+
+		try {
+
+			return (RiderKernel) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+
+		} catch (ReflectiveOperationException e) {
+
+			return null;
+		}
+	}
+
+	/**
+	 * Class that holds the implementation that uses the Vector API, so that it is only created (and the
+	 * classes of the module only loaded) the first time it is asked for
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	private static final class VectorRiderKernelHolder {
+
+		/**
+		 * The implementation that uses the Vector API (null if it can't be used)
+		 */
+		private static final RiderKernel VECTOR = createVector();
+	}
+
+	/**
+	 * Class that implements the kernel one rider at a time. The loops are simple enough for the JIT compiler
+	 * to vectorize translate by itself (the vector kernel is no faster there), but not the reduction of moveTo
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	private static final class ScalarRiderKernel extends RiderKernel {
+
+		@Override
+		public void translate(int[] x, int[] leftEndXPosition, int[] rightEndXPosition, int from, int to, int deltaX) {
+
+			for(int i = from; i < to; i++) {
+
+				x[i] += deltaX;
+				leftEndXPosition[i] += deltaX;
+				rightEndXPosition[i] += deltaX;
+			}
+		}
+
+		@Override
+		public long moveTo(int[] newX, int offset, int[] x, int[] leftEndXPosition, int[] rightEndXPosition, int count) {
+
+			int left = Integer.MAX_VALUE;
+			int right = Integer.MIN_VALUE;
+
+			for(int i = 0; i < count; i++) {
+
+				int deltaX = newX[offset + i] - x[i];
+
+				x[i] += deltaX;
+				leftEndXPosition[i] += deltaX;
+				rightEndXPosition[i] += deltaX;
+
+				left = Math.min(left, leftEndXPosition[i]);
+				right = Math.max(right, rightEndXPosition[i]);
+			}
+
+			return packBounds(left, right);
+		}
+	}
+}
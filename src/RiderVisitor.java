@@ -0,0 +1,18 @@
+/**
+ * Interface that serves as the blueprint for the classes that need to go through every rider (single unicycle)
+ * of a MovingObject, no matter how the riders are grouped (Visitor Pattern)
+ * @author Luiz do Valle
+ *
+ */
+public interface RiderVisitor {
+
+	/**
+	 * Method called once for every rider of the MovingObject
+	 * @param x the X coordinate of the center of the rider's wheel
+	 * @param y the Y coordinate of the bottom (6 o'clock) position of the rider's wheel
+	 * @param seatLength the seat length of the rider
+	 * @param rgb the color of the rider as an RGB int
+	 */
+	public abstract void visitRider(int x, int y, int seatLength, int rgb);
+	
+}
@@ -0,0 +1,432 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that implements the TickListener Interface and publishes the positions of the riders of a race into a
+ * memory-mapped file after every tick, so that other processes can display the race (see SharedRaceView) while
+ * this one only simulates it. A renderer that crashes or pauses for a garbage collection never stalls the race.
+ *
+ * The riders (their Y coordinates, seat lengths and colors) are written once. The X coordinates are written
+ * into one of several slots, each one with its own sequence counter (odd while the slot is being written) and
+ * the tick it holds. Every reader pins the slot it displays, and a slot is never written while it is the latest
+ * one or pinned, so a reader never sees a torn tick and never copies the positions: it draws straight from the
+ * file. With MAX_READERS readers and MAX_READERS + 2 slots there is always a free slot, so publishing never
+ * waits for a reader either.
+ *
+ * Format of the file (native byte order, since it is only shared by processes of the same machine):
+ * - Header: magic, version, number of riders, number of slots (ints), tick length, latest slot and state (longs)
+ * - Readers: process id and pinned slot (longs) of every reader, MAX_READERS of them
+ * - Slot headers: sequence, tick and simulated time (longs), left and right ends of the race (ints)
+ * - Riders: Y coordinate, seat length and color (ints) of every rider, in the order visitRiders visits them
+ * - Slots: X coordinate (int) of every rider
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class SharedRaceStore implements TickListener, AutoCloseable {
+
+	/**
+	 * The first int of every store ("URSH")
+	 */
+	static final int MAGIC = 0x55525348;
+
+	/**
+	 * The version of the format
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Number of processes that can read a store at once
+	 */
+	static final int MAX_READERS = 4;
+
+	/**
+	 * Number of slots the positions are written into
+	 */
+	static final int SLOT_COUNT = MAX_READERS + 2;
+
+	/**
+	 * Position of the number of riders
+	 */
+	static final int RIDER_COUNT_OFFSET = 8;
+
+	/**
+	 * Position of the tick length
+	 */
+	static final int TICK_LENGTH_OFFSET = 16;
+
+	/**
+	 * Position of the index of the slot holding the latest tick
+	 */
+	static final int LATEST_SLOT_OFFSET = 24;
+
+	/**
+	 * Position of the state of the store (RUNNING or CLOSED)
+	 */
+	static final int STATE_OFFSET = 32;
+
+	/**
+	 * Position of the first reader (on its own cache line, away from what the writer changes every tick)
+	 */
+	static final int READERS_OFFSET = 64;
+
+	/**
+	 * Size of a reader in bytes
+	 */
+	static final int READER_SIZE = 16;
+
+	/**
+	 * Position of the first slot header
+	 */
+	static final int SLOTS_OFFSET = READERS_OFFSET + MAX_READERS * READER_SIZE;
+
+	/**
+	 * Size of a slot header in bytes (a cache line)
+	 */
+	static final int SLOT_HEADER_SIZE = 64;
+
+	/**
+	 * Position of the riders
+	 */
+	static final int RIDERS_OFFSET = SLOTS_OFFSET + SLOT_COUNT * SLOT_HEADER_SIZE;
+
+	/**
+	 * State of a store whose race is still being published
+	 */
+	static final long RUNNING = 0;
+
+	/**
+	 * State of a store closed by its writer
+	 */
+	static final long CLOSED = 1;
+
+	/**
+	 * Slot pinned by a reader that didn't pin any
+	 */
+	static final long NO_SLOT = -1;
+
+	/**
+	 * Access to the longs of the file with memory ordering guarantees (needed for the sequence counters, the
+	 * latest slot and the pins, which are shared by several processes)
+	 */
+	static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	/**
+	 * Access to the ints of the file with memory ordering guarantees (needed for the magic, written last)
+	 */
+	static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+	/**
+	 * Number of riders of the race started by main when none is specified
+	 */
+	private static final int DEFAULT_RIDERS = 100000;
+
+	/**
+	 * Number of pelotons of the race started by main
+	 */
+	private static final int PELOTONS = 20;
+
+	/**
+	 * Length of the track of the race started by main (the length of the Tester's GUI)
+	 */
+	private static final int TRACK_LENGTH = 1500;
+
+	/**
+	 * The MovingObject whose riders are published
+	 */
+	private final RaceView movingObject;
+
+	/**
+	 * The mapped file
+	 */
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * The X coordinates of the riders in every slot
+	 */
+	private final IntBuffer[] slots = new IntBuffer[SLOT_COUNT];
+
+	/**
+	 * Number of riders of the race
+	 */
+	private final int riderCount;
+
+	/**
+	 * X coordinates of the riders in the tick being published
+	 */
+	private final int[] xPositions;
+
+	/**
+	 * Whether close() was called
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructor that creates (or replaces) the file, writes the riders the race currently has and publishes
+	 * their current positions as tick 0, so that readers have something to display before the first tick
+	 * @param movingObject the MovingObject whose riders are published
+	 * @param path the file the race is published to
+	 * @param tickLengthNanos the amount of real time between two ticks (see SimulationClock.getTickLengthNanos())
+	 * @throws IOException if the file can't be written
+	 */
+	public SharedRaceStore(RaceView movingObject, Path path, long tickLengthNanos) throws IOException {
+
+		this.movingObject = movingObject;
+
+		int[] count = {0};
+		movingObject.visitRiders((x, y, seatLength, rgb) -> count[0]++);
+		riderCount = count[0];
+
+		long size = fileSize(riderCount);
+
+		if(size > Integer.MAX_VALUE) {
+
+			throw new IllegalArgumentException("Too many riders to share in a single file: " + riderCount);
+		}
+
+		xPositions = new int[riderCount];
+
+		//A new file rather than a truncated one, so that readers of a previous race keep a valid mapping
+		Files.deleteIfExists(path);
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+
+		buffer.order(ByteOrder.nativeOrder());
+
+		for(int slot = 0; slot < SLOT_COUNT; slot++) {
+
+			slots[slot] = buffer.slice(slotOffset(riderCount, slot), 4 * riderCount).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+
+		buffer.putInt(4, VERSION);
+		buffer.putInt(RIDER_COUNT_OFFSET, riderCount);
+		buffer.putInt(RIDER_COUNT_OFFSET + 4, SLOT_COUNT);
+		buffer.putLong(TICK_LENGTH_OFFSET, tickLengthNanos);
+		buffer.putLong(LATEST_SLOT_OFFSET, NO_SLOT);
+		buffer.putLong(STATE_OFFSET, RUNNING);
+
+		for(int reader = 0; reader < MAX_READERS; reader++) {
+
+			buffer.putLong(READERS_OFFSET + reader * READER_SIZE + 8, NO_SLOT);
+		}
+
+		int[] offset = {RIDERS_OFFSET};
+
+		movingObject.visitRiders((x, y, seatLength, rgb) -> {
+
+			buffer.putInt(offset[0], y);
+			buffer.putInt(offset[0] + 4, seatLength);
+			buffer.putInt(offset[0] + 8, rgb);
+			offset[0] += 12;
+		});
+
+		tickCompleted(0, 0);
+
+		//Written last: readers don't open the file until everything else is there
+		INTS.setVolatile(buffer, 0, MAGIC);
+	}
+
+	@Override
+	public void tickCompleted(long tick, long simulatedTimeNanos) {
+
+		if(closed) {
+
+			return;
+		}
+
+		int visited;
+
+		try {
+
+			visited = movingObject.getRiderXPositions(xPositions, 0);
+
+		} catch (IndexOutOfBoundsException e) {
+
+			visited = -1;
+		}
+
+		if(visited != riderCount) {
+
+			throw new IllegalStateException("The number of riders changed while publishing (" + riderCount + " riders published)");
+		}
+
+		int slot = claimSlot();
+		int slotHeader = SLOTS_OFFSET + slot * SLOT_HEADER_SIZE;
+
+		slots[slot].put(0, xPositions);
+		buffer.putLong(slotHeader + 8, tick);
+		buffer.putLong(slotHeader + 16, simulatedTimeNanos);
+		buffer.putInt(slotHeader + 24, movingObject.getLeftEndXPosition());
+		buffer.putInt(slotHeader + 28, movingObject.getRightEndXPosition());
+
+		//Even again: the slot holds a whole tick, which becomes the latest one
+		long sequence = (long) LONGS.get(buffer, slotHeader);
+		LONGS.setRelease(buffer, slotHeader, sequence + 1);
+		LONGS.setVolatile(buffer, LATEST_SLOT_OFFSET, (long) slot);
+	}
+
+	/**
+	 * Helper method that finds a slot that is neither the latest one nor pinned by a reader and makes its
+	 * sequence counter odd, so that no reader pins it until it is written
+	 * @return the index of the slot
+	 */
+	private int claimSlot() {
+
+		long latest = (long) LONGS.getVolatile(buffer, LATEST_SLOT_OFFSET);
+
+		while(true) {
+
+			for(int slot = 0; slot < SLOT_COUNT; slot++) {
+
+				if(slot == latest || isPinned(slot)) {
+
+					continue;
+				}
+
+				int slotHeader = SLOTS_OFFSET + slot * SLOT_HEADER_SIZE;
+				long sequence = (long) LONGS.get(buffer, slotHeader);
+
+				LONGS.setVolatile(buffer, slotHeader, sequence + 1);
+
+				/*A reader may have pinned the slot since it was checked. It pins before reading the sequence and
+				 *this checks the pins after making it odd, so either the reader sees it odd and looks for another
+				 *slot, or the pin is seen here and the slot is given back untouched*/
+				if(!isPinned(slot)) {
+
+					return slot;
+				}
+
+				LONGS.setVolatile(buffer, slotHeader, sequence);
+			}
+
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Helper method that tells whether a reader pinned a slot
+	 * @param slot the index of the slot
+	 * @return true if a reader is displaying the slot
+	 */
+	private boolean isPinned(int slot) {
+
+		for(int reader = 0; reader < MAX_READERS; reader++) {
+
+			if((long) LONGS.getVolatile(buffer, READERS_OFFSET + reader * READER_SIZE + 8) == slot) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Method that tells the readers the race won't be published anymore. They keep displaying the last tick
+	 */
+	@Override
+	public void close() {
+
+		if(closed) {
+
+			return;
+		}
+
+		closed = true;
+		LONGS.setVolatile(buffer, STATE_OFFSET, CLOSED);
+	}
+
+	/**
+	 * Method that returns the number of riders published
+	 * @return the number of riders
+	 */
+	public int getRiderCount() {
+
+		return riderCount;
+	}
+
+	/**
+	 * Helper method that returns the position of the X coordinates of a slot
+	 * @param riderCount the number of riders of the race
+	 * @param slot the index of the slot
+	 * @return the position of the slot in the file
+	 */
+	static int slotOffset(int riderCount, int slot) {
+
+		//The slots start on a cache line of their own
+		long ridersEnd = RIDERS_OFFSET + 12L * riderCount;
+		long slotsStart = (ridersEnd + SLOT_HEADER_SIZE - 1) / SLOT_HEADER_SIZE * SLOT_HEADER_SIZE;
+
+		return (int) (slotsStart + 4L * riderCount * slot);
+	}
+
+	/**
+	 * Helper method that returns the size of the file for a number of riders
+	 * @param riderCount the number of riders of the race
+	 * @return the size of the file in bytes
+	 */
+	static long fileSize(int riderCount) {
+
+		long ridersEnd = RIDERS_OFFSET + 12L * riderCount;
+		long slotsStart = (ridersEnd + SLOT_HEADER_SIZE - 1) / SLOT_HEADER_SIZE * SLOT_HEADER_SIZE;
+
+		return slotsStart + 4L * riderCount * SLOT_COUNT;
+	}
+
+	/**
+	 * Method that runs a race in real time in this process and publishes it to a file for renderers in other
+	 * processes (see SharedRaceView), until its standard input is closed.
+	 * Prints a line once the file can be opened.
+	 * Usage: java SharedRaceStore file [riders] [seed]
+	 * @param args the file, the number of riders and the seed the riders are generated from (the last two optional)
+	 * @throws IOException if the file can't be written
+	 * @throws InterruptedException if the main thread is interrupted
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		if(args.length < 1) {
+
+			System.err.println("Usage: java SharedRaceStore file [riders] [seed]");
+			System.exit(1);
+		}
+
+		Path path = Paths.get(args[0]);
+		int riders = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RIDERS;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+		//Pelotons with different speeds, kept moving back and forth along the track
+		MovingObjectGroup unicycleGroup = new RiderGenerator(seed, 50, 250).generateRace(PELOTONS, Math.max(riders / PELOTONS, 1), TRACK_LENGTH / 2);
+
+		Driver driver = RaceInstrumentation.instrument(new LeftAndRightDriver(unicycleGroup, 5, TRACK_LENGTH));
+		SimulationRunner simulationRunner = new SimulationRunner(driver, new RealTimeClock(60));
+
+		try(SharedRaceStore sharedRaceStore = new SharedRaceStore(unicycleGroup, path, TimeUnit.SECONDS.toNanos(1) / 60)) {
+
+			simulationRunner.addTickListener(sharedRaceStore);
+			simulationRunner.start();
+
+			System.out.println("Publishing " + sharedRaceStore.getRiderCount() + " riders to " + path);
+
+			//The race runs until whoever started this process closes its input (or the process is killed)
+			while(System.in.read() != -1) {
+
+				//Nothing to read, only waiting for the end of the input
+			}
+
+			simulationRunner.stop();
+		}
+	}
+}
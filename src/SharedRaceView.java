@@ -0,0 +1,389 @@
+import java.awt.Graphics2D;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class that implements the RaceView Interface for a race simulated by another process and published by a
+ * SharedRaceStore, so that a MyIcon (or a Camera) can display it like a local race.
+ * The view displays one tick at a time: refresh() pins the latest tick published, and until the next refresh
+ * every method of the view sees that tick and nothing else, because the store never writes a pinned slot.
+ * The riders are drawn straight from the mapped file: nothing is copied or decoded per frame.
+ *
+ * The race can only be moved by the process that simulates it, so the view is not a MovingObject and can't be
+ * driven. A view is not thread safe: it should be used by a single thread (like the
+ * Event Dispatch Thread)
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class SharedRaceView implements RaceView, AutoCloseable {
+
+	/**
+	 * The mapped file
+	 */
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * The X coordinates of the riders in every slot
+	 */
+	private final IntBuffer[] slots = new IntBuffer[SharedRaceStore.SLOT_COUNT];
+
+	/**
+	 * Number of riders of the race
+	 */
+	private final int riderCount;
+
+	/**
+	 * Y coordinates of the bottoms of the riders' wheels
+	 */
+	private final int[] yPositions;
+
+	/**
+	 * Seat lengths of the riders
+	 */
+	private final int[] seatLengths;
+
+	/**
+	 * Colors of the riders as RGB ints
+	 */
+	private final int[] colors;
+
+	/**
+	 * The amount of real time between two ticks of the race
+	 */
+	private final long tickLengthNanos;
+
+	/**
+	 * Position of the process id of this reader in the file
+	 */
+	private final int readerOffset;
+
+	/**
+	 * Y coordinate of the top of the highest rider
+	 */
+	private final int topYPosition;
+
+	/**
+	 * Y coordinate of the bottom of the lowest rider
+	 */
+	private final int bottomYPosition;
+
+	/**
+	 * The slot pinned by this view
+	 */
+	private int slot;
+
+	/**
+	 * The tick held by the pinned slot
+	 */
+	private long tick;
+
+	/**
+	 * The simulated time of the tick held by the pinned slot
+	 */
+	private long simulatedTimeNanos;
+
+	/**
+	 * X coordinate of the left end of the race in the pinned tick
+	 */
+	private int leftEndXPosition;
+
+	/**
+	 * X coordinate of the right end of the race in the pinned tick
+	 */
+	private int rightEndXPosition;
+
+	/**
+	 * The tick when collectDamage was last called (-1 before the first call)
+	 */
+	private long damagedTick = -1;
+
+	/**
+	 * X coordinate of the left end of the race when collectDamage was last called
+	 */
+	private int damagedLeftXPosition;
+
+	/**
+	 * X coordinate of the right end of the race when collectDamage was last called
+	 */
+	private int damagedRightXPosition;
+
+	/**
+	 * Whether close() was called
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructor that opens a file published by a SharedRaceStore and pins its latest tick
+	 * @param path the file the race is published to
+	 * @throws IOException if the file can't be read, isn't ready yet, or already has too many readers
+	 */
+	public SharedRaceView(Path path) throws IOException {
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			if(channel.size() < SharedRaceStore.RIDERS_OFFSET) {
+
+				throw new IOException("Not a shared race (or not ready yet): " + path);
+			}
+
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+		}
+
+		buffer.order(ByteOrder.nativeOrder());
+
+		if((int) SharedRaceStore.INTS.getVolatile(buffer, 0) != SharedRaceStore.MAGIC) {
+
+			throw new IOException("Not a shared race (or not ready yet): " + path);
+		}
+
+		if(buffer.getInt(4) != SharedRaceStore.VERSION) {
+
+			throw new IOException("Unsupported shared race version: " + buffer.getInt(4));
+		}
+
+		riderCount = buffer.getInt(SharedRaceStore.RIDER_COUNT_OFFSET);
+		tickLengthNanos = buffer.getLong(SharedRaceStore.TICK_LENGTH_OFFSET);
+
+		if(buffer.capacity() < SharedRaceStore.fileSize(riderCount)) {
+
+			throw new IOException("Truncated shared race: " + path);
+		}
+
+		for(int slot = 0; slot < slots.length; slot++) {
+
+			slots[slot] = buffer.slice(SharedRaceStore.slotOffset(riderCount, slot), 4 * riderCount).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+
+		//The riders never change, so only their positions are read from the file afterwards
+		yPositions = new int[riderCount];
+		seatLengths = new int[riderCount];
+		colors = new int[riderCount];
+
+		int top = Integer.MAX_VALUE;
+		int bottom = Integer.MIN_VALUE;
+
+		for(int i = 0; i < riderCount; i++) {
+
+			int offset = SharedRaceStore.RIDERS_OFFSET + 12 * i;
+
+			yPositions[i] = buffer.getInt(offset);
+			seatLengths[i] = buffer.getInt(offset + 4);
+			colors[i] = buffer.getInt(offset + 8);
+
+			top = Math.min(top, yPositions[i] + UnicycleDimensions.topYOffset(seatLengths[i]));
+			bottom = Math.max(bottom, yPositions[i]);
+		}
+
+		topYPosition = top;
+		bottomYPosition = bottom;
+
+		readerOffset = claimReader(buffer);
+		refresh();
+	}
+
+	/**
+	 * Helper method that takes the place of a reader in the file: a free one, or one of a process that exited
+	 * without closing its view (like a renderer that crashed)
+	 * @param buffer the mapped file
+	 * @return the position of the reader in the file
+	 * @throws IOException if MAX_READERS processes are already reading the file
+	 */
+	private static int claimReader(MappedByteBuffer buffer) throws IOException {
+
+		long pid = ProcessHandle.current().pid();
+
+		for(int reader = 0; reader < SharedRaceStore.MAX_READERS; reader++) {
+
+			int offset = SharedRaceStore.READERS_OFFSET + reader * SharedRaceStore.READER_SIZE;
+			long owner = (long) SharedRaceStore.LONGS.getVolatile(buffer, offset);
+
+			if(owner != 0 && ProcessHandle.of(owner).map(ProcessHandle::isAlive).orElse(false)) {
+
+				continue;
+			}
+
+			if(SharedRaceStore.LONGS.compareAndSet(buffer, offset, owner, pid)) {
+
+				return offset;
+			}
+		}
+
+		throw new IOException("The shared race already has " + SharedRaceStore.MAX_READERS + " readers");
+	}
+
+	/**
+	 * Method that moves the view to the latest tick published. Should be called once per frame, before
+	 * collectDamage and draw
+	 * @return true if the view now displays a different tick
+	 */
+	public boolean refresh() {
+
+		if(closed) {
+
+			return false;
+		}
+
+		long previousTick = tick;
+
+		while(true) {
+
+			long latest = (long) SharedRaceStore.LONGS.getVolatile(buffer, SharedRaceStore.LATEST_SLOT_OFFSET);
+			int slotHeader = SharedRaceStore.SLOTS_OFFSET + (int) latest * SharedRaceStore.SLOT_HEADER_SIZE;
+
+			/*Pin before reading the sequence (the store makes it odd before reading the pins): if it is still
+			 *even, the slot holds a whole tick and won't be written until it is unpinned*/
+			SharedRaceStore.LONGS.setVolatile(buffer, readerOffset + 8, latest);
+
+			long sequence = (long) SharedRaceStore.LONGS.getVolatile(buffer, slotHeader);
+
+			if((sequence & 1) == 0) {
+
+				slot = (int) latest;
+				tick = buffer.getLong(slotHeader + 8);
+				simulatedTimeNanos = buffer.getLong(slotHeader + 16);
+				leftEndXPosition = buffer.getInt(slotHeader + 24);
+				rightEndXPosition = buffer.getInt(slotHeader + 28);
+
+				return tick != previousTick;
+			}
+
+			//The store reused the slot just before it was pinned: a newer tick is about to be the latest one
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Method that tells whether the process simulating the race closed its store
+	 * @return true if the race won't be published anymore
+	 */
+	public boolean isFinished() {
+
+		return (long) SharedRaceStore.LONGS.getVolatile(buffer, SharedRaceStore.STATE_OFFSET) == SharedRaceStore.CLOSED;
+	}
+
+	/**
+	 * Method that returns the tick displayed by the view
+	 * @return the tick pinned by the last refresh
+	 */
+	public long getTick() {
+
+		return tick;
+	}
+
+	/**
+	 * Method that returns the simulated time of the tick displayed by the view
+	 * @return the simulated time in nanoseconds
+	 */
+	public long getSimulatedTimeNanos() {
+
+		return simulatedTimeNanos;
+	}
+
+	/**
+	 * Method that returns the amount of real time between two ticks of the race
+	 * @return the tick length in nanoseconds
+	 */
+	public long getTickLengthNanos() {
+
+		return tickLengthNanos;
+	}
+
+	/**
+	 * Method that returns the number of riders of the race
+	 * @return the number of riders
+	 */
+	public int getRiderCount() {
+
+		return riderCount;
+	}
+
+	@Override
+	public void draw(Graphics2D graphics2d) {
+
+		draw(graphics2d, null);
+	}
+
+	@Override
+	public void draw(Graphics2D graphics2d, LevelOfDetail levelOfDetail) {
+
+		UnicycleGeometry.drawRiders(graphics2d, slots[slot], yPositions, seatLengths, colors, 0, riderCount, levelOfDetail);
+	}
+
+	@Override
+	public int getRightEndXPosition() {
+
+		return rightEndXPosition;
+	}
+
+	@Override
+	public int getLeftEndXPosition() {
+
+		return leftEndXPosition;
+	}
+
+	@Override
+	public void visitRiders(RiderVisitor riderVisitor) {
+
+		IntBuffer xPositions = slots[slot];
+
+		for(int i = 0; i < riderCount; i++) {
+
+			riderVisitor.visitRider(xPositions.get(i), yPositions[i], seatLengths[i], colors[i]);
+		}
+	}
+
+	@Override
+	public void collectDamage(DamageRegion damageRegion) {
+
+		if(damagedTick == tick) {
+
+			return;
+		}
+
+		if(damagedTick == -1) {
+
+			damageRegion.add(leftEndXPosition, topYPosition, rightEndXPosition, bottomYPosition);
+
+		} else {
+
+			//Everything between where the race was last painted and where it is now
+			damageRegion.add(Math.min(damagedLeftXPosition, leftEndXPosition), topYPosition, Math.max(damagedRightXPosition, rightEndXPosition), bottomYPosition);
+		}
+
+		damagedTick = tick;
+		damagedLeftXPosition = leftEndXPosition;
+		damagedRightXPosition = rightEndXPosition;
+	}
+
+	@Override
+	public int getRiderXPositions(int[] xPositions, int offset) {
+
+		slots[slot].get(0, xPositions, offset, riderCount);
+
+		return riderCount;
+	}
+
+	/**
+	 * Method that gives the place of this view in the file back, so that the store can write the slot it pinned
+	 * and another process can read the race. The view must not be used afterwards
+	 */
+	@Override
+	public void close() {
+
+		if(closed) {
+
+			return;
+		}
+
+		closed = true;
+
+		SharedRaceStore.LONGS.setVolatile(buffer, readerOffset + 8, SharedRaceStore.NO_SLOT);
+		SharedRaceStore.LONGS.setVolatile(buffer, readerOffset, 0L);
+	}
+}
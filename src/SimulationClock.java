@@ -0,0 +1,23 @@
+/**
+ * Interface that serves as the blueprint for the clocks that decide when a SimulationRunner ticks.
+ * Separating the clock from the simulation allows the same race to run in real time, as fast as possible,
+ * or one tick at a time
+ * @author Luiz do Valle
+ *
+ */
+public interface SimulationClock {
+
+	/**
+	 * Method that waits until the next tick is due
+	 * @return the simulated time of the tick in nanoseconds, counted from the first tick
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public abstract long awaitNextTick() throws InterruptedException;
+	
+	/**
+	 * Method that returns the amount of simulated time between two ticks
+	 * @return the length of a tick in nanoseconds
+	 */
+	public abstract long getTickLengthNanos();
+	
+}
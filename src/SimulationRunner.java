@@ -0,0 +1,271 @@
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that runs a race without any GUI: it steps a Driver (and therefore its MovingObject tree) whenever
+ * its SimulationClock says a tick is due, and tells its TickListeners about every tick.
+ * Since it doesn't use any Swing or AWT toolkit class, races can run on headless servers, faster than real
+ * time, or one tick at a time, and Drivers can be measured in isolation
+ *
+ * All the ticks run on the thread that calls run(long) or step(), or on the runner's own thread after start()
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class SimulationRunner {
+
+	/**
+	 * Number of riders used by main when none is specified
+	 */
+	private static final int DEFAULT_RIDERS = 1000000;
+
+	/**
+	 * Number of ticks run by main when none is specified
+	 */
+	private static final int DEFAULT_TICKS = 10000;
+
+	/**
+	 * Length of the track used by main (the width of the Tester's GUI)
+	 */
+	private static final int TRACK_LENGTH = 1500;
+
+	/**
+	 * The Driver that moves the race every tick
+	 */
+	private final Driver driver;
+
+	/**
+	 * The clock that decides when ticks happen
+	 */
+	private final SimulationClock clock;
+
+	/**
+	 * The listeners told about every tick
+	 */
+	private final CopyOnWriteArrayList<TickListener> tickListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The speed passed to Driver.drive(int) every tick. Only used once setSpeed(int) was called,
+	 * before that the runner calls Driver.drive()
+	 */
+	private volatile int speed;
+
+	/**
+	 * Whether the speed was set with setSpeed(int)
+	 */
+	private volatile boolean speedControlled;
+
+	/**
+	 * Number of ticks completed so far
+	 */
+	private volatile long tickCount;
+
+	/**
+	 * The simulated time of the last tick
+	 */
+	private volatile long simulatedTimeNanos;
+
+	/**
+	 * Whether the runner's own thread should keep running
+	 */
+	private volatile boolean running;
+
+	/**
+	 * The runner's own thread (null if it was not started)
+	 */
+	private Thread thread;
+
+	/**
+	 * Constructor that initializes the class's fields
+	 * @param driver the Driver that moves the race every tick (measured when the race is instrumented, see
+	 * RaceInstrumentation)
+	 * @param clock the clock that decides when ticks happen
+	 */
+	public SimulationRunner(Driver driver, SimulationClock clock) {
+
+		this.driver = RaceInstrumentation.instrument(driver);
+		this.clock = clock;
+	}
+
+	/**
+	 * Method that sets the speed the Driver is driven with from the next tick on (like the Tester's slider).
+	 * Can be called from any thread
+	 * @param speed the new speed
+	 */
+	public void setSpeed(int speed) {
+
+		this.speed = speed;
+		speedControlled = true;
+	}
+
+	/**
+	 * Method that adds a listener that is told about every tick
+	 * @param tickListener the listener to be added
+	 */
+	public void addTickListener(TickListener tickListener) {
+
+		tickListeners.add(tickListener);
+	}
+
+	/**
+	 * Method that removes a listener added with addTickListener
+	 * @param tickListener the listener to be removed
+	 */
+	public void removeTickListener(TickListener tickListener) {
+
+		tickListeners.remove(tickListener);
+	}
+
+	/**
+	 * Method that runs a single tick right away, without waiting for the clock
+	 */
+	public void step() {
+
+		tick(simulatedTimeNanos + clock.getTickLengthNanos());
+	}
+
+	/**
+	 * Method that runs the specified number of ticks on the calling thread, each one when the clock says so
+	 * @param ticks the number of ticks to run
+	 * @throws InterruptedException if the thread is interrupted while waiting for the clock
+	 */
+	public void run(long ticks) throws InterruptedException {
+
+		for(long i = 0; i < ticks; i++) {
+
+			tick(clock.awaitNextTick());
+		}
+	}
+
+	/**
+	 * Method that starts running ticks on the runner's own thread until stop() is called
+	 */
+	public synchronized void start() {
+
+		if(thread != null) {
+
+			throw new IllegalStateException("The simulation was already started");
+		}
+
+		running = true;
+
+		thread = new Thread(() -> {
+
+			try {
+
+				while(running) {
+
+					tick(clock.awaitNextTick());
+				}
+
+			} catch (InterruptedException e) {
+
+				//stop() interrupts the thread while it waits for the clock
+			}
+
+		}, "simulation");
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Method that stops the runner's own thread and waits for the current tick to finish
+	 * @throws InterruptedException if the calling thread is interrupted while waiting
+	 */
+	public synchronized void stop() throws InterruptedException {
+
+		if(thread == null) {
+
+			return;
+		}
+
+		running = false;
+		thread.interrupt();
+		thread.join();
+		thread = null;
+	}
+
+	/**
+	 * Method that returns the number of ticks completed so far
+	 * @return the number of ticks
+	 */
+	public long getTickCount() {
+
+		return tickCount;
+	}
+
+	/**
+	 * Method that returns the simulated time of the last tick
+	 * @return the simulated time in nanoseconds
+	 */
+	public long getSimulatedTimeNanos() {
+
+		return simulatedTimeNanos;
+	}
+
+	/**
+	 * Method that returns the clock of the runner
+	 * @return the clock that decides when ticks happen
+	 */
+	public SimulationClock getClock() {
+
+		return clock;
+	}
+
+	/**
+	 * Helper method that runs one tick: drives the race and tells the listeners
+	 * @param tickTimeNanos the simulated time of the tick
+	 */
+	private void tick(long tickTimeNanos) {
+
+		if(speedControlled) {
+
+			driver.drive(speed);
+
+		} else {
+
+			driver.drive();
+		}
+
+		simulatedTimeNanos = tickTimeNanos;
+		long tick = ++tickCount;
+
+		for(TickListener tickListener : tickListeners) {
+
+			tickListener.tickCompleted(tick, tickTimeNanos);
+		}
+	}
+
+	/**
+	 * Method that runs a headless race as fast as possible and prints how many ticks per second it reached
+	 * Usage: java SimulationRunner [riders] [ticks] [seed]
+	 * @param args the number of riders, the number of ticks and the seed the riders are generated from (all optional)
+	 * @throws InterruptedException if the main thread is interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		int riders = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RIDERS;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TICKS;
+
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+		//Riders spread like the ones in the Tester, all in a single fleet inside a group
+		long generationStart = System.nanoTime();
+		UnicycleFleet unicycleFleet = new RiderGenerator(seed, 50, 250).generateFleet(riders, 0);
+		System.out.printf("%d riders generated from seed %d in %.3f s%n", riders, seed, (System.nanoTime() - generationStart) / 1e9);
+
+		MovingObjectGroup unicycleGroup = new MovingObjectGroup();
+		unicycleGroup.addMovingObject(unicycleFleet);
+
+		//LeftAndRightDriver so that the race keeps moving for as many ticks as needed
+		Driver driver = new LeftAndRightDriver(unicycleGroup, 5, TRACK_LENGTH);
+		SimulationRunner simulationRunner = new SimulationRunner(driver, new FixedStepClock(1000000000L / 60, TimeUnit.NANOSECONDS));
+
+		long start = System.nanoTime();
+		simulationRunner.run(ticks);
+		long elapsed = System.nanoTime() - start;
+
+		System.out.printf("%d riders, %d ticks in %.3f s: %.1f ticks per second%n", riders, ticks, elapsed / 1e9, ticks * 1e9 / elapsed);
+	}
+}
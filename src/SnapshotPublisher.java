@@ -0,0 +1,129 @@
+/**
+ * Class that implements the TickListener and SnapshotSource Interfaces.
+ * After every tick of a SimulationRunner it takes a RaceSnapshot of the MovingObject (on the simulation thread)
+ * and publishes it together with the previous one. The GUI then displays the riders interpolated between the
+ * last two ticks according to how much real time has passed since the last one, so the simulation can tick at a
+ * fixed rate on its own thread while the GUI paints whenever it can, and motion still looks smooth
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class SnapshotPublisher implements TickListener, SnapshotSource {
+
+	/**
+	 * The MovingObject whose riders are published
+	 */
+	private final RaceView movingObject;
+	
+	/**
+	 * The amount of real time between two ticks, used to interpolate (0 if the last tick is displayed as is)
+	 */
+	private final long tickLengthNanos;
+	
+	/**
+	 * The last two snapshots, replaced as a whole so that readers always see a matching pair
+	 */
+	private volatile Frame frame;
+	
+	/**
+	 * Constructor that initializes the class's fields
+	 * @param movingObject the MovingObject whose riders are published
+	 * @param tickLengthNanos the amount of real time between two ticks (see SimulationClock.getTickLengthNanos()),
+	 * or 0 to display the last tick as is, without interpolating (when the riders are moved on the thread that
+	 * paints them, which would only display them one tick late)
+	 */
+	public SnapshotPublisher(RaceView movingObject, long tickLengthNanos) {
+		
+		if(tickLengthNanos < 0) {
+			
+			throw new IllegalArgumentException("The length of a tick must not be negative: " + tickLengthNanos);
+		}
+		
+		this.movingObject = movingObject;
+		this.tickLengthNanos = tickLengthNanos;
+	}
+	
+	/**
+	 * Method that publishes the current positions of the riders without waiting for a tick, e.g. so that there
+	 * is something to display before the simulation starts. Must be called on the thread that moves the riders
+	 */
+	public void publish() {
+		
+		tickCompleted(0, 0);
+	}
+	
+	@Override
+	public void tickCompleted(long tick, long simulatedTimeNanos) {
+		
+		Frame lastFrame = frame;
+		RaceSnapshot previous = lastFrame == null ? null : lastFrame.current;
+		
+		RaceSnapshot current = RaceSnapshot.capture(movingObject, tick, simulatedTimeNanos, previous);
+		
+		frame = new Frame(previous == null ? current : previous, current, System.nanoTime());
+	}
+
+	@Override
+	public RaceSnapshot getSnapshot() {
+		
+		return getSnapshot(null);
+	}
+	
+	@Override
+	public RaceSnapshot getSnapshot(int[] buffer) {
+		
+		Frame currentFrame = frame;
+		
+		if(currentFrame == null) {
+			
+			return null;
+		}
+		
+		if(tickLengthNanos == 0) {
+			
+			return currentFrame.current;
+		}
+		
+		//Display one tick behind, moving from the previous snapshot to the current one as real time goes by
+		double alpha = (double) (System.nanoTime() - currentFrame.publishedNanos) / tickLengthNanos;
+		
+		return currentFrame.previous.interpolate(currentFrame.current, Math.min(Math.max(alpha, 0), 1), buffer);
+	}
+	
+	/**
+	 * Class that holds the last two snapshots and when the last one was published
+	 * 
+	 * @author Luiz do Valle
+	 *
+	 */
+	private static final class Frame {
+		
+		/**
+		 * The snapshot of the tick before the last one
+		 */
+		private final RaceSnapshot previous;
+		
+		/**
+		 * The snapshot of the last tick
+		 */
+		private final RaceSnapshot current;
+		
+		/**
+		 * The System.nanoTime() at which the last snapshot was published
+		 */
+		private final long publishedNanos;
+		
+		/**
+		 * Constructor that simply initializes the class's fields
+		 * @param previous the snapshot of the tick before the last one
+		 * @param current the snapshot of the last tick
+		 * @param publishedNanos the System.nanoTime() at which the last snapshot was published
+		 */
+		private Frame(RaceSnapshot previous, RaceSnapshot current, long publishedNanos) {
+			
+			this.previous = previous;
+			this.current = current;
+			this.publishedNanos = publishedNanos;
+		}
+	}
+}
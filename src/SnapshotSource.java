@@ -0,0 +1,27 @@
+/**
+ * Interface that serves as the blueprint for the classes that provide the positions of the riders to be
+ * displayed, so that the GUI can display a race without touching the MovingObjects being moved
+ * @author Luiz do Valle
+ *
+ */
+public interface SnapshotSource {
+
+	/**
+	 * Method that returns the positions of the riders that should be displayed right now
+	 * @return the snapshot to be displayed, or null if there is nothing to display yet
+	 */
+	public abstract RaceSnapshot getSnapshot();
+
+	/**
+	 * Method that returns the positions of the riders that should be displayed right now, writing the positions
+	 * it has to compute into an array of the caller, so that painting allocates no array. The snapshot returned
+	 * is only valid until the array is used again. By default, the array is not used
+	 * @param buffer the array the positions may be written to (ignored if it is null or too short)
+	 * @return the snapshot to be displayed, or null if there is nothing to display yet
+	 */
+	public default RaceSnapshot getSnapshot(int[] buffer) {
+
+		return getSnapshot();
+	}
+	
+}
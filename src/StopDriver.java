@@ -73,4 +73,22 @@ public class StopDriver implements Driver{
 		currentSpeed = speed;
 		drive();
 	}
+	
+	/**
+	 * Method that returns the speed the MovingObject moves at with every call to drive()
+	 * @return the current speed
+	 */
+	public int getCurrentSpeed() {
+		
+		return currentSpeed;
+	}
+	
+	/**
+	 * Method that returns the length of the GUI the MovingObject is driven in
+	 * @return the length of the GUI
+	 */
+	public int getGuiLength() {
+		
+		return guiLength;
+	}
 }
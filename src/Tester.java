@@ -1,12 +1,22 @@
+import java.awt.Color;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JSlider;
+import javax.swing.JToggleButton;
 import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -40,12 +50,70 @@ public class Tester {
 	private static final int NUM_UNICYCLES = 7;
 	
 	/**
-	 * The speed of the MovingObjects.
-	 * Although this value is constant for the first test, speed is changed
-	 * in later tests based on the JSlider. For this reason, speed is a variable
-	 * and not a constant
+	 * Number of unicycles created for the fleet test
 	 */
-	private static int speed = 2;
+	private static final int NUM_FLEET_UNICYCLES = 1000000;
+	
+	/**
+	 * Number of simulation ticks per second for the decoupled simulation test
+	 */
+	private static final int TICKS_PER_SECOND = 60;
+	
+	/**
+	 * The length of the track of the long track test
+	 */
+	private static final int TRACK_LENGTH = 30000;
+	
+	/**
+	 * Seed the riders of the fleet and long track tests are generated from, so that they are the same every run
+	 */
+	private static final long SEED = 20230417L;
+	
+	/**
+	 * Number of pelotons (each one a fleet inside its own group) of the long track test
+	 */
+	private static final int NUM_PELOTONS = 20;
+	
+	/**
+	 * Number of riders of each peloton of the long track test
+	 */
+	private static final int NUM_PELOTON_UNICYCLES = 5000;
+	
+	/**
+	 * Number of riders shown in the standings of the long track test
+	 */
+	private static final int NUM_TOP_RIDERS = 5;
+	
+	/**
+	 * Number of pelotons of the collision test, small enough for their riders to be told apart when they collide
+	 */
+	private static final int NUM_COLLIDING_PELOTONS = 100;
+	
+	/**
+	 * Number of riders of each peloton of the collision test
+	 */
+	private static final int NUM_COLLIDING_PELOTON_UNICYCLES = 20;
+	
+	/**
+	 * Number of ticks recorded by the replay test (a minute of race at TICKS_PER_SECOND)
+	 */
+	private static final int NUM_RECORDED_TICKS = 3600;
+	
+	/**
+	 * Number of spectator windows opened by the broadcast test
+	 */
+	private static final int NUM_SPECTATORS = 2;
+	
+	/**
+	 * The number of riders of the race simulated by another JVM
+	 */
+	private static final int NUM_SHARED_UNICYCLES = 100000;
+	
+	/**
+	 * The constant speed of the first test. The later tests send the speed of their JSlider to the race through
+	 * a ControlQueue instead
+	 */
+	private static final int CONSTANT_SPEED = 2;
 	
 	/**
 	 * Method that tests whether the unicycle is drawn and moves correctly on the GUI 
@@ -60,7 +128,7 @@ public class Tester {
 		final MyIcon icon = new MyIcon(ICON_W, ICON_H, unicycle);
 		
 		//Driver
-		final Driver leftAndRightDriver = new LeftAndRightDriver(unicycle, speed, ICON_W);
+		final Driver leftAndRightDriver = RaceInstrumentation.instrument(new LeftAndRightDriver(unicycle, CONSTANT_SPEED, ICON_W));
 		
 		final JLabel label = new JLabel(icon);
 		
@@ -71,6 +139,9 @@ public class Tester {
 		frame.setLayout(new FlowLayout());
 		
 		
+		//Areas of the GUI that changed since they were last painted
+		DamageRegion damageRegion = new DamageRegion();
+		
 		/*Create Timer that updates GUI and changes the unicycle's X position 60 times per second (60 Hz) 
 		 * to create the impression of fluid movement*/
 		final int DELAY = 50/3;
@@ -81,7 +152,10 @@ public class Tester {
 				
 				leftAndRightDriver.drive();
 				
-				label.repaint();
+				//Only repaint the areas the riders moved through (nothing at all if they didn't move)
+				unicycle.collectDamage(damageRegion);
+				icon.collectHudDamage(damageRegion);
+				damageRegion.paintImmediately(label);
 			}
 		});
 		
@@ -123,8 +197,9 @@ public class Tester {
 			unicycleGroup.addMovingObject(unicycle);
 		}
 		
-		//Driver
-		Driver stopDriver = new StopDriver(unicycleGroup, ICON_W);
+		//Driver that applies the commands of the slider at the start of every tick
+		ControlledDriver stopDriver = new ControlledDriver(RaceInstrumentation.instrument(new StopDriver(unicycleGroup, ICON_W)));
+		ControlQueue controlQueue = stopDriver.getControlQueue();
 		
 		//Create icon for the group and add it to the label
 		MyIcon icon = new MyIcon(ICON_W, ICON_H, unicycleGroup);
@@ -146,28 +221,34 @@ public class Tester {
 		//Layout is the BoxLayout organized vertically so that the slider is below the unicycles
 		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
 		
-		//Get the initial speed of the slider
-		speed = speedSlider.getValue();
+		//Send the initial speed of the slider to the race
+		controlQueue.setSpeed(speedSlider.getValue());
 		
-		//Add action listener to slider to update speed whenever the position of the slider is changed
+		//Add action listener to slider to send the speed whenever the position of the slider is changed
 		speedSlider.addChangeListener(new ChangeListener() {
 			
 			@Override
 			public void stateChanged(ChangeEvent e) {
 				
-				speed = speedSlider.getValue();
+				controlQueue.setSpeed(speedSlider.getValue());
 				
 			}
 		});
 		
+		//Areas of the GUI that changed since they were last painted
+		DamageRegion damageRegion = new DamageRegion();
+		
 		/*Create Timer that updates GUI and changes the unicycle's X position 60 times per second (60 Hz) 
 		 * to create the impression of fluid movement*/
 		final int DELAY = 50/3;
 		Timer timer = new Timer(DELAY, (e) -> { 
 		
-			stopDriver.drive(speed);
+			stopDriver.drive();
 		
-			label.repaint();
+			//Only repaint the areas the riders moved through (nothing at all if they didn't move)
+			unicycleGroup.collectDamage(damageRegion);
+			icon.collectHudDamage(damageRegion);
+			damageRegion.paintImmediately(label);
 		
 		});
 		
@@ -194,8 +275,9 @@ public class Tester {
 		//Create broader group that will encompass other groups
 		MovingObjectGroup unicycleGroup = new MovingObjectGroup();
 		
-		//Driver
-		Driver stopDriver = new  StopDriver(unicycleGroup, ICON_W);
+		//Driver that applies the commands of the slider and the pause button at the start of every tick
+		ControlledDriver stopDriver = new ControlledDriver(RaceInstrumentation.instrument(new StopDriver(unicycleGroup, ICON_W)));
+		ControlQueue controlQueue = stopDriver.getControlQueue();
 		
 		//Create first subgroup (peloton) of unicycles
 		MovingObjectGroup unicycleGroup1 = new MovingObjectGroup(1.2);
@@ -271,31 +353,42 @@ public class Tester {
 		frame.add(Box.createVerticalStrut(20));
 		frame.add(speedSlider);
 		
+		//Button that pauses and resumes the race, keeping the speed of the slider
+		JToggleButton pauseButton = new JToggleButton("Pause");
+		pauseButton.addActionListener((e) -> controlQueue.setPaused(pauseButton.isSelected()));
+		frame.add(pauseButton);
+		
 		//Layout is the BoxLayout organized vertically so that the slider is below the unicycles
 		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
 		
-		//Get the initial speed of the slider
-		speed = speedSlider.getValue();
+		//Send the initial speed of the slider to the race
+		controlQueue.setSpeed(speedSlider.getValue());
 		
-		//Add action listener to slider to update speed whenever the position of the slider is changed
+		//Add action listener to slider to send the speed whenever the position of the slider is changed
 		speedSlider.addChangeListener(new ChangeListener() {
 			
 			@Override
 			public void stateChanged(ChangeEvent e) {
 				
-				speed = speedSlider.getValue();
+				controlQueue.setSpeed(speedSlider.getValue());
 				
 			}
 		});
 		
+		//Areas of the GUI that changed since they were last painted
+		DamageRegion damageRegion = new DamageRegion();
+		
 		/*Create Timer that updates GUI and changes the unicycle's X position 60 times per second (60 Hz) 
 		 * to create the impression of fluid movement*/
 		final int DELAY = 50/3;
 		Timer timer = new Timer(DELAY, (e) -> { 
 		
-			stopDriver.drive(speed);
+			stopDriver.drive();
 		
-			label.repaint();
+			//Only repaint the areas the riders moved through (nothing at all if they didn't move)
+			unicycleGroup.collectDamage(damageRegion);
+			icon.collectHudDamage(damageRegion);
+			damageRegion.paintImmediately(label);
 		
 		});
 		
@@ -307,4 +400,830 @@ public class Tester {
 		frame.setVisible(true);
 		frame.setResizable(false);
 	}
+	
+	/**
+	 * Method that tests whether a UnicycleFleet with a very large number of riders is drawn correctly and
+	 * moves correctly at the speed defined by the JSlider on the GUI, just like a group of Unicycles
+	 * Once the rider of the fleet that is most to the right reaches the right boundary of the GUI, the
+	 * whole fleet stops moving to symbolize the end of the race. Same happens for the leftmost rider
+	 */
+	public void testFleet() {
+		
+		//Set GUI's title
+		JFrame frame = new JFrame("The Unicycle Race");
+		
+		/*Generate NUM_FLEET_UNICYCLES random riders in parallel from SEED
+		 *X and Y coordinates, and the scaling of each rider are randomized
+		 *with respect to UNIT, exactly like the Unicycles of the other tests*/
+		RiderGenerator riderGenerator = new RiderGenerator(SEED, UNIT, 250);
+		UnicycleFleet unicycleFleet = riderGenerator.generateFleet(NUM_FLEET_UNICYCLES, 0);
+		
+		//The fleet can be nested in a group like any other MovingObject
+		MovingObjectGroup unicycleGroup = new MovingObjectGroup();
+		unicycleGroup.addMovingObject(unicycleFleet);
+		
+		//Driver that applies the commands of the slider at the start of every tick
+		ControlledDriver stopDriver = new ControlledDriver(RaceInstrumentation.instrument(new StopDriver(unicycleGroup, ICON_W)));
+		ControlQueue controlQueue = stopDriver.getControlQueue();
+		
+		//With several cores, draw the riders one horizontal tile per core. The tiles are drawn on other threads,
+		//so they draw a snapshot of the riders taken after every tick (shown as is, since the Timer also paints)
+		int cores = Runtime.getRuntime().availableProcessors();
+		SnapshotPublisher snapshotPublisher = cores > 1 ? new SnapshotPublisher(unicycleGroup, 0) : null;
+		
+		//Create icon for the group and add it to the label
+		MyIcon icon;
+		
+		if(snapshotPublisher != null) {
+			
+			snapshotPublisher.publish();
+			icon = new MyIcon(ICON_W, ICON_H, snapshotPublisher);
+			icon.setTiledRenderer(new TiledRenderer(ICON_W, ICON_H, cores));
+			
+		} else {
+			
+			icon = new MyIcon(ICON_W, ICON_H, unicycleGroup);
+		}
+		
+		JLabel label = new JLabel(icon);
+		
+		//Simplify the riders that are small on the screen whenever a frame takes too long
+		icon.setLevelOfDetail(new LevelOfDetail());
+		
+		//Create JSlider with values from -10 to 10 and add markings to it
+		JSlider speedSlider = new JSlider(-10, 10, 0);
+		speedSlider.setMajorTickSpacing(1);
+		speedSlider.setPaintTicks(true);
+		speedSlider.setPaintLabels(true);
+		
+		//Add label and JSlider to frame with separation in between 
+		frame.add(label);
+		frame.add(Box.createVerticalStrut(20));
+		frame.add(speedSlider);
+		
+		//Layout is the BoxLayout organized vertically so that the slider is below the unicycles
+		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
+		
+		//Send the initial speed of the slider to the race, and the new one whenever the slider is moved
+		controlQueue.setSpeed(speedSlider.getValue());
+		speedSlider.addChangeListener((e) -> controlQueue.setSpeed(speedSlider.getValue()));
+		
+		//Areas of the GUI that changed since they were last painted
+		DamageRegion damageRegion = new DamageRegion();
+		
+		/*Create Timer that updates GUI and changes the fleet's X position 60 times per second (60 Hz) 
+		 * to create the impression of fluid movement*/
+		final int DELAY = 50/3;
+		Timer timer = new Timer(DELAY, (e) -> { 
+		
+			stopDriver.drive();
+			
+			if(snapshotPublisher != null) {
+				
+				snapshotPublisher.publish();
+			}
+		
+			//Only repaint the areas the riders moved through (nothing at all if they didn't move)
+			unicycleGroup.collectDamage(damageRegion);
+			icon.collectHudDamage(damageRegion);
+			damageRegion.paintImmediately(label);
+		
+		});
+		
+		timer.start();
+		
+		//Make the GUI visible, closeable, and have a not resizeable
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.pack();
+		frame.setVisible(true);
+		frame.setResizable(false);
+	}
+	
+	/**
+	 * Method that tests whether the race of testCreativity() works the same when the simulation runs on its
+	 * own thread at a fixed timestep and the GUI only displays snapshots of it
+	 * The Swing Timer now only repaints, and the riders are displayed between their positions of the last two
+	 * ticks, so a slow paint doesn't slow the race down and a slow tick doesn't freeze the GUI or the slider
+	 */
+	public void testDecoupledSimulation() {
+		
+		//Set GUI's title
+		JFrame frame = new JFrame("The Unicycle Race");
+		
+		//Create broader group that will encompass other groups
+		MovingObjectGroup unicycleGroup = new MovingObjectGroup();
+		
+		//Create three pelotons with different speeds, the third one inside the second, and a single unicycle
+		MovingObjectGroup unicycleGroup1 = new MovingObjectGroup(1.2);
+		MovingObjectGroup unicycleGroup2 = new MovingObjectGroup(2);
+		MovingObjectGroup unicycleGroup3 = new MovingObjectGroup(1.5);
+		
+		for(MovingObjectGroup peloton : new MovingObjectGroup[] {unicycleGroup1, unicycleGroup2, unicycleGroup3}) {
+			
+			for(int i = 0; i < NUM_UNICYCLES; i++) {
+				
+				int x = (int) (Math.random() * UNIT * 5 + 20);
+				int y =  250 - (int)(Math.random() * UNIT);
+				double sizeScalar = Math.random() * 1.5 + 0.5;
+				int newSize = (int) (sizeScalar * UNIT);
+				
+				peloton.addMovingObject(new Unicycle(x, y, newSize));
+			}
+		}
+		
+		unicycleGroup2.addMovingObject(unicycleGroup3);
+		
+		unicycleGroup.addMovingObject(unicycleGroup1);
+		unicycleGroup.addMovingObject(unicycleGroup2);
+		unicycleGroup.addMovingObject(new Unicycle(300, 250, UNIT));
+		
+		//Simulation running on its own thread at a fixed timestep, publishing a snapshot after every tick
+		Driver stopDriver = new StopDriver(unicycleGroup, ICON_W);
+		SimulationRunner simulationRunner = new SimulationRunner(stopDriver, new RealTimeClock(TICKS_PER_SECOND));
+		
+		SnapshotPublisher snapshotPublisher = new SnapshotPublisher(unicycleGroup, TimeUnit.SECONDS.toNanos(1) / TICKS_PER_SECOND);
+		snapshotPublisher.publish();
+		simulationRunner.addTickListener(snapshotPublisher);
+		
+		//Create Icon (displaying the snapshots) and label
+		MyIcon icon = new MyIcon(ICON_W, ICON_H, snapshotPublisher);
+		JLabel label = new JLabel(icon);
+		
+		//Create JSlider with values from -10 to 10 and add markings to it
+		JSlider speedSlider = new JSlider(-10, 10, 0);
+		speedSlider.setMajorTickSpacing(1);
+		speedSlider.setPaintTicks(true);
+		speedSlider.setPaintLabels(true);
+		
+		//Add label and JSlider to frame with separation in between 
+		frame.add(label);
+		frame.add(Box.createVerticalStrut(20));
+		frame.add(speedSlider);
+		
+		//Layout is the BoxLayout organized vertically so that the slider is below the unicycles
+		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
+		
+		//The slider hands the speed over to the simulation thread
+		simulationRunner.setSpeed(speedSlider.getValue());
+		speedSlider.addChangeListener((e) -> simulationRunner.setSpeed(speedSlider.getValue()));
+		
+		simulationRunner.start();
+		
+		//Timer that only repaints the GUI, independently from the simulation
+		final int DELAY = 50/3;
+		Timer timer = new Timer(DELAY, (e) -> label.repaint());
+		
+		timer.start();
+		
+		//Make the GUI visible, closeable, and have a not resizeable
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.pack();
+		frame.setVisible(true);
+		frame.setResizable(false);
+	}
+	
+	/**
+	 * Method that tests whether a UnicycleFleet is displayed correctly with active rendering: a RaceCanvas
+	 * ticks the race and draws it on its own thread, paced at 60 frames per second, instead of a Swing Timer
+	 * repainting a JLabel. The pacing statistics of the frames are shown on top of the race, and the slider and
+	 * the pause button still change the race through a ControlQueue
+	 */
+	public void testActiveRendering() {
+		
+		//Set GUI's title
+		JFrame frame = new JFrame("The Unicycle Race - Active Rendering");
+		
+		//Generate NUM_SHARED_UNICYCLES random riders from SEED, like the fleet test
+		RiderGenerator riderGenerator = new RiderGenerator(SEED, UNIT, 250);
+		MovingObjectGroup unicycleGroup = new MovingObjectGroup();
+		unicycleGroup.addMovingObject(riderGenerator.generateFleet(NUM_SHARED_UNICYCLES, 0));
+		
+		//Driver that applies the commands of the slider and the pause button at the start of every frame
+		ControlledDriver stopDriver = new ControlledDriver(RaceInstrumentation.instrument(new StopDriver(unicycleGroup, ICON_W)));
+		ControlQueue controlQueue = stopDriver.getControlQueue();
+		
+		//Canvas that ticks and draws the race on its own thread
+		RaceCanvas raceCanvas = new RaceCanvas(ICON_W, ICON_H, unicycleGroup, stopDriver);
+		raceCanvas.setStatsVisible(true);
+		
+		//Simplify the riders whenever a frame takes too long
+		raceCanvas.setLevelOfDetail(new LevelOfDetail());
+		
+		//Create JSlider with values from -10 to 10 and add markings to it
+		JSlider speedSlider = new JSlider(-10, 10, 0);
+		speedSlider.setMajorTickSpacing(1);
+		speedSlider.setPaintTicks(true);
+		speedSlider.setPaintLabels(true);
+		speedSlider.addChangeListener((e) -> controlQueue.setSpeed(speedSlider.getValue()));
+		controlQueue.setSpeed(speedSlider.getValue());
+		
+		//Button that pauses and resumes the race, keeping the speed of the slider
+		JToggleButton pauseButton = new JToggleButton("Pause");
+		pauseButton.addActionListener((e) -> controlQueue.setPaused(pauseButton.isSelected()));
+		
+		//Add canvas, JSlider and button to frame with separation in between 
+		frame.add(raceCanvas);
+		frame.add(Box.createVerticalStrut(20));
+		frame.add(speedSlider);
+		frame.add(pauseButton);
+		
+		//Layout is the BoxLayout organized vertically so that the slider is below the unicycles
+		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
+		
+		//Make the GUI visible, closeable, and have a not resizeable
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.pack();
+		frame.setVisible(true);
+		frame.setResizable(false);
+		
+		//The canvas can only create its buffers once it is displayable
+		raceCanvas.start(TICKS_PER_SECOND);
+	}
+	
+	/**
+	 * Method that tests whether a race on a track much longer than the GUI is displayed correctly by a camera
+	 * that follows the leader, zoomed with a second JSlider
+	 * The pelotons have different speeds, so they spread along the track and only a few of them are on the
+	 * screen at once. The ones that are not (and the riders of the visible pelotons that are not) are skipped
+	 * when drawing, so the GUI stays smooth no matter how long the track is
+	 * The live standings (the leading peloton, the top riders, the rank of the first rider and the last lead
+	 * change between pelotons) are shown below the track
+	 */
+	public void testLongTrack() {
+		
+		//Set GUI's title
+		JFrame frame = new JFrame("The Unicycle Race");
+		
+		/*Create broader group that will encompass NUM_PELOTONS pelotons with random speeds, each one
+		 *a fleet starting somewhere in the first part of the track (the same race every time, from SEED)*/
+		RiderGenerator riderGenerator = new RiderGenerator(SEED, UNIT, 250);
+		MovingObjectGroup unicycleGroup = riderGenerator.generateRace(NUM_PELOTONS, NUM_PELOTON_UNICYCLES, ICON_W * 2);
+		
+		//Driver stopping the race at the end of the track instead of the end of the GUI, controlled by the slider
+		ControlledDriver stopDriver = new ControlledDriver(RaceInstrumentation.instrument(new StopDriver(unicycleGroup, TRACK_LENGTH)));
+		ControlQueue controlQueue = stopDriver.getControlQueue();
+		
+		//Camera following the leader of the race
+		Camera camera = new Camera(ICON_W, ICON_H, TRACK_LENGTH);
+		camera.follow(unicycleGroup);
+		
+		//Create icon showing the track through the camera and add it to the label
+		MyIcon icon = new MyIcon(ICON_W, ICON_H, unicycleGroup);
+		icon.setCamera(camera);
+		JLabel label = new JLabel(icon);
+		
+		//Riders zoomed out to a few pixels are drawn as single rectangles, and dense pelotons as one shape
+		icon.setLevelOfDetail(new LevelOfDetail());
+		
+		//Live standings of the pelotons (ranked as units) and of every rider, updated after every tick
+		Leaderboard pelotonStandings = Leaderboard.ofGroupElements(unicycleGroup);
+		Leaderboard riderStandings = new Leaderboard(unicycleGroup);
+		JLabel standingsLabel = new JLabel(" ");
+		int[] topRiders = new int[NUM_TOP_RIDERS];
+		
+		//The last lead change between pelotons, shown in the standings
+		String[] lastLeadChange = {""};
+		
+		pelotonStandings.addLeadChangeListener((leader, previousLeader) -> {
+			
+			if(previousLeader != -1) {
+				
+				lastLeadChange[0] = "   Peloton " + leader + " took the lead from peloton " + previousLeader;
+			}
+		});
+		
+		//Create JSlider with values from -10 to 10 and add markings to it
+		JSlider speedSlider = new JSlider(-10, 10, 0);
+		speedSlider.setMajorTickSpacing(1);
+		speedSlider.setPaintTicks(true);
+		speedSlider.setPaintLabels(true);
+		
+		//Create JSlider that sets the zoom of the camera from 10% to 100%
+		JSlider zoomSlider = new JSlider(10, 100, 100);
+		zoomSlider.setMajorTickSpacing(10);
+		zoomSlider.setPaintTicks(true);
+		zoomSlider.setPaintLabels(true);
+		
+		//Add labels and JSliders to frame with separation in between 
+		frame.add(label);
+		frame.add(standingsLabel);
+		frame.add(Box.createVerticalStrut(20));
+		frame.add(speedSlider);
+		frame.add(zoomSlider);
+		
+		//Layout is the BoxLayout organized vertically so that the sliders are below the unicycles
+		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
+		
+		//Send the initial speed of the slider to the race, and the new one whenever the slider is moved
+		controlQueue.setSpeed(speedSlider.getValue());
+		speedSlider.addChangeListener((e) -> controlQueue.setSpeed(speedSlider.getValue()));
+		zoomSlider.addChangeListener((e) -> camera.setZoom(zoomSlider.getValue() / 100.0));
+		
+		/*Create Timer that updates GUI, changes the pelotons' X positions and moves the camera 60 times per
+		 * second (60 Hz) to create the impression of fluid movement*/
+		final int DELAY = 50/3;
+		Timer timer = new Timer(DELAY, (e) -> { 
+		
+			stopDriver.drive();
+			camera.follow(unicycleGroup);
+			
+			pelotonStandings.update();
+			riderStandings.update();
+			
+			int count = riderStandings.getTop(NUM_TOP_RIDERS, topRiders);
+			StringBuilder standings = new StringBuilder("Leading peloton: " + pelotonStandings.getLeader() + " (" + pelotonStandings.getLeadChanges() + " lead changes)   Top riders:");
+			
+			for(int i = 0; i < count; i++) {
+				
+				standings.append(' ').append(topRiders[i]);
+			}
+			
+			standings.append("   Rider 0 ranked ").append(riderStandings.getRank(0)).append(" of ").append(riderStandings.getEntryCount());
+			standingsLabel.setText(standings.append(lastLeadChange[0]).toString());
+		
+			label.repaint();
+		
+		});
+		
+		timer.start();
+		
+		//Make the GUI visible, closeable, and have a not resizeable
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.pack();
+		frame.setVisible(true);
+		frame.setResizable(false);
+	}
+	
+	/**
+	 * Method that tests whether the riders touching each other are detected correctly on a long track
+	 * NUM_COLLIDING_PELOTONS small pelotons with different speeds start along the first half of the track, so
+	 * the faster ones ride into the slower ones. After every tick a CollisionDetector finds the riders whose
+	 * wheels touch, and the number of contacts, the crashes (contacts that began) so far and the pile-ups are
+	 * shown below the track
+	 */
+	public void testCollisions() {
+		
+		//Set GUI's title
+		JFrame frame = new JFrame("The Unicycle Race");
+		
+		//Create broader group that will encompass the pelotons, spread along the first half of the track
+		RiderGenerator riderGenerator = new RiderGenerator(SEED, UNIT, 250);
+		MovingObjectGroup unicycleGroup = riderGenerator.generateRace(NUM_COLLIDING_PELOTONS, NUM_COLLIDING_PELOTON_UNICYCLES, TRACK_LENGTH / 2);
+		
+		//Driver stopping the race at the end of the track, controlled by the slider
+		ControlledDriver stopDriver = new ControlledDriver(new StopDriver(unicycleGroup, TRACK_LENGTH));
+		ControlQueue controlQueue = stopDriver.getControlQueue();
+		
+		//Camera following the leader of the race
+		Camera camera = new Camera(ICON_W, ICON_H, TRACK_LENGTH);
+		camera.follow(unicycleGroup);
+		
+		//Create icon showing the track through the camera and add it to the label
+		MyIcon icon = new MyIcon(ICON_W, ICON_H, unicycleGroup);
+		icon.setCamera(camera);
+		JLabel label = new JLabel(icon);
+		
+		//Contacts between riders, found after every tick, and the crashes counted as they begin
+		CollisionDetector collisionDetector = new CollisionDetector(unicycleGroup);
+		JLabel collisionsLabel = new JLabel(" ");
+		long[] crashes = {0};
+		
+		collisionDetector.addCollisionListener(new CollisionListener() {
+			
+			@Override
+			public void contactBegan(int riderA, int riderB) {
+				
+				crashes[0]++;
+			}
+			
+			@Override
+			public void contactEnded(int riderA, int riderB) {
+				
+			}
+		});
+		
+		//Create JSlider with values from -10 to 10 and add markings to it
+		JSlider speedSlider = new JSlider(-10, 10, 0);
+		speedSlider.setMajorTickSpacing(1);
+		speedSlider.setPaintTicks(true);
+		speedSlider.setPaintLabels(true);
+		
+		//Create JSlider that sets the zoom of the camera from 10% to 100%
+		JSlider zoomSlider = new JSlider(10, 100, 100);
+		zoomSlider.setMajorTickSpacing(10);
+		zoomSlider.setPaintTicks(true);
+		zoomSlider.setPaintLabels(true);
+		
+		//Add labels and JSliders to frame with separation in between 
+		frame.add(label);
+		frame.add(collisionsLabel);
+		frame.add(Box.createVerticalStrut(20));
+		frame.add(speedSlider);
+		frame.add(zoomSlider);
+		
+		//Layout is the BoxLayout organized vertically so that the sliders are below the unicycles
+		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
+		
+		//Send the initial speed of the slider to the race, and the new one whenever the slider is moved
+		controlQueue.setSpeed(speedSlider.getValue());
+		speedSlider.addChangeListener((e) -> controlQueue.setSpeed(speedSlider.getValue()));
+		zoomSlider.addChangeListener((e) -> camera.setZoom(zoomSlider.getValue() / 100.0));
+		
+		/*Create Timer that updates GUI, changes the pelotons' X positions and moves the camera 60 times per
+		 * second (60 Hz) to create the impression of fluid movement*/
+		final int DELAY = 50/3;
+		Timer timer = new Timer(DELAY, (e) -> { 
+		
+			stopDriver.drive();
+			camera.follow(unicycleGroup);
+			
+			collisionDetector.update();
+			collisionsLabel.setText("Contacts: " + collisionDetector.getContactCount() + "   Crashes: " + crashes[0] + "   Pile-ups: " + collisionDetector.getPileUpCount() + " (largest: " + collisionDetector.getLargestPileUp() + " riders)");
+		
+			label.repaint();
+		
+		});
+		
+		timer.start();
+		
+		//Make the GUI visible, closeable, and have a not resizeable
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.pack();
+		frame.setVisible(true);
+		frame.setResizable(false);
+	}
+	
+	/**
+	 * Method that tests whether a recorded race is played back correctly
+	 * The race of testCreativity() is run headless for NUM_RECORDED_TICKS ticks (changing its speed every few
+	 * seconds) and recorded to a temporary file, then played back from the file: the first JSlider sets the
+	 * playback speed (negative values rewind) and the second one seeks to any tick of the race
+	 * @throws IOException if the race can't be recorded or read
+	 */
+	public void testReplay() throws IOException {
+		
+		//Set GUI's title
+		JFrame frame = new JFrame("The Unicycle Race");
+		
+		//Create the same tree twice: one is raced and recorded, the other one replays the recording
+		MovingObjectGroup[] unicycleGroups = new MovingObjectGroup[2];
+		
+		for(int i = 0; i < unicycleGroups.length; i++) {
+			
+			unicycleGroups[i] = new MovingObjectGroup();
+			unicycleGroups[i].addMovingObject(new MovingObjectGroup(1.2));
+			unicycleGroups[i].addMovingObject(new MovingObjectGroup(2));
+		}
+		
+		for(int i = 0; i < NUM_UNICYCLES * 2; i++) {
+			
+			int x = (int) (Math.random() * UNIT * 5 + 20);
+			int y =  250 - (int)(Math.random() * UNIT);
+			int newSize = (int) ((Math.random() * 1.5 + 0.5) * UNIT);
+			Color color = new Color((int) (Math.random() * 0xFFFFFF));
+			
+			for(MovingObjectGroup unicycleGroup : unicycleGroups) {
+				
+				((MovingObjectGroup) unicycleGroup.getGroupElement(i % 2)).addMovingObject(new Unicycle(x, y, newSize, color));
+			}
+		}
+		
+		//Record the race, as fast as possible, with a new speed every 5 seconds
+		Path recordingPath = Files.createTempFile("unicycle-race", ".race");
+		recordingPath.toFile().deleteOnExit();
+		
+		SimulationRunner simulationRunner = new SimulationRunner(new LeftAndRightDriver(unicycleGroups[0], ICON_W), new FixedStepClock(1000000000L / TICKS_PER_SECOND, TimeUnit.NANOSECONDS));
+		
+		try(RaceRecorder raceRecorder = new RaceRecorder(unicycleGroups[0], recordingPath)) {
+			
+			simulationRunner.addTickListener(raceRecorder);
+			
+			for(int tick = 0; tick < NUM_RECORDED_TICKS; tick++) {
+				
+				if(tick % (TICKS_PER_SECOND * 5) == 0) {
+					
+					int newSpeed = (int) (Math.random() * 21) - 10;
+					
+					simulationRunner.setSpeed(newSpeed);
+					raceRecorder.setSpeed(newSpeed);
+				}
+				
+				simulationRunner.step();
+			}
+		}
+		
+		//Play the recording back into the second tree
+		MovingObjectGroup replayGroup = unicycleGroups[1];
+		ReplayDriver replayDriver = new ReplayDriver(replayGroup, new RaceRecording(recordingPath));
+		
+		//Create icon and add it to the label
+		MyIcon icon = new MyIcon(ICON_W, ICON_H, replayGroup);
+		JLabel label = new JLabel(icon);
+		
+		//Create JSlider with the playback speed from -10 to 10 and add markings to it
+		JSlider speedSlider = new JSlider(-10, 10, 1);
+		speedSlider.setMajorTickSpacing(1);
+		speedSlider.setPaintTicks(true);
+		speedSlider.setPaintLabels(true);
+		
+		//Create JSlider that seeks to any tick of the recording
+		JSlider seekSlider = new JSlider(1, NUM_RECORDED_TICKS, 1);
+		
+		//Add label and JSliders to frame with separation in between 
+		frame.add(label);
+		frame.add(Box.createVerticalStrut(20));
+		frame.add(speedSlider);
+		frame.add(seekSlider);
+		
+		//Layout is the BoxLayout organized vertically so that the sliders are below the unicycles
+		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
+		
+		//Only seek when the user drags the slider, not when the Timer moves it along with the replay
+		replayDriver.setPlaybackSpeed(speedSlider.getValue());
+		speedSlider.addChangeListener((e) -> replayDriver.setPlaybackSpeed(speedSlider.getValue()));
+		seekSlider.addChangeListener((e) -> {
+			
+			if(seekSlider.getValueIsAdjusting()) {
+				
+				replayDriver.seek(seekSlider.getValue());
+			}
+		});
+		
+		/*Create Timer that plays the recording back 60 times per second (60 Hz) 
+		 * to create the impression of fluid movement*/
+		final int DELAY = 50/3;
+		DamageRegion damageRegion = new DamageRegion();
+		Timer timer = new Timer(DELAY, (e) -> { 
+		
+			if(!seekSlider.getValueIsAdjusting()) {
+				
+				replayDriver.drive();
+				seekSlider.setValue((int) replayDriver.getTick());
+			}
+			
+			replayGroup.collectDamage(damageRegion);
+			icon.collectHudDamage(damageRegion);
+			damageRegion.paintImmediately(label);
+		
+		});
+		
+		timer.start();
+		
+		//Make the GUI visible, closeable, and have a not resizeable
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.pack();
+		frame.setVisible(true);
+		frame.setResizable(false);
+	}
+	
+	/**
+	 * Method that tests whether a race broadcast on the loopback address is displayed correctly by spectators
+	 * The race of testDecoupledSimulation() runs in the first window, with its slider, and is broadcast by a
+	 * RaceBroadcastServer to NUM_SPECTATORS other windows that only display what they receive
+	 * @throws IOException if the server can't be opened or a spectator can't connect
+	 */
+	public void testBroadcast() throws IOException {
+		
+		//Create broader group that will encompass the pelotons
+		MovingObjectGroup unicycleGroup = new MovingObjectGroup();
+		
+		//Create three pelotons with different speeds, each one a fleet
+		for(double speedMultiplier : new double[] {1, 1.2, 1.5}) {
+			
+			MovingObjectGroup peloton = new MovingObjectGroup(speedMultiplier);
+			UnicycleFleet unicycleFleet = new UnicycleFleet();
+			
+			for(int i = 0; i < NUM_UNICYCLES; i++) {
+				
+				int x = (int) (Math.random() * UNIT * 5 + 20);
+				int y =  250 - (int)(Math.random() * UNIT);
+				int newSize = (int) ((Math.random() * 1.5 + 0.5) * UNIT);
+				
+				unicycleFleet.addUnicycle(x, y, newSize, (int) (Math.random() * 0xFFFFFF));
+			}
+			
+			peloton.addMovingObject(unicycleFleet);
+			unicycleGroup.addMovingObject(peloton);
+		}
+		
+		//Simulation running on its own thread, published for the race window and broadcast for the spectators
+		long tickLengthNanos = TimeUnit.SECONDS.toNanos(1) / TICKS_PER_SECOND;
+		SimulationRunner simulationRunner = new SimulationRunner(new StopDriver(unicycleGroup, ICON_W), new RealTimeClock(TICKS_PER_SECOND));
+		
+		SnapshotPublisher snapshotPublisher = new SnapshotPublisher(unicycleGroup, tickLengthNanos);
+		snapshotPublisher.publish();
+		simulationRunner.addTickListener(snapshotPublisher);
+		
+		RaceBroadcastServer raceBroadcastServer = new RaceBroadcastServer(unicycleGroup, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), tickLengthNanos);
+		raceBroadcastServer.start();
+		simulationRunner.addTickListener(raceBroadcastServer);
+		
+		//Create JSlider with values from -10 to 10 and add markings to it
+		JSlider speedSlider = new JSlider(-10, 10, 0);
+		speedSlider.setMajorTickSpacing(1);
+		speedSlider.setPaintTicks(true);
+		speedSlider.setPaintLabels(true);
+		
+		//The slider hands the speed over to the simulation thread (and to the spectators)
+		speedSlider.addChangeListener((e) -> {
+			
+			simulationRunner.setSpeed(speedSlider.getValue());
+			raceBroadcastServer.setSpeed(speedSlider.getValue());
+		});
+		
+		simulationRunner.setSpeed(speedSlider.getValue());
+		simulationRunner.start();
+		
+		//One window for the race and one for every spectator, all repainted by the same Timer
+		JLabel[] labels = new JLabel[NUM_SPECTATORS + 1];
+		
+		for(int i = 0; i < labels.length; i++) {
+			
+			//Set GUI's title
+			JFrame frame = new JFrame(i == 0 ? "The Unicycle Race" : "The Unicycle Race - Spectator " + i);
+			
+			SnapshotSource snapshotSource = i == 0 ? snapshotPublisher : new RaceBroadcastClient(raceBroadcastServer.getAddress());
+			labels[i] = new JLabel(new MyIcon(ICON_W, ICON_H, snapshotSource));
+			
+			frame.add(labels[i]);
+			
+			if(i == 0) {
+				
+				frame.add(Box.createVerticalStrut(20));
+				frame.add(speedSlider);
+			}
+			
+			//Layout is the BoxLayout organized vertically so that the slider is below the unicycles
+			frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
+			
+			//Make the GUI visible, closeable, and have a not resizeable
+			frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+			frame.pack();
+			frame.setLocation(0, i * (frame.getHeight() + 20));
+			frame.setVisible(true);
+			frame.setResizable(false);
+		}
+		
+		//Timer that only repaints the GUIs, independently from the simulation
+		final int DELAY = 50/3;
+		Timer timer = new Timer(DELAY, (e) -> {
+			
+			for(JLabel label : labels) {
+				
+				label.repaint();
+			}
+		});
+		
+		timer.start();
+	}
+	
+	/**
+	 * Method that tests whether a race simulated by another JVM is displayed correctly through shared memory
+	 * A child process runs SharedRaceStore.main (NUM_SHARED_UNICYCLES riders in pelotons moving back and forth)
+	 * and publishes every tick to a memory-mapped file, and this window only displays it with a SharedRaceView:
+	 * closing the window ends the child, and the child's garbage collections never freeze the window
+	 * @throws IOException if the child process can't be started or the file can't be read
+	 */
+	public void testSharedMemory() throws IOException {
+		
+		Path sharedPath = Files.createTempFile("unicycle-race", ".shm");
+		sharedPath.toFile().deleteOnExit();
+		
+		//Same Java and classpath as this JVM, the race ends when this JVM closes the child's input
+		String java = ProcessHandle.current().info().command().orElse("java");
+		ProcessBuilder processBuilder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "SharedRaceStore", sharedPath.toString(), Integer.toString(NUM_SHARED_UNICYCLES), Long.toString(SEED));
+		processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		
+		Process simulator = processBuilder.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(simulator::destroy));
+		
+		//The child prints a line once the file can be opened
+		BufferedReader simulatorOutput = new BufferedReader(new InputStreamReader(simulator.getInputStream()));
+		String line = simulatorOutput.readLine();
+		
+		if(line == null) {
+			
+			throw new IOException("The simulator exited with code " + simulator.exitValue());
+		}
+		
+		SharedRaceView sharedRaceView = new SharedRaceView(sharedPath);
+		
+		//Set GUI's title
+		JFrame frame = new JFrame("The Unicycle Race - Shared Memory");
+		
+		//Create icon for the view and add it to the label
+		MyIcon icon = new MyIcon(ICON_W, ICON_H, sharedRaceView);
+		JLabel label = new JLabel(icon);
+		
+		//Simplify the riders whenever a frame takes too long
+		icon.setLevelOfDetail(new LevelOfDetail());
+		
+		//Label showing what the child publishes (its first line of output)
+		JLabel simulatorLabel = new JLabel(line);
+		
+		//Layout is the BoxLayout organized vertically so that the label is below the unicycles
+		frame.add(label);
+		frame.add(simulatorLabel);
+		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
+		
+		//Areas of the GUI that changed since they were last painted
+		DamageRegion damageRegion = new DamageRegion();
+		
+		//Timer that only displays the latest tick published, independently from the simulation
+		final int DELAY = 50/3;
+		Timer timer = new Timer(DELAY, (e) -> { 
+		
+			sharedRaceView.refresh();
+		
+			sharedRaceView.collectDamage(damageRegion);
+			icon.collectHudDamage(damageRegion);
+			damageRegion.paintImmediately(label);
+		
+		});
+		
+		timer.start();
+		
+		//Make the GUI visible, closeable, and have a not resizeable
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.pack();
+		frame.setVisible(true);
+		frame.setResizable(false);
+	}
+	
+	/**
+	 * Method that tests whether a race loaded from a race file (see RaceLoader) is displayed and moves correctly
+	 * at the speed defined by the JSlider on the GUI. The load report (time and memory) is shown below the race, and races
+	 * on tracks longer than the GUI are followed by a camera
+	 * @param path the race file
+	 * @throws IOException if the race file can't be loaded
+	 */
+	public void testRaceFile(Path path) throws IOException {
+		
+		LoadedRace loadedRace = RaceLoader.load(path);
+		
+		MovingObjectGroup unicycleGroup = loadedRace.getRace();
+		ControlledDriver driver = new ControlledDriver(RaceInstrumentation.instrument(loadedRace.getDriver()));
+		ControlQueue controlQueue = driver.getControlQueue();
+		
+		//Set GUI's title
+		JFrame frame = new JFrame("The Unicycle Race");
+		
+		//Create icon and add it to the label, with a camera following the leader if the track doesn't fit
+		MyIcon icon = new MyIcon(ICON_W, ICON_H, unicycleGroup);
+		Camera camera = loadedRace.getTrackLength() > ICON_W ? new Camera(ICON_W, ICON_H, loadedRace.getTrackLength()) : null;
+		
+		if(camera != null) {
+			
+			camera.follow(unicycleGroup);
+			icon.setCamera(camera);
+		}
+		
+		JLabel label = new JLabel(icon);
+		
+		//Create JSlider with values from -10 to 10, starting at the speed of the race file, and add markings to it
+		JSlider speedSlider = new JSlider(-10, 10, Math.max(-10, Math.min(10, loadedRace.getInitialSpeed())));
+		speedSlider.setMajorTickSpacing(1);
+		speedSlider.setPaintTicks(true);
+		speedSlider.setPaintLabels(true);
+		
+		//Label showing how long the race file took to load and how much memory it took
+		JLabel reportLabel = new JLabel(path.getFileName() + ": " + loadedRace.getReport());
+		
+		//Add labels and JSlider to frame with separation in between 
+		frame.add(label);
+		frame.add(reportLabel);
+		frame.add(Box.createVerticalStrut(20));
+		frame.add(speedSlider);
+		
+		//Layout is the BoxLayout organized vertically so that the slider is below the unicycles
+		frame.getContentPane().setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.Y_AXIS));
+		
+		//Send the initial speed of the slider to the race, and the new one whenever the slider is moved
+		controlQueue.setSpeed(speedSlider.getValue());
+		speedSlider.addChangeListener((e) -> controlQueue.setSpeed(speedSlider.getValue()));
+		
+		/*Create Timer that updates GUI and changes the race's X position 60 times per second (60 Hz) 
+		 * to create the impression of fluid movement*/
+		final int DELAY = 50/3;
+		Timer timer = new Timer(DELAY, (e) -> { 
+		
+			driver.drive();
+			
+			if(camera != null) {
+				
+				camera.follow(unicycleGroup);
+			}
+		
+			label.repaint();
+		
+		});
+		
+		timer.start();
+		
+		//Make the GUI visible, closeable, and have a not resizeable
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.pack();
+		frame.setVisible(true);
+		frame.setResizable(false);
+	}
 }
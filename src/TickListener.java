@@ -0,0 +1,16 @@
+/**
+ * Interface that serves as the blueprint for the classes that want to be told whenever a
+ * SimulationRunner finishes a tick (for example to display or record the race)
+ * @author Luiz do Valle
+ *
+ */
+public interface TickListener {
+
+	/**
+	 * Method called on the simulation thread right after the Driver moved the MovingObject
+	 * @param tick the number of the tick that was completed (the first tick is 1)
+	 * @param simulatedTimeNanos the simulated time of the tick in nanoseconds
+	 */
+	public abstract void tickCompleted(long tick, long simulatedTimeNanos);
+	
+}
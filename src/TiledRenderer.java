@@ -0,0 +1,250 @@
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class that draws a race on several threads at once. The canvas is split into horizontal tiles (bands the
+ * full width of the canvas), each tile is drawn by a worker thread into its own offscreen image (only drawing
+ * the riders that intersect it), and the tiles are then copied into the final frame, top to bottom.
+ * The result looks exactly like drawing the riders directly, but the drawing time is divided among the workers
+ *
+ * Every worker draws in the coordinates of the whole canvas, without any clip: Java2D rasterizes clipped or
+ * translated shapes slightly differently, which would make the seams between tiles visible
+ *
+ * The riders are taken from a RaceSnapshot, which can safely be read by several threads at once
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class TiledRenderer implements AutoCloseable {
+
+	/**
+	 * The width of the canvas (and of every tile)
+	 */
+	private final int width;
+	
+	/**
+	 * The height of the canvas
+	 */
+	private final int height;
+	
+	/**
+	 * The area of the canvas covered by each tile
+	 */
+	private final Rectangle[] tileAreas;
+	
+	/**
+	 * The offscreen image of each worker (as big as the canvas), reused for every frame
+	 */
+	private final BufferedImage[] canvasImages;
+	
+	/**
+	 * The part of each worker's image covered by its tile (sharing the image's pixels)
+	 */
+	private final BufferedImage[] tileImages;
+	
+	/**
+	 * The part of each tile drawn in the current frame (the part inside the clip of the frame)
+	 */
+	private final Rectangle[] renderAreas;
+	
+	/**
+	 * Rectangle the bounds of the clip of the frame are copied to
+	 */
+	private final Rectangle clipBounds = new Rectangle();
+	
+	/**
+	 * The worker threads that draw the tiles
+	 */
+	private final ExecutorService workers;
+	
+	/**
+	 * Constructor that splits the canvas into the specified number of tiles and creates one worker per tile
+	 * @param width the width of the canvas
+	 * @param height the height of the canvas
+	 * @param tiles the number of tiles (normally the number of cores)
+	 */
+	public TiledRenderer(int width, int height, int tiles) {
+		
+		if(tiles < 1 || tiles > height) {
+			
+			throw new IllegalArgumentException("The number of tiles must be between 1 and the height: " + tiles);
+		}
+		
+		this.width = width;
+		this.height = height;
+		
+		tileAreas = new Rectangle[tiles];
+		canvasImages = new BufferedImage[tiles];
+		renderAreas = new Rectangle[tiles];
+		tileImages = new BufferedImage[tiles];
+		
+		for(int i = 0; i < tiles; i++) {
+			
+			int top = height * i / tiles;
+			int bottom = height * (i + 1) / tiles;
+			
+			tileAreas[i] = new Rectangle(0, top, width, bottom - top);
+			canvasImages[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+			tileImages[i] = canvasImages[i].getSubimage(0, top, width, bottom - top);
+			renderAreas[i] = new Rectangle();
+		}
+		
+		workers = Executors.newFixedThreadPool(tiles, (runnable) -> {
+			
+			Thread thread = new Thread(runnable, "tile-renderer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Method that draws the riders of a snapshot, one tile per worker, and copies the tiles into graphics2d.
+	 * If graphics2d has a clip (like when only a dirty rectangle is repainted), only the part of the tiles
+	 * inside it is drawn. Blocks until the frame is complete
+	 * @param graphics2d the Graphics2D reference the frame is drawn into
+	 * @param snapshot the riders to be drawn
+	 * @param levelOfDetail the level of detail of the view the frame is drawn in (null to draw the riders in
+	 * full detail)
+	 */
+	public void render(Graphics2D graphics2d, RaceSnapshot snapshot, LevelOfDetail levelOfDetail) {
+		
+		Color initialColor = graphics2d.getColor();
+		Rectangle clip = ExtentIndex.getClipBounds(graphics2d, clipBounds);
+		List<Callable<Void>> tileTasks = new ArrayList<>(tileAreas.length);
+		
+		for(int i = 0; i < tileAreas.length; i++) {
+			
+			Rectangle renderArea = renderAreas[i];
+			BufferedImage canvasImage = canvasImages[i];
+			
+			renderArea.setBounds(tileAreas[i]);
+			
+			if(clip != null) {
+				
+				Rectangle.intersect(renderArea, clip, renderArea);
+			}
+			
+			//Tiles completely outside the clip are neither drawn nor copied
+			if(renderArea.isEmpty()) {
+				
+				continue;
+			}
+			
+			tileTasks.add(() -> {
+				
+				renderTile(canvasImage, renderArea, snapshot, initialColor, levelOfDetail);
+				return null;
+			});
+		}
+		
+		try {
+			
+			for(Future<Void> tile : workers.invokeAll(tileTasks)) {
+				
+				tile.get();
+			}
+			
+		} catch (InterruptedException e) {
+			
+			//Give up on this frame, but keep the interruption for the caller
+			Thread.currentThread().interrupt();
+			return;
+			
+		} catch (ExecutionException e) {
+			
+			throw new IllegalStateException("Could not draw a tile", e.getCause());
+		}
+		
+		for(int i = 0; i < tileAreas.length; i++) {
+			
+			if(!renderAreas[i].isEmpty()) {
+				
+				graphics2d.drawImage(tileImages[i], tileAreas[i].x, tileAreas[i].y, null);
+			}
+		}
+		
+		//Leave the color as drawing the riders directly would have
+		if(snapshot.getRiderCount() > 0) {
+			
+			graphics2d.setColor(new Color(snapshot.getColor(snapshot.getRiderCount() - 1)));
+		}
+	}
+	
+	/**
+	 * Method that returns the number of tiles the canvas is split into
+	 * @return the number of tiles
+	 */
+	public int getTileCount() {
+		
+		return tileAreas.length;
+	}
+	
+	/**
+	 * Method that returns the width of the canvas
+	 * @return the width of the canvas
+	 */
+	public int getWidth() {
+		
+		return width;
+	}
+	
+	/**
+	 * Method that returns the height of the canvas
+	 * @return the height of the canvas
+	 */
+	public int getHeight() {
+		
+		return height;
+	}
+	
+	/**
+	 * Method that stops the worker threads
+	 */
+	@Override
+	public void close() {
+		
+		workers.shutdown();
+	}
+	
+	/**
+	 * Helper method that draws the riders intersecting (part of) a tile into a worker's image (on a worker thread).
+	 * Riders spill over the area, but only the area is cleared and copied into the frame
+	 * @param canvasImage the image of the worker
+	 * @param tileArea the area of the canvas to be drawn
+	 * @param snapshot the riders to be drawn
+	 * @param initialColor the color of the Graphics2D of the frame, used to fill the first rider's seat
+	 * @param levelOfDetail the level of detail the riders are drawn with (null for full detail)
+	 */
+	private static void renderTile(BufferedImage canvasImage, Rectangle tileArea, RaceSnapshot snapshot, Color initialColor, LevelOfDetail levelOfDetail) {
+		
+		Graphics2D tileGraphics = canvasImage.createGraphics();
+		
+		try {
+			
+			//Clear what was drawn in the previous frame
+			Composite composite = tileGraphics.getComposite();
+			tileGraphics.setComposite(AlphaComposite.Clear);
+			tileGraphics.fill(tileArea);
+			tileGraphics.setComposite(composite);
+			
+			tileGraphics.setColor(initialColor);
+			
+			snapshot.draw(tileGraphics, tileArea, levelOfDetail);
+			
+		} finally {
+			
+			tileGraphics.dispose();
+		}
+	}
+}
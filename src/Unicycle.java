@@ -1,10 +1,6 @@
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.geom.Ellipse2D;
-import java.awt.geom.GeneralPath;
-import java.awt.geom.Line2D;
-import java.awt.geom.Rectangle2D;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Class that implements the MovingObject interface and represents a single Unicycle
@@ -32,24 +28,14 @@ public class Unicycle implements MovingObject {
 	private int unit;
 	
 	/**
-	 * The rectangle representing the unicycle's seat
+	 * The shapes of the unicycle (seat, frame, wheel and axle), shared by every unicycle with the same seat length
 	 */
-	private Rectangle2D seat;
+	private UnicycleGeometry geometry;
 	
 	/**
-	 * The line representing the unicycle's frame
+	 * The sprite this unicycle was drawn with last time in raster mode (see UnicycleSpriteCache)
 	 */
-	private Line2D frame;
-	
-	/**
-	 * The ellipse (circle) representing the unicycle's wheel
-	 */
-	private Ellipse2D wheel;
-	
-	/**
-	 * The ellipse (circle) representing the unicycle's axle
-	 */
-	private Ellipse2D axle;
+	private UnicycleSpriteCache.Sprite sprite;
 	
 	/**
 	 * The color of the unicycle
@@ -70,6 +56,21 @@ public class Unicycle implements MovingObject {
 	 */
 	private int leftEndXPosition;
 	
+	/**
+	 * Whether the unicycle moved since its damage was last collected
+	 */
+	private boolean damaged;
+	
+	/**
+	 * The X coordinate of the leftmost point the unicycle covered since its damage was last collected
+	 */
+	private int damageLeftXPosition;
+	
+	/**
+	 * The X coordinate of the rightmost point the unicycle covered since its damage was last collected
+	 */
+	private int damageRightXPosition;
+	
 	/**
 	 * Constructor for the class that initializes class fields
 	 * Generates a random color for the unicycle to add variety
@@ -109,25 +110,56 @@ public class Unicycle implements MovingObject {
 	@Override
 	public void draw(Graphics2D graphics2d) {
 		
-		GeneralPath unicycle = new GeneralPath();
-		
-		createUnicycle();
-		
-		unicycle.append(seat, false);
-		unicycle.append(frame, false);
-		unicycle.append(wheel, false);
-		unicycle.append(axle, false);
-		
-		graphics2d.fill(seat);
-		graphics2d.setColor(color);
-		graphics2d.draw(unicycle);
+		draw(graphics2d, null);
+	}
+	
+	@Override
+	public void draw(Graphics2D graphics2d, LevelOfDetail levelOfDetail) {
+		
+		UnicycleSpriteCache spriteCache = UnicycleSpriteCache.getActive();
+		
+		if(levelOfDetail != null && unit < levelOfDetail.getMinimumSeatLength()) {
+			
+			//Too small on the screen for its shapes to be told apart
+			geometry.drawSimplified(graphics2d, x, y, color);
+			
+		} else if(spriteCache != null) {
+			
+			//Raster mode: a single drawImage of the pre-rendered unicycle
+			sprite = spriteCache.draw(graphics2d, x, y, geometry, color, sprite);
+			
+		} else {
+			
+			//The shared shapes are drawn at this unicycle's position, so no shapes are created per frame
+			geometry.draw(graphics2d, x, y, color);
+		}
 		
 	}
 
 	@Override
 	public void translate(int deltaX) {
 		
+		if(deltaX == 0) {
+			
+			return;
+		}
+		
+		//The area covered before the first move since the damage was last collected must be repainted too
+		if(!damaged) {
+			
+			damaged = true;
+			damageLeftXPosition = leftEndXPosition;
+			damageRightXPosition = rightEndXPosition;
+		}
+		
 		x += deltaX;
+		
+		//Keep the ends in sync with x so that they are correct even before the unicycle is drawn again
+		rightEndXPosition += deltaX;
+		leftEndXPosition += deltaX;
+		
+		damageLeftXPosition = Math.min(damageLeftXPosition, leftEndXPosition);
+		damageRightXPosition = Math.max(damageRightXPosition, rightEndXPosition);
 	}
 
 	@Override
@@ -142,52 +174,67 @@ public class Unicycle implements MovingObject {
 		return leftEndXPosition;
 	}
 
+	@Override
+	public void visitRiders(RiderVisitor riderVisitor) {
+		
+		riderVisitor.visitRider(x, y, unit, color.getRGB());
+	}
+	
+	@Override
+	public int getRiderXPositions(int[] xPositions, int offset) {
+		
+		xPositions[offset] = x;
+		
+		return 1;
+	}
+	
+	@Override
+	public int setRiderXPositions(int[] xPositions, int offset) {
+		
+		translate(xPositions[offset] - x);
+		
+		return 1;
+	}
+	
+	@Override
+	public void collectDamage(DamageRegion damageRegion) {
+		
+		if(damaged) {
+			
+			damageRegion.add(damageLeftXPosition, y + geometry.getTopYOffset(), damageRightXPosition, y);
+			damaged = false;
+		}
+	}
+
 	/**
-	 * Helper method that creates the shapes that compose the unicycle
-	 * All lengths and positions defined in terms of units so that unicycles of different sizes can be 
-	 * created easily
+	 * Helper method that looks up the shapes that compose the unicycle and computes its ends
+	 * All lengths and positions are defined in terms of units (see UnicycleGeometry) so that unicycles of 
+	 * different sizes can be created easily
 	 */
 	private void createUnicycle() {
 		
-		//Wheel
-		int diameterWheel = unit * 11/10;
-		int framingRectangleTopX = x - diameterWheel/2;
-		int framingRectangleTopY = y - diameterWheel;
-		wheel = new Ellipse2D.Double(framingRectangleTopX, framingRectangleTopY, diameterWheel, diameterWheel);
+		geometry = UnicycleGeometry.forSeatLength(unit);
 		
 		//Ends
-		rightEndXPosition = framingRectangleTopX + diameterWheel;
-		leftEndXPosition = framingRectangleTopX;
-				
-		//Axle
-		int diameterAxle = diameterWheel/4;
-		framingRectangleTopX = x - diameterAxle/2;
-		framingRectangleTopY = y - diameterAxle/2 - diameterWheel/2;
-		axle = new Ellipse2D.Double(framingRectangleTopX, framingRectangleTopY, diameterAxle, diameterAxle);
-				
-		//Frame
-		int frameTopX = x;
-		int frameTopY = y - diameterWheel/2 - 3/2 * (unit) ;
-		int frameBottomX = x;
-		int frameBottomY = y - diameterWheel/2;
-		frame = new Line2D.Double(frameTopX, frameTopY, frameBottomX, frameBottomY);
-				
-		//Seat
-		int seatTopLeftX = x - unit/2;
-		int seatTopLeftY = frameTopY - unit/3;
-		int seatLength = unit;
-		int seatWidth = unit/3;
-		seat = new Rectangle2D.Double(seatTopLeftX, seatTopLeftY, seatLength, seatWidth);
+		leftEndXPosition = x + geometry.getLeftEndXOffset();
+		rightEndXPosition = x + geometry.getRightEndXOffset();
+		
+		//A new unicycle has to be painted once
+		damaged = true;
+		damageLeftXPosition = leftEndXPosition;
+		damageRightXPosition = rightEndXPosition;
 		
 	}
 	
 	/**
 	 * Helper method that generates random color
+	 * Uses the generator of the current thread instead of creating one per unicycle (and unlike Math.random()
+	 * it is not shared with other threads). Use a RiderGenerator for colors that can be reproduced
 	 * @return Color reference representing the unicycle's
 	 */
 	private Color generateRandomColor() {
 		
-		Random random = new Random();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
 		
 		float red = random.nextFloat();
 		float green = random.nextFloat();
@@ -0,0 +1,63 @@
+/**
+ * Class that computes the dimensions of a unicycle from its seat length without creating any shape.
+ * UnicycleGeometry builds its shapes from these dimensions, and headless code (which must not load any AWT
+ * class) uses them directly
+ *
+ * @author Luiz do Valle
+ *
+ */
+public final class UnicycleDimensions {
+
+	/**
+	 * Private constructor, as the class only has static methods
+	 */
+	private UnicycleDimensions() {
+
+	}
+
+	/**
+	 * Method that returns the diameter of the wheel of a unicycle
+	 * @param seatLength the length of the seat
+	 * @return the diameter of the wheel
+	 */
+	public static int wheelDiameter(int seatLength) {
+
+		return seatLength * 11/10;
+	}
+
+	/**
+	 * Method that returns the X coordinate of the leftmost point (9 o'clock position of the wheel) of a
+	 * unicycle relative to the center of its wheel
+	 * @param seatLength the length of the seat
+	 * @return the offset of the left end from the center of the wheel
+	 */
+	public static int leftEndXOffset(int seatLength) {
+
+		return -wheelDiameter(seatLength)/2;
+	}
+
+	/**
+	 * Method that returns the X coordinate of the rightmost point (3 o'clock position of the wheel) of a
+	 * unicycle relative to the center of its wheel
+	 * @param seatLength the length of the seat
+	 * @return the offset of the right end from the center of the wheel
+	 */
+	public static int rightEndXOffset(int seatLength) {
+
+		return leftEndXOffset(seatLength) + wheelDiameter(seatLength);
+	}
+
+	/**
+	 * Method that returns the Y coordinate of the topmost point (top of the seat) of a unicycle relative to
+	 * the bottom of its wheel
+	 * @param seatLength the length of the seat
+	 * @return the (negative) offset of the top of the unicycle from the bottom of the wheel
+	 */
+	public static int topYOffset(int seatLength) {
+
+		//Same integer arithmetic as the shapes of UnicycleGeometry
+		int frameTopY = -wheelDiameter(seatLength)/2 - 3/2 * (seatLength);
+
+		return frameTopY - seatLength/3;
+	}
+}
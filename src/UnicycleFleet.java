@@ -0,0 +1,522 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Class that implements the MovingObject interface and represents a whole fleet of unicycles.
+ * Instead of one Unicycle object per rider (each with its own shapes and Color), the fleet stores the
+ * position, seat length, color and ends of every rider in parallel primitive arrays, so a race with
+ * millions of riders costs a few ints per rider instead of several objects per rider (the shapes are shared
+ * with every other unicycle of the same size through UnicycleGeometry).
+ * Since every rider of the fleet moves by the same amount, the fleet can be nested in a
+ * MovingObjectGroup like any other MovingObject.
+ * When drawn with a clip (like the viewport of a Camera), large fleets only draw the riders inside it,
+ * found with an ExtentIndex that is built the first time it is needed
+ * The per-rider arithmetic of moving the riders is done on the whole arrays at once by a RiderKernel
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class UnicycleFleet implements MovingObject {
+
+	/**
+	 * Capacity used by the default constructor
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * Fleets with fewer riders than this simply draw all of them, since finding the visible ones would take
+	 * about as long
+	 */
+	private static final int INDEX_THRESHOLD = 64;
+
+	/**
+	 * The kernel every fleet moves its riders with
+	 */
+	private static volatile RiderKernel riderKernel = RiderKernel.getDefault();
+
+	/**
+	 * X coordinates of the center of each rider's wheel
+	 */
+	private int[] x;
+
+	/**
+	 * Y coordinates of the bottom (6 o'clock position) of each rider's wheel
+	 */
+	private int[] y;
+
+	/**
+	 * Seat length of each rider. Used to determine the proportions of the unicycle
+	 */
+	private int[] seatLength;
+
+	/**
+	 * Color of each rider, stored as an RGB int so that no Color object is kept per rider
+	 */
+	private int[] color;
+
+	/**
+	 * X coordinate of the leftmost point (9 o'clock position of the wheel) of each rider
+	 */
+	private int[] leftEndXPosition;
+
+	/**
+	 * X coordinate of the rightmost point (3 o'clock position of the wheel) of each rider
+	 */
+	private int[] rightEndXPosition;
+
+	/**
+	 * Number of riders in the fleet
+	 */
+	private int size;
+
+	/**
+	 * Leftmost end of the whole fleet. Kept up to date by translate and addUnicycle
+	 */
+	private int fleetLeftEndXPosition = Integer.MAX_VALUE;
+
+	/**
+	 * Rightmost end of the whole fleet. Kept up to date by translate and addUnicycle
+	 */
+	private int fleetRightEndXPosition = Integer.MIN_VALUE;
+
+	/**
+	 * Topmost point (top of a seat) of the whole fleet. Kept up to date by addUnicycle
+	 */
+	private int fleetTopYPosition = Integer.MAX_VALUE;
+
+	/**
+	 * Bottommost point (bottom of a wheel) of the whole fleet. Kept up to date by addUnicycle
+	 */
+	private int fleetBottomYPosition = Integer.MIN_VALUE;
+
+	/**
+	 * Whether the fleet moved (or got new riders) since its damage was last collected
+	 */
+	private boolean damaged;
+
+	/**
+	 * The X coordinate of the leftmost point the fleet covered since its damage was last collected
+	 */
+	private int damageLeftXPosition;
+
+	/**
+	 * The X coordinate of the rightmost point the fleet covered since its damage was last collected
+	 */
+	private int damageRightXPosition;
+
+	/**
+	 * Index of the riders' ends used to find the visible riders (null until the fleet is first drawn with a clip)
+	 */
+	private ExtentIndex extentIndex;
+
+	/**
+	 * Rectangle the bounds of the clip are copied to when drawing, so that drawing creates no object (null until
+	 * the first draw, so that races run without a display never load AWT)
+	 */
+	private Rectangle clipBounds;
+
+	/**
+	 * The group this fleet was added to (null if it is in none). Told when riders are added or the fleet is moved
+	 * on its own, so that the cached ends of the group and of its ancestors stay up to date
+	 */
+	private MovingObjectGroup parent;
+
+	/**
+	 * Default constructor that creates an empty fleet with a small initial capacity
+	 */
+	public UnicycleFleet() {
+
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor that creates an empty fleet able to hold the specified number of riders
+	 * before its arrays need to grow
+	 * @param initialCapacity the number of riders the fleet can hold before growing
+	 */
+	public UnicycleFleet(int initialCapacity) {
+
+		if(initialCapacity < 1) {
+
+			initialCapacity = 1;
+		}
+
+		x = new int[initialCapacity];
+		y = new int[initialCapacity];
+		seatLength = new int[initialCapacity];
+		color = new int[initialCapacity];
+		leftEndXPosition = new int[initialCapacity];
+		rightEndXPosition = new int[initialCapacity];
+	}
+
+	/**
+	 * Method that adds a rider to the fleet. The fleet may already be in a group: the ends of the group and of
+	 * its ancestors grow with it
+	 * @param x the X coordinate of the center of the wheel
+	 * @param y the Y coordinate of the bottom (6 o'clock) position of the wheel
+	 * @param seatLength the length of the seat. Used to determine the proportions of the unicycle
+	 * @param rgb the color of the unicycle as an RGB int (see Color.getRGB())
+	 * @return the index of the new rider in the fleet
+	 */
+	public int addUnicycle(int x, int y, int seatLength, int rgb) {
+
+		if(size == this.x.length) {
+
+			grow();
+		}
+
+		int index = size++;
+
+		this.x[index] = x;
+		this.y[index] = y;
+		this.seatLength[index] = seatLength;
+		this.color[index] = rgb;
+
+		//Same ends as a Unicycle: the 9 and 3 o'clock positions of the wheel
+		//(computed without creating any shape, so that headless races never load AWT classes)
+		leftEndXPosition[index] = x + UnicycleDimensions.leftEndXOffset(seatLength);
+		rightEndXPosition[index] = x + UnicycleDimensions.rightEndXOffset(seatLength);
+
+		fleetLeftEndXPosition = Math.min(fleetLeftEndXPosition, leftEndXPosition[index]);
+		fleetRightEndXPosition = Math.max(fleetRightEndXPosition, rightEndXPosition[index]);
+		fleetTopYPosition = Math.min(fleetTopYPosition, y + UnicycleDimensions.topYOffset(seatLength));
+		fleetBottomYPosition = Math.max(fleetBottomYPosition, y);
+
+		//The new rider has to be painted once
+		damage(leftEndXPosition[index], rightEndXPosition[index]);
+
+		if(extentIndex != null) {
+
+			extentIndex.elementAdded();
+		}
+
+		if(parent != null) {
+
+			parent.elementGrew(leftEndXPosition[index], rightEndXPosition[index]);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Method that adds a rider to the fleet
+	 * @param x the X coordinate of the center of the wheel
+	 * @param y the Y coordinate of the bottom (6 o'clock) position of the wheel
+	 * @param seatLength the length of the seat. Used to determine the proportions of the unicycle
+	 * @param color Color reference representing the color of the unicycle
+	 * @return the index of the new rider in the fleet
+	 */
+	public int addUnicycle(int x, int y, int seatLength, Color color) {
+
+		return addUnicycle(x, y, seatLength, color.getRGB());
+	}
+
+	@Override
+	public void draw(Graphics2D graphics2d) {
+
+		draw(graphics2d, null);
+	}
+
+	@Override
+	public void draw(Graphics2D graphics2d, LevelOfDetail levelOfDetail) {
+
+		if(clipBounds == null) {
+
+			clipBounds = new Rectangle();
+		}
+
+		Rectangle clip = size >= INDEX_THRESHOLD ? ExtentIndex.getClipBounds(graphics2d, clipBounds) : null;
+
+		if(clip == null) {
+
+			UnicycleGeometry.drawRiders(graphics2d, x, y, seatLength, color, 0, size, levelOfDetail);
+			return;
+		}
+
+		if(extentIndex == null) {
+
+			extentIndex = new ExtentIndex(new RiderExtents());
+		}
+
+		//Only the riders inside the clip (translating the fleet keeps the index sorted, so it is never repaired)
+		extentIndex.query(clip.x, clip.x + clip.width);
+
+		int visibleCount = extentIndex.getVisibleCount();
+		UnicycleGeometry.drawRiders(graphics2d, x, y, seatLength, color, extentIndex.getVisibleElements(), visibleCount, levelOfDetail);
+
+		//Leave the color of the last rider set, as if every rider had been drawn
+		if(visibleCount == 0 || extentIndex.getVisibleElement(visibleCount - 1) != size - 1) {
+
+			graphics2d.setColor(UnicycleGeometry.sharedColor(color[size - 1]));
+		}
+	}
+
+	@Override
+	public void visitRiders(RiderVisitor riderVisitor) {
+
+		for(int i = 0; i < size; i++) {
+
+			riderVisitor.visitRider(x[i], y[i], seatLength[i], color[i]);
+		}
+	}
+
+	@Override
+	public void translate(int deltaX) {
+
+		if(size == 0 || deltaX == 0) {
+
+			return;
+		}
+
+		//A single call over the primitive arrays instead of one virtual call per rider
+		riderKernel.translate(x, leftEndXPosition, rightEndXPosition, 0, size, deltaX);
+
+		//Every rider moved by the same amount, so the ends of the fleet did too
+		damage(fleetLeftEndXPosition, fleetRightEndXPosition);
+
+		fleetLeftEndXPosition += deltaX;
+		fleetRightEndXPosition += deltaX;
+
+		damage(fleetLeftEndXPosition, fleetRightEndXPosition);
+
+		if(parent != null) {
+
+			parent.elementMoved();
+		}
+	}
+
+	@Override
+	public int getRiderXPositions(int[] xPositions, int offset) {
+
+		System.arraycopy(x, 0, xPositions, offset, size);
+
+		return size;
+	}
+
+	@Override
+	public int setRiderXPositions(int[] xPositions, int offset) {
+
+		if(size == 0) {
+
+			return 0;
+		}
+
+		damage(fleetLeftEndXPosition, fleetRightEndXPosition);
+
+		long bounds = riderKernel.moveTo(xPositions, offset, x, leftEndXPosition, rightEndXPosition, size);
+
+		fleetLeftEndXPosition = RiderKernel.getLeftEnd(bounds);
+		fleetRightEndXPosition = RiderKernel.getRightEnd(bounds);
+
+		damage(fleetLeftEndXPosition, fleetRightEndXPosition);
+
+		//The riders may not have moved by the same amount, so their order may have changed
+		if(extentIndex != null) {
+
+			extentIndex.elementsMoved();
+		}
+
+		if(parent != null) {
+
+			parent.elementMoved();
+		}
+
+		return size;
+	}
+
+	@Override
+	public void collectDamage(DamageRegion damageRegion) {
+
+		if(damaged) {
+
+			damageRegion.add(damageLeftXPosition, fleetTopYPosition, damageRightXPosition, fleetBottomYPosition);
+			damaged = false;
+		}
+	}
+
+	@Override
+	public int getRightEndXPosition() {
+
+		return fleetRightEndXPosition;
+	}
+
+	@Override
+	public int getLeftEndXPosition() {
+
+		return fleetLeftEndXPosition;
+	}
+
+	/**
+	 * Method that makes every fleet move its riders with the specified kernel
+	 * @param riderKernel the kernel (RiderKernel.scalar(), RiderKernel.vector() or RiderKernel.getDefault())
+	 */
+	public static void setRiderKernel(RiderKernel riderKernel) {
+
+		if(riderKernel == null) {
+
+			throw new IllegalArgumentException("The rider kernel can't be null");
+		}
+
+		UnicycleFleet.riderKernel = riderKernel;
+	}
+
+	/**
+	 * Method called by MovingObjectGroup.addMovingObject to link the fleet to its group
+	 * @param parent the group the fleet was added to
+	 */
+	void setParent(MovingObjectGroup parent) {
+
+		this.parent = parent;
+	}
+
+	/**
+	 * Method that returns the number of riders in the fleet
+	 * @return the number of riders in the fleet
+	 */
+	public int size() {
+
+		return size;
+	}
+
+	/**
+	 * Method that returns the X coordinate of the center of the wheel of a rider
+	 * @param index the index of the rider in the fleet
+	 * @return the X coordinate of the center of the rider's wheel
+	 */
+	public int getXPosition(int index) {
+
+		checkIndex(index);
+		return x[index];
+	}
+
+	/**
+	 * Method that returns the Y coordinate of the bottom of the wheel of a rider
+	 * @param index the index of the rider in the fleet
+	 * @return the Y coordinate of the bottom (6 o'clock) position of the rider's wheel
+	 */
+	public int getYPosition(int index) {
+
+		checkIndex(index);
+		return y[index];
+	}
+
+	/**
+	 * Method that returns the seat length of a rider
+	 * @param index the index of the rider in the fleet
+	 * @return the seat length of the rider
+	 */
+	public int getSeatLength(int index) {
+
+		checkIndex(index);
+		return seatLength[index];
+	}
+
+	/**
+	 * Method that returns the color of a rider
+	 * @param index the index of the rider in the fleet
+	 * @return the color of the rider as an RGB int
+	 */
+	public int getColor(int index) {
+
+		checkIndex(index);
+		return color[index];
+	}
+
+	/**
+	 * Method that returns the X coordinate of the leftmost point of a rider
+	 * @param index the index of the rider in the fleet
+	 * @return the X coordinate of the 9 o'clock position of the rider's wheel
+	 */
+	public int getLeftEndXPosition(int index) {
+
+		checkIndex(index);
+		return leftEndXPosition[index];
+	}
+
+	/**
+	 * Method that returns the X coordinate of the rightmost point of a rider
+	 * @param index the index of the rider in the fleet
+	 * @return the X coordinate of the 3 o'clock position of the rider's wheel
+	 */
+	public int getRightEndXPosition(int index) {
+
+		checkIndex(index);
+		return rightEndXPosition[index];
+	}
+
+	/**
+	 * Helper method that makes sure the index refers to a rider of the fleet
+	 * @param index the index to be checked
+	 */
+	private void checkIndex(int index) {
+
+		if(index < 0 || index >= size) {
+
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Helper method that adds an area the fleet covered to the area that must be repainted
+	 * @param left the X coordinate of the left end of the area
+	 * @param right the X coordinate of the right end of the area
+	 */
+	private void damage(int left, int right) {
+
+		if(!damaged) {
+
+			damaged = true;
+			damageLeftXPosition = left;
+			damageRightXPosition = right;
+
+		} else {
+
+			damageLeftXPosition = Math.min(damageLeftXPosition, left);
+			damageRightXPosition = Math.max(damageRightXPosition, right);
+		}
+	}
+
+	/**
+	 * Helper method that doubles the capacity of all the arrays of the fleet
+	 */
+	private void grow() {
+
+		int newCapacity = x.length * 2;
+
+		x = Arrays.copyOf(x, newCapacity);
+		y = Arrays.copyOf(y, newCapacity);
+		seatLength = Arrays.copyOf(seatLength, newCapacity);
+		color = Arrays.copyOf(color, newCapacity);
+		leftEndXPosition = Arrays.copyOf(leftEndXPosition, newCapacity);
+		rightEndXPosition = Arrays.copyOf(rightEndXPosition, newCapacity);
+	}
+
+	/**
+	 * Class that lets an ExtentIndex read the ends of the riders straight from the arrays of the fleet
+	 * 
+	 * @author Luiz do Valle
+	 *
+	 */
+	private final class RiderExtents implements ExtentIndex.Source {
+
+		@Override
+		public int size() {
+
+			return size;
+		}
+
+		@Override
+		public int getLeftEnd(int element) {
+
+			return leftEndXPosition[element];
+		}
+
+		@Override
+		public int getRightEnd(int element) {
+
+			return rightEndXPosition[element];
+		}
+	}
+}
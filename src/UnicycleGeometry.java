@@ -0,0 +1,540 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Class that holds the shapes of a unicycle of a given seat length (Flyweight Pattern).
+ * The shapes are created once per seat length, relative to the bottom of the wheel, and shared by every rider
+ * of that size. A rider only contributes its own translation when it is drawn, so drawing allocates nothing
+ *
+ * @author Luiz do Valle
+ *
+ */
+public final class UnicycleGeometry {
+
+	/**
+	 * Geometries created so far, indexed by seat length. Replaced (never modified) when a new seat length
+	 * is needed so that lookups don't need any locking
+	 */
+	private static volatile UnicycleGeometry[] cache = new UnicycleGeometry[128];
+
+	/**
+	 * Seat lengths from this one up are not cached (the cache would need an entry for every smaller seat length).
+	 * Far larger than any rider fits on the screen, but race files can hold any int
+	 */
+	private static final int MAX_CACHED_SEAT_LENGTH = 4096;
+
+	/**
+	 * Number of bits of the index of a slot of the color cache
+	 */
+	private static final int COLOR_CACHE_BITS = 16;
+
+	/**
+	 * Colors set for riders that were skipped, by RGB int (one color per slot, replaced when another RGB
+	 * int falls in the same slot). The riders around the edges of the visible area barely change from one
+	 * frame to the next, so their colors are almost always found here instead of created again
+	 */
+	private static final SharedColor[] colorCache = new SharedColor[1 << COLOR_CACHE_BITS];
+
+	/**
+	 * The seat length this geometry was created for
+	 */
+	private final int seatLength;
+
+	/**
+	 * The rectangle representing the unicycle's seat, relative to the bottom of the wheel
+	 */
+	private final Rectangle2D seat;
+
+	/**
+	 * The outline of the whole unicycle (seat, frame, wheel and axle), relative to the bottom of the wheel
+	 */
+	private final GeneralPath outline;
+
+	/**
+	 * The diameter of the wheel
+	 */
+	private final int wheelDiameter;
+
+	/**
+	 * The X coordinate of the leftmost point of the unicycle relative to the center of the wheel
+	 */
+	private final int leftEndXOffset;
+
+	/**
+	 * The Y coordinate of the topmost point of the unicycle (top of the seat) relative to the bottom of the wheel
+	 */
+	private final int topYOffset;
+
+	/**
+	 * The smallest rectangle containing the outline of the unicycle, relative to the bottom of the wheel
+	 */
+	private final Rectangle bounds;
+
+	/**
+	 * Constructor that creates the shapes of a unicycle with the specified seat length.
+	 * All lengths and positions are defined in terms of the seat length, exactly like Unicycle used to do
+	 * @param seatLength the length of the seat
+	 */
+	private UnicycleGeometry(int seatLength) {
+
+		int unit = seatLength;
+		this.seatLength = seatLength;
+
+		//Wheel
+		int diameterWheel = UnicycleDimensions.wheelDiameter(unit);
+		Ellipse2D wheel = new Ellipse2D.Double(-diameterWheel/2, -diameterWheel, diameterWheel, diameterWheel);
+
+		//Axle
+		int diameterAxle = diameterWheel/4;
+		Ellipse2D axle = new Ellipse2D.Double(-diameterAxle/2, -diameterAxle/2 - diameterWheel/2, diameterAxle, diameterAxle);
+
+		//Frame
+		int frameTopY = -diameterWheel/2 - 3/2 * (unit);
+		Line2D frame = new Line2D.Double(0, frameTopY, 0, -diameterWheel/2);
+
+		//Seat
+		seat = new Rectangle2D.Double(-unit/2, frameTopY - unit/3, unit, unit/3);
+
+		outline = new GeneralPath();
+		outline.append(seat, false);
+		outline.append(frame, false);
+		outline.append(wheel, false);
+		outline.append(axle, false);
+
+		wheelDiameter = diameterWheel;
+		leftEndXOffset = -diameterWheel/2;
+		topYOffset = frameTopY - unit/3;
+		bounds = outline.getBounds();
+	}
+
+	/**
+	 * Method that returns the shared geometry for the specified seat length, creating it the first time
+	 * that seat length is used
+	 * @param seatLength the length of the seat
+	 * @return the geometry shared by all unicycles with that seat length
+	 */
+	public static UnicycleGeometry forSeatLength(int seatLength) {
+
+		UnicycleGeometry[] geometries = cache;
+
+		if(seatLength >= 0 && seatLength < geometries.length) {
+
+			UnicycleGeometry geometry = geometries[seatLength];
+
+			if(geometry != null) {
+
+				return geometry;
+			}
+		}
+
+		return createGeometry(seatLength);
+	}
+
+	/**
+	 * Helper method that creates and caches the geometry for a seat length that is not cached yet
+	 * @param seatLength the length of the seat
+	 * @return the geometry for that seat length
+	 */
+	private static synchronized UnicycleGeometry createGeometry(int seatLength) {
+
+		//Negative seat lengths don't make sense, but they used to be drawn anyway, so they still are (uncached),
+		//and so are huge ones
+		if(seatLength < 0 || seatLength >= MAX_CACHED_SEAT_LENGTH) {
+
+			return new UnicycleGeometry(seatLength);
+		}
+
+		UnicycleGeometry[] geometries = cache;
+
+		if(seatLength < geometries.length && geometries[seatLength] != null) {
+
+			return geometries[seatLength];
+		}
+
+		UnicycleGeometry[] newGeometries = Arrays.copyOf(geometries, Math.max(geometries.length, Integer.highestOneBit(seatLength) * 2));
+		newGeometries[seatLength] = new UnicycleGeometry(seatLength);
+		cache = newGeometries;
+
+		return newGeometries[seatLength];
+	}
+
+	/**
+	 * Method that returns a Color for an RGB int from the color cache, creating it only if the cache doesn't
+	 * hold it. Meant for colors set again and again from one frame to the next (e.g. the color of the last
+	 * rider of the riders skipped by culling)
+	 * @param rgb the color as an RGB int
+	 * @return a Color with that RGB value
+	 */
+	public static Color sharedColor(int rgb) {
+
+		//Two slots per RGB int, the most recently created color first, so that two colors falling in the same
+		//slots don't keep replacing each other
+		int slot = ((rgb * 0x9E3779B9) >>> (32 - COLOR_CACHE_BITS)) & ~1;
+		SharedColor sharedColor = colorCache[slot];
+
+		if(sharedColor != null && sharedColor.rgb == rgb) {
+
+			return sharedColor.color;
+		}
+
+		SharedColor otherColor = colorCache[slot + 1];
+
+		if(otherColor != null && otherColor.rgb == rgb) {
+
+			return otherColor.color;
+		}
+
+		//Slots are written without locking: SharedColor only has final fields, so any thread that sees one sees
+		//it whole
+		colorCache[slot + 1] = sharedColor;
+		sharedColor = new SharedColor(rgb);
+		colorCache[slot] = sharedColor;
+
+		return sharedColor.color;
+	}
+
+	/**
+	 * Method that draws a unicycle with this geometry without creating any object
+	 * The seat is filled with the current color of graphics2d and then the unicycle is outlined with its color
+	 * @param graphics2d the Graphics2D reference used to draw the unicycle
+	 * @param x the X coordinate of the center of the wheel
+	 * @param y the Y coordinate of the bottom (6 o'clock) position of the wheel
+	 * @param color the color of the unicycle
+	 */
+	public void draw(Graphics2D graphics2d, int x, int y, Color color) {
+
+		graphics2d.translate(x, y);
+
+		graphics2d.fill(seat);
+		graphics2d.setColor(color);
+		graphics2d.draw(outline);
+
+		graphics2d.translate(-x, -y);
+	}
+
+	/**
+	 * Method that draws a unicycle with this geometry as a single rectangle covering it, for riders too small
+	 * on the screen for their shapes to be told apart (see LevelOfDetail)
+	 * @param graphics2d the Graphics2D reference used to draw the unicycle
+	 * @param x the X coordinate of the center of the wheel
+	 * @param y the Y coordinate of the bottom (6 o'clock) position of the wheel
+	 * @param color the color of the unicycle (left set on graphics2d, like draw does)
+	 */
+	public void drawSimplified(Graphics2D graphics2d, int x, int y, Color color) {
+
+		graphics2d.setColor(color);
+		graphics2d.fillRect(x + bounds.x, y + bounds.y, bounds.width, bounds.height);
+	}
+
+	/**
+	 * Method that draws riders stored in parallel arrays (like the ones of UnicycleFleet), creating no shapes
+	 * and only creating a Color when the color changes from one rider to the next (the colors set for skipped
+	 * riders come from the color cache).
+	 * Uses the active UnicycleSpriteCache, if any
+	 * @param graphics2d the Graphics2D reference used to draw the riders
+	 * @param x the X coordinates of the centers of the wheels
+	 * @param y the Y coordinates of the bottoms of the wheels
+	 * @param seatLength the seat lengths
+	 * @param rgb the colors as RGB ints
+	 * @param from the index of the first rider to be drawn
+	 * @param to the index after the last rider to be drawn
+	 * @param levelOfDetail the level of detail the riders are drawn with (null to draw them in full detail)
+	 */
+	public static void drawRiders(Graphics2D graphics2d, int[] x, int[] y, int[] seatLength, int[] rgb, int from, int to, LevelOfDetail levelOfDetail) {
+
+		drawRiders(graphics2d, x, y, seatLength, rgb, from, to, null, levelOfDetail);
+	}
+
+	/**
+	 * Method that draws the riders stored in parallel arrays that intersect an area, skipping all the others.
+	 * Every rider drawn looks exactly as if all the riders had been drawn (its seat is filled with the color of
+	 * the rider before it, like drawRiders(Graphics2D, int[], int[], int[], int[], int, int, LevelOfDetail) does)
+	 * @param graphics2d the Graphics2D reference used to draw the riders
+	 * @param x the X coordinates of the centers of the wheels
+	 * @param y the Y coordinates of the bottoms of the wheels
+	 * @param seatLength the seat lengths
+	 * @param rgb the colors as RGB ints
+	 * @param from the index of the first rider to be drawn
+	 * @param to the index after the last rider to be drawn
+	 * @param area only riders intersecting this area are drawn (null to draw every rider)
+	 * @param levelOfDetail the level of detail the riders are drawn with (null to draw them in full detail)
+	 */
+	public static void drawRiders(Graphics2D graphics2d, int[] x, int[] y, int[] seatLength, int[] rgb, int from, int to, Rectangle area, LevelOfDetail levelOfDetail) {
+
+		Color currentColor = null;
+		int currentRgb = 0;
+		int lastDrawn = from - 1;
+
+		UnicycleSpriteCache spriteCache = UnicycleSpriteCache.getActive();
+		UnicycleSpriteCache.Sprite sprite = null;
+
+		int minimumSeatLength = levelOfDetail == null ? Integer.MIN_VALUE : levelOfDetail.getMinimumSeatLength();
+
+		for(int i = from; i < to; i++) {
+
+			UnicycleGeometry geometry = forSeatLength(seatLength[i]);
+
+			if(area != null && !geometry.intersects(x[i], y[i], area)) {
+
+				continue;
+			}
+
+			//After skipping riders, the seat must still be filled with the color of the rider before this one
+			//(already set if the last rider drawn has the same color)
+			if(lastDrawn != i - 1 && (lastDrawn < from || rgb[lastDrawn] != rgb[i - 1])) {
+
+				graphics2d.setColor(sharedColor(rgb[i - 1]));
+			}
+
+			lastDrawn = i;
+
+			if(currentColor == null || currentRgb != rgb[i]) {
+
+				currentColor = sharedColor(rgb[i]);
+				currentRgb = rgb[i];
+			}
+
+			if(seatLength[i] < minimumSeatLength) {
+
+				//Too small on the screen for its shapes to be told apart
+				geometry.drawSimplified(graphics2d, x[i], y[i], currentColor);
+
+			} else if(spriteCache != null) {
+
+				//Raster mode: consecutive riders of the same size and color reuse the sprite without a lookup
+				sprite = spriteCache.draw(graphics2d, x[i], y[i], geometry, currentColor, sprite);
+
+			} else {
+
+				geometry.draw(graphics2d, x[i], y[i], currentColor);
+			}
+		}
+
+		//Leave the color of the last rider set, as if every rider had been drawn
+		if(lastDrawn != to - 1 && to > from && (lastDrawn < from || rgb[lastDrawn] != rgb[to - 1])) {
+
+			graphics2d.setColor(sharedColor(rgb[to - 1]));
+		}
+	}
+
+	/**
+	 * Method that draws riders whose X coordinates are stored in an IntBuffer (like the memory-mapped file of a
+	 * SharedRaceStore) instead of an array, reading them in place. Otherwise exactly like
+	 * drawRiders(Graphics2D, int[], int[], int[], int[], int, int, LevelOfDetail)
+	 * @param graphics2d the Graphics2D reference used to draw the riders
+	 * @param x the X coordinates of the centers of the wheels (read with absolute gets)
+	 * @param y the Y coordinates of the bottoms of the wheels
+	 * @param seatLength the seat lengths
+	 * @param rgb the colors as RGB ints
+	 * @param from the index of the first rider to be drawn
+	 * @param to the index after the last rider to be drawn
+	 * @param levelOfDetail the level of detail the riders are drawn with (null to draw them in full detail)
+	 */
+	public static void drawRiders(Graphics2D graphics2d, IntBuffer x, int[] y, int[] seatLength, int[] rgb, int from, int to, LevelOfDetail levelOfDetail) {
+
+		Color currentColor = null;
+		int currentRgb = 0;
+
+		UnicycleSpriteCache spriteCache = UnicycleSpriteCache.getActive();
+		UnicycleSpriteCache.Sprite sprite = null;
+
+		int minimumSeatLength = levelOfDetail == null ? Integer.MIN_VALUE : levelOfDetail.getMinimumSeatLength();
+
+		for(int i = from; i < to; i++) {
+
+			int xPosition = x.get(i);
+
+			if(currentColor == null || currentRgb != rgb[i]) {
+
+				currentColor = sharedColor(rgb[i]);
+				currentRgb = rgb[i];
+			}
+
+			UnicycleGeometry geometry = forSeatLength(seatLength[i]);
+
+			if(seatLength[i] < minimumSeatLength) {
+
+				geometry.drawSimplified(graphics2d, xPosition, y[i], currentColor);
+
+			} else if(spriteCache != null) {
+
+				sprite = spriteCache.draw(graphics2d, xPosition, y[i], geometry, currentColor, sprite);
+
+			} else {
+
+				geometry.draw(graphics2d, xPosition, y[i], currentColor);
+			}
+		}
+	}
+
+	/**
+	 * Method that draws some of the riders stored in parallel arrays, given by their indexes (like the ones
+	 * found by an ExtentIndex). Every rider drawn looks exactly as if all the riders had been drawn
+	 * @param graphics2d the Graphics2D reference used to draw the riders
+	 * @param x the X coordinates of the centers of the wheels
+	 * @param y the Y coordinates of the bottoms of the wheels
+	 * @param seatLength the seat lengths
+	 * @param rgb the colors as RGB ints
+	 * @param indexes the indexes of the riders to be drawn, in increasing order
+	 * @param count the number of indexes to be used
+	 * @param levelOfDetail the level of detail the riders are drawn with (null to draw them in full detail)
+	 */
+	public static void drawRiders(Graphics2D graphics2d, int[] x, int[] y, int[] seatLength, int[] rgb, int[] indexes, int count, LevelOfDetail levelOfDetail) {
+
+		Color currentColor = null;
+		int currentRgb = 0;
+		int lastDrawn = -1;
+
+		UnicycleSpriteCache spriteCache = UnicycleSpriteCache.getActive();
+		UnicycleSpriteCache.Sprite sprite = null;
+
+		int minimumSeatLength = levelOfDetail == null ? Integer.MIN_VALUE : levelOfDetail.getMinimumSeatLength();
+
+		for(int k = 0; k < count; k++) {
+
+			int i = indexes[k];
+
+			//The seat must still be filled with the color of the rider before this one, even if it wasn't drawn
+			//(already set if the last rider drawn has the same color)
+			if(i > 0 && lastDrawn != i - 1 && (lastDrawn < 0 || rgb[lastDrawn] != rgb[i - 1])) {
+
+				graphics2d.setColor(sharedColor(rgb[i - 1]));
+			}
+
+			lastDrawn = i;
+
+			if(currentColor == null || currentRgb != rgb[i]) {
+
+				currentColor = sharedColor(rgb[i]);
+				currentRgb = rgb[i];
+			}
+
+			UnicycleGeometry geometry = forSeatLength(seatLength[i]);
+
+			if(seatLength[i] < minimumSeatLength) {
+
+				geometry.drawSimplified(graphics2d, x[i], y[i], currentColor);
+
+			} else if(spriteCache != null) {
+
+				sprite = spriteCache.draw(graphics2d, x[i], y[i], geometry, currentColor, sprite);
+
+			} else {
+
+				geometry.draw(graphics2d, x[i], y[i], currentColor);
+			}
+		}
+	}
+
+	/**
+	 * Method that returns the smallest rectangle containing the outline of the unicycle,
+	 * relative to the bottom of the wheel
+	 * @return the bounds of the unicycle
+	 */
+	public Rectangle getBounds() {
+
+		return new Rectangle(bounds);
+	}
+
+	/**
+	 * Method that tells whether a unicycle with this geometry at the specified position touches an area
+	 * (including the pixel the outline's stroke may spill over on each side)
+	 * @param x the X coordinate of the center of the wheel
+	 * @param y the Y coordinate of the bottom (6 o'clock) position of the wheel
+	 * @param area the area to be tested
+	 * @return true if the unicycle may draw pixels inside the area
+	 */
+	public boolean intersects(int x, int y, Rectangle area) {
+
+		int left = x + bounds.x - 1;
+		int top = y + bounds.y - 1;
+		int right = x + bounds.x + bounds.width + 2;
+		int bottom = y + bounds.y + bounds.height + 2;
+
+		return right > area.x && left < area.x + area.width && bottom > area.y && top < area.y + area.height;
+	}
+
+	/**
+	 * Method that returns the seat length this geometry was created for
+	 * @return the seat length
+	 */
+	public int getSeatLength() {
+
+		return seatLength;
+	}
+
+	/**
+	 * Method that returns the diameter of the wheel
+	 * @return the diameter of the wheel
+	 */
+	public int getWheelDiameter() {
+
+		return wheelDiameter;
+	}
+
+	/**
+	 * Method that returns the X coordinate of the leftmost point (9 o'clock position of the wheel)
+	 * relative to the center of the wheel
+	 * @return the offset of the left end from the center of the wheel
+	 */
+	public int getLeftEndXOffset() {
+
+		return leftEndXOffset;
+	}
+
+	/**
+	 * Method that returns the X coordinate of the rightmost point (3 o'clock position of the wheel)
+	 * relative to the center of the wheel
+	 * @return the offset of the right end from the center of the wheel
+	 */
+	public int getRightEndXOffset() {
+
+		return leftEndXOffset + wheelDiameter;
+	}
+
+	/**
+	 * Method that returns the Y coordinate of the top of the seat relative to the bottom of the wheel
+	 * @return the (negative) offset of the top of the unicycle from the bottom of the wheel
+	 */
+	public int getTopYOffset() {
+
+		return topYOffset;
+	}
+
+	/**
+	 * Class that holds a Color of the color cache along with its RGB int. All of its fields are final, so it can
+	 * be shared between threads without locking
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	private static final class SharedColor {
+
+		/**
+		 * The RGB int the color was created from
+		 */
+		private final int rgb;
+
+		/**
+		 * The color
+		 */
+		private final Color color;
+
+		/**
+		 * Constructor that creates the color of an RGB int
+		 * @param rgb the color as an RGB int
+		 */
+		private SharedColor(int rgb) {
+
+			this.rgb = rgb;
+			this.color = new Color(rgb);
+		}
+	}
+}
@@ -0,0 +1,393 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that rasterizes unicycles into images (sprites) once per distinct seat length and color, so that
+ * drawing a unicycle becomes a single drawImage instead of filling and stroking four shapes.
+ * Sprites are kept in a cache bounded by memory, evicting the least recently used sprite first. Sprites reused
+ * without a lookup (see draw) are only marked as used, and get a second chance instead of being evicted.
+ *
+ * Raster mode is opt-in: it is only used while a cache is active (see setActive(UnicycleSpriteCache)).
+ * Unlike the vector path, which fills the seat with whatever color was drawn before, a sprite's seat is
+ * filled with the unicycle's own color
+ *
+ * @author Luiz do Valle
+ *
+ */
+public class UnicycleSpriteCache {
+
+	/**
+	 * The cache used by Unicycle and UnicycleFleet to draw, or null if unicycles are drawn as shapes
+	 */
+	private static volatile UnicycleSpriteCache active;
+
+	/**
+	 * Sprites in least recently used order, keyed by seat length (high 32 bits) and RGB color (low 32 bits)
+	 */
+	private final LinkedHashMap<Long, Sprite> sprites = new LinkedHashMap<>(64, 0.75f, true);
+
+	/**
+	 * The maximum number of bytes the images of the cache may use
+	 */
+	private final long maxBytes;
+
+	/**
+	 * The number of bytes currently used by the images of the cache
+	 */
+	private long bytes;
+
+	/**
+	 * The configuration of the screen, used to create images in a format that is fast to draw on it
+	 * (null when running headless)
+	 */
+	private final GraphicsConfiguration graphicsConfiguration;
+
+	/**
+	 * Number of unicycles drawn with a sprite that was already in the cache
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * Number of unicycles whose sprite had to be rasterized
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Number of sprites evicted to keep the cache within maxBytes
+	 */
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Constructor that creates an empty cache whose images may use up to the specified number of bytes
+	 * @param maxBytes the maximum number of bytes used by the images of the cache
+	 */
+	public UnicycleSpriteCache(long maxBytes) {
+
+		if(maxBytes <= 0) {
+
+			throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+		}
+
+		this.maxBytes = maxBytes;
+
+		if(GraphicsEnvironment.isHeadless()) {
+
+			graphicsConfiguration = null;
+
+		} else {
+
+			graphicsConfiguration = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+		}
+	}
+
+	/**
+	 * Method that turns raster mode on (with the specified cache) or off (with null)
+	 * @param spriteCache the cache unicycles should be drawn with, or null to draw them as shapes
+	 */
+	public static void setActive(UnicycleSpriteCache spriteCache) {
+
+		active = spriteCache;
+	}
+
+	/**
+	 * Method that returns the cache unicycles are currently drawn with
+	 * @return the active cache, or null if unicycles are drawn as shapes
+	 */
+	public static UnicycleSpriteCache getActive() {
+
+		return active;
+	}
+
+	/**
+	 * Method that draws a unicycle with its sprite, rasterizing the sprite first if it is not in the cache.
+	 * The color of graphics2d is left set to the unicycle's color, just like the vector path leaves it
+	 * @param graphics2d the Graphics2D reference used to draw the unicycle
+	 * @param x the X coordinate of the center of the wheel
+	 * @param y the Y coordinate of the bottom (6 o'clock) position of the wheel
+	 * @param geometry the shapes of the unicycle
+	 * @param color the color of the unicycle
+	 * @param lastSprite the sprite the caller drew last time (may be null). If it still matches and is still
+	 * cached it is reused without looking it up
+	 * @return the sprite that was drawn, to be passed back as lastSprite next time
+	 */
+	public Sprite draw(Graphics2D graphics2d, int x, int y, UnicycleGeometry geometry, Color color, Sprite lastSprite) {
+
+		int rgb = color.getRGB();
+		Sprite sprite = lastSprite;
+
+		if(sprite != null && sprite.owner == this && !sprite.evicted && sprite.seatLength == geometry.getSeatLength() && sprite.rgb == rgb) {
+
+			hits.increment();
+
+			//No lookup refreshed its place in the map, so mark it as used for the eviction to see
+			if(!sprite.used) {
+
+				sprite.used = true;
+			}
+
+		} else {
+
+			sprite = getSprite(geometry, color);
+		}
+
+		graphics2d.drawImage(sprite.image, x + sprite.offsetX, y + sprite.offsetY, null);
+		graphics2d.setColor(color);
+
+		return sprite;
+	}
+
+	/**
+	 * Method that returns the fraction of unicycles drawn with a sprite that was already cached
+	 * @return the hit rate, between 0 and 1 (0 if nothing was drawn yet)
+	 */
+	public double getHitRate() {
+
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * Method that returns the number of unicycles drawn with a sprite that was already cached
+	 * @return the number of hits
+	 */
+	public long getHits() {
+
+		return hits.sum();
+	}
+
+	/**
+	 * Method that returns the number of sprites that had to be rasterized
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+
+		return misses.sum();
+	}
+
+	/**
+	 * Method that returns the number of sprites evicted to keep the cache within its memory bound
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+
+		return evictions.sum();
+	}
+
+	/**
+	 * Method that returns the number of bytes currently used by the images of the cache
+	 * @return the memory used by the cache in bytes
+	 */
+	public synchronized long getMemoryBytes() {
+
+		return bytes;
+	}
+
+	/**
+	 * Method that returns the maximum number of bytes the images of the cache may use
+	 * @return the memory bound of the cache in bytes
+	 */
+	public long getMaxBytes() {
+
+		return maxBytes;
+	}
+
+	/**
+	 * Method that returns the number of sprites currently cached
+	 * @return the number of sprites in the cache
+	 */
+	public synchronized int getSpriteCount() {
+
+		return sprites.size();
+	}
+
+	/**
+	 * Method that removes every sprite from the cache
+	 */
+	public synchronized void clear() {
+
+		for(Sprite sprite : sprites.values()) {
+
+			sprite.evicted = true;
+		}
+
+		sprites.clear();
+		bytes = 0;
+	}
+
+	@Override
+	public String toString() {
+
+		return String.format("UnicycleSpriteCache[sprites=%d, memory=%d/%d bytes, hits=%d, misses=%d, evictions=%d, hitRate=%.3f]",
+				getSpriteCount(), getMemoryBytes(), maxBytes, getHits(), getMisses(), getEvictions(), getHitRate());
+	}
+
+	/**
+	 * Helper method that looks up the sprite for a seat length and color, rasterizing it on a miss and
+	 * evicting the least recently used sprites if the cache grows past its memory bound
+	 * @param geometry the shapes of the unicycle
+	 * @param color the color of the unicycle
+	 * @return the sprite for that seat length and color
+	 */
+	private synchronized Sprite getSprite(UnicycleGeometry geometry, Color color) {
+
+		long key = ((long) geometry.getSeatLength() << 32) | (color.getRGB() & 0xFFFFFFFFL);
+		Sprite sprite = sprites.get(key);
+
+		if(sprite != null) {
+
+			hits.increment();
+			return sprite;
+		}
+
+		misses.increment();
+
+		sprite = rasterize(geometry, color);
+		sprites.put(key, sprite);
+		bytes += sprite.getBytes();
+
+		//Evict the least recently used sprites, but always keep the one that was just created
+		while(bytes > maxBytes && sprites.size() > 1) {
+
+			Map.Entry<Long, Sprite> eldestEntry = sprites.entrySet().iterator().next();
+			Sprite eldest = eldestEntry.getValue();
+
+			if(eldest == sprite || eldest.used) {
+
+				//Used since it was last looked up: the lookup makes it the most recently used one again
+				eldest.used = false;
+				sprites.get(eldestEntry.getKey());
+				continue;
+			}
+
+			sprites.remove(eldestEntry.getKey());
+
+			eldest.evicted = true;
+			bytes -= eldest.getBytes();
+			evictions.increment();
+		}
+
+		return sprite;
+	}
+
+	/**
+	 * Helper method that draws the shapes of a unicycle into a new transparent image
+	 * @param geometry the shapes of the unicycle
+	 * @param color the color of the unicycle
+	 * @return the sprite holding the image
+	 */
+	private Sprite rasterize(UnicycleGeometry geometry, Color color) {
+
+		//One pixel of margin on each side for the stroke
+		Rectangle bounds = geometry.getBounds();
+		int offsetX = bounds.x - 1;
+		int offsetY = bounds.y - 1;
+		int width = bounds.width + 3;
+		int height = bounds.height + 3;
+
+		BufferedImage image;
+
+		if(graphicsConfiguration != null) {
+
+			image = graphicsConfiguration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+
+		} else {
+
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		}
+
+		Graphics2D graphics2d = image.createGraphics();
+		graphics2d.setColor(color);
+		geometry.draw(graphics2d, -offsetX, -offsetY, color);
+		graphics2d.dispose();
+
+		return new Sprite(this, geometry.getSeatLength(), color.getRGB(), image, offsetX, offsetY);
+	}
+
+	/**
+	 * Class that holds the rasterized image of a unicycle of a given seat length and color
+	 *
+	 * @author Luiz do Valle
+	 *
+	 */
+	public static final class Sprite {
+
+		/**
+		 * The cache this sprite belongs to
+		 */
+		private final UnicycleSpriteCache owner;
+
+		/**
+		 * The seat length of the unicycle in the image
+		 */
+		private final int seatLength;
+
+		/**
+		 * The color of the unicycle in the image, as an RGB int
+		 */
+		private final int rgb;
+
+		/**
+		 * The image of the unicycle
+		 */
+		private final BufferedImage image;
+
+		/**
+		 * X coordinate of the top left corner of the image relative to the center of the wheel
+		 */
+		private final int offsetX;
+
+		/**
+		 * Y coordinate of the top left corner of the image relative to the bottom of the wheel
+		 */
+		private final int offsetY;
+
+		/**
+		 * Whether the sprite was evicted from its cache (and must be looked up again)
+		 */
+		private volatile boolean evicted;
+
+		/**
+		 * Whether the sprite was drawn without a lookup since it was last moved to the most recently used end of
+		 * the cache
+		 */
+		private volatile boolean used;
+
+		/**
+		 * Constructor that simply initializes the class's fields
+		 * @param owner the cache the sprite belongs to
+		 * @param seatLength the seat length of the unicycle in the image
+		 * @param rgb the color of the unicycle in the image
+		 * @param image the image of the unicycle
+		 * @param offsetX X coordinate of the image relative to the center of the wheel
+		 * @param offsetY Y coordinate of the image relative to the bottom of the wheel
+		 */
+		private Sprite(UnicycleSpriteCache owner, int seatLength, int rgb, BufferedImage image, int offsetX, int offsetY) {
+
+			this.owner = owner;
+			this.seatLength = seatLength;
+			this.rgb = rgb;
+			this.image = image;
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+		}
+
+		/**
+		 * Helper method that estimates the memory used by the image (4 bytes per pixel)
+		 * @return the number of bytes used by the image
+		 */
+		private long getBytes() {
+
+			return 4L * image.getWidth() * image.getHeight();
+		}
+	}
+}
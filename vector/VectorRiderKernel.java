@@ -0,0 +1,86 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Class that implements the RiderKernel with the Vector API: every instruction handles as many riders as fit in
+ * the widest SIMD registers of the CPU (8 with AVX2, 16 with AVX-512), and the riders left over at the end of a
+ * range are handled one at a time. Only used when the JVM was started with --add-modules jdk.incubator.vector.
+ * It pays off in moveTo, whose reduction of the ends the JIT compiler does not vectorize by itself.
+ * It is kept out of src so that the rest of the race compiles without the module: it is compiled on its own,
+ * with --add-modules jdk.incubator.vector, and RiderKernel loads it by name
+ *
+ * @author Luiz do Valle
+ *
+ */
+final class VectorRiderKernel extends RiderKernel {
+
+	/**
+	 * The widest vector of ints the CPU supports
+	 */
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	@Override
+	public void translate(int[] x, int[] leftEndXPosition, int[] rightEndXPosition, int from, int to, int deltaX) {
+
+		int i = from;
+		int vectorEnd = from + SPECIES.loopBound(to - from);
+
+		for(; i < vectorEnd; i += SPECIES.length()) {
+
+			IntVector.fromArray(SPECIES, x, i).add(deltaX).intoArray(x, i);
+			IntVector.fromArray(SPECIES, leftEndXPosition, i).add(deltaX).intoArray(leftEndXPosition, i);
+			IntVector.fromArray(SPECIES, rightEndXPosition, i).add(deltaX).intoArray(rightEndXPosition, i);
+		}
+
+		for(; i < to; i++) {
+
+			x[i] += deltaX;
+			leftEndXPosition[i] += deltaX;
+			rightEndXPosition[i] += deltaX;
+		}
+	}
+
+	@Override
+	public long moveTo(int[] newX, int offset, int[] x, int[] leftEndXPosition, int[] rightEndXPosition, int count) {
+
+		IntVector lefts = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+		IntVector rights = IntVector.broadcast(SPECIES, Integer.MIN_VALUE);
+
+		int i = 0;
+		int vectorEnd = SPECIES.loopBound(count);
+
+		for(; i < vectorEnd; i += SPECIES.length()) {
+
+			IntVector newXs = IntVector.fromArray(SPECIES, newX, offset + i);
+			IntVector deltaXs = newXs.sub(IntVector.fromArray(SPECIES, x, i));
+
+			IntVector newLefts = IntVector.fromArray(SPECIES, leftEndXPosition, i).add(deltaXs);
+			IntVector newRights = IntVector.fromArray(SPECIES, rightEndXPosition, i).add(deltaXs);
+
+			newXs.intoArray(x, i);
+			newLefts.intoArray(leftEndXPosition, i);
+			newRights.intoArray(rightEndXPosition, i);
+
+			lefts = lefts.min(newLefts);
+			rights = rights.max(newRights);
+		}
+
+		int left = lefts.reduceLanes(VectorOperators.MIN);
+		int right = rights.reduceLanes(VectorOperators.MAX);
+
+		for(; i < count; i++) {
+
+			int deltaX = newX[offset + i] - x[i];
+
+			x[i] += deltaX;
+			leftEndXPosition[i] += deltaX;
+			rightEndXPosition[i] += deltaX;
+
+			left = Math.min(left, leftEndXPosition[i]);
+			right = Math.max(right, rightEndXPosition[i]);
+		}
+
+		return packBounds(left, right);
+	}
+}